@@ -0,0 +1,190 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAgreement;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Size- and TTL-bounded cache of agreement headers, keyed by agreement id.
+ * <p>
+ * Reads fill the cache lazily. Commands call {@link #writeThrough} with a row read back from the
+ * database, or {@link #evict}, inside their transaction: the key is evicted immediately and the
+ * new state is only published once the transaction commits, so a rolled back command never leaves
+ * its changes in the cache. A load that
+ * overlaps a command is not cached, which keeps a slow read from overwriting a newer value, and a
+ * load shortly after any invalidation reads the primary, see {@link CacheInvalidationBus#freshRead}.
+ * Concurrent misses are collapsed through {@link SingleFlight} keyed by id and generation, so a
+ * caller arriving after an invalidation never joins a load that started before it.
+ * </p>
+ * Commands also announce the change on the {@link CacheInvalidationBus} so that other nodes drop
+ * their copy. Hit, miss and eviction counts are published as {@code cache.*} meters tagged
+ * {@code cache=asset-finance-agreements}.
+ */
+@Component
+public class AgreementCache implements CacheInvalidationListener {
+
+    static final String NAME = "asset-finance-agreements";
+
+    private final Cache<UUID, AssetFinanceAgreement> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final CacheInvalidationBus invalidationBus;
+    private final SingleFlight singleFlight;
+
+    public AgreementCache(CacheProperties properties, CacheInvalidationBus invalidationBus, SingleFlight singleFlight,
+                          ObjectProvider<MeterRegistry> meterRegistry) {
+        this.invalidationBus = invalidationBus;
+        this.singleFlight = singleFlight;
+        CacheProperties.Spec spec = properties.getAgreements();
+        if (spec.isEnabled()) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(spec.getMaximumSize())
+                    .expireAfterWrite(spec.getTimeToLive())
+                    .recordStats()
+                    .build();
+            meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, NAME));
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Return the cached agreement, or load it and cache the result. Concurrent misses for the same
+     * agreement and generation share one load.
+     *
+     * @param assetFinanceAgreementId the unique identifier of the agreement
+     * @param loader the database lookup used on a miss
+     * @return a Mono emitting the agreement, or empty when it does not exist
+     */
+    public Mono<AssetFinanceAgreement> get(UUID assetFinanceAgreementId,
+                                           Function<UUID, Mono<AssetFinanceAgreement>> loader) {
+        return Mono.defer(() -> {
+            AssetFinanceAgreement cached = cache == null ? null : cache.getIfPresent(assetFinanceAgreementId);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            long generation = invalidations.get();
+            Mono<AssetFinanceAgreement> load = singleFlight.execute("agreement", List.of(assetFinanceAgreementId, generation),
+                    () -> invalidationBus.freshRead(loader.apply(assetFinanceAgreementId)));
+            if (cache == null) {
+                return load;
+            }
+            return load
+                    .doOnNext(loaded -> {
+                        if (invalidations.get() == generation) {
+                            cache.put(assetFinanceAgreementId, loaded);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Ids of the agreements currently cached.
+     */
+    Set<UUID> keys() {
+        return cache == null ? Set.of() : Set.copyOf(cache.asMap().keySet());
+    }
+
+    /**
+     * Snapshot of the invalidation counter, taken before reading rows that are later passed to
+     * {@link #prime}.
+     */
+    long generation() {
+        return invalidations.get();
+    }
+
+    /**
+     * Cache an agreement read outside the request path unless the key is already cached or any
+     * invalidation happened since {@code generation} was taken.
+     */
+    void prime(AssetFinanceAgreement agreement, long generation) {
+        if (cache != null && invalidations.get() == generation) {
+            cache.asMap().putIfAbsent(agreement.getAssetFinanceAgreementId(), agreement);
+        }
+    }
+
+    /**
+     * Evict the agreement now and cache its saved state once the current transaction commits.
+     * The row must be the one stored, e.g. returned by {@code UPDATE ... RETURNING *}: audit
+     * timestamps are set by the database, so an entity without them is only evicted.
+     */
+    public Mono<AssetFinanceAgreement> writeThrough(AssetFinanceAgreement saved) {
+        if (saved.getCreatedAt() == null || saved.getUpdatedAt() == null) {
+            return evict(saved.getAssetFinanceAgreementId()).thenReturn(saved);
+        }
+        return afterCommit(saved.getAssetFinanceAgreementId(), () -> cache.put(saved.getAssetFinanceAgreementId(), saved))
+                .thenReturn(saved);
+    }
+
+    /**
+     * Evict the agreement now and again once the current transaction completes.
+     */
+    public Mono<Void> evict(UUID assetFinanceAgreementId) {
+        return afterCommit(assetFinanceAgreementId, () -> cache.invalidate(assetFinanceAgreementId));
+    }
+
+    private Mono<Void> afterCommit(UUID assetFinanceAgreementId, Runnable onCommit) {
+        if (cache == null) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            invalidations.incrementAndGet();
+            cache.invalidate(assetFinanceAgreementId);
+            return invalidationBus.publish(InvalidationType.AGREEMENT, assetFinanceAgreementId)
+                    .then(TransactionCallbacks.afterCompletion(
+                            () -> {
+                                invalidations.incrementAndGet();
+                                onCommit.run();
+                            },
+                            () -> {
+                                invalidations.incrementAndGet();
+                                cache.invalidate(assetFinanceAgreementId);
+                            }));
+        });
+    }
+
+    @Override
+    public void invalidate(InvalidationType type, String key) {
+        if (cache != null && (type == InvalidationType.AGREEMENT || type == InvalidationType.AGREEMENT_DELETED)) {
+            invalidations.incrementAndGet();
+            for (String id : key.split(",")) {
+                cache.invalidate(UUID.fromString(id));
+            }
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        if (cache != null) {
+            invalidations.incrementAndGet();
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Fixed-size map from asset id to owning agreement id, used to validate nested routes without a
+ * database round trip.
+ * <p>
+ * Keys and values are stored as pairs of longs in four parallel {@code long[]} arrays plus an
+ * {@code int[]} of expiry times in seconds, so an entry costs 36 bytes and no objects are
+ * allocated per entry; one million slots take 36 MiB. Slots are
+ * grouped into 8-way buckets: a lookup scans one bucket, and an insert into a full bucket replaces
+ * one of its entries. Each bucket is guarded by a striped {@link StampedLock} so readers never see
+ * a half-written pair.
+ * </p>
+ * Entries are added lazily after a successful database check and removed when the asset is
+ * updated or deleted, on this node directly and on other nodes through the
+ * {@link CacheInvalidationBus}. Like {@link AgreementCache}, a fill carries the {@link #generation()}
+ * taken before its read and is dropped when any removal happened since, so a check that raced a
+ * delete cannot re-add the asset. Entries also expire after the configured time to live, which
+ * bounds the damage of an invalidation lost while the bus was reconnecting.
+ */
+@Component
+public class AssetOwnershipCache implements CacheInvalidationListener {
+
+    static final String NAME = "asset-finance-asset-ownership";
+
+    private static final int BUCKET_SIZE = 8;
+    private static final int STRIPES = 256;
+    private static final int IDS_PER_NOTIFICATION = 150;
+    private static final Comparator<UUID> BY_BITS = Comparator.comparingLong(UUID::getMostSignificantBits)
+            .thenComparingLong(UUID::getLeastSignificantBits);
+
+    private final boolean enabled;
+    private final long[] keyHigh;
+    private final long[] keyLow;
+    private final long[] valueHigh;
+    private final long[] valueLow;
+    private final int[] expiresAt;
+    private final int timeToLiveSeconds;
+    private final long startNanos = System.nanoTime();
+    private final int bucketMask;
+    private final StampedLock[] locks;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final CacheInvalidationBus invalidationBus;
+
+    public AssetOwnershipCache(CacheProperties properties, CacheInvalidationBus invalidationBus,
+                               ObjectProvider<MeterRegistry> meterRegistry) {
+        this.invalidationBus = invalidationBus;
+        CacheProperties.Spec spec = properties.getAssetOwnership();
+        this.enabled = spec.isEnabled();
+        int buckets = enabled ? bucketCount(spec.getMaximumSize()) : 1;
+        int slots = buckets * BUCKET_SIZE;
+        this.keyHigh = new long[enabled ? slots : 0];
+        this.keyLow = new long[enabled ? slots : 0];
+        this.valueHigh = new long[enabled ? slots : 0];
+        this.valueLow = new long[enabled ? slots : 0];
+        this.expiresAt = new int[enabled ? slots : 0];
+        Duration timeToLive = spec.getTimeToLive();
+        this.timeToLiveSeconds = timeToLive == null
+                ? Integer.MAX_VALUE
+                : (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeToLive.toSeconds()));
+        this.bucketMask = buckets - 1;
+        this.locks = new StampedLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new StampedLock();
+        }
+        if (enabled) {
+            meterRegistry.ifAvailable(this::bindMetrics);
+        }
+    }
+
+    private static int bucketCount(long maximumSize) {
+        long buckets = Math.max(1, (maximumSize + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        long powerOfTwo = Long.highestOneBit(buckets);
+        if (powerOfTwo < buckets) {
+            powerOfTwo <<= 1;
+        }
+        return (int) Math.min(powerOfTwo, 1L << 27);
+    }
+
+    /**
+     * Whether the asset is known to belong to the agreement. A false result means "unknown", not
+     * "does not belong".
+     */
+    public boolean contains(UUID assetFinanceAgreementId, UUID assetFinanceAssetId) {
+        if (!enabled || isNil(assetFinanceAssetId)) {
+            return false;
+        }
+        long kh = assetFinanceAssetId.getMostSignificantBits();
+        long kl = assetFinanceAssetId.getLeastSignificantBits();
+        long vh = assetFinanceAgreementId.getMostSignificantBits();
+        long vl = assetFinanceAgreementId.getLeastSignificantBits();
+        int bucket = bucket(kh, kl);
+        StampedLock lock = lock(bucket);
+
+        int now = now();
+        long stamp = lock.tryOptimisticRead();
+        boolean found = matches(bucket, kh, kl, vh, vl, now);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = matches(bucket, kh, kl, vh, vl, now);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    /**
+     * Snapshot of the invalidation counter, taken before the read whose result is later passed to
+     * {@link #put}. Every eviction advances it, also while the cache is disabled, so it can key
+     * shared loads of asset rows as well.
+     */
+    public long generation() {
+        return invalidations.get();
+    }
+
+    /**
+     * Record that the asset belongs to the agreement, unless any entry was removed since
+     * {@code generation} was taken.
+     */
+    public void put(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, long generation) {
+        if (!enabled || isNil(assetFinanceAssetId)) {
+            return;
+        }
+        int now = now();
+        long kh = assetFinanceAssetId.getMostSignificantBits();
+        long kl = assetFinanceAssetId.getLeastSignificantBits();
+        int bucket = bucket(kh, kl);
+        int start = bucket * BUCKET_SIZE;
+        StampedLock lock = lock(bucket);
+        long stamp = lock.writeLock();
+        try {
+            // removals bump the counter before taking the bucket lock, so checking under the lock
+            // either sees the bump or runs before the removal clears this slot again
+            if (invalidations.get() != generation) {
+                return;
+            }
+            int target = -1;
+            for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+                if (keyHigh[slot] == kh && keyLow[slot] == kl) {
+                    target = slot;
+                    break;
+                }
+                if (target < 0 && ((keyHigh[slot] == 0 && keyLow[slot] == 0) || expired(slot, now))) {
+                    target = slot;
+                }
+            }
+            if (target < 0) {
+                target = start + (int) ((kl >>> 32) & (BUCKET_SIZE - 1));
+            }
+            keyHigh[target] = kh;
+            keyLow[target] = kl;
+            valueHigh[target] = assetFinanceAgreementId.getMostSignificantBits();
+            valueLow[target] = assetFinanceAgreementId.getLeastSignificantBits();
+            expiresAt[target] = now + Math.min(timeToLiveSeconds, Integer.MAX_VALUE - now);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Forget the asset now and again once the current transaction completes.
+     */
+    public Mono<Void> evict(UUID assetFinanceAssetId) {
+        return Mono.defer(() -> {
+            remove(assetFinanceAssetId);
+            return (enabled ? invalidationBus.publish(InvalidationType.ASSET, assetFinanceAssetId) : Mono.<Void>empty())
+                    .then(TransactionCallbacks.afterCompletion(
+                            () -> remove(assetFinanceAssetId),
+                            () -> remove(assetFinanceAssetId)));
+        });
+    }
+
+    /**
+     * Forget every asset of the agreement, e.g. after a cascading delete. Scans the whole table,
+     * so it is meant for rare commands only.
+     */
+    public Mono<Void> evictAgreement(UUID assetFinanceAgreementId) {
+        return evictAgreements(List.of(assetFinanceAgreementId));
+    }
+
+    /**
+     * Forget every asset of the given agreements with a single scan of the table, now and again
+     * once the current transaction completes. Agreements are announced in groups to keep the
+     * number of notifications low.
+     */
+    public Mono<Void> evictAgreements(Collection<UUID> assetFinanceAgreementIds) {
+        if (assetFinanceAgreementIds.isEmpty()) {
+            return Mono.empty();
+        }
+        List<UUID> ids = List.copyOf(assetFinanceAgreementIds);
+        return Mono.defer(() -> {
+            removeAgreements(ids);
+            return Flux.fromIterable(enabled ? ids : List.of())
+                    .buffer(IDS_PER_NOTIFICATION)
+                    .concatMap(group -> invalidationBus.publish(InvalidationType.AGREEMENT_DELETED,
+                            group.stream().map(UUID::toString).collect(Collectors.joining(","))))
+                    .then(TransactionCallbacks.afterCompletion(
+                            () -> removeAgreements(ids),
+                            () -> removeAgreements(ids)));
+        });
+    }
+
+    @Override
+    public void invalidate(InvalidationType type, String key) {
+        if (!enabled) {
+            return;
+        }
+        switch (type) {
+            case ASSET -> remove(UUID.fromString(key));
+            case AGREEMENT_DELETED -> removeAgreements(Stream.of(key.split(",")).map(UUID::fromString).toList());
+            case AGREEMENT, TABLE, CREATED -> {
+                // header changes, table level changes and new rows do not move assets
+            }
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        for (int bucket = 0; bucket <= bucketMask; bucket++) {
+            int start = bucket * BUCKET_SIZE;
+            StampedLock lock = lock(bucket);
+            long stamp = lock.writeLock();
+            try {
+                for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+                    clear(slot);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Visit every entry as {@code (agreementId, assetId)}, one bucket at a time.
+     */
+    void forEach(BiConsumer<UUID, UUID> action) {
+        if (!enabled) {
+            return;
+        }
+        int now = now();
+        for (int bucket = 0; bucket <= bucketMask; bucket++) {
+            int start = bucket * BUCKET_SIZE;
+            StampedLock lock = lock(bucket);
+            long stamp = lock.readLock();
+            try {
+                for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+                    if ((keyHigh[slot] != 0 || keyLow[slot] != 0) && !expired(slot, now)) {
+                        action.accept(new UUID(valueHigh[slot], valueLow[slot]), new UUID(keyHigh[slot], keyLow[slot]));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    void remove(UUID assetFinanceAssetId) {
+        invalidations.incrementAndGet();
+        if (!enabled) {
+            return;
+        }
+        long kh = assetFinanceAssetId.getMostSignificantBits();
+        long kl = assetFinanceAssetId.getLeastSignificantBits();
+        int bucket = bucket(kh, kl);
+        int start = bucket * BUCKET_SIZE;
+        StampedLock lock = lock(bucket);
+        long stamp = lock.writeLock();
+        try {
+            for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+                if (keyHigh[slot] == kh && keyLow[slot] == kl) {
+                    clear(slot);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Clear the entries of all given agreements in one pass over the buckets. The ids are sorted
+     * into two parallel arrays and each occupied slot is looked up by binary search, so the scan
+     * allocates nothing per slot whatever the number of agreements.
+     */
+    void removeAgreements(Collection<UUID> assetFinanceAgreementIds) {
+        invalidations.incrementAndGet();
+        if (!enabled) {
+            return;
+        }
+        List<UUID> sorted = assetFinanceAgreementIds.stream().sorted(BY_BITS).toList();
+        long[] highs = new long[sorted.size()];
+        long[] lows = new long[sorted.size()];
+        for (int i = 0; i < highs.length; i++) {
+            highs[i] = sorted.get(i).getMostSignificantBits();
+            lows[i] = sorted.get(i).getLeastSignificantBits();
+        }
+        for (int bucket = 0; bucket <= bucketMask; bucket++) {
+            int start = bucket * BUCKET_SIZE;
+            StampedLock lock = lock(bucket);
+            long stamp = lock.writeLock();
+            try {
+                for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+                    if ((keyHigh[slot] != 0 || keyLow[slot] != 0) && contains(highs, lows, valueHigh[slot], valueLow[slot])) {
+                        clear(slot);
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private static boolean contains(long[] highs, long[] lows, long high, long low) {
+        int from = 0;
+        int to = highs.length - 1;
+        while (from <= to) {
+            int mid = (from + to) >>> 1;
+            int order = highs[mid] != high ? Long.compare(highs[mid], high) : Long.compare(lows[mid], low);
+            if (order < 0) {
+                from = mid + 1;
+            } else if (order > 0) {
+                to = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void clear(int slot) {
+        keyHigh[slot] = 0;
+        keyLow[slot] = 0;
+        valueHigh[slot] = 0;
+        valueLow[slot] = 0;
+        expiresAt[slot] = 0;
+    }
+
+    private boolean matches(int bucket, long kh, long kl, long vh, long vl, int now) {
+        int start = bucket * BUCKET_SIZE;
+        for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+            if (keyHigh[slot] == kh && keyLow[slot] == kl) {
+                return valueHigh[slot] == vh && valueLow[slot] == vl && !expired(slot, now);
+            }
+        }
+        return false;
+    }
+
+    private boolean expired(int slot, int now) {
+        return expiresAt[slot] <= now;
+    }
+
+    /**
+     * Seconds since this cache was created, the clock of {@code expiresAt}.
+     */
+    private int now() {
+        return (int) Math.min(Integer.MAX_VALUE - 1L, (System.nanoTime() - startNanos) / 1_000_000_000L);
+    }
+
+    private int bucket(long high, long low) {
+        long h = high ^ low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & bucketMask;
+    }
+
+    private StampedLock lock(int bucket) {
+        return locks[bucket & (STRIPES - 1)];
+    }
+
+    private static boolean isNil(UUID id) {
+        return id.getMostSignificantBits() == 0 && id.getLeastSignificantBits() == 0;
+    }
+
+    private long size() {
+        long size = 0;
+        int now = now();
+        for (int slot = 0; slot < keyHigh.length; slot++) {
+            if ((keyHigh[slot] != 0 || keyLow[slot] != 0) && !expired(slot, now)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private void bindMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tag("cache", NAME).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tag("cache", NAME).tag("result", "miss")
+                .register(registry);
+        Gauge.builder("cache.size", this, AssetOwnershipCache::size)
+                .tag("cache", NAME)
+                .register(registry);
+    }
+}
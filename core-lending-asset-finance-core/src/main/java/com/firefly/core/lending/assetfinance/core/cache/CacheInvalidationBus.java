@@ -0,0 +1,393 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.firefly.core.lending.assetfinance.models.config.ReadReplicaProperties;
+import com.firefly.core.lending.assetfinance.models.routing.ReadConsistency;
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cluster-wide cache invalidation over Postgres {@code LISTEN/NOTIFY}.
+ * <p>
+ * Commands call {@link #publish} inside their transaction. The messages of one transaction are
+ * collected and sent with a single {@code pg_notify} statement just before it commits, so a command
+ * pays no extra round trip per invalidated cache. {@code NOTIFY} is transactional, so the messages
+ * are delivered to every listening node when the transaction commits and discarded when it rolls
+ * back. Each node holds one dedicated, unpooled connection that listens on the channel and
+ * hands messages to every {@link CacheInvalidationListener}; messages sent by the node itself are
+ * skipped because its caches were already updated locally.
+ * </p>
+ * <p>
+ * The listening connection is re-established with exponential backoff when it fails. Because
+ * notifications sent while it was down are lost, every successful {@code LISTEN} flushes all
+ * listeners.
+ * </p>
+ * <p>
+ * Postgres delivers notifications in commit order, so a marker the node sends to itself arrives
+ * after every change committed before it. While listening, the node sends such a marker every
+ * {@code heartbeat-interval}; {@link #isDeliveredWithin} tells from the last one that came back
+ * whether changes committed more than a given staleness ago have all been dispatched, without a
+ * round trip of its own. {@link #session} identifies an uninterrupted {@code LISTEN}, so that
+ * state built from notifications can tell whether any may have been lost since.
+ * </p>
+ * A notification can arrive before a read replica has replayed the change it announces, so a
+ * cache refilled from a replica right away would store the old row again. Caches therefore wrap
+ * their loads in {@link #freshRead}, which sends them to the primary for as long as a healthy
+ * replica may still be behind the latest invalidation.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus implements SmartLifecycle {
+
+    static final String CHANNEL = "asset_finance_cache_invalidation";
+    private static final String MARKER = "MARKER";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final DatabaseClient databaseClient;
+    private final R2dbcProperties r2dbcProperties;
+    private final CacheProperties.Invalidation properties;
+    private final ObjectProvider<CacheInvalidationListener> listeners;
+    private final boolean replicasEnabled;
+    private final long replicaCatchUpNanos;
+    private final AtomicLong markerSequence = new AtomicLong();
+    private final AtomicLong sessionSequence = new AtomicLong();
+    private final Map<Long, Marker> markersInFlight = new ConcurrentHashMap<>();
+    private volatile long session;
+    private volatile Delivery delivery;
+    private volatile long lastChangeNanos;
+    private volatile boolean listening;
+    private volatile Disposable subscription;
+    private volatile Disposable heartbeat;
+
+    public CacheInvalidationBus(DatabaseClient databaseClient,
+                                R2dbcProperties r2dbcProperties,
+                                CacheProperties cacheProperties,
+                                ReadReplicaProperties replicaProperties,
+                                ObjectProvider<CacheInvalidationListener> listeners) {
+        this.databaseClient = databaseClient;
+        this.r2dbcProperties = r2dbcProperties;
+        this.properties = cacheProperties.getInvalidation();
+        this.listeners = listeners;
+        this.replicasEnabled = replicaProperties.isEnabled();
+        // a replica serves reads while its lag is within max-lag as of its last probe, so it may be
+        // up to max-lag plus one probe interval behind
+        this.replicaCatchUpNanos = replicaProperties.getMaxLag().plus(replicaProperties.getLagCheckInterval()).toNanos();
+        this.lastChangeNanos = System.nanoTime() - replicaCatchUpNanos;
+    }
+
+    /**
+     * Announce a change to the other nodes once the current transaction commits. Without a
+     * transaction the message is sent right away.
+     */
+    public Mono<Void> publish(InvalidationType type, Object key) {
+        // the change reaches replicas only once committed, so the catch-up window restarts then
+        Mono<Void> changedOnCompletion = TransactionCallbacks.afterCompletion(this::changed, this::changed);
+        if (!properties.isEnabled()) {
+            return changedOnCompletion;
+        }
+        String payload = nodeId + "|" + type + "|" + key;
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .map(synchronization -> PendingNotifications.of(this, synchronization).add(payload))
+                .onErrorResume(NoTransactionException.class, e -> Mono.empty())
+                .switchIfEmpty(Mono.defer(() -> notify(Set.of(payload))).thenReturn(true))
+                .then(changedOnCompletion);
+    }
+
+    private Mono<Void> notify(Set<String> payloads) {
+        if (payloads.isEmpty()) {
+            return Mono.empty();
+        }
+        // NOTIFY is not allowed on a replica, so a statement outside a transaction must reach the primary
+        return databaseClient.sql("SELECT pg_notify(:channel, payload) FROM unnest(:payloads) AS payload")
+                .bind("channel", CHANNEL)
+                .bind("payloads", payloads.toArray(String[]::new))
+                .then()
+                .contextWrite(ReadConsistency.STRONG.asContext());
+    }
+
+    /**
+     * Identifies the current uninterrupted {@code LISTEN}: a new value every time the listening
+     * connection is established, and 0 while the node is not listening. Every change committed
+     * during one session is dispatched to the listeners of this node.
+     */
+    public long session() {
+        return session;
+    }
+
+    /**
+     * Whether every change committed at least {@code staleness} ago has been dispatched to the
+     * listeners of this node, as confirmed by a heartbeat of the current session. Answered
+     * locally, without a database round trip.
+     *
+     * @param staleness how far back changes must have been dispatched
+     * @return false when the node is not listening or no heartbeat came back recently enough
+     */
+    public boolean isDeliveredWithin(Duration staleness) {
+        Delivery confirmed = delivery;
+        long current = session;
+        return listening && current != 0 && confirmed != null && confirmed.session() == current
+                && System.nanoTime() - confirmed.sentNanos() <= staleness.toNanos();
+    }
+
+    /**
+     * Send a marker to this node and wait for it to come back over {@code LISTEN}.
+     */
+    private Mono<Boolean> heartbeat() {
+        return Mono.defer(() -> {
+            long current = session;
+            if (!listening || current == 0) {
+                return Mono.just(false);
+            }
+            Marker marker = new Marker(markerSequence.incrementAndGet(), current, System.nanoTime(), Sinks.one());
+            markersInFlight.put(marker.id(), marker);
+            return notify(Set.of(nodeId + "|" + MARKER + "|" + marker.id()))
+                    .then(marker.delivered().asMono())
+                    .timeout(properties.getDeliveryTimeout(), Mono.just(false))
+                    .onErrorResume(e -> {
+                        log.warn("Sending cache invalidation heartbeat failed: {}", e.getMessage());
+                        return Mono.just(false);
+                    })
+                    .doFinally(signal -> markersInFlight.remove(marker.id()));
+        });
+    }
+
+    private void markerReceived(long id) {
+        Marker marker = markersInFlight.remove(id);
+        if (marker == null) {
+            return;
+        }
+        if (marker.session() == session) {
+            delivery = new Delivery(marker.session(), marker.sentNanos());
+        }
+        marker.delivered().tryEmitValue(true);
+    }
+
+    /**
+     * End the session and fail every marker that may have been sent to a connection that is gone.
+     */
+    private void disconnected() {
+        listening = false;
+        session = 0;
+        delivery = null;
+        markersInFlight.values().forEach(marker -> marker.delivered().tryEmitValue(false));
+        markersInFlight.clear();
+    }
+
+    /**
+     * Read {@code load} from the primary when a replica may not have replayed the latest change
+     * seen by this node yet, so that its result can be cached.
+     *
+     * @param load the database read that fills a cache
+     * @return the same read, pinned to the primary while replicas may lag behind an invalidation
+     */
+    public <T> Mono<T> freshRead(Mono<T> load) {
+        if (!replicasEnabled) {
+            return load;
+        }
+        return Mono.defer(() -> System.nanoTime() - lastChangeNanos < replicaCatchUpNanos
+                ? load.contextWrite(ReadConsistency.STRONG.asContext())
+                : load);
+    }
+
+    private void changed() {
+        lastChangeNanos = System.nanoTime();
+    }
+
+    /**
+     * Whether this node listens for and publishes invalidations.
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        ConnectionFactory connectionFactory = ConnectionFactoryBuilder.withUrl(r2dbcProperties.getUrl())
+                .username(r2dbcProperties.getUsername())
+                .password(r2dbcProperties.getPassword())
+                .build();
+        subscription = Flux.usingWhen(
+                        Mono.from(connectionFactory.create()).cast(PostgresqlConnection.class),
+                        this::listen,
+                        Connection::close)
+                .concatWith(Mono.error(() -> new IllegalStateException("Notification stream closed")))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, properties.getMinBackoff())
+                        .maxBackoff(properties.getMaxBackoff())
+                        .doBeforeRetry(signal -> {
+                            disconnected();
+                            log.warn("Cache invalidation listener disconnected, reconnecting: {}",
+                                    signal.failure().getMessage());
+                        }))
+                .subscribe(this::dispatch, e -> log.error("Cache invalidation listener stopped", e));
+        heartbeat = Flux.interval(properties.getHeartbeatInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> heartbeat())
+                .subscribe();
+    }
+
+    private Flux<Notification> listen(PostgresqlConnection connection) {
+        return connection.createStatement("LISTEN " + CHANNEL)
+                .execute()
+                .flatMap(PostgresqlResult::getRowsUpdated)
+                // the session starts once notifications are subscribed, so none of it can be dropped
+                .thenMany(Flux.defer(() -> connection.getNotifications().doOnSubscribe(notifications -> {
+                    log.info("Listening for cache invalidations on {}", CHANNEL);
+                    session = sessionSequence.incrementAndGet();
+                    invalidateAll();
+                    listening = true;
+                })));
+    }
+
+    private void dispatch(Notification notification) {
+        String payload = notification.getParameter();
+        String[] parts = payload == null ? new String[0] : payload.split("\\|");
+        if (parts.length != 3) {
+            log.warn("Ignoring malformed cache invalidation: {}", payload);
+            return;
+        }
+        if (MARKER.equals(parts[1])) {
+            // markers of other nodes are not addressed to this one
+            if (nodeId.equals(parts[0])) {
+                markerReceived(Long.parseLong(parts[2]));
+            }
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            InvalidationType type = InvalidationType.valueOf(parts[1]);
+            changed();
+            listeners.orderedStream().forEach(listener -> listener.invalidate(type, parts[2]));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed cache invalidation: {}", payload);
+        }
+    }
+
+    private void invalidateAll() {
+        changed();
+        listeners.orderedStream().forEach(CacheInvalidationListener::invalidateAll);
+        listeners.orderedStream().forEach(CacheInvalidationListener::listening);
+    }
+
+    @Override
+    public void stop() {
+        disconnected();
+        Disposable beat = heartbeat;
+        if (beat != null) {
+            beat.dispose();
+            heartbeat = null;
+        }
+        Disposable current = subscription;
+        if (current != null) {
+            current.dispose();
+            subscription = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return subscription != null;
+    }
+
+    private record Marker(long id, long session, long sentNanos, Sinks.One<Boolean> delivered) {
+    }
+
+    /**
+     * Everything committed before {@code sentNanos} has been dispatched in the session.
+     */
+    private record Delivery(long session, long sentNanos) {
+    }
+
+    /**
+     * The messages published by one transaction, bound to it as a resource keyed by the bus and
+     * sent before it commits. They are unbound while the transaction is suspended, so that an inner
+     * {@code REQUIRES_NEW} transaction collects and sends its own.
+     */
+    private static final class PendingNotifications implements TransactionSynchronization {
+
+        private final CacheInvalidationBus bus;
+        private final TransactionSynchronizationManager synchronization;
+        private final Set<String> payloads = ConcurrentHashMap.newKeySet();
+
+        private PendingNotifications(CacheInvalidationBus bus, TransactionSynchronizationManager synchronization) {
+            this.bus = bus;
+            this.synchronization = synchronization;
+        }
+
+        static Set<String> of(CacheInvalidationBus bus, TransactionSynchronizationManager synchronization) {
+            PendingNotifications pending = (PendingNotifications) synchronization.getResource(bus);
+            if (pending == null) {
+                pending = new PendingNotifications(bus, synchronization);
+                synchronization.bindResource(bus, pending);
+                synchronization.registerSynchronization(pending);
+            }
+            return pending.payloads;
+        }
+
+        @Override
+        public Mono<Void> suspend() {
+            return Mono.fromRunnable(() -> synchronization.unbindResourceIfPossible(bus));
+        }
+
+        @Override
+        public Mono<Void> resume() {
+            return Mono.fromRunnable(() -> synchronization.bindResource(bus, this));
+        }
+
+        @Override
+        public Mono<Void> beforeCommit(boolean readOnly) {
+            return Mono.defer(() -> bus.notify(Set.copyOf(payloads)));
+        }
+
+        @Override
+        public Mono<Void> afterCompletion(int status) {
+            return Mono.fromRunnable(() -> synchronization.unbindResourceIfPossible(bus));
+        }
+    }
+}
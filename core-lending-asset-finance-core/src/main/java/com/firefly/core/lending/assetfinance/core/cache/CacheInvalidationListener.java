@@ -0,0 +1,44 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+/**
+ * In-process cache that can be invalidated by changes committed on other nodes.
+ */
+public interface CacheInvalidationListener {
+
+    /**
+     * Drop whatever is cached for the changed entity or table.
+     *
+     * @param type the kind of change
+     * @param key the entity id, or the table name for {@link InvalidationType#TABLE}
+     */
+    void invalidate(InvalidationType type, String key);
+
+    /**
+     * Drop everything, used when notifications may have been missed.
+     */
+    void invalidateAll();
+
+    /**
+     * Called once every listener has been flushed after a {@code LISTEN} was (re)established, so
+     * anything loaded from here on is covered by the bus.
+     */
+    default void listening() {
+    }
+}
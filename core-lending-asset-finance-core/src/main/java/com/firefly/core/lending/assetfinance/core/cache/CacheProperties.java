@@ -0,0 +1,204 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * In-process cache settings, bound from {@code asset-finance.cache.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "asset-finance.cache")
+public class CacheProperties {
+
+    /**
+     * Agreement headers served by {@link AgreementCache}.
+     */
+    private Spec agreements = new Spec(true, 100_000, Duration.ofMinutes(10));
+
+    /**
+     * Asset to agreement mappings served by {@link AssetOwnershipCache}. The maximum size is
+     * rounded up to a power of two slots of 36 bytes each, allocated up front; the time to live
+     * has a resolution of one second.
+     */
+    private Spec assetOwnership = new Spec(true, 1_048_576, Duration.ofHours(1));
+
+    /**
+     * List pages served by {@link FilterResultCache}.
+     */
+    private Spec filterResults = new Spec(true, 10_000, Duration.ofMinutes(1));
+
+    /**
+     * Id filters used by {@link NegativeLookupFilter}.
+     */
+    private NegativeLookup negativeLookup = new NegativeLookup(true, 0.01, 2.0, 100_000,
+            Duration.ofSeconds(2), Duration.ofSeconds(5));
+
+    /**
+     * Cross-node invalidation through {@link CacheInvalidationBus}.
+     */
+    private Invalidation invalidation = new Invalidation(true, Duration.ofMillis(100), Duration.ofSeconds(10),
+            Duration.ofMillis(500), Duration.ofSeconds(1));
+
+    /**
+     * Priming of the caches at startup by {@link CacheWarmUp}.
+     */
+    private WarmUp warmUp = new WarmUp(false, 5_000, 500, Duration.ofMinutes(2));
+
+    /**
+     * Snapshot of the caches written on graceful shutdown and read on the next start.
+     */
+    private Snapshot snapshot = new Snapshot(false, "cache-snapshot.bin");
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Snapshot {
+
+        /**
+         * When true, the caches are written to {@code path} on graceful shutdown and restored from
+         * it on start.
+         */
+        private boolean enabled;
+
+        /**
+         * Local file holding the snapshot; it is deleted once read.
+         */
+        private String path;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class WarmUp {
+
+        /**
+         * When true, readiness is held back until the caches have been primed.
+         */
+        private boolean enabled;
+
+        /**
+         * Upper bound of agreement and asset rows read per second.
+         */
+        private long rowsPerSecond;
+
+        /**
+         * Agreements read per page.
+         */
+        private int batchSize;
+
+        /**
+         * After this long the node reports ready with whatever has been primed.
+         */
+        private Duration timeout;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class NegativeLookup {
+
+        /**
+         * When false every lookup goes to the database. Requires the invalidation bus, through
+         * which ids created on other nodes are learned.
+         */
+        private boolean enabled;
+
+        /**
+         * Target false positive rate at the sized capacity.
+         */
+        private double falsePositiveRate;
+
+        /**
+         * Capacity as a multiple of the row count at build time, leaving room for inserts.
+         */
+        private double headroom;
+
+        /**
+         * Lower bound for the capacity of a filter, so small tables can grow.
+         */
+        private long minimumExpectedInsertions;
+
+        /**
+         * How old a create on another node may be and still be missing from a filter that rejects
+         * its id. A miss is trusted only while a heartbeat of the invalidation bus confirmed delivery
+         * this recently, so it must exceed the heartbeat interval.
+         */
+        private Duration maxStaleness;
+
+        /**
+         * Quiet period after a {@code LISTEN} before the filters are rebuilt, so that a flapping
+         * listener connection causes one rebuild rather than one per reconnect.
+         */
+        private Duration rebuildDelay;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Invalidation {
+
+        /**
+         * When false, caches are only invalidated by writes on the local node.
+         */
+        private boolean enabled;
+
+        /**
+         * First delay before reconnecting a failed listener connection.
+         */
+        private Duration minBackoff;
+
+        /**
+         * Upper bound of the reconnect delay.
+         */
+        private Duration maxBackoff;
+
+        /**
+         * How often the listener sends itself a marker to confirm that notifications are delivered.
+         */
+        private Duration heartbeatInterval;
+
+        /**
+         * How long a heartbeat waits for its marker before giving up.
+         */
+        private Duration deliveryTimeout;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Spec {
+
+        /**
+         * When false every lookup goes to the database.
+         */
+        private boolean enabled;
+
+        private long maximumSize;
+
+        /**
+         * Entries expire this long after they were written.
+         */
+        private Duration timeToLive;
+    }
+}
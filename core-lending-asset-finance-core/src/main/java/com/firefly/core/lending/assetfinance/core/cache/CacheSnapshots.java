@@ -0,0 +1,180 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAgreement;
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAsset;
+import com.firefly.core.lending.assetfinance.models.routing.Workload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Binary snapshot of the keys held by the {@link AssetOwnershipCache} and {@link AgreementCache},
+ * used to restart with the working set warm instead of waiting for traffic to refill it.
+ * <p>
+ * Only keys are kept, so nothing read from the file is ever served. On restore the cached
+ * agreements and ownerships are re-read by primary key in batches, because deletes leave no trace
+ * and cannot be found by timestamp. When the invalidation bus is enabled the re-read waits for its
+ * first {@code LISTEN}, so every change committed after the read starts reaches the caches as an
+ * invalidation, and each batch is filled under the generation taken before it was read, so such
+ * an invalidation drops it. The reads go through {@link CacheInvalidationBus#freshRead}, as the
+ * flush that precedes them is itself a change a replica may not have replayed yet.
+ * </p>
+ * The {@link NegativeLookupFilter} is not part of the snapshot: a filter brought up to date from
+ * {@code created_at} would miss rows whose transaction committed after the snapshot but stamped an
+ * earlier time, and reject them for good. It is rebuilt from a full id scan instead. Reading and
+ * writing the file is left to the caller.
+ */
+@Slf4j
+@Component
+public class CacheSnapshots implements CacheInvalidationListener {
+
+    private static final int MAGIC = 0x41464353;
+    private static final int VERSION = 2;
+    private static final int BATCH_SIZE = 500;
+
+    private final R2dbcEntityTemplate template;
+    private final AgreementCache agreementCache;
+    private final AssetOwnershipCache ownershipCache;
+    private final CacheInvalidationBus invalidationBus;
+    private final AtomicReference<Restored> pending = new AtomicReference<>();
+
+    public CacheSnapshots(R2dbcEntityTemplate template,
+                          AgreementCache agreementCache,
+                          AssetOwnershipCache ownershipCache,
+                          CacheInvalidationBus invalidationBus) {
+        this.template = template;
+        this.agreementCache = agreementCache;
+        this.ownershipCache = ownershipCache;
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * Write the keys currently cached.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        List<UUID> assets = new ArrayList<>();
+        ownershipCache.forEach((agreementId, assetId) -> assets.add(assetId));
+        writeIds(out, assets);
+        writeIds(out, agreementCache.keys());
+    }
+
+    /**
+     * Restore a snapshot written by {@link #write}. The buffer is fully consumed before this
+     * returns, so it can be unmapped right after.
+     *
+     * @throws IllegalArgumentException if the buffer does not hold a snapshot of this version
+     */
+    public void restore(ByteBuffer buffer) {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalArgumentException("Not a cache snapshot of version " + VERSION);
+        }
+        Restored restored = new Restored(readIds(buffer), readIds(buffer));
+        log.info("Restored cache snapshot: {} ownerships and {} agreements to reconcile",
+                restored.assetIds().size(), restored.agreementIds().size());
+
+        if (invalidationBus.isEnabled()) {
+            pending.set(restored);
+        } else {
+            reconcile(restored);
+        }
+    }
+
+    @Override
+    public void invalidate(InvalidationType type, String key) {
+        // restored entries are re-read as a whole; individual changes reach the caches directly
+    }
+
+    @Override
+    public void invalidateAll() {
+        // the caches flush themselves; the pending reconcile runs once they have
+    }
+
+    @Override
+    public void listening() {
+        Restored restored = pending.getAndSet(null);
+        if (restored != null) {
+            reconcile(restored);
+        }
+    }
+
+    private void reconcile(Restored restored) {
+        Flux.fromIterable(restored.agreementIds())
+                .buffer(BATCH_SIZE)
+                .concatMap(batch -> Mono.fromSupplier(agreementCache::generation)
+                        .flatMap(generation -> invalidationBus.freshRead(template.select(
+                                        Query.query(Criteria.where("assetFinanceAgreementId").in(batch)),
+                                        AssetFinanceAgreement.class).collectList())
+                                .doOnNext(agreements -> agreements.forEach(
+                                        agreement -> agreementCache.prime(agreement, generation)))))
+                .thenMany(Flux.fromIterable(restored.assetIds())
+                        .buffer(BATCH_SIZE)
+                        .concatMap(batch -> Mono.fromSupplier(ownershipCache::generation)
+                                .flatMap(generation -> invalidationBus.freshRead(template.select(
+                                                Query.query(Criteria.where("assetFinanceAssetId").in(batch))
+                                                        .columns("asset_finance_asset_id", "asset_finance_agreement_id"),
+                                                AssetFinanceAsset.class).collectList())
+                                        .doOnNext(assets -> assets.forEach(asset -> ownershipCache.put(
+                                                asset.getAssetFinanceAgreementId(), asset.getAssetFinanceAssetId(), generation))))))
+                .then()
+                .contextWrite(Workload.EXPORT.asContext())
+                .subscribe(
+                        ignored -> {
+                        },
+                        e -> log.warn("Cache snapshot reconcile failed, caches fill lazily", e),
+                        () -> log.info("Cache snapshot reconciled"));
+    }
+
+    private static void writeIds(DataOutput out, Collection<UUID> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (UUID id : ids) {
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+        }
+    }
+
+    private static List<UUID> readIds(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        List<UUID> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(new UUID(buffer.getLong(), buffer.getLong()));
+        }
+        return ids;
+    }
+
+    private record Restored(List<UUID> assetIds, List<UUID> agreementIds) {
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.firefly.core.lending.assetfinance.interfaces.enums.AgreementStatusEnum;
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAgreement;
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAsset;
+import com.firefly.core.lending.assetfinance.models.routing.Workload;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in warm-up of the read caches before the node reports itself ready.
+ * <p>
+ * ACTIVE agreements are read from the export pool in keyset-ordered pages and primed into the
+ * {@link AgreementCache}; the assets of each page are primed into the {@link AssetOwnershipCache}.
+ * Pages are paced so that no more than {@code rowsPerSecond} rows are read. The warm-up then waits
+ * for the {@link NegativeLookupFilter} to finish building.
+ * </p>
+ * It runs as an {@link ApplicationRunner}, so the HTTP server and liveness probe are already up
+ * while the readiness state stays {@code REFUSING_TRAFFIC} until the warm-up completes or its
+ * timeout elapses. Either way the node then starts with whatever has been primed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheWarmUp implements ApplicationRunner {
+
+    private static final Duration READY_POLL_INTERVAL = Duration.ofMillis(100);
+
+    private final R2dbcEntityTemplate template;
+    private final AgreementCache agreementCache;
+    private final AssetOwnershipCache ownershipCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final CacheProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        CacheProperties.WarmUp warmUp = properties.getWarmUp();
+        if (!warmUp.isEnabled()) {
+            return;
+        }
+        long started = System.nanoTime();
+        AtomicLong agreements = new AtomicLong();
+        AtomicLong assets = new AtomicLong();
+
+        primePage(null, warmUp, agreements, assets)
+                .then(awaitNegativeLookups())
+                .contextWrite(Workload.EXPORT.asContext())
+                .timeout(warmUp.getTimeout())
+                .doOnSuccess(ignored -> log.info("Cache warm-up primed {} agreements and {} assets in {} ms",
+                        agreements.get(), assets.get(), Duration.ofNanos(System.nanoTime() - started).toMillis()))
+                .onErrorResume(e -> {
+                    log.warn("Cache warm-up stopped after {} agreements and {} assets, starting with partially warm caches",
+                            agreements.get(), assets.get(), e);
+                    return Mono.empty();
+                })
+                .block();
+    }
+
+    private Mono<Void> primePage(UUID after, CacheProperties.WarmUp warmUp, AtomicLong agreements, AtomicLong assets) {
+        return Mono.defer(() -> {
+            long generation = agreementCache.generation();
+            Criteria active = Criteria.where("agreementStatus").is(AgreementStatusEnum.ACTIVE);
+            Query page = Query.query(after == null ? active : active.and("assetFinanceAgreementId").greaterThan(after))
+                    .sort(Sort.by("assetFinanceAgreementId"))
+                    .limit(warmUp.getBatchSize());
+
+            return template.select(page, AssetFinanceAgreement.class)
+                    .doOnNext(agreement -> agreementCache.prime(agreement, generation))
+                    .map(AssetFinanceAgreement::getAssetFinanceAgreementId)
+                    .collectList()
+                    .flatMap(ids -> {
+                        if (ids.isEmpty()) {
+                            return Mono.empty();
+                        }
+                        agreements.addAndGet(ids.size());
+                        return primeAssets(ids)
+                                .flatMap(primedAssets -> {
+                                    assets.addAndGet(primedAssets);
+                                    if (ids.size() < warmUp.getBatchSize()) {
+                                        return Mono.empty();
+                                    }
+                                    return Mono.delay(pause(ids.size() + primedAssets, warmUp.getRowsPerSecond()))
+                                            .then(primePage(ids.get(ids.size() - 1), warmUp, agreements, assets));
+                                });
+                    });
+        });
+    }
+
+    private Mono<Long> primeAssets(List<UUID> assetFinanceAgreementIds) {
+        Query query = Query.query(Criteria.where("assetFinanceAgreementId").in(assetFinanceAgreementIds))
+                .columns("asset_finance_asset_id", "asset_finance_agreement_id");
+        return Mono.fromSupplier(ownershipCache::generation)
+                .flatMap(generation -> template.select(query, AssetFinanceAsset.class)
+                        .doOnNext(asset -> ownershipCache.put(
+                                asset.getAssetFinanceAgreementId(), asset.getAssetFinanceAssetId(), generation))
+                        .count());
+    }
+
+    private Mono<Void> awaitNegativeLookups() {
+        return Flux.interval(Duration.ZERO, READY_POLL_INTERVAL)
+                .filter(tick -> negativeLookups.isReady())
+                .next()
+                .then();
+    }
+
+    private static Duration pause(long rows, long rowsPerSecond) {
+        return Duration.ofNanos(rows * 1_000_000_000L / Math.max(1, rowsPerSecond));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of list pages keyed by the entity type, the canonical form of the query and the entity
+ * type's generation.
+ * <p>
+ * Every write to a table bumps its generation, which makes all cached pages of that table
+ * unreachable in O(1); they age out through the size and TTL bounds. Commands bump the generation
+ * immediately and again when their transaction completes, so a page read in between cannot
+ * survive under the new generation, and announce the change on the {@link CacheInvalidationBus}
+ * so that other nodes bump theirs. Pages loaded while a replica may still trail the latest change
+ * are read from the primary.
+ * </p>
+ * <p>
+ * Concurrent misses for the same query and generation share one load through {@link SingleFlight},
+ * so the burst of identical list requests that follows a write runs the query once.
+ * </p>
+ * Cached pages are shared between callers and must be treated as read-only. Hit, miss and eviction
+ * counts are published as {@code cache.*} meters tagged {@code cache=asset-finance-filter-results}.
+ */
+@Component
+public class FilterResultCache implements CacheInvalidationListener {
+
+    static final String NAME = "asset-finance-filter-results";
+
+    private final Cache<ResultKey, Object> cache;
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final CacheInvalidationBus invalidationBus;
+    private final SingleFlight singleFlight;
+
+    public FilterResultCache(CacheProperties properties, CacheInvalidationBus invalidationBus,
+                             SingleFlight singleFlight, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.invalidationBus = invalidationBus;
+        this.singleFlight = singleFlight;
+        CacheProperties.Spec spec = properties.getFilterResults();
+        if (spec.isEnabled()) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(spec.getMaximumSize())
+                    .expireAfterWrite(spec.getTimeToLive())
+                    .recordStats()
+                    .build();
+            meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, NAME));
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Return the cached result of the query, or run it and cache the result. Callers missing the
+     * same query at the same time share one run of the loader.
+     *
+     * @param entityClass the entity type the query reads
+     * @param canonicalQuery a value whose equality identifies the query, including pagination
+     * @param loader the database query used on a miss
+     * @return a Mono emitting the result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> get(Class<?> entityClass, List<?> canonicalQuery, Supplier<Mono<T>> loader) {
+        if (cache == null) {
+            return Mono.defer(loader);
+        }
+        return Mono.defer(() -> {
+            AtomicLong generation = generation(entityClass.getSimpleName());
+            long current = generation.get();
+            ResultKey key = new ResultKey(entityClass, current, canonicalQuery);
+            Object cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return Mono.just((T) cached);
+            }
+            return singleFlight.execute("filter-results", key, () -> invalidationBus.freshRead(loader.get()))
+                    .doOnNext(result -> {
+                        if (generation.get() == current) {
+                            cache.put(key, result);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Invalidate every cached page of the given entity types, now and when the current transaction
+     * completes.
+     */
+    public Mono<Void> invalidate(Class<?>... entityClasses) {
+        if (cache == null) {
+            return Mono.empty();
+        }
+        return Flux.fromArray(entityClasses)
+                .map(Class::getSimpleName)
+                .concatMap(name -> {
+                    generation(name).incrementAndGet();
+                    return invalidationBus.publish(InvalidationType.TABLE, name)
+                            .then(TransactionCallbacks.afterCompletion(
+                                    () -> generation(name).incrementAndGet(),
+                                    () -> generation(name).incrementAndGet()));
+                })
+                .then();
+    }
+
+    @Override
+    public void invalidate(InvalidationType type, String key) {
+        if (cache != null && type == InvalidationType.TABLE) {
+            generation(key).incrementAndGet();
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        if (cache != null) {
+            generations.values().forEach(AtomicLong::incrementAndGet);
+            cache.invalidateAll();
+        }
+    }
+
+    private AtomicLong generation(String entityName) {
+        return generations.computeIfAbsent(entityName, name -> new AtomicLong());
+    }
+
+    private record ResultKey(Class<?> entityClass, long generation, List<?> query) {
+    }
+}
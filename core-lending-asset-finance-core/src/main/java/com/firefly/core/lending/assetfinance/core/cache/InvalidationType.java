@@ -0,0 +1,51 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+/**
+ * Kind of change announced on the {@link CacheInvalidationBus}; the payload key is the id of the
+ * changed entity, the table name for {@link #TABLE}, or both for {@link #CREATED}.
+ */
+public enum InvalidationType {
+
+    /**
+     * An agreement header was created or updated.
+     */
+    AGREEMENT,
+
+    /**
+     * Agreements and, through the cascade, all of their assets were deleted; the key is a
+     * comma-separated list of agreement ids.
+     */
+    AGREEMENT_DELETED,
+
+    /**
+     * An asset was updated or deleted.
+     */
+    ASSET,
+
+    /**
+     * Rows of a table were created, updated or deleted.
+     */
+    TABLE,
+
+    /**
+     * A row was created; the key is {@code EntityName:id}.
+     */
+    CREATED
+}
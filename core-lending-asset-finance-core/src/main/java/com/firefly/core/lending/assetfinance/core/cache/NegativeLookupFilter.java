@@ -0,0 +1,448 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAgreement;
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAsset;
+import com.firefly.core.lending.assetfinance.models.entities.DeliveryRecord;
+import com.firefly.core.lending.assetfinance.models.entities.EndOption;
+import com.firefly.core.lending.assetfinance.models.entities.PickupRecord;
+import com.firefly.core.lending.assetfinance.models.entities.ReturnRecord;
+import com.firefly.core.lending.assetfinance.models.entities.ServiceEvent;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import com.firefly.core.lending.assetfinance.models.routing.Workload;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Per-table Bloom filters of existing ids, used to answer lookups of ids that certainly do not
+ * exist without a database round trip.
+ * <p>
+ * Each filter is built at startup from a streaming scan of the table's primary keys on the export
+ * pool, sized for the row count times a headroom factor. Ids created while a filter is not ready
+ * are kept aside and added once it is. Creates are added locally and announced on the
+ * {@link CacheInvalidationBus} so other nodes add them on commit. Deletes need no maintenance: a
+ * deleted id merely stays a "maybe".
+ * </p>
+ * <p>
+ * The filter therefore requires the bus, and startup fails when it is enabled without it. The
+ * decision on a miss is local: it is trusted only while the bus is still in the
+ * {@linkplain CacheInvalidationBus#session session} the filter was built in, so no notification
+ * can have been lost since its scan, and while a heartbeat confirms that everything committed
+ * more than {@code max-staleness} ago has been dispatched. An id created on another node within
+ * that window, which is at least one heartbeat interval plus a notification round trip, may
+ * still be reported missing; anything else goes to the database.
+ * </p>
+ * <p>
+ * Every {@code LISTEN} starts a new session and so needs a new build. Builds run
+ * {@code rebuild-delay} after the latest {@code LISTEN}, so a flapping connection costs one scan
+ * of every table once it has settled rather than one per reconnect; until then lookups go to the
+ * database. Filters are always built from a
+ * full scan of the ids: restoring a persisted filter and scanning only the rows created since
+ * would rely on {@code created_at}, which does not order inserts by commit time, and any id it
+ * missed would be rejected for as long as the filter lives.
+ * </p>
+ * The estimated false positive rate and memory footprint of every filter are published as
+ * {@code negative.lookup.false.positive.rate} and {@code negative.lookup.memory} gauges, and
+ * lookups as {@code negative.lookup.requests} with {@code result=rejected|passed}, and scans as
+ * {@code negative.lookup.rebuilds}.
+ */
+@Slf4j
+@Component
+public class NegativeLookupFilter implements CacheInvalidationListener, SmartLifecycle {
+
+    static final List<Class<?>> ENTITIES = List.of(
+            AssetFinanceAgreement.class,
+            AssetFinanceAsset.class,
+            EndOption.class,
+            ServiceEvent.class,
+            UsageRecord.class,
+            ReturnRecord.class,
+            DeliveryRecord.class,
+            PickupRecord.class);
+
+    /**
+     * Keeps a notification payload well below the 8000 byte limit of {@code NOTIFY}.
+     */
+    private static final int IDS_PER_NOTIFICATION = 150;
+
+    private static final String ALL_IDS = "*";
+
+    private final R2dbcEntityTemplate template;
+    private final CacheInvalidationBus invalidationBus;
+    private final CacheProperties.NegativeLookup properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private volatile Disposable rebuild;
+    private volatile boolean running;
+
+    public NegativeLookupFilter(R2dbcEntityTemplate template,
+                                CacheInvalidationBus invalidationBus,
+                                CacheProperties cacheProperties,
+                                ObjectProvider<MeterRegistry> meterRegistry) {
+        this.template = template;
+        this.invalidationBus = invalidationBus;
+        this.properties = cacheProperties.getNegativeLookup();
+        this.meterRegistry = meterRegistry.getIfAvailable(CompositeMeterRegistry::new);
+        if (properties.isEnabled() && !invalidationBus.isEnabled()) {
+            throw new IllegalStateException("asset-finance.cache.negative-lookup.enabled requires "
+                    + "asset-finance.cache.invalidation.enabled, without it ids created on other nodes are never learned");
+        }
+        for (Class<?> entityClass : ENTITIES) {
+            tables.put(entityClass.getSimpleName(), new Table(entityClass));
+        }
+    }
+
+    /**
+     * Run {@code lookup} unless the id certainly does not exist, in which case complete empty.
+     */
+    public <T> Mono<T> lookup(Class<?> entityClass, UUID id, Supplier<Mono<T>> lookup) {
+        return Mono.defer(() -> {
+            Table table = tables.get(entityClass.getSimpleName());
+            if (table == null) {
+                return lookup.get();
+            }
+            if (certainlyMissing(table, id)) {
+                table.rejected.increment();
+                return Mono.empty();
+            }
+            table.passed.increment();
+            return lookup.get();
+        });
+    }
+
+    private boolean certainlyMissing(Table table, UUID id) {
+        // the session is published before the filter, so it is read after it
+        BloomFilter filter = table.active;
+        if (filter == null || filter.mightContain(id) || !isTrusted(table)) {
+            return false;
+        }
+        return invalidationBus.isDeliveredWithin(properties.getMaxStaleness()) && !table.pending.contains(id);
+    }
+
+    private boolean isTrusted(Table table) {
+        long session = table.session;
+        return session != 0 && session == invalidationBus.session();
+    }
+
+    /**
+     * Add a newly created id locally and, once the current transaction commits, on other nodes.
+     */
+    public Mono<Void> recordCreated(Class<?> entityClass, UUID id) {
+        if (!properties.isEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> track(entityClass.getSimpleName(), List.of(id))
+                .then(invalidationBus.publish(InvalidationType.CREATED, entityClass.getSimpleName() + ":" + id)));
+    }
+
+    /**
+     * Add newly created ids locally and, once the current transaction commits, on other nodes.
+     * Ids are announced in groups to keep the number of notifications low.
+     */
+    public Mono<Void> recordCreated(Class<?> entityClass, List<UUID> ids) {
+        if (!properties.isEnabled() || ids.isEmpty()) {
+            return Mono.empty();
+        }
+        String entityName = entityClass.getSimpleName();
+        return Mono.defer(() -> track(entityName, ids))
+                .thenMany(Flux.fromIterable(ids).buffer(IDS_PER_NOTIFICATION))
+                .concatMap(group -> invalidationBus.publish(InvalidationType.CREATED, entityName + ":"
+                        + group.stream().map(UUID::toString).collect(Collectors.joining(","))))
+                .then();
+    }
+
+    /**
+     * Rebuild the entity's filter here and on other nodes, for loads too large to announce id by
+     * id. Lookups of that entity go to the database until the rebuild finishes.
+     */
+    public Mono<Void> recordBulkLoad(Class<?> entityClass) {
+        if (!properties.isEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            rebuildTable(entityClass.getSimpleName());
+            return invalidationBus.publish(InvalidationType.CREATED, entityClass.getSimpleName() + ":" + ALL_IDS);
+        });
+    }
+
+    /**
+     * Whether every filter has been built in the bus's current session and lookups are being
+     * short-circuited.
+     */
+    public boolean isReady() {
+        return !properties.isEnabled()
+                || tables.values().stream().allMatch(table -> table.active != null && isTrusted(table));
+    }
+
+    @Override
+    public void invalidate(InvalidationType type, String key) {
+        if (type != InvalidationType.CREATED || !properties.isEnabled()) {
+            return;
+        }
+        int separator = key.indexOf(':');
+        String entityName = key.substring(0, separator);
+        if (ALL_IDS.equals(key.substring(separator + 1))) {
+            rebuildTable(entityName);
+            return;
+        }
+        for (String id : key.substring(separator + 1).split(",")) {
+            add(entityName, UUID.fromString(id));
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        if (properties.isEnabled()) {
+            scheduleRebuild();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        // the first build starts when the bus flushes its listeners after LISTEN
+        tables.values().forEach(this::bindMetrics);
+        running = true;
+    }
+
+    /**
+     * Rebuild every filter once no {@code LISTEN} has followed for {@code rebuild-delay}, replacing
+     * any rebuild that is scheduled or running. Filters of the previous session stay in place but
+     * are no longer trusted.
+     */
+    private synchronized void scheduleRebuild() {
+        Disposable previous = rebuild;
+        if (previous != null) {
+            previous.dispose();
+        }
+        tables.values().forEach(table -> {
+            Disposable single = table.rebuild;
+            if (single != null) {
+                single.dispose();
+            }
+        });
+        rebuild = Mono.delay(properties.getRebuildDelay())
+                .thenMany(Flux.fromIterable(tables.values()))
+                .concatMap(this::rebuild)
+                .subscribe(
+                        table -> log.info("Negative lookup filter for {} ready", table.name),
+                        e -> log.warn("Negative lookup filter rebuild failed, lookups go to the database", e));
+    }
+
+    private void rebuildTable(String entityName) {
+        Table table = tables.get(entityName);
+        if (table == null) {
+            return;
+        }
+        synchronized (table) {
+            Disposable previous = table.rebuild;
+            if (previous != null) {
+                previous.dispose();
+            }
+            table.rebuild = rebuild(table).subscribe(
+                    ignored -> log.info("Negative lookup filter for {} rebuilt", entityName),
+                    e -> log.warn("Negative lookup filter rebuild for {} failed, lookups go to the database", entityName, e));
+        }
+    }
+
+    /**
+     * Scan the table into a new filter that is trusted for the session the scan started in. Ids
+     * added from then on are parked until it is published. Nothing is built while the bus is not
+     * listening, as the next {@code LISTEN} schedules a rebuild anyway.
+     */
+    private Mono<Table> rebuild(Table table) {
+        RelationalPersistentEntity<?> entity = template.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(table.entityClass);
+        String tableName = entity.getTableName().getReference();
+        String idColumn = entity.getIdColumn().getReference();
+
+        return Mono.defer(() -> {
+                    long session = invalidationBus.session();
+                    if (session == 0) {
+                        return Mono.empty();
+                    }
+                    table.active = null;
+                    table.rebuilds.increment();
+                    return scan(table, tableName, idColumn, session);
+                })
+                .contextWrite(Workload.EXPORT.asContext());
+    }
+
+    private Mono<Table> scan(Table table, String tableName, String idColumn, long session) {
+        return template.getDatabaseClient().sql("SELECT count(*) FROM " + tableName)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(rows -> {
+                    long expected = Math.max(properties.getMinimumExpectedInsertions(),
+                            (long) (rows * properties.getHeadroom()));
+                    BloomFilter filter = new BloomFilter(expected, properties.getFalsePositiveRate());
+                    return template.getDatabaseClient().sql("SELECT " + idColumn + " FROM " + tableName)
+                            .map(row -> row.get(0, UUID.class))
+                            .all()
+                            .doOnNext(filter::put)
+                            .then(Mono.fromCallable(() -> {
+                                publish(table, filter, session);
+                                return table;
+                            }));
+                });
+    }
+
+    /**
+     * Make the filter active without a window in which a parked id is missing from it: ids parked
+     * so far are added before lookups can see the filter, and ids parked while it is being
+     * published (which {@link #add} may not have seen it yet for) are drained again afterwards.
+     */
+    private static void publish(Table table, BloomFilter filter, long session) {
+        table.uncommitted.forEach(filter::put);
+        table.pending.removeIf(id -> {
+            filter.put(id);
+            return true;
+        });
+        table.session = session;
+        table.active = filter;
+        table.pending.removeIf(id -> {
+            filter.put(id);
+            return true;
+        });
+    }
+
+    /**
+     * Add ids created by the current transaction, keeping them in every filter published until it
+     * completes: a build may scan before the commit, and this node does not receive its own
+     * notifications, so nothing else would add them afterwards.
+     */
+    private Mono<Void> track(String entityName, List<UUID> ids) {
+        Table table = tables.get(entityName);
+        if (table == null) {
+            return Mono.empty();
+        }
+        table.uncommitted.addAll(ids);
+        ids.forEach(id -> add(entityName, id));
+        return TransactionCallbacks.afterCompletion(
+                () -> {
+                    ids.forEach(id -> add(entityName, id));
+                    ids.forEach(table.uncommitted::remove);
+                },
+                () -> ids.forEach(table.uncommitted::remove));
+    }
+
+    private void add(String entityName, UUID id) {
+        Table table = tables.get(entityName);
+        if (table == null) {
+            return;
+        }
+        BloomFilter active = table.active;
+        if (active == null) {
+            // re-check after parking the id so that a filter published concurrently still gets it
+            table.pending.add(id);
+            active = table.active;
+        }
+        if (active != null) {
+            active.put(id);
+        }
+    }
+
+    private void bindMetrics(Table table) {
+        Gauge.builder("negative.lookup.false.positive.rate", table,
+                        t -> t.active == null ? 1.0 : t.active.falsePositiveRate())
+                .description("Estimated false positive rate of the table's id filter")
+                .tag("table", table.name)
+                .register(meterRegistry);
+        Gauge.builder("negative.lookup.memory", table,
+                        t -> t.active == null ? 0 : t.active.memoryBytes())
+                .description("Heap used by the table's id filter")
+                .baseUnit("bytes")
+                .tag("table", table.name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void stop() {
+        Disposable current = rebuild;
+        if (current != null) {
+            current.dispose();
+        }
+        tables.values().forEach(table -> {
+            Disposable single = table.rebuild;
+            if (single != null) {
+                single.dispose();
+            }
+        });
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private final class Table {
+
+        private final Class<?> entityClass;
+        private final String name;
+        private final Counter rejected;
+        private final Counter passed;
+        private final Counter rebuilds;
+        private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+        private final Set<UUID> uncommitted = ConcurrentHashMap.newKeySet();
+        private volatile BloomFilter active;
+        private volatile long session;
+        private volatile Disposable rebuild;
+
+        private Table(Class<?> entityClass) {
+            this.entityClass = entityClass;
+            this.name = entityClass.getSimpleName();
+            this.rejected = counter("rejected");
+            this.passed = counter("passed");
+            this.rebuilds = Counter.builder("negative.lookup.rebuilds")
+                    .description("Scans of the table into a new id filter")
+                    .tag("table", name)
+                    .register(meterRegistry);
+        }
+
+        private Counter counter(String result) {
+            return Counter.builder("negative.lookup.requests")
+                    .description("Lookups rejected by the id filter or passed to the database")
+                    .tag("table", name)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Collapses concurrent identical reads into one database query.
+ * <p>
+ * The first caller for a key starts the load; callers arriving while it is in flight subscribe to
+ * the same result instead of issuing their own query. The result is held in a {@link Sinks.One},
+ * so a caller joining between the emission and the removal of the flight still receives the
+ * value. The flight is forgotten as soon as it terminates, so later callers always see fresh data.
+ * </p>
+ * <p>
+ * Each caller can cancel independently; the query itself is cancelled only when every caller has
+ * gone, and a flight that was cancelled is never joined again. The load runs in its own
+ * read-only transaction scope with the starting caller's Reactor context minus its transaction
+ * (routing hints such as the workload stay), so that no caller's transaction owns the shared
+ * connection. Callers inside an actual transaction never share: they may read their own
+ * uncommitted writes, so they run the loader on their own connection.
+ * </p>
+ * Calls are counted in {@code single.flight.requests}, tagged with the scope and whether the call
+ * {@code executed} a query or was {@code collapsed} into one already running.
+ */
+@Component
+public class SingleFlight {
+
+    private static final String TRANSACTION_CONTEXT_PACKAGE = TransactionSynchronizationManager.class.getPackageName();
+
+    private final Map<FlightKey, Flight<?>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter[]> counters = new ConcurrentHashMap<>();
+    private final TransactionalOperator readOnly;
+    private final MeterRegistry meterRegistry;
+
+    public SingleFlight(ReactiveTransactionManager transactionManager, ObjectProvider<MeterRegistry> meterRegistry) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_SUPPORTS);
+        definition.setReadOnly(true);
+        this.readOnly = TransactionalOperator.create(transactionManager, definition);
+        this.meterRegistry = meterRegistry.getIfAvailable(CompositeMeterRegistry::new);
+    }
+
+    /**
+     * Run {@code loader} for the key unless the same load is already in flight, in which case
+     * share its result.
+     *
+     * @param scope the kind of lookup, e.g. {@code "agreement"}; used as metric tag
+     * @param key the identity of the lookup within the scope
+     * @param loader the query to run
+     * @return a Mono emitting the shared result
+     */
+    public <T> Mono<T> execute(String scope, Object key, Supplier<Mono<T>> loader) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .map(TransactionSynchronizationManager::isActualTransactionActive)
+                .onErrorResume(NoTransactionException.class, e -> Mono.just(false))
+                .flatMap(inTransaction -> inTransaction
+                        ? Mono.defer(loader)
+                        : Mono.deferContextual(context -> join(scope, new FlightKey(scope, key), loader, context)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> join(String scope, FlightKey key, Supplier<Mono<T>> loader, ContextView context) {
+        boolean[] started = {false};
+        Flight<T> flight = (Flight<T>) inFlight.compute(key, (k, current) -> {
+            if (current != null && current.tryJoin()) {
+                return current;
+            }
+            started[0] = true;
+            return new Flight<T>();
+        });
+        counters(scope)[started[0] ? 0 : 1].increment();
+        if (started[0]) {
+            flight.start(readOnly.transactional(Mono.defer(loader))
+                    .contextWrite(ignored -> withoutTransaction(context))
+                    .doFinally(signal -> inFlight.remove(key, flight)));
+        }
+        return flight.result()
+                .doOnCancel(() -> {
+                    if (flight.leave()) {
+                        inFlight.remove(key, flight);
+                    }
+                });
+    }
+
+    private static Context withoutTransaction(ContextView context) {
+        return Context.of(context.stream()
+                .filter(entry -> !(entry.getKey() instanceof Class<?> type
+                        && type.getPackageName().equals(TRANSACTION_CONTEXT_PACKAGE)))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    private Counter[] counters(String scope) {
+        return counters.computeIfAbsent(scope, s -> new Counter[]{
+                counter(s, "executed"),
+                counter(s, "collapsed")
+        });
+    }
+
+    private Counter counter(String scope, String outcome) {
+        return Counter.builder("single.flight.requests")
+                .description("Reads that executed a query or joined one already in flight")
+                .tag("scope", scope)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * One running load and the callers waiting for it. The caller count drops to -1 once the last
+     * caller has cancelled, after which the flight can no longer be joined.
+     */
+    private static final class Flight<T> {
+
+        private final Sinks.One<T> result = Sinks.one();
+        private final AtomicInteger callers = new AtomicInteger(1);
+        private volatile Disposable load;
+
+        void start(Mono<T> source) {
+            load = source.subscribe(
+                    result::tryEmitValue,
+                    result::tryEmitError,
+                    result::tryEmitEmpty);
+            if (callers.get() < 0) {
+                load.dispose();
+            }
+        }
+
+        Mono<T> result() {
+            return result.asMono();
+        }
+
+        boolean tryJoin() {
+            while (true) {
+                int current = callers.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (callers.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return true when this was the last caller and the load has been cancelled
+         */
+        boolean leave() {
+            while (true) {
+                int current = callers.get();
+                if (current <= 0) {
+                    return false;
+                }
+                int next = current == 1 ? -1 : current - 1;
+                if (callers.compareAndSet(current, next)) {
+                    if (next > 0) {
+                        return false;
+                    }
+                    Disposable running = load;
+                    if (running != null) {
+                        running.dispose();
+                    }
+                    return true;
+                }
+            }
+        }
+    }
+
+    private record FlightKey(String scope, Object key) {
+    }
+}
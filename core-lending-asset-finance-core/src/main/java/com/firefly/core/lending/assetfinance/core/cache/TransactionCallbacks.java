@@ -0,0 +1,54 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+/**
+ * Defers cache maintenance until the surrounding reactive transaction completes.
+ */
+final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Run {@code onCommit} when the current transaction commits and {@code onRollback} when it does
+     * not. Without a transaction {@code onCommit} runs immediately.
+     */
+    static Mono<Void> afterCompletion(Runnable onCommit, Runnable onRollback) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .doOnNext(synchronization -> {
+                    if (synchronization.isSynchronizationActive()) {
+                        synchronization.registerSynchronization(new TransactionSynchronization() {
+                            @Override
+                            public Mono<Void> afterCompletion(int status) {
+                                return Mono.fromRunnable(status == STATUS_COMMITTED ? onCommit : onRollback);
+                            }
+                        });
+                    } else {
+                        onCommit.run();
+                    }
+                })
+                .onErrorResume(NoTransactionException.class, e -> Mono.fromRunnable(onCommit))
+                .then();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.commands;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefly.core.lending.assetfinance.core.filters.ParentScope;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedStatementMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.PreparedOperation;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies a JSON Merge Patch (RFC 7396) to one row with a single
+ * {@code UPDATE ... SET <patched columns> WHERE id = ? AND <scope> [AND version = ?] RETURNING *}.
+ * <p>
+ * Only the members present in the patch are written, so concurrent edits of other columns are
+ * preserved and no prior read is needed. A member set to {@code null} clears its column. Values
+ * are converted through the DTO and the entity mapper, so they are validated with the DTO's
+ * constraints and bound exactly like a full update would bind them; {@code updated_at} is always
+ * refreshed. The row version is incremented by the database on every update.
+ * </p>
+ *
+ * @param <E> the entity type
+ * @param <D> the DTO type the patch is written against
+ */
+public class MergePatch<E, D> {
+
+    private static final String UPDATED_AT = "updatedAt";
+    private static final Set<String> AUDIT_PROPERTIES = Set.of("createdAt", UPDATED_AT);
+
+    private final R2dbcEntityTemplate template;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final Class<E> entityClass;
+    private final Class<D> dtoClass;
+    private final Function<D, E> toEntity;
+    private final Set<String> immutableProperties;
+    private final ScopedStatementMapper statements;
+
+    MergePatch(R2dbcEntityTemplate template, ObjectMapper objectMapper, Validator validator,
+               Class<E> entityClass, Class<D> dtoClass, Function<D, E> toEntity, Set<String> immutableProperties) {
+        this.template = template;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.entityClass = entityClass;
+        this.dtoClass = dtoClass;
+        this.toEntity = toEntity;
+        this.immutableProperties = immutableProperties;
+        this.statements = new ScopedStatementMapper(template);
+    }
+
+    /**
+     * Apply the patch to one row.
+     *
+     * @param id the id of the row
+     * @param patch the merge patch document, keyed by DTO property
+     * @param scope additional predicate the row must match, typically its parent id
+     * @param expectedVersion the version the caller last read, or null to patch whatever is current
+     * @return a Mono emitting the updated entity, empty when no row matches, or erroring with
+     * {@link com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException} when
+     * the row is no longer at the expected version
+     */
+    public Mono<E> apply(UUID id, Map<String, Object> patch, Criteria scope, Long expectedVersion) {
+        return apply(id, patch, ParentScope.of(scope), expectedVersion);
+    }
+
+    /**
+     * Apply the patch to one row, folding the ancestors of the scope into the {@code UPDATE} so that
+     * a row under a foreign parent matches nothing without a separate ownership query.
+     *
+     * @param id the id of the row
+     * @param patch the merge patch document, keyed by DTO property
+     * @param scope the parent the row must belong to
+     * @param expectedVersion the version the caller last read, or null to patch whatever is current
+     * @return a Mono emitting the updated entity, empty when no row matches within the scope, or
+     * erroring with {@link com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException}
+     * when the row is no longer at the expected version
+     */
+    public Mono<E> apply(UUID id, Map<String, Object> patch, ParentScope scope, Long expectedVersion) {
+        VersionedRow<E> row = new VersionedRow<>(template, statements, entityClass, id, scope, expectedVersion);
+        return Mono.defer(() -> {
+            RelationalPersistentEntity<E> persistentEntity = persistentEntity();
+            for (String property : patch.keySet()) {
+                RelationalPersistentProperty persistentProperty = persistentEntity.getPersistentProperty(property);
+                if (persistentProperty == null || persistentProperty.isIdProperty()
+                        || persistentProperty.isVersionProperty() || immutableProperties.contains(property)
+                        || AUDIT_PROPERTIES.contains(property)) {
+                    return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown or read-only field: " + property));
+                }
+            }
+
+            D changes;
+            try {
+                changes = objectMapper.convertValue(patch, dtoClass);
+            } catch (IllegalArgumentException e) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid patch document", e));
+            }
+            String violations = patch.keySet().stream()
+                    .flatMap(property -> validator.validateProperty(changes, property).stream())
+                    .map(MergePatch::describe)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            if (!violations.isEmpty()) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, violations));
+            }
+
+            PersistentPropertyAccessor<E> values = persistentEntity.getPropertyAccessor(toEntity.apply(changes));
+            Update update = Update.update(UPDATED_AT, LocalDateTime.now());
+            for (String property : patch.keySet()) {
+                update = update.set(property, values.getProperty(persistentEntity.getRequiredPersistentProperty(property)));
+            }
+
+            PreparedOperation<?> operation = statements.update(entityClass, update, row.criteria(), scope);
+
+            return template.getDatabaseClient()
+                    .sql(new ReturningOperation(operation, "*"))
+                    .map((result, metadata) -> template.getConverter().read(entityClass, result, metadata))
+                    .one()
+                    .switchIfEmpty(row.missed());
+        });
+    }
+
+    private static String describe(ConstraintViolation<?> violation) {
+        return violation.getPropertyPath() + ": " + violation.getMessage();
+    }
+
+    @SuppressWarnings("unchecked")
+    private RelationalPersistentEntity<E> persistentEntity() {
+        return (RelationalPersistentEntity<E>) template.getConverter()
+                .getMappingContext()
+                .getRequiredPersistentEntity(entityClass);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.commands;
+
+import org.springframework.r2dbc.core.PreparedOperation;
+import org.springframework.r2dbc.core.binding.BindTarget;
+
+/**
+ * Appends a {@code RETURNING} clause to a mapped statement while keeping its bindings.
+ */
+record ReturningOperation(PreparedOperation<?> delegate, String columns) implements PreparedOperation<Object> {
+
+    @Override
+    public Object getSource() {
+        return delegate.getSource();
+    }
+
+    @Override
+    public void bindTo(BindTarget target) {
+        delegate.bindTo(target);
+    }
+
+    @Override
+    public String toQuery() {
+        return delegate.toQuery() + " RETURNING " + columns;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.commands;
+
+import com.firefly.core.lending.assetfinance.core.filters.ParentScope;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedStatementMapper;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.PreparedOperation;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Deletes rows with a single {@code DELETE ... WHERE id = ? [AND <scope>] [AND version = ?] RETURNING id},
+ * without fetching them first.
+ * <p>
+ * The returned ids tell which rows actually existed within the scope, so callers can map an
+ * empty result to 404 instead of checking beforehand.
+ * </p>
+ *
+ * @param <E> the entity type
+ */
+public class ScopedDelete<E> {
+
+    /**
+     * Maximum number of ids accepted by {@link #byIds}, keeping the bound parameter list well
+     * below the protocol limit.
+     */
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    private final R2dbcEntityTemplate template;
+    private final Class<E> entityClass;
+    private final ScopedStatementMapper statements;
+
+    ScopedDelete(R2dbcEntityTemplate template, Class<E> entityClass) {
+        this.template = template;
+        this.entityClass = entityClass;
+        this.statements = new ScopedStatementMapper(template);
+    }
+
+    /**
+     * Delete one row.
+     *
+     * @param id the id of the row
+     * @param scope additional predicate the row must match, typically its parent id
+     * @param expectedVersion the version the caller last read, or null to delete whatever is current
+     * @return a Mono emitting the id when the row was deleted, empty when no row matched, or
+     * erroring with {@link com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException}
+     * when the row is no longer at the expected version
+     */
+    public Mono<UUID> byId(UUID id, Criteria scope, Long expectedVersion) {
+        return byId(id, ParentScope.of(scope), expectedVersion);
+    }
+
+    /**
+     * Delete one row, folding the ancestors of the scope into the {@code DELETE} so that a row under
+     * a foreign parent matches nothing without a separate ownership query.
+     *
+     * @param id the id of the row
+     * @param scope the parent the row must belong to
+     * @param expectedVersion the version the caller last read, or null to delete whatever is current
+     * @return a Mono emitting the id when the row was deleted, empty when no row matched within the
+     * scope, or erroring with {@link com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException}
+     * when the row is no longer at the expected version
+     */
+    public Mono<UUID> byId(UUID id, ParentScope scope, Long expectedVersion) {
+        VersionedRow<E> row = new VersionedRow<>(template, statements, entityClass, id, scope, expectedVersion);
+        return execute(row.criteria(), scope)
+                .next()
+                .switchIfEmpty(row.missed());
+    }
+
+    /**
+     * Delete several rows in one statement.
+     *
+     * @param ids the ids of the rows, at most {@link #MAX_BATCH_SIZE}
+     * @param scope additional predicate the rows must match, typically their parent id
+     * @return a Flux emitting the ids of the rows that were deleted
+     */
+    public Flux<UUID> byIds(Collection<UUID> ids, Criteria scope) {
+        return byIds(ids, ParentScope.of(scope));
+    }
+
+    /**
+     * Delete several rows in one statement, restricted to the scope's parent and its ancestors.
+     *
+     * @param ids the ids of the rows, at most {@link #MAX_BATCH_SIZE}
+     * @param scope the parent the rows must belong to
+     * @return a Flux emitting the ids of the rows that were deleted
+     */
+    public Flux<UUID> byIds(Collection<UUID> ids, ParentScope scope) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_BATCH_SIZE + " ids can be deleted at once"));
+        }
+        Criteria criteria = Criteria.where(idProperty()).in(ids);
+        return execute(scope.criteria().isEmpty() ? criteria : criteria.and(scope.criteria()), scope);
+    }
+
+    private Flux<UUID> execute(Criteria criteria, ParentScope scope) {
+        return Flux.defer(() -> {
+            RelationalPersistentEntity<?> persistentEntity = persistentEntity();
+            String idColumn = persistentEntity.getRequiredIdProperty().getColumnName().getReference();
+
+            PreparedOperation<?> operation = statements.delete(entityClass, criteria, scope);
+
+            return template.getDatabaseClient()
+                    .sql(new ReturningOperation(operation, idColumn))
+                    .map(row -> row.get(idColumn, UUID.class))
+                    .all();
+        });
+    }
+
+    private String idProperty() {
+        return persistentEntity().getRequiredIdProperty().getName();
+    }
+
+    private RelationalPersistentEntity<?> persistentEntity() {
+        return template.getConverter().getMappingContext().getRequiredPersistentEntity(entityClass);
+    }
+}
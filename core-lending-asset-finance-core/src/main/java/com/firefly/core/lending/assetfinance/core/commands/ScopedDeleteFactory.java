@@ -0,0 +1,37 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.commands;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates {@link ScopedDelete} instances backed by the application's {@link R2dbcEntityTemplate}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ScopedDeleteFactory {
+
+    private final R2dbcEntityTemplate template;
+
+    public <E> ScopedDelete<E> createDelete(Class<E> entityClass) {
+        return new ScopedDelete<>(template, entityClass);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.commands;
+
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ParentScope;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedStatementMapper;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.sql.Column;
+import org.springframework.r2dbc.core.PreparedOperation;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Addresses a single row by id, parent scope and, optionally, the version the caller last read.
+ */
+final class VersionedRow<E> {
+
+    private final R2dbcEntityTemplate template;
+    private final ScopedStatementMapper statements;
+    private final Class<E> entityClass;
+    private final UUID id;
+    private final ParentScope scope;
+    private final Long expectedVersion;
+
+    VersionedRow(R2dbcEntityTemplate template, ScopedStatementMapper statements, Class<E> entityClass, UUID id,
+                 ParentScope scope, Long expectedVersion) {
+        this.template = template;
+        this.statements = statements;
+        this.entityClass = entityClass;
+        this.id = id;
+        this.scope = scope;
+        this.expectedVersion = expectedVersion;
+    }
+
+    /**
+     * @return the predicate matching the row only while it is still at the expected version
+     */
+    Criteria criteria() {
+        Criteria criteria = withoutVersion();
+        return expectedVersion == null
+                ? criteria
+                : criteria.and(persistentEntity().getRequiredVersionProperty().getName()).is(expectedVersion);
+    }
+
+    /**
+     * Explain why a statement built from {@link #criteria()} matched no row: error with a
+     * {@link VersionConflictException} when the row exists at another version within the scope, or
+     * complete empty when it does not. Only runs a query on that miss path, and only when a version
+     * was expected.
+     */
+    <T> Mono<T> missed() {
+        if (expectedVersion == null) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            RelationalPersistentEntity<E> persistentEntity = persistentEntity();
+            RelationalPersistentProperty versionProperty = persistentEntity.getRequiredVersionProperty();
+            String versionColumn = versionProperty.getColumnName().getReference();
+            PreparedOperation<?> operation = statements.select(entityClass,
+                    List.of(Column.create(versionProperty.getColumnName(), statements.table(entityClass))),
+                    withoutVersion(), scope, Sort.unsorted(), 0, 0);
+            return template.getDatabaseClient()
+                    .sql(operation)
+                    .map(current -> current.get(versionColumn, Long.class))
+                    .first()
+                    .flatMap(current -> Mono.<T>error(new VersionConflictException(label(), id, expectedVersion, current)));
+        });
+    }
+
+    private Criteria withoutVersion() {
+        Criteria criteria = Criteria.where(persistentEntity().getRequiredIdProperty().getName()).is(id);
+        return scope.criteria().isEmpty() ? criteria : criteria.and(scope.criteria());
+    }
+
+    /**
+     * Human-readable entity name, e.g. {@code "Pickup Record"} for {@code PickupRecord}.
+     */
+    private String label() {
+        return entityClass.getSimpleName().replaceAll("(?<=[a-z])(?=[A-Z])", " ");
+    }
+
+    @SuppressWarnings("unchecked")
+    private RelationalPersistentEntity<E> persistentEntity() {
+        return (RelationalPersistentEntity<E>) template.getConverter()
+                .getMappingContext()
+                .getRequiredPersistentEntity(entityClass);
+    }
+}
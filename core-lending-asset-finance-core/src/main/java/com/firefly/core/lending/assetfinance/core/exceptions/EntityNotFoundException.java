@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.exceptions;
+
+import java.util.UUID;
+
+/**
+ * Signals that an addressed resource does not exist.
+ * <p>
+ * Misses are routine on the read paths (probes for deleted or foreign ids), so this exception
+ * skips stack-trace capture and suppression bookkeeping and only renders its message when asked.
+ * A miss therefore costs one small allocation. The web layer maps it to an RFC 7807 problem
+ * response with status 404.
+ * </p>
+ */
+public class EntityNotFoundException extends RuntimeException {
+
+    private final String entity;
+    private final UUID id;
+    private final String parentEntity;
+    private final UUID parentId;
+
+    public EntityNotFoundException(String entity, UUID id) {
+        this(entity, id, null, null);
+    }
+
+    public EntityNotFoundException(String entity, UUID id, String parentEntity, UUID parentId) {
+        super(null, null, false, false);
+        this.entity = entity;
+        this.id = id;
+        this.parentEntity = parentEntity;
+        this.parentId = parentId;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    @Override
+    public String getMessage() {
+        String message = entity + " not found with id: " + id;
+        return parentEntity == null ? message : message + " for " + parentEntity + ": " + parentId;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.exceptions;
+
+import java.util.UUID;
+
+/**
+ * Signals that a write named a version of a resource ({@code If-Match}) that is no longer current.
+ * <p>
+ * Like {@link EntityNotFoundException} this is an expected outcome of concurrent editing rather
+ * than a fault, so it skips stack-trace capture. The web layer maps it to an RFC 7807 problem
+ * response with status 412.
+ * </p>
+ */
+public class VersionConflictException extends RuntimeException {
+
+    private final String entity;
+    private final UUID id;
+    private final Long expectedVersion;
+    private final Long currentVersion;
+
+    public VersionConflictException(String entity, UUID id, Long expectedVersion, Long currentVersion) {
+        super(null, null, false, false);
+        this.entity = entity;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public Long getCurrentVersion() {
+        return currentVersion;
+    }
+
+    @Override
+    public String getMessage() {
+        return entity + " with id: " + id + " is at version " + currentVersion + ", not " + expectedVersion;
+    }
+}
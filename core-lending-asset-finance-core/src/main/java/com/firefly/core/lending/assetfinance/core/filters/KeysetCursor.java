@@ -0,0 +1,60 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.filters;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of the last row of a keyset page, encoded as an opaque URL-safe token: the sort it was
+ * issued for, the row's id and the textual value of the sort property ({@code null} for SQL NULL).
+ */
+record KeysetCursor(String property, Sort.Direction direction, UUID id, String value) {
+
+    private static final char SEPARATOR = '|';
+    private static final String VALUE = "=";
+
+    String encode() {
+        String raw = property + SEPARATOR + direction + SEPARATOR + id + SEPARATOR + (value == null ? "" : VALUE + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // the value goes last and may itself contain the separator
+            String[] parts = raw.split("\\" + SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Malformed cursor: " + raw);
+            }
+            String value = parts[3];
+            if (!value.isEmpty() && !value.startsWith(VALUE)) {
+                throw new IllegalArgumentException("Malformed cursor value: " + value);
+            }
+            return new KeysetCursor(parts[0], Sort.Direction.valueOf(parts[1]), UUID.fromString(parts[2]),
+                    value.isEmpty() ? null : value.substring(VALUE.length()));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid pagination cursor: " + token);
+        }
+    }
+}
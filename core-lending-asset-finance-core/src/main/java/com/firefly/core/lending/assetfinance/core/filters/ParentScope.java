@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.filters;
+
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.sql.Column;
+import org.springframework.data.relational.core.sql.Condition;
+import org.springframework.data.relational.core.sql.Conditions;
+import org.springframework.data.relational.core.sql.SQL;
+import org.springframework.data.relational.core.sql.Select;
+import org.springframework.data.relational.core.sql.Table;
+import org.springframework.r2dbc.core.binding.BindMarker;
+import org.springframework.r2dbc.core.binding.MutableBindings;
+
+import java.util.UUID;
+
+/**
+ * The parent a statement is restricted to: a predicate on the row's own foreign key, plus an
+ * optional condition on the parent's ancestors that is folded into the same statement.
+ * <p>
+ * Records nested under an asset only carry {@code asset_finance_asset_id}, so the agreement in
+ * the route is checked with a sub-select on {@code asset_finance_asset} that is AND-ed to the
+ * WHERE clause. Listing, updating or deleting under a foreign agreement then matches no row
+ * instead of requiring a separate ownership query before the statement.
+ * </p>
+ */
+public final class ParentScope {
+
+    private static final ParentScope NONE = new ParentScope(Criteria.empty(), null, null);
+    private static final String ASSET_TABLE = "asset_finance_asset";
+    private static final String ASSET_ID = "asset_finance_asset_id";
+    private static final String AGREEMENT_ID = "asset_finance_agreement_id";
+
+    private final Criteria criteria;
+    private final UUID assetFinanceAgreementId;
+    private final UUID assetFinanceAssetId;
+
+    private ParentScope(Criteria criteria, UUID assetFinanceAgreementId, UUID assetFinanceAssetId) {
+        this.criteria = criteria;
+        this.assetFinanceAgreementId = assetFinanceAgreementId;
+        this.assetFinanceAssetId = assetFinanceAssetId;
+    }
+
+    /**
+     * @return the scope of top-level entities
+     */
+    public static ParentScope none() {
+        return NONE;
+    }
+
+    /**
+     * @param criteria the predicate on the row's own columns, e.g. {@code asset_finance_agreement_id = ?}
+     * @return a scope expressed by the given criteria only
+     */
+    public static ParentScope of(Criteria criteria) {
+        return criteria.isEmpty() ? NONE : new ParentScope(criteria, null, null);
+    }
+
+    /**
+     * Scope of records nested under {@code /asset-finance-agreements/{agreementId}/assets/{assetId}}.
+     *
+     * @param assetFinanceAgreementId the agreement addressed by the route
+     * @param assetFinanceAssetId the asset addressed by the route
+     * @return a scope matching the asset's records only while the asset belongs to the agreement
+     */
+    public static ParentScope asset(UUID assetFinanceAgreementId, UUID assetFinanceAssetId) {
+        return new ParentScope(Criteria.where("assetFinanceAssetId").is(assetFinanceAssetId),
+                assetFinanceAgreementId, assetFinanceAssetId);
+    }
+
+    public Criteria criteria() {
+        return criteria;
+    }
+
+    /**
+     * Fold the ancestor condition into the WHERE clause of a statement on {@code table}.
+     *
+     * @param table the table the statement addresses
+     * @param condition the mapped criteria of the statement, containing this scope's criteria, or null
+     * @param bindings the bindings receiving the ancestor values, on the statement's bind markers
+     * @return the condition, or the ancestor condition AND-ed to it
+     */
+    Condition restrict(Table table, Condition condition, MutableBindings bindings) {
+        if (assetFinanceAgreementId == null) {
+            return condition;
+        }
+        Table owner = Table.create(ASSET_TABLE).as("owner");
+        Select ownedAsset = Select.builder()
+                .select(owner.column(ASSET_ID))
+                .from(owner)
+                .where(owner.column(ASSET_ID).isEqualTo(bind(bindings, assetFinanceAssetId))
+                        .and(owner.column(AGREEMENT_ID).isEqualTo(bind(bindings, assetFinanceAgreementId))))
+                .build();
+        Condition owned = Conditions.in(Column.create(ASSET_ID, table), ownedAsset);
+        return condition == null ? owned : owned.and(Conditions.nest(condition));
+    }
+
+    private static org.springframework.data.relational.core.sql.BindMarker bind(MutableBindings bindings, Object value) {
+        BindMarker marker = bindings.nextMarker();
+        bindings.bind(marker, value);
+        return SQL.bindMarker(marker.getPlaceholder());
+    }
+
+    @Override
+    public String toString() {
+        return assetFinanceAgreementId == null
+                ? criteria.toString()
+                : criteria + " AND " + ASSET_TABLE + "(" + assetFinanceAssetId + ")." + AGREEMENT_ID + " = "
+                + assetFinanceAgreementId;
+    }
+}
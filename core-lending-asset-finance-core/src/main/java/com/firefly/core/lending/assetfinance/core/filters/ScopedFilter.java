@@ -0,0 +1,551 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.filters;
+
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
+import com.firefly.core.lending.assetfinance.models.routing.Workload;
+import org.fireflyframework.core.filters.FilterRequest;
+import org.fireflyframework.core.queries.PaginationResponse;
+import org.fireflyframework.utils.annotations.FilterableId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.sql.Column;
+import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.Expressions;
+import org.springframework.data.relational.core.sql.Functions;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.data.relational.core.sql.Table;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.PreparedOperation;
+import org.springframework.r2dbc.core.binding.BindTarget;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Filter pipeline equivalent to {@code FilterUtils.createFilter(...)} that always combines the
+ * client supplied criteria with a parent scope (e.g. {@code asset_finance_asset_id = ?}).
+ * <p>
+ * The scope is part of the generated WHERE clause of both the page and the count query, so
+ * listings of child records are served from the parent foreign key indexes instead of scanning
+ * the whole table. Ancestor conditions of a {@link ParentScope} (the agreement of an asset's
+ * records) are folded into the same statements rather than checked by a query of their own.
+ * </p>
+ * <p>
+ * The WHERE clause follows the {@code FilterUtils} conventions, but the statements are rendered
+ * here: {@code FilterUtils.createFilter(...)} only takes a {@link FilterRequest}, with no way to add
+ * a parent condition, a projection or a count mode to the query it runs.
+ * </p>
+ *
+ * @param <E> the entity type
+ * @param <D> the DTO type used as filter and as result
+ */
+public class ScopedFilter<E, D> {
+
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    private static final String CREATED_AT = "createdAt";
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+    /**
+     * Property types a cursor can hold and parse back, besides enums.
+     */
+    private static final Set<Class<?>> KEYSET_TYPES = Set.of(String.class, LocalDateTime.class, LocalDate.class,
+            BigDecimal.class, Integer.class, int.class, Long.class, long.class, Boolean.class, boolean.class, UUID.class);
+
+    private final R2dbcEntityTemplate template;
+    private final Class<E> entityClass;
+    private final Function<E, D> mapper;
+    private final FilterResultCache resultCache;
+    private final ScopedStatementMapper statements;
+    private final TransactionalOperator readTransaction;
+
+    ScopedFilter(R2dbcEntityTemplate template, Class<E> entityClass, Function<E, D> mapper,
+                 FilterResultCache resultCache, TransactionalOperator readTransaction) {
+        this.template = template;
+        this.readTransaction = readTransaction;
+        this.statements = new ScopedStatementMapper(template);
+        this.entityClass = entityClass;
+        this.mapper = mapper;
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Execute the filter request restricted to the given scope.
+     * <p>
+     * With {@link CountMode#EXACT} the page and count queries are subscribed together inside a
+     * read-only transaction, which binds one connection before either query runs, as the agreement
+     * tree does; a surrounding transaction is joined instead.
+     * {@link CountMode#ESTIMATED} replaces it with the planner's row estimate, and
+     * {@link CountMode#NONE} skips it and fetches one extra row instead, reporting only whether a
+     * next page exists.
+     * </p>
+     * <p>
+     * Pages are served from the {@link FilterResultCache} when the same canonical query (criteria,
+     * sort, page, count mode and fields) was answered since the last write to the table.
+     * </p>
+     *
+     * @param filterRequest the filter criteria including pagination and sorting
+     * @param scope the parent predicate, or {@link Criteria#empty()} for top-level entities
+     * @param countMode how the total is computed; null means {@link CountMode#EXACT}
+     * @param fields the properties to load, or null/empty for all of them
+     * @return a Mono emitting the requested page
+     */
+    public Mono<PaginationResponse<D>> filter(FilterRequest<D> filterRequest, Criteria scope, CountMode countMode,
+                                              Collection<String> fields) {
+        return filter(filterRequest, ParentScope.of(scope), countMode, fields);
+    }
+
+    /**
+     * Execute the filter request restricted to the given parent, see
+     * {@link #filter(FilterRequest, Criteria, CountMode, Collection)}.
+     *
+     * @param filterRequest the filter criteria including pagination and sorting
+     * @param scope the parent the rows must belong to
+     * @param countMode how the total is computed; null means {@link CountMode#EXACT}
+     * @param fields the properties to load, or null/empty for all of them
+     * @return a Mono emitting the requested page
+     */
+    public Mono<PaginationResponse<D>> filter(FilterRequest<D> filterRequest, ParentScope scope, CountMode countMode,
+                                              Collection<String> fields) {
+        return Mono.defer(() -> {
+            Criteria criteria = toCriteria(filterRequest, scope.criteria());
+            Sort sort = toSort(filterRequest);
+            CountMode mode = countMode != null ? countMode : CountMode.EXACT;
+
+            var pagination = filterRequest.getPagination();
+            int pageNumber = pagination != null ? pagination.getPageNumber() : 0;
+            int pageSize = pagination != null && pagination.getPageSize() > 0
+                    ? pagination.getPageSize()
+                    : DEFAULT_PAGE_SIZE;
+
+            List<Object> canonicalQuery = List.of(criteria.toString(), scope.toString(), sort.toString(), pageNumber,
+                    pageSize, mode, fields == null ? List.of() : new TreeSet<>(fields));
+            return resultCache.get(entityClass, canonicalQuery,
+                    () -> execute(criteria, scope, sort, mode, fields, pageNumber, pageSize));
+        });
+    }
+
+    private Mono<PaginationResponse<D>> execute(Criteria criteria, ParentScope scope, Sort sort, CountMode countMode,
+                                                Collection<String> fields, int pageNumber, int pageSize) {
+        long offset = (long) pageNumber * pageSize;
+
+        if (countMode == CountMode.NONE) {
+            return select(criteria, scope, sort, fields, offset, pageSize + 1)
+                    .map(mapper)
+                    .collectList()
+                    .map(rows -> {
+                        boolean hasNext = rows.size() > pageSize;
+                        List<D> content = hasNext ? rows.subList(0, pageSize) : rows;
+                        return toResponse(content, offset + rows.size(), pageSize, pageNumber);
+                    });
+        }
+
+        Mono<List<D>> content = select(criteria, scope, sort, fields, offset, pageSize)
+                .map(mapper)
+                .collectList();
+        Mono<Long> total = countMode == CountMode.ESTIMATED
+                ? estimateCount(criteria, scope)
+                : count(criteria, scope);
+
+        return readTransaction.transactional(Mono.zip(content, total))
+                .map(page -> toResponse(
+                        page.getT1(),
+                        Math.max(page.getT2(), offset + page.getT1().size()),
+                        pageSize,
+                        pageNumber));
+    }
+
+    /**
+     * Execute a keyset paginated listing of the rows matching the filter request within the given
+     * scope, ordered by the request's sort property with the id as tie-breaker, or by
+     * {@code (created_at, id)} descending when the request has no sort.
+     * <p>
+     * Instead of skipping rows with OFFSET, each page starts strictly after the cursor position,
+     * so page N costs the same as page 1 when an index on {@code (parent, sort property, id)}
+     * exists, as it does for {@code created_at}. One extra row is fetched to determine whether a
+     * next page exists. A cursor carries the sort it was issued for and is rejected with any other.
+     * Cursor pages serve interactive listings and run on the default {@link Workload#OLTP} pool.
+     * </p>
+     *
+     * @param filterRequest the filter criteria and sort, or null for none; page number and size are ignored
+     * @param pageRequest the cursor of the previous page and the page size
+     * @param scope the parent predicate, or {@link Criteria#empty()} for top-level entities
+     * @param fields the properties to load, or null/empty for all of them
+     * @return a Mono emitting the requested page and the cursor for the next one
+     */
+    public Mono<CursorPageResponse<D>> filterByCursor(FilterRequest<D> filterRequest, CursorPageRequest pageRequest,
+                                                      Criteria scope, Collection<String> fields) {
+        return filterByCursor(filterRequest, pageRequest, ParentScope.of(scope), fields);
+    }
+
+    /**
+     * Execute a keyset paginated listing restricted to the given parent, see
+     * {@link #filterByCursor(FilterRequest, CursorPageRequest, Criteria, Collection)}.
+     *
+     * @param filterRequest the filter criteria and sort, or null for none; page number and size are ignored
+     * @param pageRequest the cursor of the previous page and the page size
+     * @param scope the parent the rows must belong to
+     * @param fields the properties to load, or null/empty for all of them
+     * @return a Mono emitting the requested page and the cursor for the next one
+     */
+    public Mono<CursorPageResponse<D>> filterByCursor(FilterRequest<D> filterRequest, CursorPageRequest pageRequest,
+                                                      ParentScope scope, Collection<String> fields) {
+        return Mono.defer(() -> {
+            RelationalPersistentEntity<E> persistentEntity = persistentEntity();
+            RelationalPersistentProperty idProperty = persistentEntity.getRequiredIdProperty();
+            int pageSize = Math.clamp(pageRequest.getSize(), 1, CursorPageRequest.MAX_SIZE);
+
+            Sort.Order order = filterRequest == null ? null : toSort(filterRequest).stream().findFirst().orElse(null);
+            if (order == null) {
+                order = Sort.Order.desc(CREATED_AT);
+            }
+            RelationalPersistentProperty sortProperty = persistentEntity.getPersistentProperty(order.getProperty());
+            if (sortProperty == null || !KEYSET_TYPES.contains(sortProperty.getActualType())
+                    && !sortProperty.getActualType().isEnum()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Cannot paginate by cursor on property: " + order.getProperty());
+            }
+
+            List<Criteria> criteria = new ArrayList<>();
+            Criteria filters = filterRequest == null ? scope.criteria() : toCriteria(filterRequest, scope.criteria());
+            if (!filters.isEmpty()) {
+                criteria.add(filters);
+            }
+            if (StringUtils.hasText(pageRequest.getCursor())) {
+                KeysetCursor cursor = KeysetCursor.decode(pageRequest.getCursor());
+                if (!cursor.property().equals(sortProperty.getName()) || cursor.direction() != order.getDirection()) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Pagination cursor was issued for another sort: " + pageRequest.getCursor());
+                }
+                criteria.add(after(cursor));
+            }
+
+            Sort sort = sortProperty.isIdProperty()
+                    ? Sort.by(order)
+                    : Sort.by(order, new Sort.Order(order.getDirection(), idProperty.getName()));
+            // the next cursor is read from the last row, so the sort property is always loaded
+            Collection<String> columns = fields == null || fields.isEmpty()
+                    ? fields
+                    : Stream.concat(fields.stream(), Stream.of(sortProperty.getName())).toList();
+            Sort.Direction direction = order.getDirection();
+
+            return select(Criteria.from(criteria), scope, sort, columns, 0, pageSize + 1)
+                    .collectList()
+                    .map(rows -> {
+                        boolean hasNext = rows.size() > pageSize;
+                        List<E> page = hasNext ? rows.subList(0, pageSize) : rows;
+                        String nextCursor = null;
+                        if (hasNext) {
+                            var accessor = persistentEntity.getPropertyAccessor(page.getLast());
+                            Object value = accessor.getProperty(sortProperty);
+                            nextCursor = new KeysetCursor(
+                                    sortProperty.getName(),
+                                    direction,
+                                    (UUID) accessor.getProperty(idProperty),
+                                    value instanceof Enum<?> constant ? constant.name() : Objects.toString(value, null)
+                            ).encode();
+                        }
+                        return CursorPageResponse.<D>builder()
+                                .content(page.stream().map(mapper).toList())
+                                .nextCursor(nextCursor)
+                                .hasNext(hasNext)
+                                .build();
+                    });
+        });
+    }
+
+    /**
+     * The keyset predicate selecting the rows after the cursor position in {@code (property, id)}
+     * order. Postgres sorts NULLs last ascending and first descending, and the predicate follows.
+     */
+    Criteria after(KeysetCursor cursor) {
+        RelationalPersistentEntity<E> persistentEntity = persistentEntity();
+        String idProperty = persistentEntity.getRequiredIdProperty().getName();
+        boolean descending = cursor.direction().isDescending();
+        Criteria afterId = descending
+                ? Criteria.where(idProperty).lessThan(cursor.id())
+                : Criteria.where(idProperty).greaterThan(cursor.id());
+        String property = cursor.property();
+        if (property.equals(idProperty)) {
+            return afterId;
+        }
+        if (cursor.value() == null) {
+            Criteria sameNull = Criteria.where(property).isNull().and(afterId);
+            return descending ? sameNull.or(Criteria.where(property).isNotNull()) : sameNull;
+        }
+        Object value = keysetValue(persistentEntity.getRequiredPersistentProperty(property), cursor.value());
+        Criteria after = (descending ? Criteria.where(property).lessThan(value) : Criteria.where(property).greaterThan(value))
+                .or(Criteria.where(property).is(value).and(afterId));
+        return descending ? after : after.or(Criteria.where(property).isNull());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object keysetValue(RelationalPersistentProperty property, String value) {
+        Class<?> type = property.getActualType();
+        try {
+            if (type.isEnum()) {
+                return Enum.valueOf((Class<? extends Enum>) type, value);
+            }
+            if (type == LocalDateTime.class) {
+                return LocalDateTime.parse(value);
+            }
+            if (type == LocalDate.class) {
+                return LocalDate.parse(value);
+            }
+            if (type == BigDecimal.class) {
+                return new BigDecimal(value);
+            }
+            if (type == Integer.class || type == int.class) {
+                return Integer.valueOf(value);
+            }
+            if (type == Long.class || type == long.class) {
+                return Long.valueOf(value);
+            }
+            if (type == Boolean.class || type == boolean.class) {
+                return Boolean.valueOf(value);
+            }
+            if (type == UUID.class) {
+                return UUID.fromString(value);
+            }
+            return value;
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid pagination cursor value: " + value);
+        }
+    }
+
+    private Flux<E> select(Criteria criteria, ParentScope scope, Sort sort, Collection<String> fields,
+                           long offset, int limit) {
+        return template.getDatabaseClient()
+                .sql(selectStatement(criteria, scope, sort, fields, offset, limit))
+                .map((row, metadata) -> template.getConverter().read(entityClass, row, metadata))
+                .all();
+    }
+
+    private Mono<Long> count(Criteria criteria, ParentScope scope) {
+        return template.getDatabaseClient()
+                .sql(countStatement(criteria, scope))
+                .map(row -> row.get(0, Long.class))
+                .first()
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * The page query as it is sent to the database, with bind markers for every criteria value.
+     */
+    PreparedOperation<?> selectStatement(Criteria criteria, ParentScope scope, Sort sort, Collection<String> fields,
+                                         long offset, int limit) {
+        return statements.select(entityClass, columns(fields), criteria, scope, sort, offset, limit);
+    }
+
+    /**
+     * The count query as it is sent to the database, with bind markers for every criteria value.
+     */
+    PreparedOperation<?> countStatement(Criteria criteria, ParentScope scope) {
+        return statements.select(entityClass, List.of(Functions.count(Expressions.asterisk())), criteria, scope,
+                Sort.unsorted(), 0, 0);
+    }
+
+    /**
+     * The SELECT list for the requested properties, or all columns when none are requested. The id,
+     * {@code created_at} and version columns are always loaded because identity, cursors and entity
+     * tags depend on them; properties that are not selected stay null in the result.
+     */
+    private List<Expression> columns(Collection<String> fields) {
+        RelationalPersistentEntity<E> persistentEntity = persistentEntity();
+        Table table = statements.table(entityClass);
+        if (fields == null || fields.isEmpty()) {
+            return List.of(table.asterisk());
+        }
+        Set<SqlIdentifier> columns = new LinkedHashSet<>();
+        columns.add(persistentEntity.getIdColumn());
+        columns.add(persistentEntity.getRequiredPersistentProperty(CREATED_AT).getColumnName());
+        if (persistentEntity.hasVersionProperty()) {
+            columns.add(persistentEntity.getRequiredVersionProperty().getColumnName());
+        }
+        for (String field : fields) {
+            RelationalPersistentProperty property = persistentEntity.getPersistentProperty(field.trim());
+            if (property == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown field: " + field);
+            }
+            columns.add(property.getColumnName());
+        }
+        return columns.stream().<Expression>map(column -> Column.create(column, table)).toList();
+    }
+
+    /**
+     * Estimate the number of matching rows from the planner's statistics ({@code pg_class.reltuples}
+     * and column histograms) by running {@code EXPLAIN} on the filtered select.
+     */
+    private Mono<Long> estimateCount(Criteria criteria, ParentScope scope) {
+        PreparedOperation<?> operation = statements.select(entityClass,
+                List.of(Column.create(persistentEntity().getIdColumn(), statements.table(entityClass))),
+                criteria, scope, Sort.unsorted(), 0, 0);
+
+        return template.getDatabaseClient()
+                .sql(new ExplainOperation(operation))
+                .map(row -> row.get(0, String.class))
+                .first()
+                .map(plan -> {
+                    Matcher matcher = PLAN_ROWS.matcher(plan);
+                    return matcher.find() ? Long.parseLong(matcher.group(1)) : 0L;
+                })
+                .defaultIfEmpty(0L);
+    }
+
+    private static <D> PaginationResponse<D> toResponse(List<D> content, long totalElements, int pageSize, int pageNumber) {
+        return PaginationResponse.<D>builder()
+                .content(content)
+                .totalElements(totalElements)
+                .totalPages((int) Math.ceil((double) totalElements / pageSize))
+                .currentPage(pageNumber)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private RelationalPersistentEntity<E> persistentEntity() {
+        return (RelationalPersistentEntity<E>) template.getConverter()
+                .getMappingContext()
+                .getRequiredPersistentEntity(entityClass);
+    }
+
+    /**
+     * Build the WHERE clause for a filter request: the scope first, followed by one predicate per
+     * non-null filter property and one per range bound. Follows the {@code FilterUtils}
+     * conventions: strings match case-insensitively by substring and UUID properties only take
+     * part when annotated with {@link FilterableId}. Range filter keys come from the client and are
+     * checked like the sort property, see {@link #toRangeCriteria}.
+     */
+    Criteria toCriteria(FilterRequest<?> filterRequest, Criteria scope) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (!scope.isEmpty()) {
+            criteria.add(scope);
+        }
+
+        Object filters = filterRequest.getFilters();
+        if (filters != null) {
+            ReflectionUtils.doWithFields(filters.getClass(), field -> {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    return;
+                }
+                ReflectionUtils.makeAccessible(field);
+                Object value = field.get(filters);
+                if (value == null || value instanceof Collection<?>) {
+                    return;
+                }
+                if (value instanceof UUID && !field.isAnnotationPresent(FilterableId.class)) {
+                    return;
+                }
+                criteria.add(value instanceof String text
+                        ? Criteria.where(field.getName()).like("%" + text + "%").ignoreCase(true)
+                        : Criteria.where(field.getName()).is(value));
+            });
+        }
+
+        var rangeFilters = filterRequest.getRangeFilters();
+        if (rangeFilters != null && rangeFilters.getRanges() != null) {
+            rangeFilters.getRanges().forEach((property, range) ->
+                    criteria.addAll(toRangeCriteria(property, range.getFrom(), range.getTo())));
+        }
+
+        return Criteria.from(criteria);
+    }
+
+    /**
+     * One predicate per non-null bound of a range filter, both inclusive. The property must be mapped
+     * by the entity: {@link Criteria#where} renders a name it cannot resolve as raw SQL, which would
+     * let a crafted key inject into the statement and escape the parent scope, so unknown keys fail
+     * with 400.
+     */
+    List<Criteria> toRangeCriteria(String property, Object from, Object to) {
+        if (property == null || persistentEntity().getPersistentProperty(property) == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot filter by range on property: " + property);
+        }
+        List<Criteria> criteria = new ArrayList<>();
+        if (from != null) {
+            criteria.add(Criteria.where(property).greaterThanOrEquals(from));
+        }
+        if (to != null) {
+            criteria.add(Criteria.where(property).lessThanOrEquals(to));
+        }
+        return criteria;
+    }
+
+    /**
+     * The sort of a filter request, rejecting properties the entity does not map with 400 rather
+     * than letting the statement fail on an unknown column.
+     */
+    Sort toSort(FilterRequest<?> filterRequest) {
+        var pagination = filterRequest.getPagination();
+        if (pagination == null || !StringUtils.hasText(pagination.getSortBy())) {
+            return Sort.unsorted();
+        }
+        String sortBy = pagination.getSortBy().trim();
+        if (persistentEntity().getPersistentProperty(sortBy) == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot sort by property: " + sortBy);
+        }
+        Sort.Direction direction = Sort.Direction.fromOptionalString(pagination.getSortDirection())
+                .orElse(Sort.Direction.DESC);
+        return Sort.by(direction, sortBy);
+    }
+
+    /**
+     * Prefixes a mapped statement with {@code EXPLAIN} while keeping its bindings.
+     */
+    private record ExplainOperation(PreparedOperation<?> delegate) implements PreparedOperation<Object> {
+
+        @Override
+        public Object getSource() {
+            return delegate.getSource();
+        }
+
+        @Override
+        public void bindTo(BindTarget target) {
+            delegate.bindTo(target);
+        }
+
+        @Override
+        public String toQuery() {
+            return "EXPLAIN " + delegate.toQuery();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.filters;
+
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.util.function.Function;
+
+/**
+ * Creates {@link ScopedFilter} instances backed by the application's {@link R2dbcEntityTemplate}.
+ */
+@Component
+public class ScopedFilterFactory {
+
+    private final R2dbcEntityTemplate template;
+    private final FilterResultCache resultCache;
+    private final TransactionalOperator readTransaction;
+
+    public ScopedFilterFactory(R2dbcEntityTemplate template, FilterResultCache resultCache,
+                               ReactiveTransactionManager transactionManager) {
+        this.template = template;
+        this.resultCache = resultCache;
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(true);
+        this.readTransaction = TransactionalOperator.create(transactionManager, definition);
+    }
+
+    public <E, D> ScopedFilter<E, D> createFilter(Class<E> entityClass, Function<E, D> mapper) {
+        return new ScopedFilter<>(template, entityClass, mapper, resultCache, readTransaction);
+    }
+}
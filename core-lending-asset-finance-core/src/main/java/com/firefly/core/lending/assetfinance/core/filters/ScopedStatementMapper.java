@@ -0,0 +1,195 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.filters;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.data.r2dbc.query.BoundAssignments;
+import org.springframework.data.r2dbc.query.BoundCondition;
+import org.springframework.data.r2dbc.query.UpdateMapper;
+import org.springframework.data.relational.core.dialect.RenderContextFactory;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Update;
+import org.springframework.data.relational.core.sql.Condition;
+import org.springframework.data.relational.core.sql.Delete;
+import org.springframework.data.relational.core.sql.DeleteBuilder;
+import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.Select;
+import org.springframework.data.relational.core.sql.SelectBuilder;
+import org.springframework.data.relational.core.sql.StatementBuilder;
+import org.springframework.data.relational.core.sql.Table;
+import org.springframework.data.relational.core.sql.UpdateBuilder;
+import org.springframework.data.relational.core.sql.render.SqlRenderer;
+import org.springframework.r2dbc.core.PreparedOperation;
+import org.springframework.r2dbc.core.binding.BindMarkers;
+import org.springframework.r2dbc.core.binding.BindTarget;
+import org.springframework.r2dbc.core.binding.Bindings;
+import org.springframework.r2dbc.core.binding.MutableBindings;
+
+import java.util.List;
+
+/**
+ * Maps SELECT, UPDATE and DELETE statements like the template's {@code StatementMapper}, with the
+ * WHERE clause restricted to a {@link ParentScope}.
+ * <p>
+ * The ancestor condition of the scope is built as part of the statement's {@link Condition} and
+ * bound on the same bind markers as the criteria, before the statement is rendered, so criteria
+ * values never take part in placing it.
+ * </p>
+ */
+public final class ScopedStatementMapper {
+
+    private final R2dbcConverter converter;
+    private final R2dbcDialect dialect;
+    private final UpdateMapper updateMapper;
+    private final SqlRenderer renderer;
+
+    public ScopedStatementMapper(R2dbcEntityTemplate template) {
+        this.converter = template.getConverter();
+        this.dialect = DialectResolver.getDialect(template.getDatabaseClient().getConnectionFactory());
+        this.updateMapper = new UpdateMapper(dialect, converter);
+        this.renderer = SqlRenderer.create(new RenderContextFactory(dialect).createRenderContext());
+    }
+
+    /**
+     * @param entityClass the entity type
+     * @return the table the entity is mapped to, for building projections
+     */
+    public Table table(Class<?> entityClass) {
+        return Table.create(persistentEntity(entityClass).getTableName());
+    }
+
+    /**
+     * @param entityClass the entity type
+     * @param projection the SELECT list
+     * @param criteria the predicate on the entity's properties, containing the scope's criteria
+     * @param scope the parent the rows must belong to
+     * @param sort the ORDER BY clause, or {@link Sort#unsorted()}
+     * @param offset the rows to skip, or 0
+     * @param limit the maximum number of rows, or 0 for no limit
+     * @return the SELECT with bind markers for every criteria and scope value
+     */
+    public PreparedOperation<Select> select(Class<?> entityClass, List<? extends Expression> projection,
+                                            Criteria criteria, ParentScope scope, Sort sort, long offset, int limit) {
+        RelationalPersistentEntity<?> entity = persistentEntity(entityClass);
+        Table table = Table.create(entity.getTableName());
+        BindMarkers bindMarkers = dialect.getBindMarkersFactory().create();
+        Where where = where(bindMarkers, criteria, scope, table, entity);
+
+        SelectBuilder.SelectFromAndJoin selectBuilder = StatementBuilder.select(projection).from(table);
+        if (where.condition() != null) {
+            selectBuilder.where(where.condition());
+        }
+        if (sort.isSorted()) {
+            selectBuilder.orderBy(updateMapper.getMappedSort(table, sort, entity));
+        }
+        if (limit > 0) {
+            selectBuilder.limit(limit);
+        }
+        if (offset > 0) {
+            selectBuilder.offset(offset);
+        }
+        Select select = selectBuilder.build();
+        return new MappedOperation<>(select, renderer.render(select), where.bindings());
+    }
+
+    /**
+     * @param entityClass the entity type
+     * @param update the assignments
+     * @param criteria the predicate on the entity's properties, containing the scope's criteria
+     * @param scope the parent the rows must belong to
+     * @return the UPDATE with bind markers for every assigned, criteria and scope value
+     */
+    public PreparedOperation<org.springframework.data.relational.core.sql.Update> update(
+            Class<?> entityClass, Update update, Criteria criteria, ParentScope scope) {
+        RelationalPersistentEntity<?> entity = persistentEntity(entityClass);
+        Table table = Table.create(entity.getTableName());
+        BindMarkers bindMarkers = dialect.getBindMarkersFactory().create();
+        BoundAssignments assignments = updateMapper.getMappedObject(bindMarkers, update.getAssignments(), table, entity);
+        Where where = where(bindMarkers, criteria, scope, table, entity);
+
+        UpdateBuilder.UpdateWhere updateBuilder = StatementBuilder.update(table).set(assignments.getAssignments());
+        org.springframework.data.relational.core.sql.Update statement = where.condition() == null
+                ? updateBuilder.build()
+                : updateBuilder.where(where.condition()).build();
+        return new MappedOperation<>(statement, renderer.render(statement),
+                Bindings.merge(assignments.getBindings(), where.bindings()));
+    }
+
+    /**
+     * @param entityClass the entity type
+     * @param criteria the predicate on the entity's properties, containing the scope's criteria
+     * @param scope the parent the rows must belong to
+     * @return the DELETE with bind markers for every criteria and scope value
+     */
+    public PreparedOperation<Delete> delete(Class<?> entityClass, Criteria criteria, ParentScope scope) {
+        RelationalPersistentEntity<?> entity = persistentEntity(entityClass);
+        Table table = Table.create(entity.getTableName());
+        BindMarkers bindMarkers = dialect.getBindMarkersFactory().create();
+        Where where = where(bindMarkers, criteria, scope, table, entity);
+
+        DeleteBuilder.DeleteWhere deleteBuilder = StatementBuilder.delete(table);
+        Delete delete = where.condition() == null
+                ? deleteBuilder.build()
+                : deleteBuilder.where(where.condition()).build();
+        return new MappedOperation<>(delete, renderer.render(delete), where.bindings());
+    }
+
+    private Where where(BindMarkers bindMarkers, Criteria criteria, ParentScope scope, Table table,
+                        RelationalPersistentEntity<?> entity) {
+        Condition condition = null;
+        Bindings bindings = Bindings.empty();
+        if (criteria != null && !criteria.isEmpty()) {
+            BoundCondition mapped = updateMapper.getMappedObject(bindMarkers, criteria, table, entity);
+            condition = mapped.getCondition();
+            bindings = mapped.getBindings();
+        }
+        MutableBindings scopeBindings = new MutableBindings(bindMarkers);
+        return new Where(scope.restrict(table, condition, scopeBindings), Bindings.merge(bindings, scopeBindings));
+    }
+
+    private RelationalPersistentEntity<?> persistentEntity(Class<?> entityClass) {
+        return converter.getMappingContext().getRequiredPersistentEntity(entityClass);
+    }
+
+    private record Where(Condition condition, Bindings bindings) {
+    }
+
+    private record MappedOperation<T>(T source, String query, Bindings bindings) implements PreparedOperation<T> {
+
+        @Override
+        public T getSource() {
+            return source;
+        }
+
+        @Override
+        public void bindTo(BindTarget target) {
+            bindings.apply(target);
+        }
+
+        @Override
+        public String toQuery() {
+            return query;
+        }
+    }
+}
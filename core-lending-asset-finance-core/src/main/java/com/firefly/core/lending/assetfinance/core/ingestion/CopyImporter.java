@@ -0,0 +1,328 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.ingestion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ImportSummaryDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ServiceEventDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.models.config.ConnectionPools;
+import com.firefly.core.lending.assetfinance.models.entities.ServiceEvent;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Wrapped;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports very large numbers of usage records and service events through
+ * {@code COPY ... FROM STDIN}.
+ * <p>
+ * Rows are consumed from a {@link Flux} with backpressure, so memory does not grow with the size of
+ * the import. They are validated in windows: bean validation per row, and one query per window for
+ * asset ids not seen earlier in the import, since a single dangling foreign key would abort the
+ * whole {@code COPY}. Rejected rows are written as NDJSON to a file under
+ * {@code asset-finance.ingestion.copy.reject-directory}; accepted rows are encoded in the
+ * {@code COPY} text format, one chunk per window.
+ * </p>
+ * The import runs as one statement on a connection from the export pool of the primary, so it
+ * commits or fails as a whole and never holds a connection of the OLTP pool for its duration. Afterwards list pages
+ * of the table are invalidated and its negative lookup filter is rebuilt on every node.
+ */
+@Slf4j
+@Component
+public class CopyImporter {
+
+    private static final DateTimeFormatter REJECT_FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private static final Target<UsageRecordDTO> USAGE_RECORDS = new Target<>(
+            "usage_record", UsageRecord.class,
+            "usage_record_id, asset_finance_asset_id, usage_date, mileage, usage_detail",
+            UsageRecordDTO::getAssetFinanceAssetId,
+            (dto, row) -> row
+                    .field(dto.getAssetFinanceAssetId())
+                    .field(dto.getUsageDate())
+                    .field(dto.getMileage())
+                    .field(dto.getUsageDetail()));
+
+    private static final Target<ServiceEventDTO> SERVICE_EVENTS = new Target<>(
+            "service_event", ServiceEvent.class,
+            "service_event_id, asset_finance_asset_id, event_date, event_type, cost, note",
+            ServiceEventDTO::getAssetFinanceAssetId,
+            (dto, row) -> row
+                    .field(dto.getAssetFinanceAssetId())
+                    .field(dto.getEventDate())
+                    .field(dto.getEventType())
+                    .field(dto.getCost() == null ? null : dto.getCost().toPlainString())
+                    .field(dto.getNote()));
+
+    private final ConnectionPools connectionPools;
+    private final AssetFinanceAssetRepository assetRepository;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final IngestionProperties.Copy properties;
+
+    public CopyImporter(ConnectionPools connectionPools,
+                        AssetFinanceAssetRepository assetRepository,
+                        FilterResultCache resultCache,
+                        NegativeLookupFilter negativeLookups,
+                        Validator validator,
+                        ObjectMapper objectMapper,
+                        IngestionProperties ingestionProperties) {
+        this.connectionPools = connectionPools;
+        this.assetRepository = assetRepository;
+        this.resultCache = resultCache;
+        this.negativeLookups = negativeLookups;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.properties = ingestionProperties.getCopy();
+    }
+
+    public Mono<ImportSummaryDTO> importUsageRecords(Flux<UsageRecordDTO> records) {
+        return copy(USAGE_RECORDS, records);
+    }
+
+    public Mono<ImportSummaryDTO> importServiceEvents(Flux<ServiceEventDTO> events) {
+        return copy(SERVICE_EVENTS, events);
+    }
+
+    private <T> Mono<ImportSummaryDTO> copy(Target<T> target, Flux<T> rows) {
+        return Mono.using(
+                () -> new RejectFile(target.table()),
+                rejects -> Mono.usingWhen(
+                                Mono.<Connection>from(connectionPools.export().create()),
+                                connection -> postgres(connection).copyIn(
+                                        "COPY " + target.table() + " (" + target.columns() + ") FROM STDIN",
+                                        encode(target, rows, rejects)),
+                                Connection::close)
+                        .flatMap(imported -> resultCache.invalidate(target.entityClass())
+                                .then(negativeLookups.recordBulkLoad(target.entityClass()))
+                                .thenReturn(ImportSummaryDTO.builder()
+                                        .table(target.table())
+                                        .imported(imported)
+                                        .rejected(rejects.count())
+                                        .rejectFile(rejects.path())
+                                        .build()))
+                        .doOnNext(summary -> log.info("Imported {} rows into {}, rejected {}",
+                                summary.getImported(), summary.getTable(), summary.getRejected())),
+                RejectFile::close);
+    }
+
+    /**
+     * Unwraps a pooled connection down to the driver connection that speaks the {@code COPY}
+     * sub-protocol; the pooled connection is still the one closed, returning it to the pool.
+     */
+    private static PostgresqlConnection postgres(Connection connection) {
+        Object current = connection;
+        while (!(current instanceof PostgresqlConnection) && current instanceof Wrapped<?> wrapped) {
+            current = wrapped.unwrap();
+        }
+        if (current instanceof PostgresqlConnection postgresql) {
+            return postgresql;
+        }
+        throw new IllegalStateException("COPY imports need a PostgreSQL connection, got " + connection.getClass().getName());
+    }
+
+    private <T> Flux<ByteBuf> encode(Target<T> target, Flux<T> rows, RejectFile rejects) {
+        Set<UUID> knownAssets = ConcurrentHashMap.newKeySet();
+        Set<UUID> missingAssets = ConcurrentHashMap.newKeySet();
+        return rows.index()
+                .buffer(properties.getValidationWindow())
+                .concatMap(window -> {
+                    Map<Tuple2<Long, T>, String> errors = new LinkedHashMap<>();
+                    List<Tuple2<Long, T>> valid = new ArrayList<>(window.size());
+                    Set<UUID> unseen = new HashSet<>();
+                    for (Tuple2<Long, T> row : window) {
+                        Set<ConstraintViolation<T>> violations = validator.validate(row.getT2());
+                        if (violations.isEmpty()) {
+                            valid.add(row);
+                            UUID assetId = target.assetId().apply(row.getT2());
+                            if (!knownAssets.contains(assetId) && !missingAssets.contains(assetId)) {
+                                unseen.add(assetId);
+                            }
+                        } else {
+                            errors.put(row, violations.stream()
+                                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                                    .sorted()
+                                    .collect(Collectors.joining("; ")));
+                        }
+                    }
+                    Mono<Void> resolve = unseen.isEmpty()
+                            ? Mono.empty()
+                            : assetRepository.findExistingIds(unseen.toArray(UUID[]::new))
+                                    .collect(Collectors.toSet())
+                                    .doOnNext(existing -> unseen.forEach(assetId ->
+                                            (existing.contains(assetId) ? knownAssets : missingAssets).add(assetId)))
+                                    .then();
+                    return resolve.then(Mono.fromCallable(() -> {
+                        errors.forEach(rejects::write);
+                        StringBuilder chunk = new StringBuilder();
+                        for (Tuple2<Long, T> row : valid) {
+                            UUID assetId = target.assetId().apply(row.getT2());
+                            if (missingAssets.contains(assetId)) {
+                                rejects.write(row, "Asset Finance Asset not found with id: " + assetId);
+                                continue;
+                            }
+                            CopyRow line = new CopyRow(chunk).field(UUID.randomUUID());
+                            target.encoder().accept(row.getT2(), line);
+                            line.end();
+                        }
+                        return chunk.isEmpty()
+                                ? Unpooled.EMPTY_BUFFER
+                                : Unpooled.wrappedBuffer(chunk.toString().getBytes(StandardCharsets.UTF_8));
+                    }).subscribeOn(Schedulers.boundedElastic()));
+                })
+                .filter(ByteBuf::isReadable);
+    }
+
+    private record Target<T>(String table, Class<?> entityClass, String columns,
+                             Function<T, UUID> assetId, BiConsumer<T, CopyRow> encoder) {
+    }
+
+    /**
+     * Appends one row in the {@code COPY} text format: tab separated, {@code \N} for null, and
+     * backslash escapes for the characters that would end a field or a row.
+     */
+    private static final class CopyRow {
+
+        private final StringBuilder out;
+        private boolean first = true;
+
+        private CopyRow(StringBuilder out) {
+            this.out = out;
+        }
+
+        private CopyRow field(Object value) {
+            if (!first) {
+                out.append('\t');
+            }
+            first = false;
+            if (value == null) {
+                out.append("\\N");
+                return this;
+            }
+            String text = value instanceof Enum<?> constant ? constant.name() : value.toString();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '\\' -> out.append("\\\\");
+                    case '\t' -> out.append("\\t");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    default -> out.append(c);
+                }
+            }
+            return this;
+        }
+
+        private void end() {
+            out.append('\n');
+        }
+    }
+
+    /**
+     * NDJSON file of rejected rows, created on the first reject.
+     */
+    private final class RejectFile implements AutoCloseable {
+
+        private final String table;
+        private final AtomicLong count = new AtomicLong();
+        private Path path;
+        private BufferedWriter writer;
+
+        private RejectFile(String table) {
+            this.table = table;
+        }
+
+        private synchronized <T> void write(Tuple2<Long, T> row, String error) {
+            try {
+                if (writer == null) {
+                    Path directory = Path.of(properties.getRejectDirectory());
+                    Files.createDirectories(directory);
+                    path = directory.resolve(table + "-" + LocalDateTime.now().format(REJECT_FILE_TIMESTAMP)
+                            + "-" + UUID.randomUUID().toString().substring(0, 8) + ".ndjson");
+                    writer = Files.newBufferedWriter(path);
+                }
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("index", row.getT1());
+                line.put("error", error);
+                line.put("row", row.getT2());
+                writer.write(objectMapper.writeValueAsString(line));
+                writer.newLine();
+                count.incrementAndGet();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write rejected row to " + path, e);
+            }
+        }
+
+        private long count() {
+            return count.get();
+        }
+
+        private synchronized String path() {
+            return path == null ? null : path.toString();
+        }
+
+        @Override
+        public synchronized void close() {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    log.warn("Could not close reject file {}", path, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.ingestion;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Bulk ingestion settings, bound from {@code asset-finance.ingestion.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "asset-finance.ingestion")
+public class IngestionProperties {
+
+    /**
+     * Rows written by one multi-row INSERT.
+     */
+    private int batchSize = 1_000;
+
+    /**
+     * Rows committed together; a failure rolls back and reports only this many items.
+     */
+    private int transactionSize = 10_000;
+
+    /**
+     * {@code COPY} imports run by {@link CopyImporter}.
+     */
+    private Copy copy = new Copy(false, null, "/tmp/asset-finance/rejects", 1_000);
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Copy {
+
+        /**
+         * Registers the administrative import endpoint; off by default because it bypasses the
+         * per-agreement ownership checks.
+         */
+        private boolean endpointEnabled;
+
+        /**
+         * Secret that callers of the import endpoint send in the {@code X-Admin-Token} header.
+         * While unset, every call to the endpoint is rejected.
+         */
+        private String adminToken;
+
+        /**
+         * Directory receiving one NDJSON file of rejected rows per import that had any.
+         */
+        private String rejectDirectory;
+
+        /**
+         * Rows validated together; asset ids not seen before are checked with one query per
+         * window, and each window is sent to the server as one chunk.
+         */
+        private int validationWindow;
+    }
+}
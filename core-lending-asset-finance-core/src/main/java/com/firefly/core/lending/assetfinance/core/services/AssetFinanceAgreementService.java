@@ -20,8 +20,14 @@ package com.firefly.core.lending.assetfinance.core.services;
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAgreementDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -38,17 +44,25 @@ public interface AssetFinanceAgreementService {
      * Retrieve a paginated list of asset finance agreements with optional filtering and sorting.
      *
      * @param filterRequest the filter criteria including pagination, sorting, and search parameters
+     * @param countMode how the total number of elements is computed
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
      * @return a Mono emitting a PaginationResponse containing the list of agreements
      */
-    Mono<PaginationResponse<AssetFinanceAgreementDTO>> findAll(FilterRequest<AssetFinanceAgreementDTO> filterRequest);
+    Mono<PaginationResponse<AssetFinanceAgreementDTO>> findAll(FilterRequest<AssetFinanceAgreementDTO> filterRequest, CountMode countMode, Set<String> fields);
 
     /**
-     * Create a new asset finance agreement.
+     * Retrieve agreements using keyset pagination in the order of the filter request's sort, newest first by default.
+     * <p>
+     * Unlike {@link #findAll}, the cost of a page does not grow with its depth.
+     * </p>
      *
-     * @param dto the agreement data to create
-     * @return a Mono emitting the created agreement with generated ID and timestamps
+     * @param filterRequest the filter criteria and sort applied to every page, or null for none; its pagination
+     *                      settings other than the sort are ignored
+     * @param pageRequest the cursor returned with the previous page and the page size
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
+     * @return a Mono emitting the page and the cursor of the next page
      */
-    Mono<AssetFinanceAgreementDTO> create(AssetFinanceAgreementDTO dto);
+    Mono<CursorPageResponse<AssetFinanceAgreementDTO>> findAllByCursor(FilterRequest<AssetFinanceAgreementDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields);
 
     /**
      * Retrieve a specific asset finance agreement by its unique identifier.
@@ -58,14 +72,39 @@ public interface AssetFinanceAgreementService {
      */
     Mono<AssetFinanceAgreementDTO> getById(UUID assetFinanceAgreementId);
 
+    /**
+     * Create a new asset finance agreement.
+     *
+     * @param dto the agreement data to create
+     * @return a Mono emitting the created agreement with generated ID and timestamps
+     */
+    Mono<AssetFinanceAgreementDTO> create(AssetFinanceAgreementDTO dto);
+
     /**
      * Update an existing asset finance agreement.
      *
      * @param assetFinanceAgreementId the unique identifier of the agreement to update
      * @param dto the updated agreement data
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono emitting the updated agreement
      */
-    Mono<AssetFinanceAgreementDTO> update(UUID assetFinanceAgreementId, AssetFinanceAgreementDTO dto);
+    Mono<AssetFinanceAgreementDTO> update(UUID assetFinanceAgreementId, AssetFinanceAgreementDTO dto, Long expectedVersion);
+
+    /**
+     * Apply a JSON Merge Patch (RFC 7396) to an existing asset finance agreement.
+     * <p>
+     * Only the fields present in the patch are written, in a single statement; a field set to
+     * null is cleared. The id, the parent reference and the audit timestamps cannot be patched.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the agreement to patch
+     * @param patch the merge patch document, keyed by DTO property
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
+     * @return a Mono emitting the patched agreement
+     */
+    Mono<AssetFinanceAgreementDTO> patch(UUID assetFinanceAgreementId, Map<String, Object> patch, Long expectedVersion);
 
     /**
      * Delete an asset finance agreement.
@@ -75,7 +114,21 @@ public interface AssetFinanceAgreementService {
      * </p>
      *
      * @param assetFinanceAgreementId the unique identifier of the agreement to delete
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono that completes when the deletion is successful
      */
-    Mono<Void> delete(UUID assetFinanceAgreementId);
+    Mono<Void> delete(UUID assetFinanceAgreementId, Long expectedVersion);
+
+    /**
+     * Delete several agreements in a single statement.
+     * <p>
+     * Ids that do not exist are skipped rather than failing the batch; the result lists the ids
+     * that were actually deleted.
+     * </p>
+     *
+     * @param assetFinanceAgreementIds the unique identifiers of the agreements to delete
+     * @return a Mono emitting the ids of the deleted agreements
+     */
+    Mono<List<UUID>> deleteAll(List<UUID> assetFinanceAgreementIds);
 }
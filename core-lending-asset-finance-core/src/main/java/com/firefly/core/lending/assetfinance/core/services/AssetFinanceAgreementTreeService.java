@@ -0,0 +1,65 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.services;
+
+import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAgreementTreeDTO;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Service interface for reading an Asset Finance Agreement together with its whole tree of
+ * related records.
+ * <p>
+ * Replaces the 1 + N + N&times;6 request fan-out otherwise needed to render an agreement: the tree
+ * is assembled from one query per table, independently of the number of assets.
+ * </p>
+ * <p>
+ * That is eight statements (the agreement, usually served from cache, and seven child tables) run
+ * in one read-only transaction, not a single statement. A single statement would have to return
+ * eight row shapes in one result, either as a UNION padded to the widest table or as nested
+ * {@code json_agg} documents. Both bypass the entity mapping, and the JSON form builds the whole
+ * tree in one row on the server. Each per-table query is a bounded scan of its
+ * {@code (parent, created_at DESC, id DESC)} index.
+ * </p>
+ * <p>
+ * The tree is not streamed either: the rows of all eight statements are collected and returned as
+ * one document. To bound what a single request can materialize, the assets, end options and the
+ * five per-asset child lists together are kept within {@link #MAX_ROWS}; when the requested
+ * limits would exceed it, the child limit is lowered until they fit.
+ * </p>
+ */
+public interface AssetFinanceAgreementTreeService {
+
+    int DEFAULT_ASSET_LIMIT = 100;
+    int DEFAULT_CHILD_LIMIT = 20;
+    int MAX_LIMIT = 1000;
+    int MAX_ROWS = 20_000;
+
+    /**
+     * Retrieve an agreement with its end options and its assets, each asset carrying its latest
+     * usage records, service events, delivery, pickup and return records.
+     *
+     * @param assetFinanceAgreementId the unique identifier of the agreement
+     * @param assetLimit the maximum number of assets (newest first)
+     * @param childLimit the maximum number of records per child list (newest first), lowered to keep
+     *                   the whole tree within {@link #MAX_ROWS}
+     * @return a Mono emitting the agreement tree if the agreement exists
+     */
+    Mono<AssetFinanceAgreementTreeDTO> getTree(UUID assetFinanceAgreementId, int assetLimit, int childLimit);
+}
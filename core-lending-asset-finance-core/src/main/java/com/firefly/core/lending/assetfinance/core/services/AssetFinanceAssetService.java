@@ -20,8 +20,14 @@ package com.firefly.core.lending.assetfinance.core.services;
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAssetDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -39,18 +45,26 @@ public interface AssetFinanceAssetService {
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param filterRequest the filter criteria including pagination, sorting, and search parameters
+     * @param countMode how the total number of elements is computed
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
      * @return a Mono emitting a PaginationResponse containing the list of assets
      */
-    Mono<PaginationResponse<AssetFinanceAssetDTO>> findAll(UUID assetFinanceAgreementId, FilterRequest<AssetFinanceAssetDTO> filterRequest);
+    Mono<PaginationResponse<AssetFinanceAssetDTO>> findAll(UUID assetFinanceAgreementId, FilterRequest<AssetFinanceAssetDTO> filterRequest, CountMode countMode, Set<String> fields);
 
     /**
-     * Create a new asset under a specific agreement.
+     * Retrieve assets of a specific agreement using keyset pagination in the order of the filter request's sort, newest first by default.
+     * <p>
+     * Unlike {@link #findAll}, the cost of a page does not grow with its depth.
+     * </p>
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
-     * @param dto the asset data to create
-     * @return a Mono emitting the created asset with generated ID and timestamps
+     * @param filterRequest the filter criteria and sort applied to every page, or null for none; its pagination
+     *                      settings other than the sort are ignored
+     * @param pageRequest the cursor returned with the previous page and the page size
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
+     * @return a Mono emitting the page and the cursor of the next page
      */
-    Mono<AssetFinanceAssetDTO> create(UUID assetFinanceAgreementId, AssetFinanceAssetDTO dto);
+    Mono<CursorPageResponse<AssetFinanceAssetDTO>> findAllByCursor(UUID assetFinanceAgreementId, FilterRequest<AssetFinanceAssetDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields);
 
     /**
      * Retrieve a specific asset by its unique identifier.
@@ -61,15 +75,42 @@ public interface AssetFinanceAssetService {
      */
     Mono<AssetFinanceAssetDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId);
 
+    /**
+     * Create a new asset under a specific agreement.
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param dto the asset data to create
+     * @return a Mono emitting the created asset with generated ID and timestamps
+     */
+    Mono<AssetFinanceAssetDTO> create(UUID assetFinanceAgreementId, AssetFinanceAssetDTO dto);
+
     /**
      * Update an existing asset.
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the asset to update
      * @param dto the updated asset data
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono emitting the updated asset
      */
-    Mono<AssetFinanceAssetDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, AssetFinanceAssetDTO dto);
+    Mono<AssetFinanceAssetDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, AssetFinanceAssetDTO dto, Long expectedVersion);
+
+    /**
+     * Apply a JSON Merge Patch (RFC 7396) to an existing asset.
+     * <p>
+     * Only the fields present in the patch are written, in a single statement; a field set to
+     * null is cleared. The id, the parent reference and the audit timestamps cannot be patched.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the asset to patch
+     * @param patch the merge patch document, keyed by DTO property
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
+     * @return a Mono emitting the patched asset
+     */
+    Mono<AssetFinanceAssetDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, Map<String, Object> patch, Long expectedVersion);
 
     /**
      * Delete an asset.
@@ -80,7 +121,22 @@ public interface AssetFinanceAssetService {
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the asset to delete
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono that completes when the deletion is successful
      */
-    Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId);
+    Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, Long expectedVersion);
+
+    /**
+     * Delete several assets in a single statement.
+     * <p>
+     * Ids that do not exist or belong to another agreement are skipped
+     * rather than failing the batch; the result lists the ids that were actually deleted.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetIds the unique identifiers of the assets to delete
+     * @return a Mono emitting the ids of the deleted assets
+     */
+    Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, List<UUID> assetFinanceAssetIds);
 }
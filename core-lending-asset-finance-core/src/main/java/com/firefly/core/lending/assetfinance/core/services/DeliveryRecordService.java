@@ -20,8 +20,14 @@ package com.firefly.core.lending.assetfinance.core.services;
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.DeliveryRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -40,19 +46,27 @@ public interface DeliveryRecordService {
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the parent asset
      * @param filterRequest the filter criteria including pagination, sorting, and search parameters
+     * @param countMode how the total number of elements is computed
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
      * @return a Mono emitting a PaginationResponse containing the list of delivery records
      */
-    Mono<PaginationResponse<DeliveryRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<DeliveryRecordDTO> filterRequest);
+    Mono<PaginationResponse<DeliveryRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<DeliveryRecordDTO> filterRequest, CountMode countMode, Set<String> fields);
 
     /**
-     * Create a new delivery record for a specific asset.
+     * Retrieve delivery records of a specific asset using keyset pagination in the order of the filter request's sort, newest first by default.
+     * <p>
+     * Unlike {@link #findAll}, the cost of a page does not grow with its depth.
+     * </p>
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the parent asset
-     * @param dto the delivery record data to create
-     * @return a Mono emitting the created delivery record with generated ID and timestamps
+     * @param filterRequest the filter criteria and sort applied to every page, or null for none; its pagination
+     *                      settings other than the sort are ignored
+     * @param pageRequest the cursor returned with the previous page and the page size
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
+     * @return a Mono emitting the page and the cursor of the next page
      */
-    Mono<DeliveryRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, DeliveryRecordDTO dto);
+    Mono<CursorPageResponse<DeliveryRecordDTO>> findAllByCursor(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<DeliveryRecordDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields);
 
     /**
      * Retrieve a specific delivery record by its unique identifier.
@@ -64,6 +78,16 @@ public interface DeliveryRecordService {
      */
     Mono<DeliveryRecordDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId);
 
+    /**
+     * Create a new delivery record for a specific asset.
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the parent asset
+     * @param dto the delivery record data to create
+     * @return a Mono emitting the created delivery record with generated ID and timestamps
+     */
+    Mono<DeliveryRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, DeliveryRecordDTO dto);
+
     /**
      * Update an existing delivery record.
      *
@@ -71,9 +95,28 @@ public interface DeliveryRecordService {
      * @param assetFinanceAssetId the unique identifier of the parent asset
      * @param deliveryRecordId the unique identifier of the delivery record to update
      * @param dto the updated delivery record data
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono emitting the updated delivery record
      */
-    Mono<DeliveryRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId, DeliveryRecordDTO dto);
+    Mono<DeliveryRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId, DeliveryRecordDTO dto, Long expectedVersion);
+
+    /**
+     * Apply a JSON Merge Patch (RFC 7396) to an existing delivery record.
+     * <p>
+     * Only the fields present in the patch are written, in a single statement; a field set to
+     * null is cleared. The id, the parent reference and the audit timestamps cannot be patched.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the parent asset
+     * @param deliveryRecordId the unique identifier of the delivery record to patch
+     * @param patch the merge patch document, keyed by DTO property
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
+     * @return a Mono emitting the patched delivery record
+     */
+    Mono<DeliveryRecordDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId, Map<String, Object> patch, Long expectedVersion);
 
     /**
      * Delete a delivery record.
@@ -81,8 +124,24 @@ public interface DeliveryRecordService {
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the parent asset
      * @param deliveryRecordId the unique identifier of the delivery record to delete
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono that completes when the deletion is successful
      */
-    Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId);
+    Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId, Long expectedVersion);
+
+    /**
+     * Delete several delivery records in a single statement.
+     * <p>
+     * Ids that do not exist or belong to another asset are skipped
+     * rather than failing the batch; the result lists the ids that were actually deleted.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the parent asset
+     * @param deliveryRecordIds the unique identifiers of the delivery records to delete
+     * @return a Mono emitting the ids of the deleted delivery records
+     */
+    Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, List<UUID> deliveryRecordIds);
 }
 
@@ -20,8 +20,14 @@ package com.firefly.core.lending.assetfinance.core.services;
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.EndOptionDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -39,18 +45,26 @@ public interface EndOptionService {
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param filterRequest the filter criteria including pagination, sorting, and search parameters
+     * @param countMode how the total number of elements is computed
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
      * @return a Mono emitting a PaginationResponse containing the list of end options
      */
-    Mono<PaginationResponse<EndOptionDTO>> findAll(UUID assetFinanceAgreementId, FilterRequest<EndOptionDTO> filterRequest);
+    Mono<PaginationResponse<EndOptionDTO>> findAll(UUID assetFinanceAgreementId, FilterRequest<EndOptionDTO> filterRequest, CountMode countMode, Set<String> fields);
 
     /**
-     * Create a new end option for a specific agreement.
+     * Retrieve end options of a specific agreement using keyset pagination in the order of the filter request's sort, newest first by default.
+     * <p>
+     * Unlike {@link #findAll}, the cost of a page does not grow with its depth.
+     * </p>
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
-     * @param dto the end option data to create
-     * @return a Mono emitting the created end option with generated ID and timestamps
+     * @param filterRequest the filter criteria and sort applied to every page, or null for none; its pagination
+     *                      settings other than the sort are ignored
+     * @param pageRequest the cursor returned with the previous page and the page size
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
+     * @return a Mono emitting the page and the cursor of the next page
      */
-    Mono<EndOptionDTO> create(UUID assetFinanceAgreementId, EndOptionDTO dto);
+    Mono<CursorPageResponse<EndOptionDTO>> findAllByCursor(UUID assetFinanceAgreementId, FilterRequest<EndOptionDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields);
 
     /**
      * Retrieve a specific end option by its unique identifier.
@@ -61,22 +75,64 @@ public interface EndOptionService {
      */
     Mono<EndOptionDTO> getById(UUID assetFinanceAgreementId, UUID endOptionId);
 
+    /**
+     * Create a new end option for a specific agreement.
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param dto the end option data to create
+     * @return a Mono emitting the created end option with generated ID and timestamps
+     */
+    Mono<EndOptionDTO> create(UUID assetFinanceAgreementId, EndOptionDTO dto);
+
     /**
      * Update an existing end option.
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param endOptionId the unique identifier of the end option to update
      * @param dto the updated end option data
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono emitting the updated end option
      */
-    Mono<EndOptionDTO> update(UUID assetFinanceAgreementId, UUID endOptionId, EndOptionDTO dto);
+    Mono<EndOptionDTO> update(UUID assetFinanceAgreementId, UUID endOptionId, EndOptionDTO dto, Long expectedVersion);
+
+    /**
+     * Apply a JSON Merge Patch (RFC 7396) to an existing end option.
+     * <p>
+     * Only the fields present in the patch are written, in a single statement; a field set to
+     * null is cleared. The id, the parent reference and the audit timestamps cannot be patched.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param endOptionId the unique identifier of the end option to patch
+     * @param patch the merge patch document, keyed by DTO property
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
+     * @return a Mono emitting the patched end option
+     */
+    Mono<EndOptionDTO> patch(UUID assetFinanceAgreementId, UUID endOptionId, Map<String, Object> patch, Long expectedVersion);
 
     /**
      * Delete an end option.
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param endOptionId the unique identifier of the end option to delete
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono that completes when the deletion is successful
      */
-    Mono<Void> delete(UUID assetFinanceAgreementId, UUID endOptionId);
+    Mono<Void> delete(UUID assetFinanceAgreementId, UUID endOptionId, Long expectedVersion);
+
+    /**
+     * Delete several end options in a single statement.
+     * <p>
+     * Ids that do not exist or belong to another agreement are skipped
+     * rather than failing the batch; the result lists the ids that were actually deleted.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param endOptionIds the unique identifiers of the end options to delete
+     * @return a Mono emitting the ids of the deleted end options
+     */
+    Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, List<UUID> endOptionIds);
 }
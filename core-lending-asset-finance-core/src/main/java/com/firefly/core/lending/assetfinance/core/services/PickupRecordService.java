@@ -20,8 +20,14 @@ package com.firefly.core.lending.assetfinance.core.services;
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.PickupRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -40,19 +46,27 @@ public interface PickupRecordService {
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the parent asset
      * @param filterRequest the filter criteria including pagination, sorting, and search parameters
+     * @param countMode how the total number of elements is computed
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
      * @return a Mono emitting a PaginationResponse containing the list of pickup records
      */
-    Mono<PaginationResponse<PickupRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<PickupRecordDTO> filterRequest);
+    Mono<PaginationResponse<PickupRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<PickupRecordDTO> filterRequest, CountMode countMode, Set<String> fields);
 
     /**
-     * Create a new pickup record for a specific asset.
+     * Retrieve pickup records of a specific asset using keyset pagination in the order of the filter request's sort, newest first by default.
+     * <p>
+     * Unlike {@link #findAll}, the cost of a page does not grow with its depth.
+     * </p>
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the parent asset
-     * @param dto the pickup record data to create
-     * @return a Mono emitting the created pickup record with generated ID and timestamps
+     * @param filterRequest the filter criteria and sort applied to every page, or null for none; its pagination
+     *                      settings other than the sort are ignored
+     * @param pageRequest the cursor returned with the previous page and the page size
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
+     * @return a Mono emitting the page and the cursor of the next page
      */
-    Mono<PickupRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, PickupRecordDTO dto);
+    Mono<CursorPageResponse<PickupRecordDTO>> findAllByCursor(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<PickupRecordDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields);
 
     /**
      * Retrieve a specific pickup record by its unique identifier.
@@ -64,6 +78,16 @@ public interface PickupRecordService {
      */
     Mono<PickupRecordDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId);
 
+    /**
+     * Create a new pickup record for a specific asset.
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the parent asset
+     * @param dto the pickup record data to create
+     * @return a Mono emitting the created pickup record with generated ID and timestamps
+     */
+    Mono<PickupRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, PickupRecordDTO dto);
+
     /**
      * Update an existing pickup record.
      *
@@ -71,9 +95,28 @@ public interface PickupRecordService {
      * @param assetFinanceAssetId the unique identifier of the parent asset
      * @param pickupRecordId the unique identifier of the pickup record to update
      * @param dto the updated pickup record data
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono emitting the updated pickup record
      */
-    Mono<PickupRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId, PickupRecordDTO dto);
+    Mono<PickupRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId, PickupRecordDTO dto, Long expectedVersion);
+
+    /**
+     * Apply a JSON Merge Patch (RFC 7396) to an existing pickup record.
+     * <p>
+     * Only the fields present in the patch are written, in a single statement; a field set to
+     * null is cleared. The id, the parent reference and the audit timestamps cannot be patched.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the parent asset
+     * @param pickupRecordId the unique identifier of the pickup record to patch
+     * @param patch the merge patch document, keyed by DTO property
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
+     * @return a Mono emitting the patched pickup record
+     */
+    Mono<PickupRecordDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId, Map<String, Object> patch, Long expectedVersion);
 
     /**
      * Delete a pickup record.
@@ -81,8 +124,24 @@ public interface PickupRecordService {
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the parent asset
      * @param pickupRecordId the unique identifier of the pickup record to delete
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono that completes when the deletion is successful
      */
-    Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId);
+    Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId, Long expectedVersion);
+
+    /**
+     * Delete several pickup records in a single statement.
+     * <p>
+     * Ids that do not exist or belong to another asset are skipped
+     * rather than failing the batch; the result lists the ids that were actually deleted.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the parent asset
+     * @param pickupRecordIds the unique identifiers of the pickup records to delete
+     * @return a Mono emitting the ids of the deleted pickup records
+     */
+    Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, List<UUID> pickupRecordIds);
 }
 
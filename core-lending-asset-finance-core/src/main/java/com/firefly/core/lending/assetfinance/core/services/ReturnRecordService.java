@@ -20,8 +20,14 @@ package com.firefly.core.lending.assetfinance.core.services;
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.ReturnRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -41,19 +47,27 @@ public interface ReturnRecordService {
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the parent asset
      * @param filterRequest the filter criteria including pagination, sorting, and search parameters
+     * @param countMode how the total number of elements is computed
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
      * @return a Mono emitting a PaginationResponse containing the list of return records
      */
-    Mono<PaginationResponse<ReturnRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<ReturnRecordDTO> filterRequest);
+    Mono<PaginationResponse<ReturnRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<ReturnRecordDTO> filterRequest, CountMode countMode, Set<String> fields);
 
     /**
-     * Create a new return record for a specific asset.
+     * Retrieve return records of a specific asset using keyset pagination in the order of the filter request's sort, newest first by default.
+     * <p>
+     * Unlike {@link #findAll}, the cost of a page does not grow with its depth.
+     * </p>
      *
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the parent asset
-     * @param dto the return record data to create
-     * @return a Mono emitting the created return record with generated ID and timestamps
+     * @param filterRequest the filter criteria and sort applied to every page, or null for none; its pagination
+     *                      settings other than the sort are ignored
+     * @param pageRequest the cursor returned with the previous page and the page size
+     * @param fields the properties to load; others are returned as null. Null or empty loads all properties
+     * @return a Mono emitting the page and the cursor of the next page
      */
-    Mono<ReturnRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, ReturnRecordDTO dto);
+    Mono<CursorPageResponse<ReturnRecordDTO>> findAllByCursor(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<ReturnRecordDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields);
 
     /**
      * Retrieve a specific return record by its unique identifier.
@@ -65,6 +79,16 @@ public interface ReturnRecordService {
      */
     Mono<ReturnRecordDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId);
 
+    /**
+     * Create a new return record for a specific asset.
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the parent asset
+     * @param dto the return record data to create
+     * @return a Mono emitting the created return record with generated ID and timestamps
+     */
+    Mono<ReturnRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, ReturnRecordDTO dto);
+
     /**
      * Update an existing return record.
      *
@@ -72,9 +96,28 @@ public interface ReturnRecordService {
      * @param assetFinanceAssetId the unique identifier of the parent asset
      * @param returnRecordId the unique identifier of the return record to update
      * @param dto the updated return record data
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono emitting the updated return record
      */
-    Mono<ReturnRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId, ReturnRecordDTO dto);
+    Mono<ReturnRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId, ReturnRecordDTO dto, Long expectedVersion);
+
+    /**
+     * Apply a JSON Merge Patch (RFC 7396) to an existing return record.
+     * <p>
+     * Only the fields present in the patch are written, in a single statement; a field set to
+     * null is cleared. The id, the parent reference and the audit timestamps cannot be patched.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the parent asset
+     * @param returnRecordId the unique identifier of the return record to patch
+     * @param patch the merge patch document, keyed by DTO property
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
+     * @return a Mono emitting the patched return record
+     */
+    Mono<ReturnRecordDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId, Map<String, Object> patch, Long expectedVersion);
 
     /**
      * Delete a return record.
@@ -82,7 +125,23 @@ public interface ReturnRecordService {
      * @param assetFinanceAgreementId the unique identifier of the parent agreement
      * @param assetFinanceAssetId the unique identifier of the parent asset
      * @param returnRecordId the unique identifier of the return record to delete
+     * @param expectedVersion the version the caller last read, or null to skip the check; a stale
+     * version fails with {@code VersionConflictException}
      * @return a Mono that completes when the deletion is successful
      */
-    Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId);
+    Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId, Long expectedVersion);
+
+    /**
+     * Delete several return records in a single statement.
+     * <p>
+     * Ids that do not exist or belong to another asset are skipped
+     * rather than failing the batch; the result lists the ids that were actually deleted.
+     * </p>
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the parent asset
+     * @param returnRecordIds the unique identifiers of the return records to delete
+     * @return a Mono emitting the ids of the deleted return records
+     */
+    Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, List<UUID> returnRecordIds);
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.services;
+
+import com.firefly.core.lending.assetfinance.interfaces.dtos.BulkItemResultDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import reactor.core.publisher.Flux;
+
+/**
+ * Service interface for high-volume ingestion of Usage Records, e.g. odometer readings posted by
+ * telematics gateways.
+ */
+public interface UsageRecordIngestionService {
+
+    /**
+     * Validate and insert usage records of any number of assets.
+     * <p>
+     * Records are consumed as they arrive and written with multi-row statements, committing every
+     * {@code asset-finance.ingestion.transaction-size} records. Invalid records and records of
+     * unknown assets are rejected without affecting the others.
+     * </p>
+     *
+     * @param records the usage records to create, each naming its asset
+     * @return a Flux emitting one result per record, in request order
+     */
+    Flux<BulkItemResultDTO> createAll(Flux<UsageRecordDTO> records);
+}
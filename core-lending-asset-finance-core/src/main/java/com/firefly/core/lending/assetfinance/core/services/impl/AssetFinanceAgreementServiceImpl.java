@@ -18,20 +18,40 @@
 package com.firefly.core.lending.assetfinance.core.services.impl;
 
 import org.fireflyframework.core.filters.FilterRequest;
-import org.fireflyframework.core.filters.FilterUtils;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.cache.AgreementCache;
+import com.firefly.core.lending.assetfinance.core.cache.AssetOwnershipCache;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.commands.MergePatchFactory;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDeleteFactory;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedFilterFactory;
 import com.firefly.core.lending.assetfinance.core.mappers.AssetFinanceAgreementMapper;
 import com.firefly.core.lending.assetfinance.core.services.AssetFinanceAgreementService;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAgreementDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAgreement;
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAsset;
+import com.firefly.core.lending.assetfinance.models.entities.DeliveryRecord;
+import com.firefly.core.lending.assetfinance.models.entities.EndOption;
+import com.firefly.core.lending.assetfinance.models.entities.PickupRecord;
+import com.firefly.core.lending.assetfinance.models.entities.ReturnRecord;
+import com.firefly.core.lending.assetfinance.models.entities.ServiceEvent;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
 import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAgreementRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
+import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -41,13 +61,26 @@ public class AssetFinanceAgreementServiceImpl implements AssetFinanceAgreementSe
 
     private final AssetFinanceAgreementRepository repository;
     private final AssetFinanceAgreementMapper mapper;
+    private final ScopedFilterFactory filterFactory;
+    private final MergePatchFactory patchFactory;
+    private final ScopedDeleteFactory deleteFactory;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final AgreementCache agreementCache;
+    private final AssetOwnershipCache ownershipCache;
 
     @Override
-    public Mono<PaginationResponse<AssetFinanceAgreementDTO>> findAll(FilterRequest<AssetFinanceAgreementDTO> filterRequest) {
-        return FilterUtils.createFilter(
-                AssetFinanceAgreement.class,
-                mapper::toDTO
-        ).filter(filterRequest);
+    @ReadOnlyTransactional
+    public Mono<PaginationResponse<AssetFinanceAgreementDTO>> findAll(FilterRequest<AssetFinanceAgreementDTO> filterRequest, CountMode countMode, Set<String> fields) {
+        return filterFactory.createFilter(AssetFinanceAgreement.class, mapper::toDTO)
+                .filter(filterRequest, Criteria.empty(), countMode, fields);
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Mono<CursorPageResponse<AssetFinanceAgreementDTO>> findAllByCursor(FilterRequest<AssetFinanceAgreementDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields) {
+        return filterFactory.createFilter(AssetFinanceAgreement.class, mapper::toDTO)
+                .filterByCursor(filterRequest, pageRequest, Criteria.empty(), fields);
     }
 
     @Override
@@ -55,41 +88,83 @@ public class AssetFinanceAgreementServiceImpl implements AssetFinanceAgreementSe
         return Mono.just(dto)
                 .map(mapper::toEntity)
                 .flatMap(repository::save)
+                .flatMap(saved -> negativeLookups.recordCreated(AssetFinanceAgreement.class, saved.getAssetFinanceAgreementId()).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(AssetFinanceAgreement.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
+    @ReadOnlyTransactional
     public Mono<AssetFinanceAgreementDTO> getById(UUID assetFinanceAgreementId) {
-        return repository.findById(assetFinanceAgreementId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Asset Finance Agreement not found with id: " + assetFinanceAgreementId
-                )))
+        return negativeLookups.lookup(AssetFinanceAgreement.class, assetFinanceAgreementId,
+                        () -> agreementCache.get(assetFinanceAgreementId, repository::findById))
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Asset Finance Agreement", assetFinanceAgreementId)))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<AssetFinanceAgreementDTO> update(UUID assetFinanceAgreementId, AssetFinanceAgreementDTO dto) {
+    public Mono<AssetFinanceAgreementDTO> update(UUID assetFinanceAgreementId, AssetFinanceAgreementDTO dto, Long expectedVersion) {
         return repository.findById(assetFinanceAgreementId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Asset Finance Agreement not found with id: " + assetFinanceAgreementId
-                )))
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Asset Finance Agreement", assetFinanceAgreementId)))
                 .flatMap(existingAgreement -> {
+                    if (expectedVersion != null && !expectedVersion.equals(existingAgreement.getVersion())) {
+                        return Mono.error(new VersionConflictException("Asset Finance Agreement", assetFinanceAgreementId, expectedVersion, existingAgreement.getVersion()));
+                    }
                     AssetFinanceAgreement updatedEntity = mapper.toEntity(dto);
                     updatedEntity.setAssetFinanceAgreementId(existingAgreement.getAssetFinanceAgreementId());
+                    updatedEntity.setVersion(existingAgreement.getVersion());
                     return repository.save(updatedEntity);
                 })
+                // the trigger may move updated_at past the value saved here, so the next read refills the cache
+                .flatMap(saved -> agreementCache.evict(saved.getAssetFinanceAgreementId()).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(AssetFinanceAgreement.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<Void> delete(UUID assetFinanceAgreementId) {
-        return repository.findById(assetFinanceAgreementId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Asset Finance Agreement not found with id: " + assetFinanceAgreementId
-                )))
-                .flatMap(repository::delete);
+    public Mono<AssetFinanceAgreementDTO> patch(UUID assetFinanceAgreementId, Map<String, Object> patch, Long expectedVersion) {
+        return patchFactory.createPatch(AssetFinanceAgreement.class, AssetFinanceAgreementDTO.class, mapper::toEntity)
+                .apply(assetFinanceAgreementId, patch, Criteria.empty(), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Asset Finance Agreement", assetFinanceAgreementId)))
+                .flatMap(agreementCache::writeThrough)
+                .flatMap(saved -> resultCache.invalidate(AssetFinanceAgreement.class).thenReturn(saved))
+                .map(mapper::toDTO);
+    }
+
+    @Override
+    public Mono<Void> delete(UUID assetFinanceAgreementId, Long expectedVersion) {
+        return deleteFactory.createDelete(AssetFinanceAgreement.class)
+                .byId(assetFinanceAgreementId, Criteria.empty(), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Asset Finance Agreement", assetFinanceAgreementId)))
+                .flatMap(this::evictAgreement)
+                .then(invalidateAll());
+    }
+
+    @Override
+    public Mono<List<UUID>> deleteAll(List<UUID> assetFinanceAgreementIds) {
+        return deleteFactory.createDelete(AssetFinanceAgreement.class)
+                .byIds(assetFinanceAgreementIds, Criteria.empty())
+                .concatMap(deleted -> agreementCache.evict(deleted).thenReturn(deleted))
+                .collectList()
+                .flatMap(deleted -> ownershipCache.evictAgreements(deleted)
+                        .then(invalidateAll())
+                        .thenReturn(deleted));
+    }
+
+    private Mono<Void> evictAgreement(UUID assetFinanceAgreementId) {
+        return agreementCache.evict(assetFinanceAgreementId)
+                .then(ownershipCache.evictAgreement(assetFinanceAgreementId));
+    }
+
+    private Mono<Void> invalidateAll() {
+        return resultCache.invalidate(
+                AssetFinanceAgreement.class,
+                AssetFinanceAsset.class,
+                EndOption.class,
+                ServiceEvent.class,
+                UsageRecord.class,
+                ReturnRecord.class,
+                DeliveryRecord.class,
+                PickupRecord.class);
     }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.services.impl;
+
+import com.firefly.core.lending.assetfinance.core.cache.AgreementCache;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.core.mappers.AssetFinanceAgreementMapper;
+import com.firefly.core.lending.assetfinance.core.mappers.AssetFinanceAssetMapper;
+import com.firefly.core.lending.assetfinance.core.mappers.DeliveryRecordMapper;
+import com.firefly.core.lending.assetfinance.core.mappers.EndOptionMapper;
+import com.firefly.core.lending.assetfinance.core.mappers.PickupRecordMapper;
+import com.firefly.core.lending.assetfinance.core.mappers.ReturnRecordMapper;
+import com.firefly.core.lending.assetfinance.core.mappers.ServiceEventMapper;
+import com.firefly.core.lending.assetfinance.core.mappers.UsageRecordMapper;
+import com.firefly.core.lending.assetfinance.core.services.AssetFinanceAgreementTreeService;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAgreementTreeDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAssetTreeDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.DeliveryRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.PickupRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ReturnRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ServiceEventDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAgreementRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.DeliveryRecordRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.EndOptionRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.PickupRecordRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.ReturnRecordRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.ServiceEventRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.UsageRecordRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class AssetFinanceAgreementTreeServiceImpl implements AssetFinanceAgreementTreeService {
+
+    private static final int CHILD_LISTS_PER_ASSET = 5;
+
+    private final AssetFinanceAgreementRepository agreementRepository;
+    private final AgreementCache agreementCache;
+    private final AssetFinanceAssetRepository assetRepository;
+    private final EndOptionRepository endOptionRepository;
+    private final UsageRecordRepository usageRecordRepository;
+    private final ServiceEventRepository serviceEventRepository;
+    private final DeliveryRecordRepository deliveryRecordRepository;
+    private final PickupRecordRepository pickupRecordRepository;
+    private final ReturnRecordRepository returnRecordRepository;
+
+    private final AssetFinanceAgreementMapper agreementMapper;
+    private final AssetFinanceAssetMapper assetMapper;
+    private final EndOptionMapper endOptionMapper;
+    private final UsageRecordMapper usageRecordMapper;
+    private final ServiceEventMapper serviceEventMapper;
+    private final DeliveryRecordMapper deliveryRecordMapper;
+    private final PickupRecordMapper pickupRecordMapper;
+    private final ReturnRecordMapper returnRecordMapper;
+
+    /**
+     * Runs in a read-only transaction rather than {@link ReadOnlyTransactional}: the seven child
+     * queries are subscribed together, and only a transaction binds one connection before they
+     * start. They are then pipelined on that connection and read one consistent snapshot.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<AssetFinanceAgreementTreeDTO> getTree(UUID assetFinanceAgreementId, int assetLimit, int childLimit) {
+        int assets = Math.clamp(assetLimit, 0, MAX_LIMIT);
+        int children = Math.min(Math.clamp(childLimit, 0, MAX_LIMIT), childBudget(assets));
+
+        return agreementCache.get(assetFinanceAgreementId, agreementRepository::findById)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Asset Finance Agreement", assetFinanceAgreementId)))
+                .flatMap(agreement -> Mono.zip(
+                                assetRepository.findLatestByAssetFinanceAgreementId(assetFinanceAgreementId, assets)
+                                        .map(assetMapper::toDTO).collectList(),
+                                endOptionRepository.findLatestByAssetFinanceAgreementId(assetFinanceAgreementId, children)
+                                        .map(endOptionMapper::toDTO).collectList(),
+                                byAsset(usageRecordRepository.findLatestByAssetFinanceAgreementId(assetFinanceAgreementId, assets, children)
+                                        .map(usageRecordMapper::toDTO), UsageRecordDTO::getAssetFinanceAssetId),
+                                byAsset(serviceEventRepository.findLatestByAssetFinanceAgreementId(assetFinanceAgreementId, assets, children)
+                                        .map(serviceEventMapper::toDTO), ServiceEventDTO::getAssetFinanceAssetId),
+                                byAsset(deliveryRecordRepository.findLatestByAssetFinanceAgreementId(assetFinanceAgreementId, assets, children)
+                                        .map(deliveryRecordMapper::toDTO), DeliveryRecordDTO::getAssetFinanceAssetId),
+                                byAsset(pickupRecordRepository.findLatestByAssetFinanceAgreementId(assetFinanceAgreementId, assets, children)
+                                        .map(pickupRecordMapper::toDTO), PickupRecordDTO::getAssetFinanceAssetId),
+                                byAsset(returnRecordRepository.findLatestByAssetFinanceAgreementId(assetFinanceAgreementId, assets, children)
+                                        .map(returnRecordMapper::toDTO), ReturnRecordDTO::getAssetFinanceAssetId))
+                        .map(tree -> AssetFinanceAgreementTreeDTO.builder()
+                                .agreement(agreementMapper.toDTO(agreement))
+                                .endOptions(tree.getT2())
+                                .assets(tree.getT1().stream()
+                                        .map(asset -> AssetFinanceAssetTreeDTO.builder()
+                                                .asset(asset)
+                                                .usageRecords(tree.getT3().getOrDefault(asset.getAssetFinanceAssetId(), List.of()))
+                                                .serviceEvents(tree.getT4().getOrDefault(asset.getAssetFinanceAssetId(), List.of()))
+                                                .deliveryRecords(tree.getT5().getOrDefault(asset.getAssetFinanceAssetId(), List.of()))
+                                                .pickupRecords(tree.getT6().getOrDefault(asset.getAssetFinanceAssetId(), List.of()))
+                                                .returnRecords(tree.getT7().getOrDefault(asset.getAssetFinanceAssetId(), List.of()))
+                                                .build())
+                                        .toList())
+                                .build()));
+    }
+
+    /**
+     * The largest child limit for which the assets, the end options and the child lists of every
+     * asset stay within {@link #MAX_ROWS}.
+     */
+    static int childBudget(int assets) {
+        return (MAX_ROWS - assets) / (CHILD_LISTS_PER_ASSET * assets + 1);
+    }
+
+    private static <D> Mono<Map<UUID, List<D>>> byAsset(Flux<D> records, Function<D, UUID> assetId) {
+        return records.collect(Collectors.groupingBy(assetId));
+    }
+}
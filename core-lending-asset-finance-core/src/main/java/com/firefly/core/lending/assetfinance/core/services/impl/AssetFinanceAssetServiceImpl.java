@@ -18,20 +18,38 @@
 package com.firefly.core.lending.assetfinance.core.services.impl;
 
 import org.fireflyframework.core.filters.FilterRequest;
-import org.fireflyframework.core.filters.FilterUtils;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.cache.AssetOwnershipCache;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.cache.SingleFlight;
+import com.firefly.core.lending.assetfinance.core.commands.MergePatchFactory;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDeleteFactory;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedFilterFactory;
 import com.firefly.core.lending.assetfinance.core.mappers.AssetFinanceAssetMapper;
 import com.firefly.core.lending.assetfinance.core.services.AssetFinanceAssetService;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAssetDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAsset;
+import com.firefly.core.lending.assetfinance.models.entities.DeliveryRecord;
+import com.firefly.core.lending.assetfinance.models.entities.PickupRecord;
+import com.firefly.core.lending.assetfinance.models.entities.ReturnRecord;
+import com.firefly.core.lending.assetfinance.models.entities.ServiceEvent;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
 import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
+import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -41,13 +59,26 @@ public class AssetFinanceAssetServiceImpl implements AssetFinanceAssetService {
 
     private final AssetFinanceAssetRepository repository;
     private final AssetFinanceAssetMapper mapper;
+    private final ScopedFilterFactory filterFactory;
+    private final MergePatchFactory patchFactory;
+    private final ScopedDeleteFactory deleteFactory;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final AssetOwnershipCache ownershipCache;
+    private final SingleFlight singleFlight;
 
     @Override
-    public Mono<PaginationResponse<AssetFinanceAssetDTO>> findAll(UUID assetFinanceAgreementId, FilterRequest<AssetFinanceAssetDTO> filterRequest) {
-        return FilterUtils.createFilter(
-                AssetFinanceAsset.class,
-                mapper::toDTO
-        ).filter(filterRequest);
+    @ReadOnlyTransactional
+    public Mono<PaginationResponse<AssetFinanceAssetDTO>> findAll(UUID assetFinanceAgreementId, FilterRequest<AssetFinanceAssetDTO> filterRequest, CountMode countMode, Set<String> fields) {
+        return filterFactory.createFilter(AssetFinanceAsset.class, mapper::toDTO)
+                .filter(filterRequest, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId), countMode, fields);
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Mono<CursorPageResponse<AssetFinanceAssetDTO>> findAllByCursor(UUID assetFinanceAgreementId, FilterRequest<AssetFinanceAssetDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields) {
+        return filterFactory.createFilter(AssetFinanceAsset.class, mapper::toDTO)
+                .filterByCursor(filterRequest, pageRequest, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId), fields);
     }
 
     @Override
@@ -56,42 +87,77 @@ public class AssetFinanceAssetServiceImpl implements AssetFinanceAssetService {
                 .doOnNext(d -> d.setAssetFinanceAgreementId(assetFinanceAgreementId))
                 .map(mapper::toEntity)
                 .flatMap(repository::save)
+                .flatMap(saved -> negativeLookups.recordCreated(AssetFinanceAsset.class, saved.getAssetFinanceAssetId()).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(AssetFinanceAsset.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
+    @ReadOnlyTransactional
     public Mono<AssetFinanceAssetDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId) {
-        return repository.findById(assetFinanceAssetId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Asset Finance Asset not found with id: " + assetFinanceAssetId
-                )))
+        // every asset write evicts the asset once its statement ran and again on commit, which advances the
+        // ownership generation, so a read that may have seen the row before the write is not joined
+        return negativeLookups.lookup(AssetFinanceAsset.class, assetFinanceAssetId,
+                        () -> singleFlight.execute("asset", List.of(assetFinanceAssetId, assetFinanceAgreementId, ownershipCache.generation()),
+                                () -> repository.findByAssetFinanceAssetIdAndAssetFinanceAgreementId(assetFinanceAssetId, assetFinanceAgreementId)))
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Asset Finance Asset", assetFinanceAssetId)))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<AssetFinanceAssetDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, AssetFinanceAssetDTO dto) {
-        return repository.findById(assetFinanceAssetId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Asset Finance Asset not found with id: " + assetFinanceAssetId
-                )))
+    public Mono<AssetFinanceAssetDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, AssetFinanceAssetDTO dto, Long expectedVersion) {
+        return repository.findByAssetFinanceAssetIdAndAssetFinanceAgreementId(assetFinanceAssetId, assetFinanceAgreementId)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Asset Finance Asset", assetFinanceAssetId)))
                 .flatMap(existing -> {
+                    if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+                        return Mono.error(new VersionConflictException("Asset Finance Asset", assetFinanceAssetId, expectedVersion, existing.getVersion()));
+                    }
                     AssetFinanceAsset updatedEntity = mapper.toEntity(dto);
                     updatedEntity.setAssetFinanceAssetId(existing.getAssetFinanceAssetId());
+                    updatedEntity.setVersion(existing.getVersion());
                     updatedEntity.setAssetFinanceAgreementId(assetFinanceAgreementId);
                     return repository.save(updatedEntity);
                 })
+                .flatMap(saved -> ownershipCache.evict(assetFinanceAssetId).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(AssetFinanceAsset.class).thenReturn(saved))
+                .map(mapper::toDTO);
+    }
+
+    @Override
+    public Mono<AssetFinanceAssetDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, Map<String, Object> patch, Long expectedVersion) {
+        return patchFactory.createPatch(AssetFinanceAsset.class, AssetFinanceAssetDTO.class, mapper::toEntity, "assetFinanceAgreementId")
+                .apply(assetFinanceAssetId, patch, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Asset Finance Asset", assetFinanceAssetId)))
+                .flatMap(saved -> ownershipCache.evict(assetFinanceAssetId).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(AssetFinanceAsset.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId) {
-        return repository.findById(assetFinanceAssetId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Asset Finance Asset not found with id: " + assetFinanceAssetId
-                )))
-                .flatMap(repository::delete);
+    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, Long expectedVersion) {
+        return deleteFactory.createDelete(AssetFinanceAsset.class)
+                .byId(assetFinanceAssetId, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Asset Finance Asset", assetFinanceAssetId)))
+                .flatMap(ownershipCache::evict)
+                .then(invalidateAll());
+    }
+
+    @Override
+    public Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, List<UUID> assetFinanceAssetIds) {
+        return deleteFactory.createDelete(AssetFinanceAsset.class)
+                .byIds(assetFinanceAssetIds, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId))
+                .concatMap(deleted -> ownershipCache.evict(deleted).thenReturn(deleted))
+                .collectList()
+                .flatMap(deleted -> invalidateAll().thenReturn(deleted));
+    }
+
+    private Mono<Void> invalidateAll() {
+        return resultCache.invalidate(
+                AssetFinanceAsset.class,
+                ServiceEvent.class,
+                UsageRecord.class,
+                ReturnRecord.class,
+                DeliveryRecord.class,
+                PickupRecord.class);
     }
 }
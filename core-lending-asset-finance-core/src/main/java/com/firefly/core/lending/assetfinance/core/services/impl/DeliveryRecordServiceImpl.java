@@ -18,20 +18,32 @@
 package com.firefly.core.lending.assetfinance.core.services.impl;
 
 import org.fireflyframework.core.filters.FilterRequest;
-import org.fireflyframework.core.filters.FilterUtils;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.commands.MergePatchFactory;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDeleteFactory;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ParentScope;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedFilterFactory;
 import com.firefly.core.lending.assetfinance.core.mappers.DeliveryRecordMapper;
 import com.firefly.core.lending.assetfinance.core.services.DeliveryRecordService;
+import com.firefly.core.lending.assetfinance.core.validators.AssetOwnershipValidator;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.DeliveryRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import com.firefly.core.lending.assetfinance.models.entities.DeliveryRecord;
 import com.firefly.core.lending.assetfinance.models.repositories.DeliveryRecordRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -41,58 +53,93 @@ public class DeliveryRecordServiceImpl implements DeliveryRecordService {
 
     private final DeliveryRecordRepository repository;
     private final DeliveryRecordMapper mapper;
+    private final ScopedFilterFactory filterFactory;
+    private final MergePatchFactory patchFactory;
+    private final ScopedDeleteFactory deleteFactory;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final AssetOwnershipValidator ownershipValidator;
 
     @Override
-    public Mono<PaginationResponse<DeliveryRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<DeliveryRecordDTO> filterRequest) {
-        return FilterUtils.createFilter(
-                DeliveryRecord.class,
-                mapper::toDTO
-        ).filter(filterRequest);
+    @ReadOnlyTransactional
+    public Mono<PaginationResponse<DeliveryRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<DeliveryRecordDTO> filterRequest, CountMode countMode, Set<String> fields) {
+        return filterFactory.createFilter(DeliveryRecord.class, mapper::toDTO)
+                .filter(filterRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), countMode, fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Mono<CursorPageResponse<DeliveryRecordDTO>> findAllByCursor(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<DeliveryRecordDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields) {
+        return filterFactory.createFilter(DeliveryRecord.class, mapper::toDTO)
+                .filterByCursor(filterRequest, pageRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
     }
 
     @Override
     public Mono<DeliveryRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, DeliveryRecordDTO dto) {
-        return Mono.just(dto)
+        return ownershipValidator.validate(assetFinanceAgreementId, assetFinanceAssetId)
+                .thenReturn(dto)
                 .doOnNext(d -> d.setAssetFinanceAssetId(assetFinanceAssetId))
                 .map(mapper::toEntity)
                 .flatMap(repository::save)
+                .flatMap(saved -> negativeLookups.recordCreated(DeliveryRecord.class, saved.getDeliveryRecordId()).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(DeliveryRecord.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
+    @ReadOnlyTransactional
     public Mono<DeliveryRecordDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId) {
-        return repository.findById(deliveryRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Delivery Record not found with id: " + deliveryRecordId
-                )))
+        return negativeLookups.lookup(DeliveryRecord.class, deliveryRecordId,
+                        () -> repository.findByIdAndPath(deliveryRecordId, assetFinanceAssetId, assetFinanceAgreementId))
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Delivery Record", deliveryRecordId)))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<DeliveryRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId, DeliveryRecordDTO dto) {
-        return repository.findById(deliveryRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Delivery Record not found with id: " + deliveryRecordId
-                )))
+    public Mono<DeliveryRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId, DeliveryRecordDTO dto, Long expectedVersion) {
+        return repository.findByIdAndPath(deliveryRecordId, assetFinanceAssetId, assetFinanceAgreementId)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Delivery Record", deliveryRecordId)))
                 .flatMap(existingRecord -> {
+                    if (expectedVersion != null && !expectedVersion.equals(existingRecord.getVersion())) {
+                        return Mono.error(new VersionConflictException("Delivery Record", deliveryRecordId, expectedVersion, existingRecord.getVersion()));
+                    }
                     DeliveryRecord updatedEntity = mapper.toEntity(dto);
                     updatedEntity.setDeliveryRecordId(existingRecord.getDeliveryRecordId());
+                    updatedEntity.setVersion(existingRecord.getVersion());
                     updatedEntity.setAssetFinanceAssetId(assetFinanceAssetId);
                     return repository.save(updatedEntity);
                 })
+                .flatMap(saved -> resultCache.invalidate(DeliveryRecord.class).thenReturn(saved))
+                .map(mapper::toDTO);
+    }
+
+    @Override
+    public Mono<DeliveryRecordDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId, Map<String, Object> patch, Long expectedVersion) {
+        return patchFactory.createPatch(DeliveryRecord.class, DeliveryRecordDTO.class, mapper::toEntity, "assetFinanceAssetId")
+                .apply(deliveryRecordId, patch, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Delivery Record", deliveryRecordId)))
+                .flatMap(saved -> resultCache.invalidate(DeliveryRecord.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId) {
-        return repository.findById(deliveryRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Delivery Record not found with id: " + deliveryRecordId
-                )))
-                .flatMap(repository::delete);
+    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID deliveryRecordId, Long expectedVersion) {
+        return deleteFactory.createDelete(DeliveryRecord.class)
+                .byId(deliveryRecordId, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Delivery Record", deliveryRecordId)))
+                .then(resultCache.invalidate(DeliveryRecord.class));
+    }
+
+    @Override
+    public Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, List<UUID> deliveryRecordIds) {
+        return deleteFactory.createDelete(DeliveryRecord.class)
+                .byIds(deliveryRecordIds, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId))
+                .collectList()
+                .flatMap(deleted -> resultCache.invalidate(DeliveryRecord.class).thenReturn(deleted));
     }
 }
 
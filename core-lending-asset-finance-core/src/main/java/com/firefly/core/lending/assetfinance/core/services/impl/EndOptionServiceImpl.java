@@ -18,20 +18,31 @@
 package com.firefly.core.lending.assetfinance.core.services.impl;
 
 import org.fireflyframework.core.filters.FilterRequest;
-import org.fireflyframework.core.filters.FilterUtils;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.commands.MergePatchFactory;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDeleteFactory;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedFilterFactory;
 import com.firefly.core.lending.assetfinance.core.mappers.EndOptionMapper;
 import com.firefly.core.lending.assetfinance.core.services.EndOptionService;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.EndOptionDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import com.firefly.core.lending.assetfinance.models.entities.EndOption;
 import com.firefly.core.lending.assetfinance.models.repositories.EndOptionRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
+import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -41,13 +52,24 @@ public class EndOptionServiceImpl implements EndOptionService {
 
     private final EndOptionRepository repository;
     private final EndOptionMapper mapper;
+    private final ScopedFilterFactory filterFactory;
+    private final MergePatchFactory patchFactory;
+    private final ScopedDeleteFactory deleteFactory;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
 
     @Override
-    public Mono<PaginationResponse<EndOptionDTO>> findAll(UUID assetFinanceAgreementId, FilterRequest<EndOptionDTO> filterRequest) {
-        return FilterUtils.createFilter(
-                EndOption.class,
-                mapper::toDTO
-        ).filter(filterRequest);
+    @ReadOnlyTransactional
+    public Mono<PaginationResponse<EndOptionDTO>> findAll(UUID assetFinanceAgreementId, FilterRequest<EndOptionDTO> filterRequest, CountMode countMode, Set<String> fields) {
+        return filterFactory.createFilter(EndOption.class, mapper::toDTO)
+                .filter(filterRequest, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId), countMode, fields);
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Mono<CursorPageResponse<EndOptionDTO>> findAllByCursor(UUID assetFinanceAgreementId, FilterRequest<EndOptionDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields) {
+        return filterFactory.createFilter(EndOption.class, mapper::toDTO)
+                .filterByCursor(filterRequest, pageRequest, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId), fields);
     }
 
     @Override
@@ -56,42 +78,60 @@ public class EndOptionServiceImpl implements EndOptionService {
                 .doOnNext(d -> d.setAssetFinanceAgreementId(assetFinanceAgreementId))
                 .map(mapper::toEntity)
                 .flatMap(repository::save)
+                .flatMap(saved -> negativeLookups.recordCreated(EndOption.class, saved.getEndOptionId()).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(EndOption.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
+    @ReadOnlyTransactional
     public Mono<EndOptionDTO> getById(UUID assetFinanceAgreementId, UUID endOptionId) {
-        return repository.findById(endOptionId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "End Option not found with id: " + endOptionId
-                )))
+        return negativeLookups.lookup(EndOption.class, endOptionId,
+                        () -> repository.findByEndOptionIdAndAssetFinanceAgreementId(endOptionId, assetFinanceAgreementId))
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("End Option", endOptionId)))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<EndOptionDTO> update(UUID assetFinanceAgreementId, UUID endOptionId, EndOptionDTO dto) {
-        return repository.findById(endOptionId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "End Option not found with id: " + endOptionId
-                )))
+    public Mono<EndOptionDTO> update(UUID assetFinanceAgreementId, UUID endOptionId, EndOptionDTO dto, Long expectedVersion) {
+        return repository.findByEndOptionIdAndAssetFinanceAgreementId(endOptionId, assetFinanceAgreementId)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("End Option", endOptionId)))
                 .flatMap(existing -> {
+                    if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+                        return Mono.error(new VersionConflictException("End Option", endOptionId, expectedVersion, existing.getVersion()));
+                    }
                     EndOption updatedEntity = mapper.toEntity(dto);
                     updatedEntity.setEndOptionId(existing.getEndOptionId());
+                    updatedEntity.setVersion(existing.getVersion());
                     updatedEntity.setAssetFinanceAgreementId(assetFinanceAgreementId);
                     return repository.save(updatedEntity);
                 })
+                .flatMap(saved -> resultCache.invalidate(EndOption.class).thenReturn(saved))
+                .map(mapper::toDTO);
+    }
+
+    @Override
+    public Mono<EndOptionDTO> patch(UUID assetFinanceAgreementId, UUID endOptionId, Map<String, Object> patch, Long expectedVersion) {
+        return patchFactory.createPatch(EndOption.class, EndOptionDTO.class, mapper::toEntity, "assetFinanceAgreementId")
+                .apply(endOptionId, patch, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("End Option", endOptionId)))
+                .flatMap(saved -> resultCache.invalidate(EndOption.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID endOptionId) {
-        return repository.findById(endOptionId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "End Option not found with id: " + endOptionId
-                )))
-                .flatMap(repository::delete);
+    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID endOptionId, Long expectedVersion) {
+        return deleteFactory.createDelete(EndOption.class)
+                .byId(endOptionId, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("End Option", endOptionId)))
+                .then(resultCache.invalidate(EndOption.class));
+    }
+
+    @Override
+    public Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, List<UUID> endOptionIds) {
+        return deleteFactory.createDelete(EndOption.class)
+                .byIds(endOptionIds, Criteria.where("assetFinanceAgreementId").is(assetFinanceAgreementId))
+                .collectList()
+                .flatMap(deleted -> resultCache.invalidate(EndOption.class).thenReturn(deleted));
     }
 }
@@ -18,20 +18,32 @@
 package com.firefly.core.lending.assetfinance.core.services.impl;
 
 import org.fireflyframework.core.filters.FilterRequest;
-import org.fireflyframework.core.filters.FilterUtils;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.commands.MergePatchFactory;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDeleteFactory;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ParentScope;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedFilterFactory;
 import com.firefly.core.lending.assetfinance.core.mappers.PickupRecordMapper;
 import com.firefly.core.lending.assetfinance.core.services.PickupRecordService;
+import com.firefly.core.lending.assetfinance.core.validators.AssetOwnershipValidator;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.PickupRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import com.firefly.core.lending.assetfinance.models.entities.PickupRecord;
 import com.firefly.core.lending.assetfinance.models.repositories.PickupRecordRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -41,58 +53,93 @@ public class PickupRecordServiceImpl implements PickupRecordService {
 
     private final PickupRecordRepository repository;
     private final PickupRecordMapper mapper;
+    private final ScopedFilterFactory filterFactory;
+    private final MergePatchFactory patchFactory;
+    private final ScopedDeleteFactory deleteFactory;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final AssetOwnershipValidator ownershipValidator;
 
     @Override
-    public Mono<PaginationResponse<PickupRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<PickupRecordDTO> filterRequest) {
-        return FilterUtils.createFilter(
-                PickupRecord.class,
-                mapper::toDTO
-        ).filter(filterRequest);
+    @ReadOnlyTransactional
+    public Mono<PaginationResponse<PickupRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<PickupRecordDTO> filterRequest, CountMode countMode, Set<String> fields) {
+        return filterFactory.createFilter(PickupRecord.class, mapper::toDTO)
+                .filter(filterRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), countMode, fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Mono<CursorPageResponse<PickupRecordDTO>> findAllByCursor(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<PickupRecordDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields) {
+        return filterFactory.createFilter(PickupRecord.class, mapper::toDTO)
+                .filterByCursor(filterRequest, pageRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
     }
 
     @Override
     public Mono<PickupRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, PickupRecordDTO dto) {
-        return Mono.just(dto)
+        return ownershipValidator.validate(assetFinanceAgreementId, assetFinanceAssetId)
+                .thenReturn(dto)
                 .doOnNext(d -> d.setAssetFinanceAssetId(assetFinanceAssetId))
                 .map(mapper::toEntity)
                 .flatMap(repository::save)
+                .flatMap(saved -> negativeLookups.recordCreated(PickupRecord.class, saved.getPickupRecordId()).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(PickupRecord.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
+    @ReadOnlyTransactional
     public Mono<PickupRecordDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId) {
-        return repository.findById(pickupRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Pickup Record not found with id: " + pickupRecordId
-                )))
+        return negativeLookups.lookup(PickupRecord.class, pickupRecordId,
+                        () -> repository.findByIdAndPath(pickupRecordId, assetFinanceAssetId, assetFinanceAgreementId))
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Pickup Record", pickupRecordId)))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<PickupRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId, PickupRecordDTO dto) {
-        return repository.findById(pickupRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Pickup Record not found with id: " + pickupRecordId
-                )))
+    public Mono<PickupRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId, PickupRecordDTO dto, Long expectedVersion) {
+        return repository.findByIdAndPath(pickupRecordId, assetFinanceAssetId, assetFinanceAgreementId)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Pickup Record", pickupRecordId)))
                 .flatMap(existingRecord -> {
+                    if (expectedVersion != null && !expectedVersion.equals(existingRecord.getVersion())) {
+                        return Mono.error(new VersionConflictException("Pickup Record", pickupRecordId, expectedVersion, existingRecord.getVersion()));
+                    }
                     PickupRecord updatedEntity = mapper.toEntity(dto);
                     updatedEntity.setPickupRecordId(existingRecord.getPickupRecordId());
+                    updatedEntity.setVersion(existingRecord.getVersion());
                     updatedEntity.setAssetFinanceAssetId(assetFinanceAssetId);
                     return repository.save(updatedEntity);
                 })
+                .flatMap(saved -> resultCache.invalidate(PickupRecord.class).thenReturn(saved))
+                .map(mapper::toDTO);
+    }
+
+    @Override
+    public Mono<PickupRecordDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId, Map<String, Object> patch, Long expectedVersion) {
+        return patchFactory.createPatch(PickupRecord.class, PickupRecordDTO.class, mapper::toEntity, "assetFinanceAssetId")
+                .apply(pickupRecordId, patch, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Pickup Record", pickupRecordId)))
+                .flatMap(saved -> resultCache.invalidate(PickupRecord.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId) {
-        return repository.findById(pickupRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Pickup Record not found with id: " + pickupRecordId
-                )))
-                .flatMap(repository::delete);
+    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID pickupRecordId, Long expectedVersion) {
+        return deleteFactory.createDelete(PickupRecord.class)
+                .byId(pickupRecordId, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Pickup Record", pickupRecordId)))
+                .then(resultCache.invalidate(PickupRecord.class));
+    }
+
+    @Override
+    public Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, List<UUID> pickupRecordIds) {
+        return deleteFactory.createDelete(PickupRecord.class)
+                .byIds(pickupRecordIds, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId))
+                .collectList()
+                .flatMap(deleted -> resultCache.invalidate(PickupRecord.class).thenReturn(deleted));
     }
 }
 
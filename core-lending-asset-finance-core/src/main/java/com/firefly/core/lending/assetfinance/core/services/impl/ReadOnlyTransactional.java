@@ -0,0 +1,51 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.services.impl;
+
+import org.springframework.core.annotation.AliasFor;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a query method of a service whose class is {@link Transactional}.
+ * <p>
+ * The method joins a surrounding transaction if there is one, but otherwise runs without
+ * BEGIN/COMMIT round trips. The read-only flag is still exposed to the transaction
+ * synchronization, so infrastructure such as connection routing can recognise query traffic.
+ * </p>
+ * <p>
+ * No connection is bound before the first query, so queries of such a method must run one after
+ * the other. Methods that subscribe several queries at once use
+ * {@code @Transactional(readOnly = true)} instead, which binds one connection up front.
+ * </p>
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+public @interface ReadOnlyTransactional {
+
+    @AliasFor(annotation = Transactional.class, attribute = "timeout")
+    int timeout() default -1;
+}
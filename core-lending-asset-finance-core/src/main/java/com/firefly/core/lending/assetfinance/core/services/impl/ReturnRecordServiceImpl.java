@@ -18,20 +18,32 @@
 package com.firefly.core.lending.assetfinance.core.services.impl;
 
 import org.fireflyframework.core.filters.FilterRequest;
-import org.fireflyframework.core.filters.FilterUtils;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.commands.MergePatchFactory;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDeleteFactory;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ParentScope;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedFilterFactory;
 import com.firefly.core.lending.assetfinance.core.mappers.ReturnRecordMapper;
 import com.firefly.core.lending.assetfinance.core.services.ReturnRecordService;
+import com.firefly.core.lending.assetfinance.core.validators.AssetOwnershipValidator;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.ReturnRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import com.firefly.core.lending.assetfinance.models.entities.ReturnRecord;
 import com.firefly.core.lending.assetfinance.models.repositories.ReturnRecordRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -41,57 +53,92 @@ public class ReturnRecordServiceImpl implements ReturnRecordService {
 
     private final ReturnRecordRepository repository;
     private final ReturnRecordMapper mapper;
+    private final ScopedFilterFactory filterFactory;
+    private final MergePatchFactory patchFactory;
+    private final ScopedDeleteFactory deleteFactory;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final AssetOwnershipValidator ownershipValidator;
 
     @Override
-    public Mono<PaginationResponse<ReturnRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<ReturnRecordDTO> filterRequest) {
-        return FilterUtils.createFilter(
-                ReturnRecord.class,
-                mapper::toDTO
-        ).filter(filterRequest);
+    @ReadOnlyTransactional
+    public Mono<PaginationResponse<ReturnRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<ReturnRecordDTO> filterRequest, CountMode countMode, Set<String> fields) {
+        return filterFactory.createFilter(ReturnRecord.class, mapper::toDTO)
+                .filter(filterRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), countMode, fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Mono<CursorPageResponse<ReturnRecordDTO>> findAllByCursor(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<ReturnRecordDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields) {
+        return filterFactory.createFilter(ReturnRecord.class, mapper::toDTO)
+                .filterByCursor(filterRequest, pageRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
     }
 
     @Override
     public Mono<ReturnRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, ReturnRecordDTO dto) {
-        return Mono.just(dto)
+        return ownershipValidator.validate(assetFinanceAgreementId, assetFinanceAssetId)
+                .thenReturn(dto)
                 .doOnNext(d -> d.setAssetFinanceAssetId(assetFinanceAssetId))
                 .map(mapper::toEntity)
                 .flatMap(repository::save)
+                .flatMap(saved -> negativeLookups.recordCreated(ReturnRecord.class, saved.getReturnRecordId()).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(ReturnRecord.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
+    @ReadOnlyTransactional
     public Mono<ReturnRecordDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId) {
-        return repository.findById(returnRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Return Record not found with id: " + returnRecordId
-                )))
+        return negativeLookups.lookup(ReturnRecord.class, returnRecordId,
+                        () -> repository.findByIdAndPath(returnRecordId, assetFinanceAssetId, assetFinanceAgreementId))
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Return Record", returnRecordId)))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<ReturnRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId, ReturnRecordDTO dto) {
-        return repository.findById(returnRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Return Record not found with id: " + returnRecordId
-                )))
+    public Mono<ReturnRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId, ReturnRecordDTO dto, Long expectedVersion) {
+        return repository.findByIdAndPath(returnRecordId, assetFinanceAssetId, assetFinanceAgreementId)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Return Record", returnRecordId)))
                 .flatMap(existing -> {
+                    if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+                        return Mono.error(new VersionConflictException("Return Record", returnRecordId, expectedVersion, existing.getVersion()));
+                    }
                     ReturnRecord updatedEntity = mapper.toEntity(dto);
                     updatedEntity.setReturnRecordId(existing.getReturnRecordId());
+                    updatedEntity.setVersion(existing.getVersion());
                     updatedEntity.setAssetFinanceAssetId(assetFinanceAssetId);
                     return repository.save(updatedEntity);
                 })
+                .flatMap(saved -> resultCache.invalidate(ReturnRecord.class).thenReturn(saved))
+                .map(mapper::toDTO);
+    }
+
+    @Override
+    public Mono<ReturnRecordDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId, Map<String, Object> patch, Long expectedVersion) {
+        return patchFactory.createPatch(ReturnRecord.class, ReturnRecordDTO.class, mapper::toEntity, "assetFinanceAssetId")
+                .apply(returnRecordId, patch, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Return Record", returnRecordId)))
+                .flatMap(saved -> resultCache.invalidate(ReturnRecord.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId) {
-        return repository.findById(returnRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Return Record not found with id: " + returnRecordId
-                )))
-                .flatMap(repository::delete);
+    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID returnRecordId, Long expectedVersion) {
+        return deleteFactory.createDelete(ReturnRecord.class)
+                .byId(returnRecordId, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Return Record", returnRecordId)))
+                .then(resultCache.invalidate(ReturnRecord.class));
+    }
+
+    @Override
+    public Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, List<UUID> returnRecordIds) {
+        return deleteFactory.createDelete(ReturnRecord.class)
+                .byIds(returnRecordIds, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId))
+                .collectList()
+                .flatMap(deleted -> resultCache.invalidate(ReturnRecord.class).thenReturn(deleted));
     }
 }
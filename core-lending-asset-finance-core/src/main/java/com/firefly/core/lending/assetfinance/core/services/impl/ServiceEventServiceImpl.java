@@ -18,20 +18,32 @@
 package com.firefly.core.lending.assetfinance.core.services.impl;
 
 import org.fireflyframework.core.filters.FilterRequest;
-import org.fireflyframework.core.filters.FilterUtils;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.commands.MergePatchFactory;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDeleteFactory;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ParentScope;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedFilterFactory;
 import com.firefly.core.lending.assetfinance.core.mappers.ServiceEventMapper;
 import com.firefly.core.lending.assetfinance.core.services.ServiceEventService;
+import com.firefly.core.lending.assetfinance.core.validators.AssetOwnershipValidator;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.ServiceEventDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import com.firefly.core.lending.assetfinance.models.entities.ServiceEvent;
 import com.firefly.core.lending.assetfinance.models.repositories.ServiceEventRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -41,57 +53,92 @@ public class ServiceEventServiceImpl implements ServiceEventService {
 
     private final ServiceEventRepository repository;
     private final ServiceEventMapper mapper;
+    private final ScopedFilterFactory filterFactory;
+    private final MergePatchFactory patchFactory;
+    private final ScopedDeleteFactory deleteFactory;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final AssetOwnershipValidator ownershipValidator;
 
     @Override
-    public Mono<PaginationResponse<ServiceEventDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<ServiceEventDTO> filterRequest) {
-        return FilterUtils.createFilter(
-                ServiceEvent.class,
-                mapper::toDTO
-        ).filter(filterRequest);
+    @ReadOnlyTransactional
+    public Mono<PaginationResponse<ServiceEventDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<ServiceEventDTO> filterRequest, CountMode countMode, Set<String> fields) {
+        return filterFactory.createFilter(ServiceEvent.class, mapper::toDTO)
+                .filter(filterRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), countMode, fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Mono<CursorPageResponse<ServiceEventDTO>> findAllByCursor(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<ServiceEventDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields) {
+        return filterFactory.createFilter(ServiceEvent.class, mapper::toDTO)
+                .filterByCursor(filterRequest, pageRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
     }
 
     @Override
     public Mono<ServiceEventDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, ServiceEventDTO dto) {
-        return Mono.just(dto)
+        return ownershipValidator.validate(assetFinanceAgreementId, assetFinanceAssetId)
+                .thenReturn(dto)
                 .doOnNext(d -> d.setAssetFinanceAssetId(assetFinanceAssetId))
                 .map(mapper::toEntity)
                 .flatMap(repository::save)
+                .flatMap(saved -> negativeLookups.recordCreated(ServiceEvent.class, saved.getServiceEventId()).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(ServiceEvent.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
+    @ReadOnlyTransactional
     public Mono<ServiceEventDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID serviceEventId) {
-        return repository.findById(serviceEventId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Service Event not found with id: " + serviceEventId
-                )))
+        return negativeLookups.lookup(ServiceEvent.class, serviceEventId,
+                        () -> repository.findByIdAndPath(serviceEventId, assetFinanceAssetId, assetFinanceAgreementId))
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Service Event", serviceEventId)))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<ServiceEventDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID serviceEventId, ServiceEventDTO dto) {
-        return repository.findById(serviceEventId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Service Event not found with id: " + serviceEventId
-                )))
+    public Mono<ServiceEventDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID serviceEventId, ServiceEventDTO dto, Long expectedVersion) {
+        return repository.findByIdAndPath(serviceEventId, assetFinanceAssetId, assetFinanceAgreementId)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Service Event", serviceEventId)))
                 .flatMap(existing -> {
+                    if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+                        return Mono.error(new VersionConflictException("Service Event", serviceEventId, expectedVersion, existing.getVersion()));
+                    }
                     ServiceEvent updatedEntity = mapper.toEntity(dto);
                     updatedEntity.setServiceEventId(existing.getServiceEventId());
+                    updatedEntity.setVersion(existing.getVersion());
                     updatedEntity.setAssetFinanceAssetId(assetFinanceAssetId);
                     return repository.save(updatedEntity);
                 })
+                .flatMap(saved -> resultCache.invalidate(ServiceEvent.class).thenReturn(saved))
+                .map(mapper::toDTO);
+    }
+
+    @Override
+    public Mono<ServiceEventDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID serviceEventId, Map<String, Object> patch, Long expectedVersion) {
+        return patchFactory.createPatch(ServiceEvent.class, ServiceEventDTO.class, mapper::toEntity, "assetFinanceAssetId")
+                .apply(serviceEventId, patch, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Service Event", serviceEventId)))
+                .flatMap(saved -> resultCache.invalidate(ServiceEvent.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID serviceEventId) {
-        return repository.findById(serviceEventId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Service Event not found with id: " + serviceEventId
-                )))
-                .flatMap(repository::delete);
+    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID serviceEventId, Long expectedVersion) {
+        return deleteFactory.createDelete(ServiceEvent.class)
+                .byId(serviceEventId, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Service Event", serviceEventId)))
+                .then(resultCache.invalidate(ServiceEvent.class));
+    }
+
+    @Override
+    public Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, List<UUID> serviceEventIds) {
+        return deleteFactory.createDelete(ServiceEvent.class)
+                .byIds(serviceEventIds, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId))
+                .collectList()
+                .flatMap(deleted -> resultCache.invalidate(ServiceEvent.class).thenReturn(deleted));
     }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.services.impl;
+
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.ingestion.IngestionProperties;
+import com.firefly.core.lending.assetfinance.core.services.UsageRecordIngestionService;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.BulkItemResultDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.enums.BulkItemFailureReasonEnum;
+import com.firefly.core.lending.assetfinance.interfaces.enums.BulkItemStatusEnum;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.UsageRecordRepository;
+import io.r2dbc.spi.R2dbcException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk ingestion of usage records.
+ * <p>
+ * Records are grouped into transactions of {@code transaction-size} records. Each group is
+ * validated, checked against the existing assets with one query, and written with
+ * {@link UsageRecordRepository#insertAll} in statements of {@code batch-size} rows. Ids are
+ * generated here so results can be reported without reading rows back. Caches see one
+ * invalidation per transaction instead of one per record.
+ * </p>
+ * Deliberately not {@code @Transactional}: a single transaction around the whole stream would be
+ * unbounded.
+ * <p>
+ * Items of a rolled back transaction are reported with a {@link BulkItemFailureReasonEnum} and a
+ * fixed message; the database error itself is only logged, since it can quote the values and
+ * constraint names of other callers' rows.
+ * </p>
+ */
+@Slf4j
+@Service
+public class UsageRecordIngestionServiceImpl implements UsageRecordIngestionService {
+
+    static final String FAILED_MESSAGE = "The transaction holding this record was rolled back; see reason";
+
+    private final UsageRecordRepository repository;
+    private final AssetFinanceAssetRepository assetRepository;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final Validator validator;
+    private final IngestionProperties properties;
+    private final TransactionalOperator transactional;
+
+    public UsageRecordIngestionServiceImpl(UsageRecordRepository repository,
+                                           AssetFinanceAssetRepository assetRepository,
+                                           FilterResultCache resultCache,
+                                           NegativeLookupFilter negativeLookups,
+                                           Validator validator,
+                                           IngestionProperties properties,
+                                           ReactiveTransactionManager transactionManager) {
+        this.repository = repository;
+        this.assetRepository = assetRepository;
+        this.resultCache = resultCache;
+        this.negativeLookups = negativeLookups;
+        this.validator = validator;
+        this.properties = properties;
+        this.transactional = TransactionalOperator.create(transactionManager);
+    }
+
+    @Override
+    public Flux<BulkItemResultDTO> createAll(Flux<UsageRecordDTO> records) {
+        return records.index()
+                .buffer(properties.getTransactionSize())
+                .concatMap(this::ingest);
+    }
+
+    private Flux<BulkItemResultDTO> ingest(List<Tuple2<Long, UsageRecordDTO>> items) {
+        BulkItemResultDTO[] results = new BulkItemResultDTO[items.size()];
+        List<Integer> valid = new ArrayList<>(items.size());
+        Set<UUID> assetIds = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            UsageRecordDTO dto = items.get(i).getT2();
+            Set<ConstraintViolation<UsageRecordDTO>> violations = validator.validate(dto);
+            if (violations.isEmpty()) {
+                valid.add(i);
+                assetIds.add(dto.getAssetFinanceAssetId());
+            } else {
+                results[i] = result(items.get(i), null, BulkItemStatusEnum.REJECTED, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+            }
+        }
+
+        return assetRepository.findExistingIds(assetIds.toArray(UUID[]::new))
+                .collect(Collectors.toSet())
+                .flatMap(existing -> {
+                    List<Integer> accepted = new ArrayList<>(valid.size());
+                    for (int i : valid) {
+                        UUID assetId = items.get(i).getT2().getAssetFinanceAssetId();
+                        if (existing.contains(assetId)) {
+                            accepted.add(i);
+                        } else {
+                            results[i] = result(items.get(i), null, BulkItemStatusEnum.REJECTED,
+                                    "Asset Finance Asset not found with id: " + assetId);
+                        }
+                    }
+                    return insert(items, accepted, results);
+                })
+                .thenMany(Flux.fromArray(results));
+    }
+
+    private Mono<Void> insert(List<Tuple2<Long, UsageRecordDTO>> items, List<Integer> accepted, BulkItemResultDTO[] results) {
+        if (accepted.isEmpty()) {
+            return Mono.empty();
+        }
+        List<UUID> ids = new ArrayList<>(accepted.size());
+        for (int ignored : accepted) {
+            ids.add(UUID.randomUUID());
+        }
+        int batchSize = properties.getBatchSize();
+        return Flux.range(0, (accepted.size() + batchSize - 1) / batchSize)
+                .concatMap(batch -> {
+                    int from = batch * batchSize;
+                    int to = Math.min(from + batchSize, accepted.size());
+                    int size = to - from;
+                    UUID[] recordIds = new UUID[size];
+                    UUID[] assetIds = new UUID[size];
+                    LocalDate[] usageDates = new LocalDate[size];
+                    Integer[] mileages = new Integer[size];
+                    String[] usageDetails = new String[size];
+                    for (int i = 0; i < size; i++) {
+                        UsageRecordDTO dto = items.get(accepted.get(from + i)).getT2();
+                        recordIds[i] = ids.get(from + i);
+                        assetIds[i] = dto.getAssetFinanceAssetId();
+                        usageDates[i] = dto.getUsageDate();
+                        mileages[i] = dto.getMileage();
+                        usageDetails[i] = dto.getUsageDetail();
+                    }
+                    return repository.insertAll(recordIds, assetIds, usageDates, mileages, usageDetails);
+                })
+                .then(negativeLookups.recordCreated(UsageRecord.class, ids))
+                .then(resultCache.invalidate(UsageRecord.class))
+                .as(transactional::transactional)
+                .doOnSuccess(ignored -> {
+                    for (int i = 0; i < accepted.size(); i++) {
+                        int item = accepted.get(i);
+                        results[item] = result(items.get(item), ids.get(i), BulkItemStatusEnum.CREATED, null);
+                    }
+                })
+                .onErrorResume(e -> {
+                    BulkItemFailureReasonEnum reason = failureReason(e);
+                    log.warn("Bulk usage record transaction of {} records starting at index {} rolled back: {}",
+                            accepted.size(), items.get(accepted.get(0)).getT1(), reason, e);
+                    for (int item : accepted) {
+                        results[item] = BulkItemResultDTO.builder()
+                                .index(items.get(item).getT1())
+                                .status(BulkItemStatusEnum.FAILED)
+                                .reason(reason)
+                                .error(FAILED_MESSAGE)
+                                .build();
+                    }
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Classifies a failed transaction by the SQLSTATE class of the database error, if there is one.
+     */
+    static BulkItemFailureReasonEnum failureReason(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof R2dbcException r2dbc && r2dbc.getSqlState() != null && r2dbc.getSqlState().length() >= 2) {
+                return switch (r2dbc.getSqlState().substring(0, 2)) {
+                    case "22" -> BulkItemFailureReasonEnum.INVALID_DATA;
+                    case "23" -> BulkItemFailureReasonEnum.CONSTRAINT_VIOLATION;
+                    case "40" -> BulkItemFailureReasonEnum.CONFLICT;
+                    case "08", "53", "57" -> BulkItemFailureReasonEnum.UNAVAILABLE;
+                    default -> BulkItemFailureReasonEnum.INTERNAL_ERROR;
+                };
+            }
+        }
+        return error instanceof TransientDataAccessException
+                ? BulkItemFailureReasonEnum.UNAVAILABLE
+                : BulkItemFailureReasonEnum.INTERNAL_ERROR;
+    }
+
+    private static BulkItemResultDTO result(Tuple2<Long, UsageRecordDTO> item, UUID id, BulkItemStatusEnum status, String error) {
+        return BulkItemResultDTO.builder()
+                .index(item.getT1())
+                .id(id)
+                .status(status)
+                .error(error)
+                .build();
+    }
+}
@@ -18,20 +18,32 @@
 package com.firefly.core.lending.assetfinance.core.services.impl;
 
 import org.fireflyframework.core.filters.FilterRequest;
-import org.fireflyframework.core.filters.FilterUtils;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.commands.MergePatchFactory;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDeleteFactory;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ParentScope;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedFilterFactory;
 import com.firefly.core.lending.assetfinance.core.mappers.UsageRecordMapper;
 import com.firefly.core.lending.assetfinance.core.services.UsageRecordService;
+import com.firefly.core.lending.assetfinance.core.validators.AssetOwnershipValidator;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
 import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
 import com.firefly.core.lending.assetfinance.models.repositories.UsageRecordRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -41,57 +53,92 @@ public class UsageRecordServiceImpl implements UsageRecordService {
 
     private final UsageRecordRepository repository;
     private final UsageRecordMapper mapper;
+    private final ScopedFilterFactory filterFactory;
+    private final MergePatchFactory patchFactory;
+    private final ScopedDeleteFactory deleteFactory;
+    private final FilterResultCache resultCache;
+    private final NegativeLookupFilter negativeLookups;
+    private final AssetOwnershipValidator ownershipValidator;
 
     @Override
-    public Mono<PaginationResponse<UsageRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<UsageRecordDTO> filterRequest) {
-        return FilterUtils.createFilter(
-                UsageRecord.class,
-                mapper::toDTO
-        ).filter(filterRequest);
+    @ReadOnlyTransactional
+    public Mono<PaginationResponse<UsageRecordDTO>> findAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<UsageRecordDTO> filterRequest, CountMode countMode, Set<String> fields) {
+        return filterFactory.createFilter(UsageRecord.class, mapper::toDTO)
+                .filter(filterRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), countMode, fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
+    }
+
+    @Override
+    @ReadOnlyTransactional
+    public Mono<CursorPageResponse<UsageRecordDTO>> findAllByCursor(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, FilterRequest<UsageRecordDTO> filterRequest, CursorPageRequest pageRequest, Set<String> fields) {
+        return filterFactory.createFilter(UsageRecord.class, mapper::toDTO)
+                .filterByCursor(filterRequest, pageRequest, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), fields)
+                .flatMap(page -> ownershipValidator.validateIfEmpty(assetFinanceAgreementId, assetFinanceAssetId, page.getContent())
+                        .thenReturn(page));
     }
 
     @Override
     public Mono<UsageRecordDTO> create(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UsageRecordDTO dto) {
-        return Mono.just(dto)
+        return ownershipValidator.validate(assetFinanceAgreementId, assetFinanceAssetId)
+                .thenReturn(dto)
                 .doOnNext(d -> d.setAssetFinanceAssetId(assetFinanceAssetId))
                 .map(mapper::toEntity)
                 .flatMap(repository::save)
+                .flatMap(saved -> negativeLookups.recordCreated(UsageRecord.class, saved.getUsageRecordId()).thenReturn(saved))
+                .flatMap(saved -> resultCache.invalidate(UsageRecord.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
+    @ReadOnlyTransactional
     public Mono<UsageRecordDTO> getById(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID usageRecordId) {
-        return repository.findById(usageRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Usage Record not found with id: " + usageRecordId
-                )))
+        return negativeLookups.lookup(UsageRecord.class, usageRecordId,
+                        () -> repository.findByIdAndPath(usageRecordId, assetFinanceAssetId, assetFinanceAgreementId))
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Usage Record", usageRecordId)))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<UsageRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID usageRecordId, UsageRecordDTO dto) {
-        return repository.findById(usageRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Usage Record not found with id: " + usageRecordId
-                )))
+    public Mono<UsageRecordDTO> update(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID usageRecordId, UsageRecordDTO dto, Long expectedVersion) {
+        return repository.findByIdAndPath(usageRecordId, assetFinanceAssetId, assetFinanceAgreementId)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Usage Record", usageRecordId)))
                 .flatMap(existing -> {
+                    if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+                        return Mono.error(new VersionConflictException("Usage Record", usageRecordId, expectedVersion, existing.getVersion()));
+                    }
                     UsageRecord updatedEntity = mapper.toEntity(dto);
                     updatedEntity.setUsageRecordId(existing.getUsageRecordId());
+                    updatedEntity.setVersion(existing.getVersion());
                     updatedEntity.setAssetFinanceAssetId(assetFinanceAssetId);
                     return repository.save(updatedEntity);
                 })
+                .flatMap(saved -> resultCache.invalidate(UsageRecord.class).thenReturn(saved))
+                .map(mapper::toDTO);
+    }
+
+    @Override
+    public Mono<UsageRecordDTO> patch(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID usageRecordId, Map<String, Object> patch, Long expectedVersion) {
+        return patchFactory.createPatch(UsageRecord.class, UsageRecordDTO.class, mapper::toEntity, "assetFinanceAssetId")
+                .apply(usageRecordId, patch, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Usage Record", usageRecordId)))
+                .flatMap(saved -> resultCache.invalidate(UsageRecord.class).thenReturn(saved))
                 .map(mapper::toDTO);
     }
 
     @Override
-    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID usageRecordId) {
-        return repository.findById(usageRecordId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Usage Record not found with id: " + usageRecordId
-                )))
-                .flatMap(repository::delete);
+    public Mono<Void> delete(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, UUID usageRecordId, Long expectedVersion) {
+        return deleteFactory.createDelete(UsageRecord.class)
+                .byId(usageRecordId, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId), expectedVersion)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Usage Record", usageRecordId)))
+                .then(resultCache.invalidate(UsageRecord.class));
+    }
+
+    @Override
+    public Mono<List<UUID>> deleteAll(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, List<UUID> usageRecordIds) {
+        return deleteFactory.createDelete(UsageRecord.class)
+                .byIds(usageRecordIds, ParentScope.asset(assetFinanceAgreementId, assetFinanceAssetId))
+                .collectList()
+                .flatMap(deleted -> resultCache.invalidate(UsageRecord.class).thenReturn(deleted));
     }
 }
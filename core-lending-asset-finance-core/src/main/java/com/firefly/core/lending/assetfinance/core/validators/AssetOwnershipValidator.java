@@ -0,0 +1,88 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.validators;
+
+import com.firefly.core.lending.assetfinance.core.cache.AssetOwnershipCache;
+import com.firefly.core.lending.assetfinance.core.cache.CacheInvalidationBus;
+import com.firefly.core.lending.assetfinance.core.cache.SingleFlight;
+import com.firefly.core.lending.assetfinance.core.exceptions.EntityNotFoundException;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Verifies that an asset belongs to the agreement addressed by a nested route
+ * ({@code /asset-finance-agreements/{agreementId}/assets/{assetId}/...}).
+ */
+@Component
+@RequiredArgsConstructor
+public class AssetOwnershipValidator {
+
+    private final AssetFinanceAssetRepository assetRepository;
+    private final AssetOwnershipCache ownershipCache;
+    private final SingleFlight singleFlight;
+    private final CacheInvalidationBus invalidationBus;
+
+    /**
+     * Complete empty when the asset belongs to the agreement, or error with 404 otherwise.
+     * Confirmed pairs are remembered in the {@link AssetOwnershipCache}, so repeated requests
+     * against the same asset do not query the database.
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the asset
+     * @return a Mono that completes when ownership is confirmed
+     */
+    public Mono<Void> validate(UUID assetFinanceAgreementId, UUID assetFinanceAssetId) {
+        return Mono.defer(() -> {
+            if (ownershipCache.contains(assetFinanceAgreementId, assetFinanceAssetId)) {
+                return Mono.empty();
+            }
+            long generation = ownershipCache.generation();
+            // the generation is part of the key, so a check started before a removal is not joined
+            return singleFlight.execute("asset-ownership", List.of(assetFinanceAssetId, assetFinanceAgreementId, generation),
+                            () -> invalidationBus.freshRead(assetRepository.existsByAssetFinanceAssetIdAndAssetFinanceAgreementId(assetFinanceAssetId, assetFinanceAgreementId)))
+                    .flatMap(exists -> {
+                        if (!exists) {
+                            return Mono.error(new EntityNotFoundException(
+                                    "Asset Finance Asset", assetFinanceAssetId, "agreement", assetFinanceAgreementId));
+                        }
+                        ownershipCache.put(assetFinanceAgreementId, assetFinanceAssetId, generation);
+                        return Mono.<Void>empty();
+                    });
+        });
+    }
+
+    /**
+     * Tell an empty listing of an asset's records apart from a route to a foreign asset. Listings
+     * already restrict their rows to the agreement in the same statement, so ownership is only
+     * checked here when they returned nothing.
+     *
+     * @param assetFinanceAgreementId the unique identifier of the parent agreement
+     * @param assetFinanceAssetId the unique identifier of the asset
+     * @param content the rows returned by the scoped listing
+     * @return a Mono that completes when the listing has rows or ownership is confirmed
+     */
+    public Mono<Void> validateIfEmpty(UUID assetFinanceAgreementId, UUID assetFinanceAssetId, Collection<?> content) {
+        return content.isEmpty() ? validate(assetFinanceAgreementId, assetFinanceAssetId) : Mono.empty();
+    }
+}
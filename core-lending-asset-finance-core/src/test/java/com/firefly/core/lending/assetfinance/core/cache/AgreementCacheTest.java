@@ -0,0 +1,126 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.firefly.core.lending.assetfinance.models.config.ReadReplicaProperties;
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAgreement;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AgreementCacheTest {
+
+    private static final UUID ID = UUID.randomUUID();
+
+    private final AgreementCache cache = cache();
+    private final List<Sinks.One<AssetFinanceAgreement>> loads = new CopyOnWriteArrayList<>();
+
+    @Test
+    void concurrentMissesShareOneLoadAndCacheIt() {
+        AtomicReference<AssetFinanceAgreement> first = new AtomicReference<>();
+        AtomicReference<AssetFinanceAgreement> second = new AtomicReference<>();
+        cache.get(ID, this::load).subscribe(first::set);
+        cache.get(ID, this::load).subscribe(second::set);
+
+        loads.get(0).tryEmitValue(agreement(1L));
+
+        assertThat(loads).hasSize(1);
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(cache.keys()).containsExactly(ID);
+    }
+
+    @Test
+    void callerAfterInvalidationDoesNotJoinEarlierLoad() {
+        AtomicReference<AssetFinanceAgreement> stale = new AtomicReference<>();
+        AtomicReference<AssetFinanceAgreement> fresh = new AtomicReference<>();
+        cache.get(ID, this::load).subscribe(stale::set);
+        cache.invalidate(InvalidationType.AGREEMENT, ID.toString());
+        cache.get(ID, this::load).subscribe(fresh::set);
+
+        assertThat(loads).hasSize(2);
+        loads.get(0).tryEmitValue(agreement(1L));
+        assertThat(stale.get().getVersion()).isEqualTo(1L);
+        assertThat(cache.keys()).isEmpty();
+
+        loads.get(1).tryEmitValue(agreement(2L));
+        assertThat(fresh.get().getVersion()).isEqualTo(2L);
+        assertThat(cache.get(ID, this::load).block().getVersion()).isEqualTo(2L);
+        assertThat(loads).hasSize(2);
+    }
+
+    @Test
+    void deletedAgreementLoadedBeforeDeleteIsNotCached() {
+        cache.get(ID, this::load).subscribe();
+        cache.invalidate(InvalidationType.AGREEMENT_DELETED, ID.toString());
+
+        loads.get(0).tryEmitValue(agreement(1L));
+
+        assertThat(cache.keys()).isEmpty();
+    }
+
+    @Test
+    void writeThroughCachesStoredRow() {
+        AssetFinanceAgreement stored = agreement(3L);
+        stored.setCreatedAt(LocalDateTime.now());
+        stored.setUpdatedAt(LocalDateTime.now());
+
+        cache.writeThrough(stored).block();
+
+        assertThat(cache.get(ID, this::load).block()).isSameAs(stored);
+        assertThat(loads).isEmpty();
+    }
+
+    @Test
+    void writeThroughOfRowWithoutAuditTimestampsOnlyEvicts() {
+        cache.writeThrough(agreement(3L)).block();
+
+        assertThat(cache.keys()).isEmpty();
+    }
+
+    private Mono<AssetFinanceAgreement> load(UUID id) {
+        Sinks.One<AssetFinanceAgreement> sink = Sinks.one();
+        loads.add(sink);
+        return sink.asMono();
+    }
+
+    private static AgreementCache cache() {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        CacheProperties properties = new CacheProperties();
+        properties.getInvalidation().setEnabled(false);
+        return new AgreementCache(properties,
+                new CacheInvalidationBus(null, null, properties, new ReadReplicaProperties(),
+                        beans.getBeanProvider(CacheInvalidationListener.class)),
+                new SingleFlight(new NoOpTransactionManager(), beans.getBeanProvider(MeterRegistry.class)),
+                beans.getBeanProvider(MeterRegistry.class));
+    }
+
+    private static AssetFinanceAgreement agreement(long version) {
+        return AssetFinanceAgreement.builder().assetFinanceAgreementId(ID).version(version).build();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AssetOwnershipCacheTest {
+
+    private final AssetOwnershipCache cache = cache();
+
+    @Test
+    void removesAllAssetsOfGivenAgreementsOnly() {
+        List<UUID> agreements = IntStream.range(0, 50).mapToObj(i -> UUID.randomUUID()).toList();
+        List<UUID> assets = IntStream.range(0, 50).mapToObj(i -> UUID.randomUUID()).toList();
+        for (int i = 0; i < agreements.size(); i++) {
+            cache.put(agreements.get(i), assets.get(i), cache.generation());
+        }
+
+        cache.removeAgreements(agreements.subList(0, 40));
+
+        for (int i = 0; i < agreements.size(); i++) {
+            assertThat(cache.contains(agreements.get(i), assets.get(i))).isEqualTo(i >= 40);
+        }
+    }
+
+    @Test
+    void removesGroupedAgreementsAnnouncedByOtherNodes() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID kept = UUID.randomUUID();
+        UUID firstAsset = UUID.randomUUID();
+        UUID secondAsset = UUID.randomUUID();
+        UUID keptAsset = UUID.randomUUID();
+        cache.put(first, firstAsset, cache.generation());
+        cache.put(second, secondAsset, cache.generation());
+        cache.put(kept, keptAsset, cache.generation());
+
+        cache.invalidate(InvalidationType.AGREEMENT_DELETED, first + "," + second);
+
+        assertThat(cache.contains(first, firstAsset)).isFalse();
+        assertThat(cache.contains(second, secondAsset)).isFalse();
+        assertThat(cache.contains(kept, keptAsset)).isTrue();
+    }
+
+    @Test
+    void removalDropsFillsReadBeforeIt() {
+        UUID agreement = UUID.randomUUID();
+        UUID asset = UUID.randomUUID();
+        long generation = cache.generation();
+
+        cache.removeAgreements(List.of(agreement));
+        cache.put(agreement, asset, generation);
+
+        assertThat(cache.contains(agreement, asset)).isFalse();
+    }
+
+    @Test
+    void evictionsAdvanceGenerationWhileDisabled() {
+        CacheProperties properties = new CacheProperties();
+        properties.getAssetOwnership().setEnabled(false);
+        AssetOwnershipCache disabled = new AssetOwnershipCache(properties, null,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        long generation = disabled.generation();
+
+        disabled.evict(UUID.randomUUID()).block();
+        disabled.evictAgreements(List.of(UUID.randomUUID())).block();
+
+        // now and once more where the transaction would complete, for each eviction
+        assertThat(disabled.generation()).isEqualTo(generation + 4);
+    }
+
+    private static AssetOwnershipCache cache() {
+        CacheProperties properties = new CacheProperties();
+        properties.getAssetOwnership().setMaximumSize(1_024);
+        return new AssetOwnershipCache(properties, null,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+}
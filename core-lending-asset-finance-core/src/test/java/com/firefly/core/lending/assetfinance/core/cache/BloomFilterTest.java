@@ -0,0 +1,66 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    private static final int INSERTIONS = 20_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Test
+    void containsEveryInsertedId() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, FALSE_POSITIVE_RATE);
+        List<UUID> ids = randomIds(INSERTIONS);
+        ids.forEach(filter::put);
+
+        assertThat(ids).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTargetAtCapacity() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, FALSE_POSITIVE_RATE);
+        randomIds(INSERTIONS).forEach(filter::put);
+
+        long falsePositives = randomIds(100_000).stream().filter(filter::mightContain).count();
+
+        assertThat(falsePositives / 100_000.0).isLessThan(FALSE_POSITIVE_RATE * 2);
+        assertThat(filter.falsePositiveRate()).isBetween(FALSE_POSITIVE_RATE / 2, FALSE_POSITIVE_RATE * 2);
+    }
+
+    @Test
+    void emptyFilterRejectsEverything() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, FALSE_POSITIVE_RATE);
+
+        assertThat(randomIds(1_000)).noneMatch(filter::mightContain);
+        assertThat(filter.falsePositiveRate()).isZero();
+        assertThat(filter.memoryBytes()).isPositive();
+    }
+
+    private static List<UUID> randomIds(int count) {
+        return IntStream.range(0, count).mapToObj(i -> UUID.randomUUID()).toList();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.models.config.ReadReplicaProperties;
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAgreement;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Writes a snapshot of primed caches and restores it into empty ones over a migrated Postgres,
+ * checking that only keys survive the restart and that the values are re-read once the bus
+ * listens. Docker is required.
+ */
+class CacheSnapshotsTest {
+
+    private static PostgresFixture postgres;
+    private static R2dbcEntityTemplate template;
+
+    @BeforeAll
+    static void startDatabase() {
+        postgres = PostgresFixture.start();
+        template = new R2dbcEntityTemplate(postgres.connectionFactory());
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        postgres.close();
+    }
+
+    @Test
+    void restoredKeysAreReReadOnceListening() throws IOException {
+        PostgresFixture.SeededAsset asset = postgres.seedAsset(0);
+        Node before = new Node(true);
+        before.ownershipCache.put(asset.agreementId(), asset.assetId(), before.ownershipCache.generation());
+        before.agreementCache.prime(agreement(asset.agreementId()), before.agreementCache.generation());
+        byte[] snapshot = before.write();
+        postgres.execute("UPDATE asset_finance_agreement SET total_value = 250000 WHERE asset_finance_agreement_id = ?",
+                asset.agreementId());
+
+        Node after = new Node(true);
+        after.snapshots.restore(ByteBuffer.wrap(snapshot));
+
+        assertThat(after.agreementCache.keys()).isEmpty();
+        assertThat(after.ownershipCache.contains(asset.agreementId(), asset.assetId())).isFalse();
+
+        after.snapshots.listening();
+
+        await(() -> after.ownershipCache.contains(asset.agreementId(), asset.assetId()));
+        AssetFinanceAgreement cached = after.agreementCache.get(asset.agreementId(),
+                id -> Mono.error(new AssertionError("agreement was not restored"))).block();
+        assertThat(cached.getTotalValue()).isEqualByComparingTo(new BigDecimal("250000"));
+    }
+
+    @Test
+    void restoresOnlyRowsThatStillExist() throws IOException {
+        PostgresFixture.SeededAsset asset = postgres.seedAsset(0);
+        UUID deleted = UUID.randomUUID();
+        Node before = new Node(false);
+        before.ownershipCache.put(asset.agreementId(), asset.assetId(), before.ownershipCache.generation());
+        before.ownershipCache.put(asset.agreementId(), deleted, before.ownershipCache.generation());
+        byte[] snapshot = before.write();
+
+        // without the bus there is no LISTEN to wait for
+        Node after = new Node(false);
+        after.snapshots.restore(ByteBuffer.wrap(snapshot));
+
+        await(() -> after.ownershipCache.contains(asset.agreementId(), asset.assetId()));
+        assertThat(after.ownershipCache.contains(asset.agreementId(), deleted)).isFalse();
+    }
+
+    private static AssetFinanceAgreement agreement(UUID id) {
+        return template.selectOne(Query.query(Criteria.where("assetFinanceAgreementId").is(id)),
+                AssetFinanceAgreement.class).block();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("snapshot reconciled in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * The caches of one node and the snapshot over them.
+     */
+    private static final class Node {
+
+        private final AgreementCache agreementCache;
+        private final AssetOwnershipCache ownershipCache;
+        private final CacheSnapshots snapshots;
+
+        private Node(boolean invalidation) {
+            StaticListableBeanFactory beans = new StaticListableBeanFactory();
+            CacheProperties properties = new CacheProperties();
+            properties.getInvalidation().setEnabled(invalidation);
+            properties.getAssetOwnership().setMaximumSize(1_024);
+            CacheInvalidationBus bus = new CacheInvalidationBus(null, null, properties, new ReadReplicaProperties(),
+                    beans.getBeanProvider(CacheInvalidationListener.class));
+            agreementCache = new AgreementCache(properties, bus,
+                    new SingleFlight(new NoOpTransactionManager(), beans.getBeanProvider(MeterRegistry.class)),
+                    beans.getBeanProvider(MeterRegistry.class));
+            ownershipCache = new AssetOwnershipCache(properties, bus, beans.getBeanProvider(MeterRegistry.class));
+            snapshots = new CacheSnapshots(template, agreementCache, ownershipCache, bus);
+        }
+
+        private byte[] write() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                snapshots.write(out);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.firefly.core.lending.assetfinance.models.config.ReadReplicaProperties;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilterResultCacheTest {
+
+    private static final List<?> QUERY = List.of("usageDetail=odd", "mileage ASC", 0, 10);
+
+    private final FilterResultCache cache = cache();
+    private final List<Sinks.One<String>> loads = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    @Test
+    void concurrentMissesShareOneLoadAndCacheIt() {
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+        get(QUERY).subscribe(first::set);
+        get(QUERY).subscribe(second::set);
+
+        loads.get(0).tryEmitValue("page");
+
+        assertThat(loads).hasSize(1);
+        assertThat(first).hasValue("page");
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(get(QUERY).block()).isSameAs(first.get());
+        assertThat(loads).hasSize(1);
+    }
+
+    @Test
+    void differentQueriesDoNotShareALoad() {
+        get(QUERY).subscribe();
+        get(List.of("usageDetail=odd", "mileage ASC", 1, 10)).subscribe();
+
+        assertThat(loads).hasSize(2);
+    }
+
+    @Test
+    void callerAfterWriteDoesNotJoinEarlierLoad() {
+        AtomicReference<String> stale = new AtomicReference<>();
+        AtomicReference<String> fresh = new AtomicReference<>();
+        get(QUERY).subscribe(stale::set);
+        cache.invalidate(UsageRecord.class).block();
+        get(QUERY).subscribe(fresh::set);
+
+        assertThat(loads).hasSize(2);
+        loads.get(0).tryEmitValue("before");
+        loads.get(1).tryEmitValue("after");
+
+        assertThat(stale).hasValue("before");
+        assertThat(fresh).hasValue("after");
+        assertThat(get(QUERY).block()).isEqualTo("after");
+        assertThat(loads).hasSize(2);
+    }
+
+    @Test
+    void loadIsCancelledOnlyOnceEveryCallerLeft() {
+        Disposable first = get(QUERY).subscribe();
+        AtomicReference<String> second = new AtomicReference<>();
+        Disposable secondCall = get(QUERY).subscribe(second::set);
+
+        first.dispose();
+        assertThat(cancelled).isFalse();
+        secondCall.dispose();
+        assertThat(cancelled).isTrue();
+
+        // nothing was cached and the cancelled load is not joined again
+        get(QUERY).subscribe(second::set);
+        assertThat(loads).hasSize(2);
+        loads.get(1).tryEmitValue("page");
+        assertThat(second).hasValue("page");
+    }
+
+    private Mono<String> get(List<?> query) {
+        return cache.get(UsageRecord.class, query, () -> {
+            Sinks.One<String> sink = Sinks.one();
+            loads.add(sink);
+            return sink.asMono().doOnCancel(() -> cancelled.set(true));
+        });
+    }
+
+    private static FilterResultCache cache() {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        CacheProperties properties = new CacheProperties();
+        properties.getInvalidation().setEnabled(false);
+        return new FilterResultCache(properties,
+                new CacheInvalidationBus(null, null, properties, new ReadReplicaProperties(),
+                        beans.getBeanProvider(CacheInvalidationListener.class)),
+                new SingleFlight(new NoOpTransactionManager(), beans.getBeanProvider(MeterRegistry.class)),
+                beans.getBeanProvider(MeterRegistry.class));
+    }
+}
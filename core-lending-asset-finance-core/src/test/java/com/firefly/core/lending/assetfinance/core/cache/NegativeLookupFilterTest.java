@@ -0,0 +1,250 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.models.config.ReadReplicaProperties;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Builds the id filters from a migrated Postgres and checks the handoff of ids created around a
+ * build, that misses are only trusted within the listening session and staleness window of the
+ * filter, and that reconnects are debounced into one rebuild. Docker is required.
+ */
+class NegativeLookupFilterTest {
+
+    private static PostgresFixture postgres;
+    private static R2dbcEntityTemplate template;
+    private static UUID existing;
+
+    private final CacheProperties properties = new CacheProperties();
+    private final StubBus bus = new StubBus(properties);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private NegativeLookupFilter filter;
+
+    @BeforeAll
+    static void startDatabase() {
+        postgres = PostgresFixture.start();
+        postgres.seedAsset(50_000);
+        template = new R2dbcEntityTemplate(postgres.connectionFactory());
+        existing = template.select(Query.empty().limit(1), UsageRecord.class).blockFirst().getUsageRecordId();
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void createFilter() {
+        properties.getNegativeLookup().setRebuildDelay(Duration.ofMillis(10));
+        filter = new NegativeLookupFilter(template, bus, properties,
+                new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry)).getBeanProvider(MeterRegistry.class));
+        filter.start();
+    }
+
+    @Test
+    void lookupsGoToDatabaseUntilFirstBuild() {
+        assertThat(filter.isReady()).isFalse();
+
+        assertThat(lookup(UUID.randomUUID())).isEqualTo("row");
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void confirmedMissIsRejectedWithoutDatabase() {
+        build();
+
+        assertThat(lookup(existing)).isEqualTo("row");
+        assertThat(lookup(UUID.randomUUID())).isNull();
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void missBeyondStalenessWindowGoesToDatabase() {
+        build();
+        bus.delivered = false;
+
+        assertThat(lookup(UUID.randomUUID())).isEqualTo("row");
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void missAfterListenBreakGoesToDatabase() {
+        build();
+        bus.session = 0;
+
+        assertThat(lookup(UUID.randomUUID())).isEqualTo("row");
+
+        // a new session makes the filter built in the previous one untrusted until it is rebuilt
+        bus.session = 2;
+        assertThat(lookup(UUID.randomUUID())).isEqualTo("row");
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    void reconnectsAreDebouncedIntoOneRebuild() {
+        properties.getNegativeLookup().setRebuildDelay(Duration.ofMillis(500));
+        build();
+        double before = rebuilds();
+
+        for (int i = 0; i < 5; i++) {
+            bus.session++;
+            filter.invalidateAll();
+        }
+        awaitReady();
+
+        assertThat(rebuilds() - before).isEqualTo(NegativeLookupFilter.ENTITIES.size());
+    }
+
+    @Test
+    void idsCreatedBeforeAndDuringBuildAreKept() {
+        UUID before = UUID.randomUUID();
+        filter.recordCreated(UsageRecord.class, before).block();
+
+        bus.session++;
+        filter.invalidateAll();
+        List<UUID> during = IntStream.range(0, 100).mapToObj(i -> UUID.randomUUID()).toList();
+        filter.recordCreated(UsageRecord.class, during).block();
+        awaitReady();
+
+        assertThat(lookup(before)).isEqualTo("row");
+        during.forEach(this::lookup);
+        assertThat(lookups).hasValue(1 + during.size());
+    }
+
+    @Test
+    void idsOfOpenTransactionSurviveRebuild() {
+        build();
+        UUID created = UUID.randomUUID();
+        TransactionalOperator transactions = TransactionalOperator.create(new NoOpTransactionManager());
+
+        // the row is not committed, so the rebuild's scan cannot see it
+        transactions.transactional(filter.recordCreated(UsageRecord.class, created)
+                .then(Mono.fromRunnable(this::build))).block();
+
+        assertThat(lookup(created)).isEqualTo("row");
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void idsAnnouncedByOtherNodesAreAdded() {
+        build();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        filter.invalidate(InvalidationType.CREATED, "UsageRecord:" + first + "," + second);
+
+        lookup(first);
+        lookup(second);
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    void refusesToStartWithoutBus() {
+        CacheProperties properties = new CacheProperties();
+        properties.getInvalidation().setEnabled(false);
+
+        assertThatThrownBy(() -> new NegativeLookupFilter(template, new StubBus(properties), properties,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private String lookup(UUID id) {
+        return filter.lookup(UsageRecord.class, id, () -> {
+            lookups.incrementAndGet();
+            return Mono.just("row");
+        }).block();
+    }
+
+    private double rebuilds() {
+        return meterRegistry.find("negative.lookup.rebuilds").counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    /**
+     * Start a new listening session, as the bus does on {@code LISTEN}, and wait for the rebuild.
+     */
+    private void build() {
+        bus.session++;
+        filter.invalidateAll();
+        awaitReady();
+    }
+
+    private void awaitReady() {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!filter.isReady()) {
+            assertThat(System.nanoTime()).as("filters built in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Bus that publishes nothing and reports its session and heartbeat as configured.
+     */
+    private static final class StubBus extends CacheInvalidationBus {
+
+        private volatile long session;
+        private volatile boolean delivered = true;
+
+        StubBus(CacheProperties properties) {
+            super(null, null, properties, new ReadReplicaProperties(),
+                    new StaticListableBeanFactory().getBeanProvider(CacheInvalidationListener.class));
+        }
+
+        @Override
+        public Mono<Void> publish(InvalidationType type, Object key) {
+            return Mono.empty();
+        }
+
+        @Override
+        public long session() {
+            return session;
+        }
+
+        @Override
+        public boolean isDeliveredWithin(Duration staleness) {
+            return session != 0 && delivered;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.function.Tuples;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    private final NoOpTransactionManager transactionManager = new NoOpTransactionManager();
+    private final SingleFlight singleFlight = new SingleFlight(transactionManager,
+            new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicReference<Sinks.One<String>> pending = new AtomicReference<>();
+
+    @Test
+    void concurrentCallersShareOneLoad() {
+        StepVerifier.create(Mono.zip(call(), call()))
+                .then(() -> pending.get().tryEmitValue("agreement"))
+                .expectNext(Tuples.of("agreement", "agreement"))
+                .verifyComplete();
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void callersInsideTransactionRunTheirOwnLoad() {
+        Disposable outside = call().subscribe();
+        Sinks.One<String> shared = pending.get();
+
+        StepVerifier.create(TransactionalOperator.create(transactionManager).transactional(call()))
+                .then(() -> pending.get().tryEmitValue("own"))
+                .expectNext("own")
+                .verifyComplete();
+
+        assertThat(loads).hasValue(2);
+        assertThat(pending.get()).isNotSameAs(shared);
+        outside.dispose();
+    }
+
+    @Test
+    void callerContextReachesTheLoadWithoutTheTransactionSynchronization() {
+        AtomicReference<Object> seen = new AtomicReference<>();
+        AtomicBoolean actualTransaction = new AtomicBoolean(true);
+        Mono<String> load = Mono.deferContextual(context -> {
+            seen.set(context.getOrDefault("hint", null));
+            return TransactionSynchronizationManager.forCurrentTransaction()
+                    .doOnNext(synchronization -> actualTransaction.set(synchronization.isActualTransactionActive()))
+                    .thenReturn("agreement");
+        });
+
+        StepVerifier.create(singleFlight.execute("agreement", "hinted", () -> load).contextWrite(c -> c.put("hint", "strong")))
+                .expectNext("agreement")
+                .verifyComplete();
+
+        assertThat(seen).hasValue("strong");
+        assertThat(actualTransaction).isFalse();
+    }
+
+    @Test
+    void loadSurvivesWhileAnyCallerWaits() {
+        Disposable first = call().subscribe();
+        AtomicReference<String> second = new AtomicReference<>();
+        call().subscribe(second::set);
+
+        first.dispose();
+        pending.get().tryEmitValue("agreement");
+
+        assertThat(second).hasValue("agreement");
+        assertThat(cancelled).isFalse();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void loadIsCancelledOnceEveryCallerLeft() {
+        Disposable first = call().subscribe();
+        Disposable second = call().subscribe();
+
+        first.dispose();
+        second.dispose();
+
+        assertThat(cancelled).isTrue();
+        call().subscribe();
+        assertThat(loads).hasValue(2);
+    }
+
+    private Mono<String> call() {
+        return singleFlight.execute("agreement", "key", () -> {
+            loads.incrementAndGet();
+            Sinks.One<String> sink = Sinks.one();
+            pending.set(sink);
+            return sink.asMono().doOnCancel(() -> cancelled.set(true));
+        });
+    }
+}
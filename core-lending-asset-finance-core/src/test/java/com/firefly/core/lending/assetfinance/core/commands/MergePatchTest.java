@@ -0,0 +1,122 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.commands;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefly.core.lending.assetfinance.core.exceptions.VersionConflictException;
+import com.firefly.core.lending.assetfinance.core.filters.ParentScope;
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs merge patches scoped to an asset against a migrated Postgres, checking that the agreement
+ * in the route is enforced by the {@code UPDATE} itself. Docker is required.
+ */
+class MergePatchTest {
+
+    private static PostgresFixture postgres;
+    private static R2dbcEntityTemplate template;
+    private static MergePatch<UsageRecord, UsageRecordDTO> patch;
+
+    private PostgresFixture.SeededAsset asset;
+    private UsageRecord record;
+
+    @BeforeAll
+    static void startDatabase() {
+        postgres = PostgresFixture.start();
+        template = new R2dbcEntityTemplate(postgres.connectionFactory());
+        patch = new MergePatch<>(template, new ObjectMapper().findAndRegisterModules(),
+                Validation.buildDefaultValidatorFactory().getValidator(), UsageRecord.class, UsageRecordDTO.class,
+                dto -> UsageRecord.builder()
+                        .assetFinanceAssetId(dto.getAssetFinanceAssetId())
+                        .usageDate(dto.getUsageDate())
+                        .mileage(dto.getMileage())
+                        .usageDetail(dto.getUsageDetail())
+                        .build(),
+                Set.of("assetFinanceAssetId"));
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void seed() {
+        asset = postgres.seedAsset(1);
+        record = reload(null);
+    }
+
+    @Test
+    void patchesRowUnderItsAgreement() {
+        UsageRecord patched = patch.apply(record.getUsageRecordId(), Map.of("mileage", 42),
+                ParentScope.asset(asset.agreementId(), asset.assetId()), record.getVersion()).block();
+
+        assertThat(patched.getMileage()).isEqualTo(42);
+        assertThat(patched.getVersion()).isEqualTo(record.getVersion() + 1);
+    }
+
+    @Test
+    void foreignAgreementMatchesNoRow() {
+        UsageRecord patched = patch.apply(record.getUsageRecordId(), Map.of("mileage", 42),
+                ParentScope.asset(UUID.randomUUID(), asset.assetId()), null).block();
+
+        assertThat(patched).isNull();
+        assertThat(reload(record).getMileage()).isEqualTo(record.getMileage());
+    }
+
+    @Test
+    void foreignAgreementDoesNotRevealVersion() {
+        UsageRecord patched = patch.apply(record.getUsageRecordId(), Map.of("mileage", 42),
+                ParentScope.asset(UUID.randomUUID(), asset.assetId()), record.getVersion() + 5).block();
+
+        assertThat(patched).isNull();
+    }
+
+    @Test
+    void staleVersionUnderItsAgreementConflicts() {
+        assertThatThrownBy(() -> patch.apply(record.getUsageRecordId(), Map.of("mileage", 42),
+                        ParentScope.asset(asset.agreementId(), asset.assetId()), record.getVersion() + 5).block())
+                .isInstanceOfSatisfying(VersionConflictException.class,
+                        e -> assertThat(e.getCurrentVersion()).isEqualTo(record.getVersion()));
+    }
+
+    private UsageRecord reload(UsageRecord current) {
+        Criteria criteria = current == null
+                ? Criteria.where("assetFinanceAssetId").is(asset.assetId())
+                : Criteria.where("usageRecordId").is(current.getUsageRecordId());
+        return template.selectOne(Query.query(criteria), UsageRecord.class).block();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.exceptions;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a by-id lookup's {@code switchIfEmpty} branch with the previous
+ * {@link ResponseStatusException}, built eagerly with a stack trace, and with the lazily built,
+ * stackless {@link EntityNotFoundException}.
+ * <p>
+ * The {@code miss} benchmarks take the error path; the {@code hit} benchmarks find the row and
+ * show what building the error up front costs when it is never used. Lookups run {@code stackDepth}
+ * frames deep, since capturing a stack trace grows with the depth of the calling code (request
+ * handling in WebFlux is typically well over a hundred frames deep). Pure CPU; run with
+ * {@code mvn -pl core-lending-asset-finance-core test -Dtest=NotFoundBenchmarks}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotFoundBenchmarks {
+
+    private static final UUID ID = UUID.randomUUID();
+
+    @Param({"16", "128"})
+    private int stackDepth;
+
+    @Benchmark
+    public void missResponseStatusException(Blackhole blackhole) {
+        atDepth(stackDepth, () -> lookup(Mono.<UUID>empty()
+                .switchIfEmpty(Mono.error(new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Usage Record not found with id: " + ID))), blackhole));
+    }
+
+    @Benchmark
+    public void missEntityNotFoundException(Blackhole blackhole) {
+        atDepth(stackDepth, () -> lookup(Mono.<UUID>empty()
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Usage Record", ID))), blackhole));
+    }
+
+    @Benchmark
+    public void hitResponseStatusException(Blackhole blackhole) {
+        atDepth(stackDepth, () -> lookup(Mono.just(ID)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Usage Record not found with id: " + ID))), blackhole));
+    }
+
+    @Benchmark
+    public void hitEntityNotFoundException(Blackhole blackhole) {
+        atDepth(stackDepth, () -> lookup(Mono.just(ID)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Usage Record", ID))), blackhole));
+    }
+
+    private static void lookup(Mono<UUID> result, Blackhole blackhole) {
+        // the problem handler renders the message of every error it maps
+        result.subscribe(blackhole::consume, error -> blackhole.consume(error.getMessage()));
+    }
+
+    private static void atDepth(int depth, Runnable action) {
+        if (depth <= 0) {
+            action.run();
+        } else {
+            atDepth(depth - 1, action);
+        }
+    }
+
+    @Test
+    void benchmark() throws RunnerException {
+        new Runner(new OptionsBuilder().include(getClass().getName()).build()).run();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.filters;
+
+import com.firefly.core.lending.assetfinance.core.cache.CacheProperties;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import org.fireflyframework.core.filters.FilterRequest;
+import org.fireflyframework.core.queries.PaginationResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Latency of one listing page at increasing depth, with OFFSET pagination and with keyset
+ * (cursor) pagination, over a single asset holding {@value #ROWS} usage records.
+ * <p>
+ * OFFSET pages grow linearly with depth because Postgres reads and discards every skipped row;
+ * cursor pages are a bounded range scan of {@code idx_usage_record_keyset} and stay flat. Run with
+ * {@code mvn -pl core-lending-asset-finance-core test -Dtest=CursorPaginationBenchmarks}; Docker is
+ * required.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CursorPaginationBenchmarks {
+
+    private static final int ROWS = 500_000;
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Zero-based number of the page that is read.
+     */
+    @Param({"0", "100", "1000", "9000"})
+    public int pageDepth;
+
+    private PostgresFixture postgres;
+    private ScopedFilter<UsageRecord, UsageRecord> filter;
+    private ParentScope scope;
+    private FilterRequest<UsageRecord> offsetRequest;
+    private CursorPageRequest cursorRequest;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        postgres = PostgresFixture.start();
+        PostgresFixture.SeededAsset asset = postgres.seedAsset(ROWS);
+        R2dbcEntityTemplate template = new R2dbcEntityTemplate(postgres.connectionFactory());
+
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getFilterResults().setEnabled(false);
+        filter = new ScopedFilter<>(template, UsageRecord.class, Function.identity(),
+                new FilterResultCache(cacheProperties, null, null, null),
+                TransactionalOperator.create(new R2dbcTransactionManager(postgres.connectionFactory())));
+        scope = ParentScope.asset(asset.agreementId(), asset.assetId());
+
+        offsetRequest = mock(FilterRequest.class, Answers.RETURNS_DEEP_STUBS);
+        when(offsetRequest.getFilters()).thenReturn(null);
+        when(offsetRequest.getRangeFilters()).thenReturn(null);
+        when(offsetRequest.getPagination().getPageNumber()).thenReturn(pageDepth);
+        when(offsetRequest.getPagination().getPageSize()).thenReturn(PAGE_SIZE);
+        when(offsetRequest.getPagination().getSortBy()).thenReturn("createdAt");
+        when(offsetRequest.getPagination().getSortDirection()).thenReturn("DESC");
+
+        cursorRequest = CursorPageRequest.builder().size(PAGE_SIZE).build();
+        if (pageDepth > 0) {
+            // The cursor a client holds after walking pageDepth pages: the last row of the previous page
+            UsageRecord last = template.select(Query.query(Criteria.where("assetFinanceAssetId").is(asset.assetId()))
+                                    .sort(Sort.by(Sort.Direction.DESC, "createdAt", "usageRecordId"))
+                                    .offset((long) pageDepth * PAGE_SIZE - 1)
+                                    .limit(1),
+                            UsageRecord.class)
+                    .blockFirst();
+            cursorRequest.setCursor(new KeysetCursor("createdAt", Sort.Direction.DESC, last.getUsageRecordId(),
+                    last.getCreatedAt().toString()).encode());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        postgres.close();
+    }
+
+    @Benchmark
+    public List<UsageRecord> offsetPage() {
+        PaginationResponse<UsageRecord> page = filter.filter(offsetRequest, scope, CountMode.NONE, null).block();
+        return page.getContent();
+    }
+
+    @Benchmark
+    public List<UsageRecord> cursorPage() {
+        return filter.filterByCursor(null, cursorRequest, scope, null).block().getContent();
+    }
+
+    @Test
+    void benchmark() throws RunnerException {
+        new Runner(new OptionsBuilder().include(getClass().getName()).build()).run();
+    }
+}
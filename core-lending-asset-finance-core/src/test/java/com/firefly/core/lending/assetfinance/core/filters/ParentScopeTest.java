@@ -0,0 +1,139 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.core.filters;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.sql.Column;
+import org.springframework.data.relational.core.sql.Condition;
+import org.springframework.data.relational.core.sql.Conditions;
+import org.springframework.data.relational.core.sql.OrderByField;
+import org.springframework.data.relational.core.sql.SQL;
+import org.springframework.data.relational.core.sql.Select;
+import org.springframework.data.relational.core.sql.Table;
+import org.springframework.data.relational.core.sql.render.SqlRenderer;
+import org.springframework.r2dbc.core.binding.BindMarkers;
+import org.springframework.r2dbc.core.binding.BindMarkersFactory;
+import org.springframework.r2dbc.core.binding.BindTarget;
+import org.springframework.r2dbc.core.binding.MutableBindings;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParentScopeTest {
+
+    private static final UUID AGREEMENT = UUID.randomUUID();
+    private static final UUID ASSET = UUID.randomUUID();
+    private static final Table USAGE_RECORD = Table.create("usage_record");
+
+    @Test
+    void foldsOwnershipIntoWhereClauseOnNextBindMarkers() {
+        BindMarkers markers = BindMarkersFactory.indexed("$", 1).create();
+        Condition criteria = Conditions.isEqual(USAGE_RECORD.column("asset_finance_asset_id"), marker(markers))
+                .or(Conditions.isEqual(USAGE_RECORD.column("meter_reading"), marker(markers)));
+        MutableBindings bindings = new MutableBindings(markers);
+
+        String query = render(ParentScope.asset(AGREEMENT, ASSET).restrict(USAGE_RECORD, criteria, bindings));
+
+        assertThat(query)
+                .startsWith("SELECT usage_record.* FROM usage_record WHERE usage_record.asset_finance_asset_id IN (SELECT ")
+                .contains("owner.asset_finance_asset_id = $3 AND owner.asset_finance_agreement_id = $4)")
+                .endsWith(" AND (usage_record.asset_finance_asset_id = $1 OR usage_record.meter_reading = $2) "
+                        + "ORDER BY usage_record.created_at DESC");
+        assertThat(bind(bindings)).containsExactlyInAnyOrderEntriesOf(Map.of(2, ASSET, 3, AGREEMENT));
+    }
+
+    @Test
+    void leavesSqlTokensInsideCriteriaAlone() {
+        BindMarkers markers = BindMarkersFactory.indexed("$", 1).create();
+        Condition criteria = Conditions.just("usage_record.notes = ' WHERE x ORDER BY $7 RETURNING '");
+
+        String query = render(ParentScope.asset(AGREEMENT, ASSET)
+                .restrict(USAGE_RECORD, criteria, new MutableBindings(markers)));
+
+        assertThat(query)
+                .contains("owner.asset_finance_asset_id = $1 AND owner.asset_finance_agreement_id = $2)")
+                .contains(" AND (usage_record.notes = ' WHERE x ORDER BY $7 RETURNING ') ORDER BY ");
+    }
+
+    @Test
+    void restrictsStatementsWithoutCriteriaToOwnershipOnly() {
+        MutableBindings bindings = new MutableBindings(BindMarkersFactory.indexed("$", 1).create());
+
+        Condition condition = ParentScope.asset(AGREEMENT, ASSET).restrict(USAGE_RECORD, null, bindings);
+
+        assertThat(render(condition)).contains("WHERE usage_record.asset_finance_asset_id IN (SELECT ")
+                .doesNotContain(" AND (");
+        assertThat(bind(bindings)).hasSize(2);
+    }
+
+    @Test
+    void plainCriteriaLeaveConditionUntouched() {
+        MutableBindings bindings = new MutableBindings(BindMarkersFactory.indexed("$", 1).create());
+        Condition criteria = Conditions.just("x = 'a'");
+
+        assertThat(ParentScope.of(Criteria.where("x").is("a")).restrict(USAGE_RECORD, criteria, bindings))
+                .isSameAs(criteria);
+        assertThat(ParentScope.none().restrict(USAGE_RECORD, null, bindings)).isNull();
+        assertThat(ParentScope.of(Criteria.empty())).isSameAs(ParentScope.none());
+        assertThat(bind(bindings)).isEmpty();
+    }
+
+    private static org.springframework.data.relational.core.sql.BindMarker marker(BindMarkers markers) {
+        return SQL.bindMarker(markers.next().getPlaceholder());
+    }
+
+    private static String render(Condition where) {
+        Select select = Select.builder()
+                .select(USAGE_RECORD.asterisk())
+                .from(USAGE_RECORD)
+                .where(where)
+                .orderBy(OrderByField.from(Column.create("created_at", USAGE_RECORD)).desc())
+                .build();
+        return SqlRenderer.toString(select);
+    }
+
+    private static Map<Integer, Object> bind(MutableBindings bindings) {
+        Map<Integer, Object> bound = new HashMap<>();
+        bindings.apply(new BindTarget() {
+            @Override
+            public void bind(String identifier, Object value) {
+                throw new UnsupportedOperationException(identifier);
+            }
+
+            @Override
+            public void bind(int index, Object value) {
+                bound.put(index, value);
+            }
+
+            @Override
+            public void bindNull(String identifier, Class<?> type) {
+                throw new UnsupportedOperationException(identifier);
+            }
+
+            @Override
+            public void bindNull(int index, Class<?> type) {
+                bound.put(index, null);
+            }
+        });
+        return bound;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.filters;
+
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAgreementDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.DeliveryRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.PickupRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ServiceEventDTO;
+import com.firefly.core.lending.assetfinance.interfaces.enums.AgreementStatusEnum;
+import com.firefly.core.lending.assetfinance.interfaces.enums.DeliveryStatusEnum;
+import com.firefly.core.lending.assetfinance.interfaces.enums.EventTypeEnum;
+import com.firefly.core.lending.assetfinance.interfaces.enums.PickupStatusEnum;
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAgreement;
+import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAsset;
+import com.firefly.core.lending.assetfinance.models.entities.DeliveryRecord;
+import com.firefly.core.lending.assetfinance.models.entities.EndOption;
+import com.firefly.core.lending.assetfinance.models.entities.PickupRecord;
+import com.firefly.core.lending.assetfinance.models.entities.ReturnRecord;
+import com.firefly.core.lending.assetfinance.models.entities.ServiceEvent;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.UsageRecordRepository;
+import org.fireflyframework.core.filters.FilterRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.Answers;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.r2dbc.core.PreparedOperation;
+import org.springframework.r2dbc.core.binding.BindTarget;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Plan regression suite for the indexes created by the Flyway migrations.
+ * <p>
+ * Migrates a local Postgres, seeds it with a realistic shape (2,000 agreements with ten assets each
+ * and their child records, skewed statuses), and renders the statements the list, cursor and
+ * lookup endpoints issue from {@link ScopedFilter} and the repositories' {@link Query} methods. Each
+ * one is run through {@code PREPARE} and {@code EXPLAIN EXECUTE} with
+ * {@code plan_cache_mode = force_generic_plan}, the plan a pooled prepared statement settles on
+ * after its fifth execution, in which no index can be chosen for the literal values of one call. A
+ * hot query that falls back to a sequential scan fails the suite, e.g. when a migration drops an
+ * index a filter pattern still depends on. Docker is required.
+ * </p>
+ */
+class QueryPlanRegressionTest {
+
+    private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<!:):([a-zA-Z]\\w*)");
+
+    private static PostgresFixture postgres;
+    private static Connection connection;
+    private static R2dbcEntityTemplate template;
+    private static UUID agreement;
+    private static UUID asset;
+    private static UsageRecord usage;
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        postgres = PostgresFixture.start();
+        postgres.execute("""
+                INSERT INTO asset_finance_agreement (finance_type, agreement_status, start_date, end_date,
+                                                     total_value, payment_frequency, created_at)
+                SELECT (CASE WHEN n % 2 = 0 THEN 'LEASING' ELSE 'RENTING' END)::finance_type_enum,
+                       (CASE WHEN n % 100 = 0 THEN 'DEFAULTED' WHEN n % 3 = 0 THEN 'CLOSED' ELSE 'ACTIVE' END)::agreement_status_enum,
+                       DATE '2020-01-01' + n % 1500, DATE '2024-01-01' + n % 2000, 100000, 'MONTHLY',
+                       TIMESTAMP '2020-01-01' + n * INTERVAL '1 minute'
+                FROM generate_series(1, 2000) n""");
+        postgres.execute("""
+                INSERT INTO asset_finance_asset (asset_finance_agreement_id, asset_type_id, asset_value, created_at)
+                SELECT a.asset_finance_agreement_id, gen_random_uuid(), 50000, a.created_at + i * INTERVAL '1 second'
+                FROM asset_finance_agreement a, generate_series(1, 10) i""");
+        postgres.execute("""
+                INSERT INTO end_option (asset_finance_agreement_id, option_exercise_date, is_exercised, created_at)
+                SELECT a.asset_finance_agreement_id, a.end_date, i = 1, a.created_at + i * INTERVAL '1 second'
+                FROM asset_finance_agreement a, generate_series(1, 3) i""");
+        postgres.execute("""
+                INSERT INTO usage_record (asset_finance_asset_id, usage_date, mileage, created_at)
+                SELECT s.asset_finance_asset_id, DATE '2024-01-01' + i * 7, i * 100, s.created_at + i * INTERVAL '1 hour'
+                FROM asset_finance_asset s, generate_series(1, 20) i""");
+        postgres.execute("""
+                INSERT INTO service_event (asset_finance_asset_id, event_date, event_type, created_at)
+                SELECT s.asset_finance_asset_id, DATE '2024-01-01' + i * 30,
+                       (ARRAY['MAINTENANCE', 'DAMAGE', 'RETURN', 'INSPECTION', 'MODIFICATION'])[1 + i % 5]::event_type_enum,
+                       s.created_at + i * INTERVAL '1 hour'
+                FROM asset_finance_asset s, generate_series(1, 10) i""");
+        postgres.execute("""
+                INSERT INTO return_record (asset_finance_asset_id, actual_return_date, created_at)
+                SELECT s.asset_finance_asset_id, DATE '2024-01-01' + i * 90, s.created_at + i * INTERVAL '1 hour'
+                FROM asset_finance_asset s, generate_series(1, 3) i""");
+        postgres.execute("""
+                INSERT INTO delivery_record (asset_finance_asset_id, delivery_status, scheduled_delivery_date,
+                                             delivery_address, created_at)
+                SELECT s.asset_finance_asset_id,
+                       (CASE WHEN i = 4 AND abs(hashtext(s.asset_finance_asset_id::text)) % 10 = 0
+                             THEN 'SCHEDULED' ELSE 'DELIVERED' END)::delivery_status_enum,
+                       DATE '2024-01-01' + i * 10 + abs(hashtext(s.asset_finance_asset_id::text)) % 300,
+                       'Street 1', s.created_at + i * INTERVAL '1 hour'
+                FROM asset_finance_asset s, generate_series(1, 4) i""");
+        postgres.execute("""
+                INSERT INTO pickup_record (asset_finance_asset_id, pickup_status, scheduled_pickup_date,
+                                           pickup_address, created_at)
+                SELECT s.asset_finance_asset_id,
+                       (CASE WHEN i = 4 AND abs(hashtext(s.asset_finance_asset_id::text)) % 10 = 0
+                             THEN 'PENDING' ELSE 'PICKED_UP' END)::pickup_status_enum,
+                       DATE '2025-01-01' + i * 10 + abs(hashtext(s.asset_finance_asset_id::text)) % 300,
+                       'Street 1', s.created_at + i * INTERVAL '1 hour'
+                FROM asset_finance_asset s, generate_series(1, 4) i""");
+        postgres.execute("ANALYZE");
+
+        template = new R2dbcEntityTemplate(postgres.connectionFactory());
+        connection = postgres.openConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET plan_cache_mode = force_generic_plan");
+            try (ResultSet sample = statement.executeQuery("""
+                    SELECT s.asset_finance_agreement_id, s.asset_finance_asset_id, r.usage_record_id, r.created_at
+                    FROM asset_finance_asset s JOIN usage_record r ON r.asset_finance_asset_id = s.asset_finance_asset_id
+                    ORDER BY s.created_at, r.created_at LIMIT 1""")) {
+                sample.next();
+                agreement = sample.getObject(1, UUID.class);
+                asset = sample.getObject(2, UUID.class);
+                usage = UsageRecord.builder()
+                        .usageRecordId(sample.getObject(3, UUID.class))
+                        .createdAt(sample.getObject(4, LocalDateTime.class))
+                        .build();
+            }
+        }
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        connection.close();
+        postgres.close();
+    }
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                hotQuery("usage records of an asset, newest first", () -> page(UsageRecord.class,
+                        request(null, "createdAt"), assetScope(), List.of(), 11)),
+                hotQuery("usage records of an asset in a date range", () -> page(UsageRecord.class,
+                        request(null, null), assetScope(),
+                        filter(UsageRecord.class).toRangeCriteria("usageDate", LocalDate.of(2024, 3, 1), LocalDate.of(2024, 6, 30)),
+                        10)),
+                hotQuery("usage record count of an asset", () -> filter(UsageRecord.class)
+                        .countStatement(assetScope().criteria(), assetScope())),
+                hotQuery("usage record cursor page", () -> {
+                    ScopedFilter<UsageRecord, Object> filter = filter(UsageRecord.class);
+                    return filter.selectStatement(
+                            Criteria.from(assetScope().criteria(), filter.after(new KeysetCursor("createdAt",
+                                    Sort.Direction.DESC, usage.getUsageRecordId(), usage.getCreatedAt().toString()))),
+                            assetScope(), Sort.by(Sort.Direction.DESC, "createdAt", "usageRecordId"), null, 0, 51);
+                }),
+                hotQuery("usage record by id and path", () -> repositoryQuery(UsageRecordRepository.class,
+                        "findByIdAndPath", Map.of("usageRecordId", usage.getUsageRecordId(),
+                                "assetFinanceAssetId", asset, "assetFinanceAgreementId", agreement))),
+                hotQuery("latest usage records of an agreement", () -> repositoryQuery(UsageRecordRepository.class,
+                        "findLatestByAssetFinanceAgreementId",
+                        Map.of("assetFinanceAgreementId", agreement, "assetLimit", 10, "limit", 5))),
+                hotQuery("service events of an asset by type", () -> page(ServiceEvent.class,
+                        request(ServiceEventDTO.builder().eventType(EventTypeEnum.DAMAGE).build(), null),
+                        assetScope(), List.of(), 10)),
+                hotQuery("service events of an asset in a date range", () -> page(ServiceEvent.class,
+                        request(null, null), assetScope(),
+                        filter(ServiceEvent.class).toRangeCriteria("eventDate", LocalDate.of(2024, 2, 1), LocalDate.of(2024, 5, 31)),
+                        10)),
+                hotQuery("return records of an asset in a date range", () -> page(ReturnRecord.class,
+                        request(null, null), assetScope(),
+                        filter(ReturnRecord.class).toRangeCriteria("actualReturnDate", LocalDate.of(2024, 1, 1), null), 10)),
+                hotQuery("deliveries of an asset, newest first", () -> page(DeliveryRecord.class,
+                        request(null, "createdAt"), assetScope(), List.of(), 11)),
+                hotQuery("open deliveries of an asset", () -> page(DeliveryRecord.class,
+                        request(DeliveryRecordDTO.builder().deliveryStatus(DeliveryStatusEnum.SCHEDULED).build(), null),
+                        assetScope(), List.of(), 10)),
+                hotQuery("open deliveries scheduled in a window", () -> page(DeliveryRecord.class,
+                        request(DeliveryRecordDTO.builder().deliveryStatus(DeliveryStatusEnum.SCHEDULED).build(), null),
+                        ParentScope.none(), filter(DeliveryRecord.class).toRangeCriteria("scheduledDeliveryDate",
+                                LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 7)), 10)),
+                hotQuery("pickups of an asset, newest first", () -> page(PickupRecord.class,
+                        request(null, "createdAt"), assetScope(), List.of(), 11)),
+                hotQuery("open pickups scheduled in a window", () -> page(PickupRecord.class,
+                        request(PickupRecordDTO.builder().pickupStatus(PickupStatusEnum.PENDING).build(), null),
+                        ParentScope.none(), filter(PickupRecord.class).toRangeCriteria("scheduledPickupDate",
+                                LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 7)), 10)),
+                hotQuery("assets of an agreement", () -> page(AssetFinanceAsset.class, request(null, null),
+                        agreementScope(), List.of(), 10)),
+                hotQuery("latest assets of an agreement", () -> repositoryQuery(AssetFinanceAssetRepository.class,
+                        "findLatestByAssetFinanceAgreementId", Map.of("assetFinanceAgreementId", agreement, "limit", 10))),
+                hotQuery("existing assets among ids", () -> repositoryQuery(AssetFinanceAssetRepository.class,
+                        "findExistingIds", Map.of("ids", new UUID[]{asset, UUID.randomUUID()}))),
+                hotQuery("end options of an agreement", () -> page(EndOption.class, request(null, null),
+                        agreementScope(), List.of(), 10)),
+                // a filter on a rare status alone is left out: a generic plan cannot tell DEFAULTED
+                // from ACTIVE and rightly reads the first rows of a small table instead
+                hotQuery("active agreements maturing in a window", () -> page(AssetFinanceAgreement.class,
+                        request(AssetFinanceAgreementDTO.builder().agreementStatus(AgreementStatusEnum.ACTIVE).build(), null),
+                        ParentScope.none(), filter(AssetFinanceAgreement.class).toRangeCriteria("endDate",
+                                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 10)), 10)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQueryDoesNotScanTable(String name, Supplier<PreparedQuery> query) throws SQLException {
+        PreparedQuery prepared = query.get();
+
+        String plan;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PREPARE hot_query AS " + prepared.sql());
+            try (ResultSet result = statement.executeQuery("EXPLAIN EXECUTE hot_query" + prepared.arguments())) {
+                StringBuilder lines = new StringBuilder();
+                while (result.next()) {
+                    lines.append(result.getString(1)).append('\n');
+                }
+                plan = lines.toString();
+            } finally {
+                statement.execute("DEALLOCATE hot_query");
+            }
+        }
+
+        assertThat(plan).as("generic plan of '%s':%n%s%n%s", name, prepared.sql(), plan)
+                .contains("Index")
+                .doesNotContain("Seq Scan");
+    }
+
+    private static Arguments hotQuery(String name, Supplier<PreparedQuery> query) {
+        return Arguments.of(name, query);
+    }
+
+    private static ParentScope assetScope() {
+        return ParentScope.asset(agreement, asset);
+    }
+
+    private static ParentScope agreementScope() {
+        return ParentScope.of(Criteria.where("assetFinanceAgreementId").is(agreement));
+    }
+
+    private static <E> ScopedFilter<E, Object> filter(Class<E> entityClass) {
+        return new ScopedFilter<>(template, entityClass, null, null, null);
+    }
+
+    /**
+     * The page statement {@link ScopedFilter#filter} issues for the request, with the range filter
+     * bounds the framework's {@code RangeFilter} would contribute.
+     */
+    private static PreparedQuery page(Class<?> entityClass, FilterRequest<?> request, ParentScope scope,
+                                      List<Criteria> ranges, int limit) {
+        List<Criteria> criteria = new ArrayList<>();
+        ScopedFilter<?, ?> filter = filter(entityClass);
+        criteria.add(filter.toCriteria(request, scope.criteria()));
+        criteria.addAll(ranges);
+        return prepared(filter.selectStatement(Criteria.from(criteria), scope, filter.toSort(request), null, 0, limit));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FilterRequest<Object> request(Object filters, String sortBy) {
+        FilterRequest<Object> request = mock(FilterRequest.class, Answers.RETURNS_DEEP_STUBS);
+        when(request.getFilters()).thenReturn(filters);
+        when(request.getRangeFilters()).thenReturn(null);
+        if (sortBy == null) {
+            when(request.getPagination()).thenReturn(null);
+        } else {
+            when(request.getPagination().getSortBy()).thenReturn(sortBy);
+            when(request.getPagination().getSortDirection()).thenReturn("DESC");
+        }
+        return request;
+    }
+
+    /**
+     * The {@link Query} of a repository method, with its named parameters numbered in order of
+     * first appearance as they are when the statement is prepared.
+     */
+    private static PreparedQuery repositoryQuery(Class<?> repository, String method, Map<String, Object> values) {
+        String sql = Arrays.stream(repository.getMethods())
+                .filter(candidate -> candidate.getName().equals(method) && candidate.isAnnotationPresent(Query.class))
+                .findFirst()
+                .orElseThrow()
+                .getAnnotation(Query.class)
+                .value();
+        Map<String, Integer> markers = new LinkedHashMap<>();
+        Matcher matcher = NAMED_PARAMETER.matcher(sql);
+        String numbered = matcher.replaceAll(parameter ->
+                "\\$" + markers.computeIfAbsent(parameter.group(1), name -> markers.size() + 1));
+        return new PreparedQuery(numbered, markers.keySet().stream().map(values::get).toList());
+    }
+
+    private static PreparedQuery prepared(PreparedOperation<?> operation) {
+        Map<Integer, Object> values = new TreeMap<>();
+        operation.bindTo(new BindTarget() {
+            @Override
+            public void bind(String identifier, Object value) {
+                throw new UnsupportedOperationException("Named binding: " + identifier);
+            }
+
+            @Override
+            public void bind(int index, Object value) {
+                values.put(index, value instanceof io.r2dbc.spi.Parameter parameter ? parameter.getValue() : value);
+            }
+
+            @Override
+            public void bindNull(String identifier, Class<?> type) {
+                throw new UnsupportedOperationException("Named binding: " + identifier);
+            }
+
+            @Override
+            public void bindNull(int index, Class<?> type) {
+                values.put(index, null);
+            }
+        });
+        return new PreparedQuery(operation.toQuery(), new ArrayList<>(values.values()));
+    }
+
+    /**
+     * A statement with {@code $n} markers and the values bound to them.
+     */
+    private record PreparedQuery(String sql, List<Object> values) {
+
+        String arguments() {
+            return values.isEmpty() ? "" : values.stream()
+                    .map(PreparedQuery::literal)
+                    .collect(Collectors.joining(", ", "(", ")"));
+        }
+
+        private static String literal(Object value) {
+            if (value == null) {
+                return "NULL";
+            }
+            if (value instanceof Number || value instanceof Boolean) {
+                return value.toString();
+            }
+            if (value instanceof Object[] array) {
+                return literal(Arrays.stream(array).map(String::valueOf).collect(Collectors.joining(",", "{", "}")));
+            }
+            return "'" + value.toString().replace("'", "''") + "'";
+        }
+    }
+}
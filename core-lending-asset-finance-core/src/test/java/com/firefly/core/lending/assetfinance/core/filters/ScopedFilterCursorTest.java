@@ -0,0 +1,275 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.filters;
+
+import com.firefly.core.lending.assetfinance.core.cache.CacheProperties;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import org.fireflyframework.core.filters.FilterRequest;
+import org.fireflyframework.core.queries.PaginationResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.Answers;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Walks keyset pages over a migrated Postgres and compares them with the same listing read in one
+ * query, and checks the totals offset pages report in each count mode and the columns they load
+ * for a sparse fieldset. Docker is required.
+ */
+class ScopedFilterCursorTest {
+
+    private static final int PAGE_SIZE = 7;
+
+    private static PostgresFixture postgres;
+    private static R2dbcEntityTemplate template;
+    private static ScopedFilter<UsageRecord, UsageRecord> filter;
+    private static PostgresFixture.SeededAsset asset;
+
+    @BeforeAll
+    static void startDatabase() {
+        postgres = PostgresFixture.start();
+        asset = postgres.seedAsset(300);
+        // many ties and NULLs in the sort column, and a text column to filter on
+        postgres.execute("UPDATE usage_record SET " +
+                "usage_detail = CASE WHEN mileage % 2 = 0 THEN 'even' ELSE 'odd' END, " +
+                "mileage = CASE WHEN mileage % 6 < 2 THEN NULL ELSE mileage % 13 END");
+        template = new R2dbcEntityTemplate(postgres.connectionFactory());
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getFilterResults().setEnabled(false);
+        filter = new ScopedFilter<>(template, UsageRecord.class, Function.identity(),
+                new FilterResultCache(cacheProperties, null, null, null),
+                TransactionalOperator.create(new R2dbcTransactionManager(postgres.connectionFactory())));
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        postgres.close();
+    }
+
+    @ParameterizedTest
+    @EnumSource(Sort.Direction.class)
+    void walksFilteredRowsInRequestedSortIncludingNulls(Sort.Direction direction) {
+        FilterRequest<UsageRecord> request = request(UsageRecord.builder().usageDetail("odd").build(), "mileage", direction);
+
+        List<UUID> walked = walk(request, null);
+
+        List<UUID> expected = template.select(Query.query(Criteria.where("assetFinanceAssetId").is(asset.assetId())
+                                .and("usageDetail").is("odd"))
+                        .sort(Sort.by(direction, "mileage", "usageRecordId")), UsageRecord.class)
+                .map(UsageRecord::getUsageRecordId)
+                .collectList()
+                .block();
+        assertThat(expected).hasSize(150);
+        assertThat(walked).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void walksNewestFirstWithoutFilterRequest() {
+        List<UUID> walked = walk(null, null);
+
+        List<UUID> expected = template.select(Query.query(Criteria.where("assetFinanceAssetId").is(asset.assetId()))
+                        .sort(Sort.by(Sort.Direction.DESC, "createdAt", "usageRecordId")), UsageRecord.class)
+                .map(UsageRecord::getUsageRecordId)
+                .collectList()
+                .block();
+        assertThat(walked).hasSize(300).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void loadsSortPropertyForCursorWhenFieldsAreProjected() {
+        FilterRequest<UsageRecord> request = request(null, "mileage", Sort.Direction.ASC);
+
+        assertThat(walk(request, Set.of("usageDate"))).hasSize(300).containsExactlyElementsOf(walk(request, null));
+    }
+
+    @Test
+    void selectsOnlyRequestedFieldsAndKeys() {
+        PaginationResponse<UsageRecord> page = filter.filter(request(null, "mileage", Sort.Direction.ASC),
+                ParentScope.asset(asset.agreementId(), asset.assetId()), CountMode.NONE, Set.of("usageDetail")).block();
+
+        assertThat(page.getContent()).hasSize(10).allSatisfy(row -> {
+            assertThat(row.getUsageRecordId()).isNotNull();
+            assertThat(row.getCreatedAt()).isNotNull();
+            assertThat(row.getUsageDetail()).isIn("even", "odd");
+            assertThat(row.getUsageDate()).isNull();
+            assertThat(row.getAssetFinanceAssetId()).isNull();
+        });
+        assertThatThrownBy(() -> filter.filter(request(null, null, Sort.Direction.ASC),
+                ParentScope.asset(asset.agreementId(), asset.assetId()), CountMode.NONE, Set.of("meterReading")).block())
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    @Test
+    void rejectsCursorIssuedForAnotherSort() {
+        CursorPageResponse<UsageRecord> first = page(request(null, "mileage", Sort.Direction.ASC), null, null);
+
+        assertThatThrownBy(() -> page(request(null, "mileage", Sort.Direction.DESC), first.getNextCursor(), null))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("another sort");
+        assertThatThrownBy(() -> page(null, first.getNextCursor(), null))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void rejectsSortOnUnknownProperty() {
+        assertThatThrownBy(() -> page(request(null, "meterReading", Sort.Direction.ASC), null, null))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void rejectsRangeFilterOnUnknownProperty() {
+        assertThatThrownBy(() -> filter.toRangeCriteria("1=1) OR (1=1", 0, null))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThatThrownBy(() -> filter.toRangeCriteria("meterReading", 0, 10))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThat(filter.toRangeCriteria("usageDate", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)))
+                .hasSize(2);
+    }
+
+    @Test
+    void countsExactTotalAlongsideOffsetPage() {
+        PaginationResponse<UsageRecord> page = filter.filter(request(null, null, Sort.Direction.ASC),
+                ParentScope.asset(asset.agreementId(), asset.assetId()), CountMode.EXACT, null).block();
+
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getTotalElements()).isEqualTo(300);
+        assertThat(page.getTotalPages()).isEqualTo(30);
+    }
+
+    @Test
+    void estimatesTotalFromPlannerStatistics() {
+        postgres.execute("ANALYZE usage_record");
+
+        PaginationResponse<UsageRecord> page = filter.filter(request(null, null, Sort.Direction.ASC),
+                ParentScope.asset(asset.agreementId(), asset.assetId()), CountMode.ESTIMATED, null).block();
+
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getTotalElements()).isBetween(150L, 600L);
+    }
+
+    @Test
+    void probesNextPageWithoutCounting() {
+        FilterRequest<UsageRecord> request = request(UsageRecord.builder().usageDetail("odd").build(), null,
+                Sort.Direction.ASC);
+        ParentScope scope = ParentScope.asset(asset.agreementId(), asset.assetId());
+
+        PaginationResponse<UsageRecord> first = filter.filter(request, scope, CountMode.NONE, null).block();
+        when(request.getPagination().getPageNumber()).thenReturn(14);
+        PaginationResponse<UsageRecord> last = filter.filter(request, scope, CountMode.NONE, null).block();
+
+        // the extra row only tells that another page exists
+        assertThat(first.getContent()).hasSize(10);
+        assertThat(first.getTotalElements()).isEqualTo(11);
+        assertThat(first.getTotalPages()).isEqualTo(2);
+        assertThat(last.getContent()).hasSize(10);
+        assertThat(last.getTotalElements()).isEqualTo(150);
+        assertThat(last.getTotalPages()).isEqualTo(15);
+        assertThat(last.getCurrentPage()).isEqualTo(14);
+    }
+
+    @Test
+    void rejectsOffsetSortOnUnknownProperty() {
+        FilterRequest<UsageRecord> request = request(null, "meterReading", Sort.Direction.ASC);
+
+        assertThatThrownBy(() -> filter.filter(request, ParentScope.asset(asset.agreementId(), asset.assetId()),
+                CountMode.EXACT, null).block())
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    @Test
+    void cursorRoundTripsValuesContainingSeparator() {
+        UUID id = UUID.randomUUID();
+        KeysetCursor cursor = new KeysetCursor("usageDetail", Sort.Direction.ASC, id, "a|b=c");
+
+        assertThat(KeysetCursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThat(KeysetCursor.decode(new KeysetCursor("usageDetail", Sort.Direction.DESC, id, null).encode()).value())
+                .isNull();
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        UUID id = UUID.randomUUID();
+        String withoutSort = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("2024-01-01T00:00:05|" + id).getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> KeysetCursor.decode(withoutSort))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThatThrownBy(() -> KeysetCursor.decode("not a cursor")).isInstanceOf(ResponseStatusException.class);
+    }
+
+    private static List<UUID> walk(FilterRequest<UsageRecord> request, Set<String> fields) {
+        List<UUID> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageResponse<UsageRecord> page = page(request, cursor, fields);
+            page.getContent().forEach(row -> ids.add(row.getUsageRecordId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static CursorPageResponse<UsageRecord> page(FilterRequest<UsageRecord> request, String cursor,
+                                                        Set<String> fields) {
+        return filter.filterByCursor(request, new CursorPageRequest(cursor, PAGE_SIZE),
+                ParentScope.asset(asset.agreementId(), asset.assetId()), fields).block();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FilterRequest<UsageRecord> request(UsageRecord filters, String sortBy, Sort.Direction direction) {
+        FilterRequest<UsageRecord> request = mock(FilterRequest.class, Answers.RETURNS_DEEP_STUBS);
+        when(request.getFilters()).thenReturn(filters);
+        when(request.getRangeFilters()).thenReturn(null);
+        when(request.getPagination().getSortBy()).thenReturn(sortBy);
+        when(request.getPagination().getSortDirection()).thenReturn(direction.name());
+        return request;
+    }
+}
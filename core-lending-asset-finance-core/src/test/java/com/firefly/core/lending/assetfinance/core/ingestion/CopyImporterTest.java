@@ -0,0 +1,265 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.ingestion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefly.core.lending.assetfinance.core.cache.CacheProperties;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ImportSummaryDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ServiceEventDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.enums.EventTypeEnum;
+import com.firefly.core.lending.assetfinance.models.config.ConnectionPools;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Streams usage records and service events through {@code COPY} into a migrated Postgres and
+ * reads them back, checking the text encoding of every column type, the reject file, and that a
+ * row the server refuses aborts the whole import. Docker is required.
+ */
+class CopyImporterTest {
+
+    private static final int VALIDATION_WINDOW = 100;
+
+    private static PostgresFixture postgres;
+    private static R2dbcEntityTemplate template;
+    private static DatabaseClient databaseClient;
+
+    @TempDir
+    Path rejectDirectory;
+
+    private PostgresFixture.SeededAsset asset;
+    private CopyImporter importer;
+
+    @BeforeAll
+    static void startDatabase() {
+        postgres = PostgresFixture.start();
+        template = new R2dbcEntityTemplate(postgres.connectionFactory());
+        databaseClient = template.getDatabaseClient();
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void createImporter() {
+        asset = postgres.seedAsset(0);
+        ConnectionPools connectionPools = mock(ConnectionPools.class);
+        when(connectionPools.export()).thenReturn(postgres.connectionFactory());
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getFilterResults().setEnabled(false);
+        cacheProperties.getNegativeLookup().setEnabled(false);
+        IngestionProperties ingestionProperties = new IngestionProperties();
+        ingestionProperties.getCopy().setRejectDirectory(rejectDirectory.toString());
+        ingestionProperties.getCopy().setValidationWindow(VALIDATION_WINDOW);
+        importer = new CopyImporter(connectionPools,
+                new R2dbcRepositoryFactory(template).getRepository(AssetFinanceAssetRepository.class),
+                new FilterResultCache(cacheProperties, null, null, null),
+                new NegativeLookupFilter(template, null, cacheProperties,
+                        new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class)),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper().findAndRegisterModules(),
+                ingestionProperties);
+    }
+
+    @Test
+    void importsUsageRecordsAcrossWindows() {
+        int rows = VALIDATION_WINDOW * 3 + 7;
+        Flux<UsageRecordDTO> records = Flux.range(0, rows).map(i -> UsageRecordDTO.builder()
+                .assetFinanceAssetId(asset.assetId())
+                .usageDate(LocalDate.of(2024, 1, 1).plusDays(i))
+                .mileage(i)
+                .usageDetail("trip " + i)
+                .build());
+
+        ImportSummaryDTO summary = importer.importUsageRecords(records).block();
+
+        assertThat(summary.getTable()).isEqualTo("usage_record");
+        assertThat(summary.getImported()).isEqualTo(rows);
+        assertThat(summary.getRejected()).isZero();
+        assertThat(summary.getRejectFile()).isNull();
+        List<Map<String, Object>> imported = usageRecords();
+        assertThat(imported).hasSize(rows);
+        assertThat(imported).extracting(row -> row.get("mileage"))
+                .containsExactlyElementsOf(IntStream.range(0, rows).boxed().toList());
+        assertThat(imported).extracting(row -> row.get("usage_detail"))
+                .containsExactlyElementsOf(IntStream.range(0, rows).mapToObj(i -> "trip " + i).toList());
+    }
+
+    @Test
+    void importsServiceEvents() {
+        Flux<ServiceEventDTO> events = Flux.fromArray(EventTypeEnum.values()).map(type -> ServiceEventDTO.builder()
+                .assetFinanceAssetId(asset.assetId())
+                .eventDate(LocalDate.of(2024, 3, 1).plusDays(type.ordinal()))
+                .eventType(type)
+                .cost(new BigDecimal("1234.50"))
+                .note(type.name().toLowerCase())
+                .build());
+
+        ImportSummaryDTO summary = importer.importServiceEvents(events).block();
+
+        assertThat(summary.getTable()).isEqualTo("service_event");
+        assertThat(summary.getImported()).isEqualTo(EventTypeEnum.values().length);
+        List<Map<String, Object>> imported = serviceEvents();
+        assertThat(imported).extracting(row -> row.get("event_type"))
+                .containsExactly((Object[]) EventTypeEnum.values());
+        assertThat(imported).allSatisfy(row -> {
+            assertThat((BigDecimal) row.get("cost")).isEqualByComparingTo("1234.50");
+            assertThat(row.get("note")).isEqualTo(row.get("event_type").toString().toLowerCase());
+        });
+    }
+
+    @Test
+    void encodesNullsEscapesUuidsAndTimestamps() {
+        LocalDateTime before = databaseClient.sql("SELECT now()::timestamp")
+                .map(row -> row.get(0, LocalDateTime.class))
+                .one()
+                .block();
+        String detail = "tab\there, line\nbreak, carriage\rreturn and back\\slash \\N";
+
+        importer.importUsageRecords(Flux.just(
+                UsageRecordDTO.builder()
+                        .assetFinanceAssetId(asset.assetId())
+                        .usageDate(LocalDate.of(2024, 2, 29))
+                        .build(),
+                UsageRecordDTO.builder()
+                        .assetFinanceAssetId(asset.assetId())
+                        .usageDate(LocalDate.of(2024, 3, 1))
+                        .mileage(0)
+                        .usageDetail(detail)
+                        .build())).block();
+        importer.importServiceEvents(Flux.just(ServiceEventDTO.builder()
+                .assetFinanceAssetId(asset.assetId())
+                .eventDate(LocalDate.of(2024, 3, 2))
+                .eventType(EventTypeEnum.DAMAGE)
+                .build())).block();
+
+        List<Map<String, Object>> records = usageRecords();
+        assertThat(records).hasSize(2);
+        Map<String, Object> sparse = records.get(0);
+        assertThat(sparse.get("usage_date")).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(sparse.get("mileage")).isNull();
+        assertThat(sparse.get("usage_detail")).isNull();
+        Map<String, Object> escaped = records.get(1);
+        assertThat(escaped.get("mileage")).isEqualTo(0);
+        assertThat(escaped.get("usage_detail")).isEqualTo(detail);
+        assertThat(records).allSatisfy(row -> {
+            assertThat(row.get("usage_record_id")).isInstanceOf(UUID.class);
+            assertThat(row.get("asset_finance_asset_id")).isEqualTo(asset.assetId());
+            assertThat((LocalDateTime) row.get("created_at")).isAfterOrEqualTo(before);
+            assertThat(row.get("version")).isEqualTo(0L);
+        });
+        assertThat(records).extracting(row -> row.get("usage_record_id")).doesNotHaveDuplicates();
+
+        Map<String, Object> event = serviceEvents().get(0);
+        assertThat(event.get("event_type")).isEqualTo(EventTypeEnum.DAMAGE);
+        assertThat(event.get("cost")).isNull();
+        assertThat(event.get("note")).isNull();
+        assertThat((LocalDateTime) event.get("created_at")).isAfterOrEqualTo(before);
+    }
+
+    @Test
+    void writesInvalidRowsAndUnknownAssetsToRejectFile() throws Exception {
+        UUID unknownAsset = UUID.randomUUID();
+
+        ImportSummaryDTO summary = importer.importUsageRecords(Flux.just(
+                UsageRecordDTO.builder().assetFinanceAssetId(asset.assetId()).usageDate(LocalDate.of(2024, 1, 1)).build(),
+                UsageRecordDTO.builder().assetFinanceAssetId(asset.assetId()).mileage(-1).build(),
+                UsageRecordDTO.builder().assetFinanceAssetId(unknownAsset).usageDate(LocalDate.of(2024, 1, 2)).build()))
+                .block();
+
+        assertThat(summary.getImported()).isEqualTo(1);
+        assertThat(summary.getRejected()).isEqualTo(2);
+        List<String> rejects = Files.readAllLines(Path.of(summary.getRejectFile()));
+        assertThat(rejects).hasSize(2);
+        assertThat(rejects.get(0)).contains("\"index\":1", "mileage", "usageDate");
+        assertThat(rejects.get(1)).contains("\"index\":2", "Asset Finance Asset not found with id: " + unknownAsset);
+        assertThat(usageRecords()).hasSize(1);
+    }
+
+    @Test
+    void rowRefusedByServerRollsBackWholeImport() {
+        // valid for bean validation, but Postgres text cannot hold NUL, so COPY fails on the last window
+        Flux<UsageRecordDTO> records = Flux.range(0, VALIDATION_WINDOW * 2 + 1).map(i -> UsageRecordDTO.builder()
+                .assetFinanceAssetId(asset.assetId())
+                .usageDate(LocalDate.of(2024, 1, 1))
+                .usageDetail(i == VALIDATION_WINDOW * 2 ? "bad\u0000row" : "row " + i)
+                .build());
+
+        assertThatThrownBy(() -> importer.importUsageRecords(records).block()).isInstanceOf(RuntimeException.class);
+
+        assertThat(usageRecords()).isEmpty();
+    }
+
+    private List<Map<String, Object>> usageRecords() {
+        return databaseClient.sql("SELECT usage_record_id, asset_finance_asset_id, usage_date, mileage, usage_detail, "
+                        + "created_at, version FROM usage_record WHERE asset_finance_asset_id = :assetId "
+                        + "ORDER BY usage_date, mileage NULLS FIRST")
+                .bind("assetId", asset.assetId())
+                .fetch()
+                .all()
+                .collectList()
+                .block();
+    }
+
+    private List<Map<String, Object>> serviceEvents() {
+        return databaseClient.sql("SELECT event_type::text AS event_type, cost, note, created_at FROM service_event "
+                        + "WHERE asset_finance_asset_id = :assetId ORDER BY event_date")
+                .bind("assetId", asset.assetId())
+                .map(row -> Map.<String, Object>of(
+                        "event_type", EventTypeEnum.valueOf(row.get("event_type", String.class)),
+                        "cost", row.get("cost", BigDecimal.class),
+                        "note", row.get("note", String.class),
+                        "created_at", row.get("created_at", LocalDateTime.class)))
+                .all()
+                .collectList()
+                .block();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.services.impl;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static com.firefly.core.lending.assetfinance.core.services.AssetFinanceAgreementTreeService.DEFAULT_ASSET_LIMIT;
+import static com.firefly.core.lending.assetfinance.core.services.AssetFinanceAgreementTreeService.DEFAULT_CHILD_LIMIT;
+import static com.firefly.core.lending.assetfinance.core.services.AssetFinanceAgreementTreeService.MAX_LIMIT;
+import static com.firefly.core.lending.assetfinance.core.services.AssetFinanceAgreementTreeService.MAX_ROWS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AssetFinanceAgreementTreeServiceImplTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, DEFAULT_ASSET_LIMIT, 500, MAX_LIMIT})
+    void childBudgetKeepsWholeTreeWithinMaxRows(int assets) {
+        int children = Math.min(MAX_LIMIT, AssetFinanceAgreementTreeServiceImpl.childBudget(assets));
+
+        assertThat(children).isPositive();
+        // the assets, the end options and five child lists per asset
+        assertThat(assets + children + 5L * assets * children).isLessThanOrEqualTo(MAX_ROWS);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, DEFAULT_ASSET_LIMIT})
+    void defaultChildLimitFitsUpToDefaultAssetLimit(int assets) {
+        assertThat(AssetFinanceAgreementTreeServiceImpl.childBudget(assets)).isGreaterThanOrEqualTo(DEFAULT_CHILD_LIMIT);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.services.impl;
+
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.reactivestreams.Publisher;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+import static org.springframework.data.relational.core.query.Query.query;
+
+/**
+ * Latency and database round trips of a by-id read in each transaction mode a query method can
+ * run in: the read-write transaction every method used to get from the class-level
+ * {@code @Transactional}, a read-only transaction, and {@link ReadOnlyTransactional}.
+ * <p>
+ * Round trips are counted per read at the R2DBC connection (BEGIN, COMMIT, statements) and reported
+ * as the {@code roundTrips} secondary result. Run with
+ * {@code mvn -pl core-lending-asset-finance-core test -Dtest=ReadTransactionBenchmarks}; Docker is
+ * required.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadTransactionBenchmarks {
+
+    private static final Set<String> ROUND_TRIPS = Set.of("beginTransaction", "commitTransaction",
+            "rollbackTransaction", "createStatement", "setAutoCommit", "setTransactionIsolationLevel",
+            "setStatementTimeout", "setLockWaitTimeout");
+
+    private final AtomicLong roundTrips = new AtomicLong();
+
+    private PostgresFixture postgres;
+    private R2dbcEntityTemplate template;
+    private TransactionalOperator readWrite;
+    private TransactionalOperator readOnly;
+    private TransactionalOperator supports;
+    private UUID usageRecordId;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long roundTrips;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = PostgresFixture.start();
+        PostgresFixture.SeededAsset asset = postgres.seedAsset(1_000);
+        ConnectionFactory connectionFactory = counting(postgres.connectionFactory());
+        template = new R2dbcEntityTemplate(connectionFactory);
+        usageRecordId = template.select(query(where("assetFinanceAssetId").is(asset.assetId())).limit(1), UsageRecord.class)
+                .blockFirst()
+                .getUsageRecordId();
+
+        R2dbcTransactionManager transactionManager = new R2dbcTransactionManager(connectionFactory);
+        readWrite = TransactionalOperator.create(transactionManager, new DefaultTransactionDefinition());
+        DefaultTransactionDefinition readOnlyDefinition = new DefaultTransactionDefinition();
+        readOnlyDefinition.setReadOnly(true);
+        readOnly = TransactionalOperator.create(transactionManager, readOnlyDefinition);
+        DefaultTransactionDefinition supportsDefinition =
+                new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_SUPPORTS);
+        supportsDefinition.setReadOnly(true);
+        supports = TransactionalOperator.create(transactionManager, supportsDefinition);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        postgres.close();
+    }
+
+    @Benchmark
+    public UsageRecord readWriteTransaction(Counters counters) {
+        return read(readWrite, counters);
+    }
+
+    @Benchmark
+    public UsageRecord readOnlyTransaction(Counters counters) {
+        return read(readOnly, counters);
+    }
+
+    @Benchmark
+    public UsageRecord readOnlyTransactional(Counters counters) {
+        return read(supports, counters);
+    }
+
+    private UsageRecord read(TransactionalOperator operator, Counters counters) {
+        long before = roundTrips.get();
+        UsageRecord record = operator.transactional(
+                        template.selectOne(query(where("usageRecordId").is(usageRecordId)), UsageRecord.class))
+                .block();
+        counters.roundTrips += roundTrips.get() - before;
+        return record;
+    }
+
+    /**
+     * Wrap the connections of a factory so that every call that reaches the server is counted.
+     */
+    private ConnectionFactory counting(ConnectionFactory delegate) {
+        return new ConnectionFactory() {
+            @Override
+            public Publisher<? extends Connection> create() {
+                return Mono.from(delegate.create()).map(connection -> (Connection) Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                        (proxy, method, args) -> {
+                            if (ROUND_TRIPS.contains(method.getName())) {
+                                roundTrips.incrementAndGet();
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        }));
+            }
+
+            @Override
+            public ConnectionFactoryMetadata getMetadata() {
+                return delegate.getMetadata();
+            }
+        };
+    }
+
+    @Test
+    void benchmark() throws RunnerException {
+        new Runner(new OptionsBuilder().include(getClass().getName()).build()).run();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.services.impl;
+
+import com.firefly.core.lending.assetfinance.core.cache.CacheProperties;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.ingestion.IngestionProperties;
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.BulkItemResultDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.UsageRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Time to ingest {@code records} usage records with {@link UsageRecordIngestionServiceImpl} and
+ * with one {@code save} per record, each validated, checked against its asset and committed in
+ * its own transaction as a loop over the single-record endpoint would be.
+ * <p>
+ * The bulk path pays one asset check and one commit per {@code transaction-size} records and one
+ * statement per {@code batch-size}, so its cost per record falls as the input grows while the
+ * single-row path pays a transaction, an asset check and an insert for every record. Every
+ * invocation inserts new rows, so the table grows during the run. Run with
+ * {@code mvn -pl core-lending-asset-finance-core test -Dtest=UsageRecordIngestionBenchmarks};
+ * Docker is required.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsageRecordIngestionBenchmarks {
+
+    @Param({"100", "1000", "10000"})
+    public int records;
+
+    private PostgresFixture postgres;
+    private UsageRecordIngestionServiceImpl service;
+    private UsageRecordRepository repository;
+    private AssetFinanceAssetRepository assetRepository;
+    private Validator validator;
+    private TransactionalOperator transactional;
+    private List<UsageRecordDTO> input;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = PostgresFixture.start();
+        PostgresFixture.SeededAsset asset = postgres.seedAsset(0);
+        R2dbcEntityTemplate template = new R2dbcEntityTemplate(postgres.connectionFactory());
+        R2dbcRepositoryFactory repositories = new R2dbcRepositoryFactory(template);
+        repository = repositories.getRepository(UsageRecordRepository.class);
+        assetRepository = repositories.getRepository(AssetFinanceAssetRepository.class);
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        R2dbcTransactionManager transactionManager = new R2dbcTransactionManager(postgres.connectionFactory());
+        transactional = TransactionalOperator.create(transactionManager);
+
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getFilterResults().setEnabled(false);
+        cacheProperties.getNegativeLookup().setEnabled(false);
+        service = new UsageRecordIngestionServiceImpl(repository, assetRepository,
+                new FilterResultCache(cacheProperties, null, null, null),
+                new NegativeLookupFilter(template, null, cacheProperties,
+                        new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class)),
+                validator, new IngestionProperties(), transactionManager);
+
+        input = IntStream.range(0, records)
+                .mapToObj(i -> UsageRecordDTO.builder()
+                        .assetFinanceAssetId(asset.assetId())
+                        .usageDate(LocalDate.of(2024, 1, 1).plusDays(i % 1_800))
+                        .mileage(i)
+                        .usageDetail("record " + i)
+                        .build())
+                .toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        postgres.close();
+    }
+
+    @Benchmark
+    public List<BulkItemResultDTO> bulkIngestion() {
+        return service.createAll(Flux.fromIterable(input)).collectList().block();
+    }
+
+    @Benchmark
+    public List<UsageRecord> singleRowSave() {
+        return Flux.fromIterable(input)
+                .concatMap(dto -> validator.validate(dto).isEmpty()
+                        ? transactional.transactional(assetRepository.existsById(dto.getAssetFinanceAssetId())
+                                .filter(Boolean::booleanValue)
+                                .flatMap(exists -> repository.save(UsageRecord.builder()
+                                        .assetFinanceAssetId(dto.getAssetFinanceAssetId())
+                                        .usageDate(dto.getUsageDate())
+                                        .mileage(dto.getMileage())
+                                        .usageDetail(dto.getUsageDetail())
+                                        .build())))
+                        : Mono.empty())
+                .collectList()
+                .block();
+    }
+
+    @Test
+    void benchmark() throws RunnerException {
+        new Runner(new OptionsBuilder().include(getClass().getName()).build()).run();
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.services.impl;
+
+import com.firefly.core.lending.assetfinance.core.cache.CacheProperties;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.ingestion.IngestionProperties;
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.BulkItemResultDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.enums.BulkItemFailureReasonEnum;
+import com.firefly.core.lending.assetfinance.interfaces.enums.BulkItemStatusEnum;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.UsageRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.R2dbcRollbackException;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Ingests usage records into a migrated Postgres, checking how records are split into
+ * transactions and statements, the asset check made once per transaction, and that a failed
+ * transaction affects only its own records. Docker is required.
+ */
+class UsageRecordIngestionServiceImplTest {
+
+    private static final int BATCH_SIZE = 7;
+    private static final int TRANSACTION_SIZE = 20;
+
+    private static PostgresFixture postgres;
+    private static R2dbcEntityTemplate template;
+
+    private PostgresFixture.SeededAsset first;
+    private PostgresFixture.SeededAsset second;
+    private UsageRecordRepository repository;
+    private AssetFinanceAssetRepository assetRepository;
+    private UsageRecordIngestionServiceImpl service;
+
+    @BeforeAll
+    static void startDatabase() {
+        postgres = PostgresFixture.start();
+        template = new R2dbcEntityTemplate(postgres.connectionFactory());
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void createService() {
+        first = postgres.seedAsset(0);
+        second = postgres.seedAsset(0);
+        R2dbcRepositoryFactory repositories = new R2dbcRepositoryFactory(template);
+        // delegating mocks, so that the statements the service issues can be verified
+        repository = mock(UsageRecordRepository.class,
+                delegatesTo(repositories.getRepository(UsageRecordRepository.class)));
+        assetRepository = mock(AssetFinanceAssetRepository.class,
+                delegatesTo(repositories.getRepository(AssetFinanceAssetRepository.class)));
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getFilterResults().setEnabled(false);
+        cacheProperties.getNegativeLookup().setEnabled(false);
+        IngestionProperties properties = new IngestionProperties();
+        properties.setBatchSize(BATCH_SIZE);
+        properties.setTransactionSize(TRANSACTION_SIZE);
+        service = new UsageRecordIngestionServiceImpl(repository, assetRepository,
+                new FilterResultCache(cacheProperties, null, null, null),
+                new NegativeLookupFilter(template, null, cacheProperties,
+                        new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class)),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                properties,
+                new R2dbcTransactionManager(postgres.connectionFactory()));
+    }
+
+    @Test
+    void writesRecordsInBoundedTransactionsAndStatements() {
+        int records = 2 * TRANSACTION_SIZE + 13;
+
+        List<BulkItemResultDTO> results = ingest(records, i -> record(i % 2 == 0 ? first : second, i));
+
+        assertThat(results).extracting(BulkItemResultDTO::getIndex)
+                .containsExactlyElementsOf(LongStream.range(0, records).boxed().toList());
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.getStatus()).isEqualTo(BulkItemStatusEnum.CREATED);
+            assertThat(result.getId()).isNotNull();
+        });
+        assertThat(stored(first)).hasSize((records + 1) / 2);
+        assertThat(stored(second)).hasSize(records / 2);
+        assertThat(storedIds()).containsExactlyInAnyOrderElementsOf(
+                results.stream().map(BulkItemResultDTO::getId).toList());
+
+        // one asset check per transaction, and statements of at most batch-size rows
+        verify(assetRepository, times(3)).findExistingIds(any());
+        ArgumentCaptor<UUID[]> ids = ArgumentCaptor.forClass(UUID[].class);
+        verify(repository, times(3 + 3 + 2)).insertAll(ids.capture(), any(), any(), any(), any());
+        assertThat(ids.getAllValues()).extracting(batch -> batch.length)
+                .containsExactly(7, 7, 6, 7, 7, 6, 7, 6);
+    }
+
+    @Test
+    void rejectsInvalidRecordsAndUnknownAssetsWithoutAffectingOthers() {
+        UUID unknownAsset = UUID.randomUUID();
+
+        List<BulkItemResultDTO> results = ingest(4, i -> switch (i) {
+            case 1 -> UsageRecordDTO.builder().assetFinanceAssetId(first.assetId()).mileage(-1).build();
+            case 2 -> UsageRecordDTO.builder().assetFinanceAssetId(unknownAsset).usageDate(LocalDate.of(2024, 1, 1)).build();
+            default -> record(first, i);
+        });
+
+        assertThat(results).extracting(BulkItemResultDTO::getStatus).containsExactly(
+                BulkItemStatusEnum.CREATED, BulkItemStatusEnum.REJECTED,
+                BulkItemStatusEnum.REJECTED, BulkItemStatusEnum.CREATED);
+        assertThat(results.get(1).getError()).contains("mileage", "usageDate");
+        assertThat(results.get(2).getError()).isEqualTo("Asset Finance Asset not found with id: " + unknownAsset);
+        assertThat(results.get(1).getId()).isNull();
+        assertThat(results.get(2).getId()).isNull();
+        assertThat(storedIds()).containsExactlyInAnyOrder(results.get(0).getId(), results.get(3).getId());
+    }
+
+    @Test
+    void failedTransactionRollsBackOnlyItsOwnRecords() {
+        // Postgres text cannot hold NUL, so the last statement of the second transaction fails
+        int failing = 2 * TRANSACTION_SIZE - 1;
+        int records = 3 * TRANSACTION_SIZE;
+
+        List<BulkItemResultDTO> results = ingest(records, i -> {
+            UsageRecordDTO record = record(first, i);
+            if (i == failing) {
+                record.setUsageDetail("bad\u0000detail");
+            }
+            return record;
+        });
+
+        assertThat(results.subList(0, TRANSACTION_SIZE)).extracting(BulkItemResultDTO::getStatus)
+                .containsOnly(BulkItemStatusEnum.CREATED);
+        assertThat(results.subList(TRANSACTION_SIZE, 2 * TRANSACTION_SIZE)).allSatisfy(result -> {
+            assertThat(result.getStatus()).isEqualTo(BulkItemStatusEnum.FAILED);
+            assertThat(result.getId()).isNull();
+            // the database error quotes the rejected value; clients only get a stable reason
+            assertThat(result.getReason()).isEqualTo(BulkItemFailureReasonEnum.INVALID_DATA);
+            assertThat(result.getError()).isEqualTo(UsageRecordIngestionServiceImpl.FAILED_MESSAGE);
+        });
+        assertThat(results.subList(2 * TRANSACTION_SIZE, records)).extracting(BulkItemResultDTO::getStatus)
+                .containsOnly(BulkItemStatusEnum.CREATED);
+        assertThat(stored(first)).hasSize(2 * TRANSACTION_SIZE);
+        assertThat(storedIds()).containsExactlyInAnyOrderElementsOf(results.stream()
+                .map(BulkItemResultDTO::getId)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    @Test
+    void classifiesFailuresBySqlStateClass() {
+        assertThat(UsageRecordIngestionServiceImpl.failureReason(new DataIntegrityViolationException("insert failed",
+                new R2dbcDataIntegrityViolationException("duplicate key value (usage_record_id)=(...)", "23505"))))
+                .isEqualTo(BulkItemFailureReasonEnum.CONSTRAINT_VIOLATION);
+        assertThat(UsageRecordIngestionServiceImpl.failureReason(new PessimisticLockingFailureException("rolled back",
+                new R2dbcRollbackException("deadlock detected", "40P01"))))
+                .isEqualTo(BulkItemFailureReasonEnum.CONFLICT);
+        assertThat(UsageRecordIngestionServiceImpl.failureReason(new TransientDataAccessResourceException("timed out")))
+                .isEqualTo(BulkItemFailureReasonEnum.UNAVAILABLE);
+        assertThat(UsageRecordIngestionServiceImpl.failureReason(new IllegalStateException("bug")))
+                .isEqualTo(BulkItemFailureReasonEnum.INTERNAL_ERROR);
+    }
+
+    private List<BulkItemResultDTO> ingest(int records, IntFunction<UsageRecordDTO> record) {
+        return service.createAll(Flux.range(0, records).map(record::apply)).collectList().block();
+    }
+
+    private static UsageRecordDTO record(PostgresFixture.SeededAsset asset, int i) {
+        return UsageRecordDTO.builder()
+                .assetFinanceAssetId(asset.assetId())
+                .usageDate(LocalDate.of(2024, 1, 1).plusDays(i))
+                .mileage(i)
+                .usageDetail("record " + i)
+                .build();
+    }
+
+    private List<UsageRecord> stored(PostgresFixture.SeededAsset asset) {
+        return template.select(Query.query(Criteria.where("assetFinanceAssetId").is(asset.assetId())), UsageRecord.class)
+                .collectList()
+                .block();
+    }
+
+    private Set<UUID> storedIds() {
+        return Stream.of(first, second)
+                .flatMap(asset -> stored(asset).stream())
+                .map(UsageRecord::getUsageRecordId)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.core.support;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.flywaydb.core.Flyway;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * A throwaway Postgres with the service's Flyway migrations applied, used by the benchmarks to
+ * measure the statements the services issue against a realistic schema and data volume.
+ */
+public final class PostgresFixture implements AutoCloseable {
+
+    private static final DockerImageName IMAGE = DockerImageName.parse("postgres:16-alpine");
+
+    private final PostgreSQLContainer<?> container;
+    private final ConnectionPool connectionFactory;
+
+    private PostgresFixture(PostgreSQLContainer<?> container) {
+        this.container = container;
+        String url = "r2dbc:postgresql://%s:%d/%s".formatted(container.getHost(),
+                container.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), container.getDatabaseName());
+        ConnectionFactory connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url)
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, container.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, container.getPassword())
+                .build());
+        this.connectionFactory = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .initialSize(4)
+                .maxSize(16)
+                .build());
+    }
+
+    /**
+     * Start a container and migrate it to the latest schema version.
+     */
+    public static PostgresFixture start() {
+        PostgreSQLContainer<?> container = new PostgreSQLContainer<>(IMAGE);
+        container.start();
+        Flyway.configure()
+                .dataSource(container.getJdbcUrl(), container.getUsername(), container.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        return new PostgresFixture(container);
+    }
+
+    /**
+     * @return a pooled R2DBC connection factory for the migrated database
+     */
+    public ConnectionFactory connectionFactory() {
+        return connectionFactory;
+    }
+
+    /**
+     * Insert one agreement with one asset that holds {@code usageRecords} usage records created one
+     * second apart, then refresh the planner statistics.
+     */
+    public SeededAsset seedAsset(int usageRecords) {
+        SeededAsset asset = new SeededAsset(UUID.randomUUID(), UUID.randomUUID());
+        execute("INSERT INTO asset_finance_agreement (asset_finance_agreement_id, finance_type, agreement_status, " +
+                        "start_date, end_date, total_value, payment_frequency) " +
+                        "VALUES (?, 'LEASING', 'ACTIVE', DATE '2024-01-01', DATE '2029-01-01', 100000, 'MONTHLY')",
+                asset.agreementId());
+        execute("INSERT INTO asset_finance_asset (asset_finance_asset_id, asset_finance_agreement_id, asset_type_id, " +
+                        "asset_value) VALUES (?, ?, gen_random_uuid(), 50000)",
+                asset.assetId(), asset.agreementId());
+        execute("INSERT INTO usage_record (asset_finance_asset_id, usage_date, mileage, created_at) " +
+                        "SELECT ?, DATE '2024-01-01' + (n % 1800), n, TIMESTAMP '2024-01-01' + n * INTERVAL '1 second' " +
+                        "FROM generate_series(1, ?) n",
+                asset.assetId(), usageRecords);
+        execute("ANALYZE");
+        return asset;
+    }
+
+    /**
+     * Run a statement over JDBC, binding {@code params} to its {@code ?} placeholders.
+     */
+    public void execute(String sql, Object... params) {
+        try (Connection connection = openConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            statement.execute();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to execute: " + sql, e);
+        }
+    }
+
+    /**
+     * Open a JDBC connection to the migrated database, e.g. to keep session state such as prepared
+     * statements across calls. The caller closes it.
+     */
+    public Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(container.getJdbcUrl(), container.getUsername(), container.getPassword());
+    }
+
+    @Override
+    public void close() {
+        connectionFactory.dispose();
+        container.stop();
+    }
+
+    public record SeededAsset(UUID agreementId, UUID assetId) {
+    }
+}
@@ -100,4 +100,7 @@ public class AssetFinanceAgreementDTO {
 
     @PastOrPresent(message = "Updated date cannot be in the future")
     private LocalDateTime updatedAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
@@ -70,4 +70,7 @@ public class AssetFinanceAssetDTO {
 
     @PastOrPresent(message = "Updated date cannot be in the future")
     private LocalDateTime updatedAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
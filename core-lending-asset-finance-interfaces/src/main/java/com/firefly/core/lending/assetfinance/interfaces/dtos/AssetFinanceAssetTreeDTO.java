@@ -0,0 +1,47 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.interfaces.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * An asset of an {@link AssetFinanceAgreementTreeDTO} with its latest child records.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AssetFinanceAssetTreeDTO {
+
+    private AssetFinanceAssetDTO asset;
+
+    private List<UsageRecordDTO> usageRecords;
+
+    private List<ServiceEventDTO> serviceEvents;
+
+    private List<DeliveryRecordDTO> deliveryRecords;
+
+    private List<PickupRecordDTO> pickupRecords;
+
+    private List<ReturnRecordDTO> returnRecords;
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.interfaces.dtos;
+
+import com.firefly.core.lending.assetfinance.interfaces.enums.BulkItemFailureReasonEnum;
+import com.firefly.core.lending.assetfinance.interfaces.enums.BulkItemStatusEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one item of a bulk request. {@code REJECTED} items failed validation and were not
+ * attempted; {@code FAILED} items belonged to a transaction that was rolled back.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResultDTO {
+
+    /**
+     * Zero-based position of the item in the request.
+     */
+    private long index;
+
+    private UUID id;
+
+    private BulkItemStatusEnum status;
+
+    /**
+     * Set for {@code FAILED} items only.
+     */
+    private BulkItemFailureReasonEnum reason;
+
+    private String error;
+}
@@ -108,5 +108,8 @@ public class DeliveryRecordDTO {
 
     @PastOrPresent(message = "Updated date cannot be in the future")
     private LocalDateTime updatedAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
 
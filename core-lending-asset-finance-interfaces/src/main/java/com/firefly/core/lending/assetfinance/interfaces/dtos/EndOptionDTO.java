@@ -63,4 +63,7 @@ public class EndOptionDTO {
 
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
@@ -111,5 +111,8 @@ public class PickupRecordDTO {
 
     @PastOrPresent(message = "Updated at cannot be in the future")
     private LocalDateTime updatedAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
 
@@ -67,4 +67,7 @@ public class ReturnRecordDTO {
 
     @PastOrPresent(message = "Updated date cannot be in the future")
     private LocalDateTime updatedAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
@@ -68,4 +68,7 @@ public class ServiceEventDTO {
 
     @PastOrPresent(message = "Updated date cannot be in the future")
     private LocalDateTime updatedAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
 }
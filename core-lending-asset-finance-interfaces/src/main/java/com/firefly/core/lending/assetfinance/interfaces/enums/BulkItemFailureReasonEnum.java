@@ -0,0 +1,46 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.interfaces.enums;
+
+/**
+ * Why the transaction holding a {@code FAILED} bulk item was rolled back. Values are stable and
+ * meant for clients to branch on; details of the underlying error are only logged by the server.
+ */
+public enum BulkItemFailureReasonEnum {
+    /**
+     * A value in the transaction was rejected by the database, e.g. a string it cannot store.
+     */
+    INVALID_DATA,
+    /**
+     * A record in the transaction violated a unique, foreign key or check constraint.
+     */
+    CONSTRAINT_VIOLATION,
+    /**
+     * The transaction lost a serialization or deadlock conflict; sending its records again may succeed.
+     */
+    CONFLICT,
+    /**
+     * The database was unreachable or out of resources; sending its records again may succeed.
+     */
+    UNAVAILABLE,
+    /**
+     * Any other error.
+     */
+    INTERNAL_ERROR
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.interfaces.queries;
+
+/**
+ * How the total of a paginated listing is computed.
+ */
+public enum CountMode {
+
+    /**
+     * Exact total from a {@code COUNT(*)} query run alongside the page query.
+     */
+    EXACT,
+
+    /**
+     * Total estimated from planner statistics; no rows are counted.
+     */
+    ESTIMATED,
+
+    /**
+     * No total. One extra row is fetched so that {@code totalPages} only tells whether a next page exists.
+     */
+    NONE
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.interfaces.queries;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request for a keyset (seek) paginated listing, ordered by the sort of the accompanying filter
+ * request with the id as tie-breaker, or by {@code (created_at, id)} descending without one.
+ * The cursor is the opaque {@code nextCursor} returned with the previous page, or null for the first page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageRequest {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 1000;
+
+    private String cursor;
+
+    @Min(value = 1, message = "Page size must be at least 1")
+    @Max(value = MAX_SIZE, message = "Page size cannot exceed " + MAX_SIZE)
+    @Builder.Default
+    private int size = DEFAULT_SIZE;
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.models.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The connection pools behind the {@link com.firefly.core.lending.assetfinance.models.routing.RoutingConnectionFactory},
+ * held as one bean so that their connections are closed when the application context shuts down
+ * or is refreshed. Each pool is exposed through its metered {@link ConnectionFactory}.
+ */
+public class ConnectionPools implements DisposableBean {
+
+    private final List<ConnectionPool> pools = new ArrayList<>();
+    private final List<ConnectionFactory> replicas = new ArrayList<>();
+    private ConnectionFactory oltp;
+    private ConnectionFactory export;
+
+    void oltp(ConnectionPool pool, ConnectionFactory connectionFactory) {
+        pools.add(pool);
+        oltp = connectionFactory;
+    }
+
+    void export(ConnectionPool pool, ConnectionFactory connectionFactory) {
+        pools.add(pool);
+        export = connectionFactory;
+    }
+
+    void replica(ConnectionPool pool, ConnectionFactory connectionFactory) {
+        pools.add(pool);
+        replicas.add(connectionFactory);
+    }
+
+    /**
+     * @return the pool serving API requests and commands on the primary
+     */
+    public ConnectionFactory oltp() {
+        return oltp;
+    }
+
+    /**
+     * @return the pool for long scans and bulk loads on the primary
+     */
+    public ConnectionFactory export() {
+        return export;
+    }
+
+    /**
+     * @return the read replica pools, empty when replicas are disabled
+     */
+    public List<ConnectionFactory> replicas() {
+        return List.copyOf(replicas);
+    }
+
+    @Override
+    public void destroy() {
+        pools.forEach(ConnectionPool::dispose);
+    }
+}
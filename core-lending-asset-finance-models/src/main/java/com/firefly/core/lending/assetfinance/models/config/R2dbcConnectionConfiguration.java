@@ -0,0 +1,149 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.models.config;
+
+import com.firefly.core.lending.assetfinance.models.routing.MeteredConnectionFactory;
+import com.firefly.core.lending.assetfinance.models.routing.RoutingConnectionFactory;
+import com.firefly.core.lending.assetfinance.models.routing.RoutingTransactionManager;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Option;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Replaces the auto-configured connection pool with a {@link RoutingConnectionFactory} over separate
+ * OLTP, export and (when enabled) read replica pools. Pool sizes follow the core count unless fixed
+ * in {@link R2dbcPoolProperties}, every pool has the driver's prepared-statement cache enabled, and
+ * pool gauges plus acquire timers are registered for the actuator Prometheus endpoint. The pools
+ * are owned by the {@link ConnectionPools} bean, which closes them with the context.
+ */
+@Configuration
+@EnableConfigurationProperties({R2dbcProperties.class, R2dbcPoolProperties.class, ReadReplicaProperties.class})
+public class R2dbcConnectionConfiguration {
+
+    private static final Option<Integer> PREPARED_STATEMENT_CACHE_QUERIES = Option.valueOf("preparedStatementCacheQueries");
+
+    @Bean
+    public ConnectionPools connectionPools(R2dbcProperties r2dbcProperties,
+                                           R2dbcPoolProperties poolProperties,
+                                           ReadReplicaProperties replicaProperties,
+                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable(CompositeMeterRegistry::new);
+        R2dbcPoolProperties.Pool oltp = poolProperties.getOltp();
+        R2dbcPoolProperties.Pool export = poolProperties.getExport();
+        ConnectionPools pools = new ConnectionPools();
+
+        ConnectionPool oltpPool = pool("oltp", urlOrDefault(oltp, r2dbcProperties), oltp, r2dbcProperties, poolProperties);
+        pools.oltp(oltpPool, metered("oltp", oltpPool, registry));
+        ConnectionPool exportPool = pool("export", urlOrDefault(export, r2dbcProperties), export, r2dbcProperties, poolProperties);
+        pools.export(exportPool, metered("export", exportPool, registry));
+
+        if (replicaProperties.isEnabled()) {
+            for (String url : replicaProperties.getUrls()) {
+                if (StringUtils.hasText(url)) {
+                    String name = "replica-" + pools.replicas().size();
+                    ConnectionPool replicaPool = pool(name, url, oltp, r2dbcProperties, poolProperties);
+                    pools.replica(replicaPool, metered(name, replicaPool, registry));
+                }
+            }
+        }
+        return pools;
+    }
+
+    @Bean
+    public RoutingConnectionFactory connectionFactory(ConnectionPools pools, ReadReplicaProperties replicaProperties) {
+        List<ConnectionFactory> replicas = pools.replicas();
+        RoutingConnectionFactory routing = new RoutingConnectionFactory(pools.oltp(), pools.export(), replicas,
+                replicaProperties.getMaxLag(), replicaProperties.getReadYourWritesWindow());
+        if (!replicas.isEmpty()) {
+            routing.startLagMonitoring(replicaProperties.getLagCheckInterval());
+        }
+        return routing;
+    }
+
+    /**
+     * Transaction manager over the routing factory that routes read-only transactions like
+     * read-only scopes.
+     */
+    @Bean
+    public ReactiveTransactionManager transactionManager(RoutingConnectionFactory connectionFactory) {
+        return new RoutingTransactionManager(connectionFactory);
+    }
+
+    private static String urlOrDefault(R2dbcPoolProperties.Pool pool, R2dbcProperties r2dbcProperties) {
+        return StringUtils.hasText(pool.getUrl()) ? pool.getUrl() : r2dbcProperties.getUrl();
+    }
+
+    private static ConnectionPool pool(String name, String url, R2dbcPoolProperties.Pool pool,
+                                       R2dbcProperties r2dbcProperties, R2dbcPoolProperties poolProperties) {
+        ConnectionFactory connectionFactory = ConnectionFactoryBuilder.withUrl(url)
+                .username(r2dbcProperties.getUsername())
+                .password(r2dbcProperties.getPassword())
+                .configure(options -> options.option(PREPARED_STATEMENT_CACHE_QUERIES, poolProperties.getStatementCacheSize()))
+                .build();
+
+        int maxSize = pool.resolveMaxSize(Runtime.getRuntime().availableProcessors());
+        R2dbcProperties.Pool shared = r2dbcProperties.getPool();
+        ConnectionPoolConfiguration.Builder builder = ConnectionPoolConfiguration.builder(connectionFactory)
+                .name(name)
+                .initialSize(Math.min(shared.getInitialSize(), maxSize))
+                .maxSize(maxSize)
+                .maxIdleTime(shared.getMaxIdleTime())
+                .maxAcquireTime(pool.getMaxAcquireTime());
+        if (StringUtils.hasText(shared.getValidationQuery())) {
+            builder.validationQuery(shared.getValidationQuery());
+        }
+        return new ConnectionPool(builder.build());
+    }
+
+    private static ConnectionFactory metered(String name, ConnectionPool pool, MeterRegistry registry) {
+        bindGauges(name, pool, registry);
+        return new MeteredConnectionFactory(pool, name, registry);
+    }
+
+    private static void bindGauges(String name, ConnectionPool pool, MeterRegistry registry) {
+        gauge("r2dbc.pool.acquired", "Connections currently in use", name, pool, PoolMetrics::acquiredSize, registry);
+        gauge("r2dbc.pool.allocated", "Connections currently allocated", name, pool, PoolMetrics::allocatedSize, registry);
+        gauge("r2dbc.pool.idle", "Idle connections", name, pool, PoolMetrics::idleSize, registry);
+        gauge("r2dbc.pool.pending", "Callers waiting for a connection", name, pool, PoolMetrics::pendingAcquireSize, registry);
+        gauge("r2dbc.pool.max.allocated", "Maximum pool size", name, pool, PoolMetrics::getMaxAllocatedSize, registry);
+    }
+
+    private static void gauge(String metric, String description, String name, ConnectionPool pool,
+                              ToDoubleFunction<PoolMetrics> value, MeterRegistry registry) {
+        Gauge.builder(metric, pool, p -> p.getMetrics().map(value::applyAsDouble).orElse(0.0))
+                .description(description)
+                .tag("pool", name)
+                .register(registry);
+    }
+}
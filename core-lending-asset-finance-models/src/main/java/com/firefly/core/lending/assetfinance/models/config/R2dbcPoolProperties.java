@@ -0,0 +1,88 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.models.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Connection pool settings, bound from {@code asset-finance.r2dbc.pools.*}. Credentials, idle time
+ * and validation query are shared with {@code spring.r2dbc}.
+ */
+@Data
+@ConfigurationProperties(prefix = "asset-finance.r2dbc.pools")
+public class R2dbcPoolProperties {
+
+    /**
+     * Prepared statements cached per connection by the driver; {@code 0} disables the cache and
+     * {@code -1} makes it unbounded. The driver keeps no hit or miss counts for this cache.
+     */
+    private int statementCacheSize = 256;
+
+    /**
+     * Pool serving API requests; also used to size each read replica pool.
+     */
+    private Pool oltp = new Pool(null, 0, 4, 64, Duration.ofSeconds(5));
+
+    /**
+     * Pool for long-running work kept off the OLTP pool: COPY imports, cache warm-up and id filter
+     * rebuilds.
+     */
+    private Pool export = new Pool(null, 0, 1, 8, Duration.ofSeconds(30));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pool {
+
+        /**
+         * R2DBC URL of the pool; defaults to {@code spring.r2dbc.url}.
+         */
+        private String url;
+
+        /**
+         * Fixed pool size; when {@code 0} the size is derived as
+         * {@code connectionsPerCore * availableProcessors}, capped at {@code maxSizeCap}.
+         */
+        private int maxSize;
+
+        private int connectionsPerCore;
+
+        /**
+         * Upper bound for a derived size, typically this node's share of the database's
+         * {@code max_connections}.
+         */
+        private int maxSizeCap;
+
+        /**
+         * How long a caller may wait for a free connection before the acquire fails.
+         */
+        private Duration maxAcquireTime;
+
+        public int resolveMaxSize(int availableProcessors) {
+            if (maxSize > 0) {
+                return maxSize;
+            }
+            return Math.clamp((long) connectionsPerCore * availableProcessors, 1, Math.max(1, maxSizeCap));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.models.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replica settings, bound from {@code asset-finance.r2dbc.read-replicas.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "asset-finance.r2dbc.read-replicas")
+public class ReadReplicaProperties {
+
+    /**
+     * Whether query traffic may be routed to read replicas.
+     */
+    private boolean enabled = false;
+
+    /**
+     * R2DBC URLs of the replicas. Credentials come from {@code spring.r2dbc}; each replica pool
+     * is sized like {@code asset-finance.r2dbc.pools.oltp}.
+     */
+    private List<String> urls = new ArrayList<>();
+
+    /**
+     * Maximum replication lag a replica may report and still serve reads.
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /**
+     * How often replication lag is probed on each replica.
+     */
+    private Duration lagCheckInterval = Duration.ofSeconds(2);
+
+    /**
+     * How long a caller's reads stay on the primary after its command, so it sees its own writes.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    /**
+     * Request header identifying the caller for read-your-writes stickiness. Requests without it
+     * are identified by their authenticated principal or forwarded client, and otherwise get no
+     * stickiness.
+     */
+    private String callerHeader = "X-Caller-Id";
+}
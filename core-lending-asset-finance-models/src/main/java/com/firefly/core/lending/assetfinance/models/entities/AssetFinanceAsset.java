@@ -22,6 +22,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -66,4 +67,8 @@ public class AssetFinanceAsset {
 
     @Column("updated_at")
     private LocalDateTime updatedAt;
+
+    @Version
+    @Column("version")
+    private Long version;
 }
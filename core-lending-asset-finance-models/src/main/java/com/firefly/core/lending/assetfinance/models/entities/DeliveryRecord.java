@@ -23,6 +23,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -107,5 +108,9 @@ public class DeliveryRecord {
 
     @Column("updated_at")
     private LocalDateTime updatedAt;
+
+    @Version
+    @Column("version")
+    private Long version;
 }
 
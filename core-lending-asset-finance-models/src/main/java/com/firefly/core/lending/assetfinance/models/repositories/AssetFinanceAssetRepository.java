@@ -18,12 +18,30 @@
 package com.firefly.core.lending.assetfinance.models.repositories;
 
 import com.firefly.core.lending.assetfinance.models.entities.AssetFinanceAsset;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.UUID;
 
 @Repository
 public interface AssetFinanceAssetRepository extends BaseRepository<AssetFinanceAsset> {
     Flux<AssetFinanceAsset> findByAssetFinanceAgreementId(UUID assetFinanceAgreementId);
+
+    Mono<AssetFinanceAsset> findByAssetFinanceAssetIdAndAssetFinanceAgreementId(UUID assetFinanceAssetId, UUID assetFinanceAgreementId);
+
+    Mono<Boolean> existsByAssetFinanceAssetIdAndAssetFinanceAgreementId(UUID assetFinanceAssetId, UUID assetFinanceAgreementId);
+
+    @Query("SELECT * FROM asset_finance_asset WHERE asset_finance_agreement_id = :assetFinanceAgreementId " +
+            "ORDER BY created_at DESC, asset_finance_asset_id DESC LIMIT :limit")
+    Flux<AssetFinanceAsset> findLatestByAssetFinanceAgreementId(@Param("assetFinanceAgreementId") UUID assetFinanceAgreementId,
+                                                                @Param("limit") int limit);
+
+    /**
+     * The subset of {@code ids} that exist, checked with one index probe per id.
+     */
+    @Query("SELECT asset_finance_asset_id FROM asset_finance_asset WHERE asset_finance_asset_id = ANY(:ids)")
+    Flux<UUID> findExistingIds(@Param("ids") UUID[] ids);
 }
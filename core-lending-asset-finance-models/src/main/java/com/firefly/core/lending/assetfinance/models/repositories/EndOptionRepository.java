@@ -18,12 +18,22 @@
 package com.firefly.core.lending.assetfinance.models.repositories;
 
 import com.firefly.core.lending.assetfinance.models.entities.EndOption;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.UUID;
 
 @Repository
 public interface EndOptionRepository extends BaseRepository<EndOption> {
     Flux<EndOption> findByAssetFinanceAgreementId(UUID assetFinanceAgreementId);
+
+    Mono<EndOption> findByEndOptionIdAndAssetFinanceAgreementId(UUID endOptionId, UUID assetFinanceAgreementId);
+
+    @Query("SELECT * FROM end_option WHERE asset_finance_agreement_id = :assetFinanceAgreementId " +
+            "ORDER BY created_at DESC, end_option_id DESC LIMIT :limit")
+    Flux<EndOption> findLatestByAssetFinanceAgreementId(@Param("assetFinanceAgreementId") UUID assetFinanceAgreementId,
+                                                        @Param("limit") int limit);
 }
@@ -18,12 +18,43 @@
 package com.firefly.core.lending.assetfinance.models.repositories;
 
 import com.firefly.core.lending.assetfinance.models.entities.ReturnRecord;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.UUID;
 
 @Repository
 public interface ReturnRecordRepository extends BaseRepository<ReturnRecord> {
     Flux<ReturnRecord> findByAssetFinanceAssetId(UUID assetFinanceAssetId);
+
+    /**
+     * Resolve record, asset and agreement in one indexed join; empty unless the whole path matches.
+     */
+    @Query("SELECT r.* FROM return_record r " +
+            "JOIN asset_finance_asset a ON a.asset_finance_asset_id = r.asset_finance_asset_id " +
+            "WHERE r.return_record_id = :returnRecordId " +
+            "AND r.asset_finance_asset_id = :assetFinanceAssetId " +
+            "AND a.asset_finance_agreement_id = :assetFinanceAgreementId")
+    Mono<ReturnRecord> findByIdAndPath(@Param("returnRecordId") UUID returnRecordId,
+                                       @Param("assetFinanceAssetId") UUID assetFinanceAssetId,
+                                       @Param("assetFinanceAgreementId") UUID assetFinanceAgreementId);
+
+    /**
+     * Latest {@code limit} records of each of the agreement's latest {@code assetLimit} assets,
+     * read with one bounded index scan per asset.
+     */
+    @Query("SELECT r.* FROM (" +
+            "SELECT asset_finance_asset_id FROM asset_finance_asset " +
+            "WHERE asset_finance_agreement_id = :assetFinanceAgreementId " +
+            "ORDER BY created_at DESC, asset_finance_asset_id DESC LIMIT :assetLimit) a " +
+            "CROSS JOIN LATERAL (" +
+            "SELECT * FROM return_record c " +
+            "WHERE c.asset_finance_asset_id = a.asset_finance_asset_id " +
+            "ORDER BY c.created_at DESC, c.return_record_id DESC LIMIT :limit) r")
+    Flux<ReturnRecord> findLatestByAssetFinanceAgreementId(@Param("assetFinanceAgreementId") UUID assetFinanceAgreementId,
+                                                           @Param("assetLimit") int assetLimit,
+                                                           @Param("limit") int limit);
 }
@@ -18,12 +18,59 @@
 package com.firefly.core.lending.assetfinance.models.repositories;
 
 import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.LocalDate;
 import java.util.UUID;
 
 @Repository
 public interface UsageRecordRepository extends BaseRepository<UsageRecord> {
     Flux<UsageRecord> findByAssetFinanceAssetId(UUID assetFinanceAssetId);
+
+    /**
+     * Resolve record, asset and agreement in one indexed join; empty unless the whole path matches.
+     */
+    @Query("SELECT r.* FROM usage_record r " +
+            "JOIN asset_finance_asset a ON a.asset_finance_asset_id = r.asset_finance_asset_id " +
+            "WHERE r.usage_record_id = :usageRecordId " +
+            "AND r.asset_finance_asset_id = :assetFinanceAssetId " +
+            "AND a.asset_finance_agreement_id = :assetFinanceAgreementId")
+    Mono<UsageRecord> findByIdAndPath(@Param("usageRecordId") UUID usageRecordId,
+                                      @Param("assetFinanceAssetId") UUID assetFinanceAssetId,
+                                      @Param("assetFinanceAgreementId") UUID assetFinanceAgreementId);
+
+    /**
+     * Latest {@code limit} records of each of the agreement's latest {@code assetLimit} assets,
+     * read with one bounded index scan per asset.
+     */
+    @Query("SELECT r.* FROM (" +
+            "SELECT asset_finance_asset_id FROM asset_finance_asset " +
+            "WHERE asset_finance_agreement_id = :assetFinanceAgreementId " +
+            "ORDER BY created_at DESC, asset_finance_asset_id DESC LIMIT :assetLimit) a " +
+            "CROSS JOIN LATERAL (" +
+            "SELECT * FROM usage_record c " +
+            "WHERE c.asset_finance_asset_id = a.asset_finance_asset_id " +
+            "ORDER BY c.created_at DESC, c.usage_record_id DESC LIMIT :limit) r")
+    Flux<UsageRecord> findLatestByAssetFinanceAgreementId(@Param("assetFinanceAgreementId") UUID assetFinanceAgreementId,
+                                                          @Param("assetLimit") int assetLimit,
+                                                          @Param("limit") int limit);
+
+    /**
+     * Insert one row per array position in a single statement. The arrays must have equal length;
+     * the statement text does not depend on it, so one prepared statement serves every batch.
+     */
+    @Modifying
+    @Query("INSERT INTO usage_record (usage_record_id, asset_finance_asset_id, usage_date, mileage, usage_detail) " +
+            "SELECT * FROM unnest(CAST(:ids AS uuid[]), CAST(:assetFinanceAssetIds AS uuid[]), " +
+            "CAST(:usageDates AS date[]), CAST(:mileages AS integer[]), CAST(:usageDetails AS text[]))")
+    Mono<Long> insertAll(@Param("ids") UUID[] ids,
+                         @Param("assetFinanceAssetIds") UUID[] assetFinanceAssetIds,
+                         @Param("usageDates") LocalDate[] usageDates,
+                         @Param("mileages") Integer[] mileages,
+                         @Param("usageDetails") String[] usageDetails);
 }
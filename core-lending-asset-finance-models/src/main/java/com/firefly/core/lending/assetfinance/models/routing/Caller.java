@@ -0,0 +1,43 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.models.routing;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * The client a reactive pipeline works for, carried in the Reactor context and used by
+ * {@link RoutingConnectionFactory} to keep a client's reads on the primary right after its own
+ * writes. Pipelines without a caller never stick to the primary.
+ *
+ * @param id a stable identifier of the client, e.g. a client id header or its principal name
+ */
+public record Caller(String id) {
+
+    /**
+     * Context to write into a pipeline, e.g. {@code handler.contextWrite(new Caller(id).asContext())}.
+     */
+    public Context asContext() {
+        return Context.of(Caller.class, this);
+    }
+
+    static Caller current(ContextView context) {
+        return context.getOrDefault(Caller.class, null);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.models.routing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorates a pooled {@link ConnectionFactory} with an {@code r2dbc.pool.acquire} timer. The recorded
+ * latency includes any time spent waiting for a free connection, so its upper percentiles are the
+ * pool wait time.
+ */
+public final class MeteredConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory> {
+
+    private final ConnectionFactory delegate;
+    private final Timer acquired;
+    private final Timer failed;
+
+    public MeteredConnectionFactory(ConnectionFactory delegate, String pool, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.acquired = timer(pool, "success", registry);
+        this.failed = timer(pool, "error", registry);
+    }
+
+    private static Timer timer(String pool, String outcome, MeterRegistry registry) {
+        return Timer.builder("r2dbc.pool.acquire")
+                .description("Time taken to acquire a connection, including time queued for a free one")
+                .tag("pool", pool)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Mono.<Connection>from(delegate.create())
+                    .doOnNext(connection -> acquired.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(e -> failed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return delegate;
+    }
+}
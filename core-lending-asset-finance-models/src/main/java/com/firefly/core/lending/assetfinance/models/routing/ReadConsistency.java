@@ -0,0 +1,51 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.models.routing;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * How fresh the rows a read-only pipeline reads must be, carried in the Reactor context and used by
+ * {@link RoutingConnectionFactory} to decide whether a replica may serve it.
+ */
+public enum ReadConsistency {
+
+    /**
+     * Rows may trail the primary by up to the replica lag bound. The default.
+     */
+    EVENTUAL,
+
+    /**
+     * Rows must include every committed change, e.g. when the result is about to be cached; the
+     * read goes to the primary (or the export pool for {@link Workload#EXPORT} scans).
+     */
+    STRONG;
+
+    /**
+     * Context to write into a pipeline, e.g. {@code load.contextWrite(ReadConsistency.STRONG.asContext())}.
+     */
+    public Context asContext() {
+        return Context.of(ReadConsistency.class, this);
+    }
+
+    static ReadConsistency current(ContextView context) {
+        return context.getOrDefault(ReadConsistency.class, EVENTUAL);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.models.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ConnectionFactory} that picks a connection pool per request: read-only work goes to replica
+ * pools, {@link Workload#EXPORT} scans to a dedicated export pool, and everything else to the primary
+ * OLTP pool.
+ * <p>
+ * A connection is routed to a replica only when it is requested inside a read-only transaction
+ * scope (see {@code @ReadOnlyTransactional} in the core module, and {@link RoutingTransactionManager}
+ * for read-only transactions) and:
+ * </p>
+ * <ul>
+ *     <li>the replica's measured replication lag is within {@code maxReplicaLag}; lag is probed
+ *     periodically and counts as zero while the replica streams from the primary and has replayed
+ *     all WAL it received. A replica whose WAL receiver is not streaming, or that cannot be probed,
+ *     is taken out of rotation: having replayed everything it received says nothing once it stops
+ *     receiving. The probing role needs {@code pg_read_all_stats} to see the receiver status;</li>
+ *     <li>the {@link Caller} of the pipeline has not run a command within {@code readYourWritesWindow}.
+ *     After a write, that caller's reads stick to the primary so that it observes its own changes;
+ *     other callers keep reading from replicas. Caller ids come from request headers, so the marks
+ *     are held in a cache bounded in size and expiring after the window;</li>
+ *     <li>the pipeline does not ask for {@link ReadConsistency#STRONG} reads, as cache fills do
+ *     right after an invalidation.</li>
+ * </ul>
+ * Export reads that cannot use a replica fall back to the export pool so that long scans never
+ * hold OLTP connections. Other requests without transaction synchronization, and reads when no
+ * replica is healthy, use the primary.
+ */
+@Slf4j
+public class RoutingConnectionFactory extends AbstractRoutingConnectionFactory implements DisposableBean {
+
+    static final String PRIMARY = "primary";
+    static final String EXPORT = "export";
+
+    /**
+     * Callers whose recent writes are remembered; beyond this the least valuable marks are dropped,
+     * and those callers may read from a replica again before the window ends.
+     */
+    private static final int MAX_TRACKED_CALLERS = 100_000;
+
+    /**
+     * Seconds the replica's replay is behind: zero once everything received has been replayed, so
+     * that an idle primary does not make replicas look stale as the last replayed commit ages, but
+     * only while the WAL receiver is streaming; a disconnected replica has replayed everything it
+     * received and may still be arbitrarily stale, so it reports infinite lag.
+     */
+    private static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0::float8 " +
+            "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN 'Infinity'::float8 " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0::float8 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())::float8, 'Infinity'::float8) END";
+
+    private final Map<String, ConnectionFactory> replicas;
+    private final List<String> replicaKeys;
+    private final Duration maxReplicaLag;
+    private final Set<String> healthyReplicas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Cache<Caller, Boolean> recentWriters;
+    private volatile Disposable lagMonitor;
+
+    public RoutingConnectionFactory(ConnectionFactory primary,
+                                    ConnectionFactory export,
+                                    List<ConnectionFactory> replicas,
+                                    Duration maxReplicaLag,
+                                    Duration readYourWritesWindow) {
+        this.replicas = new HashMap<>();
+        this.replicaKeys = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = "replica-" + i;
+            this.replicas.put(key, replicas.get(i));
+            this.replicaKeys.add(key);
+        }
+        this.maxReplicaLag = maxReplicaLag;
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(MAX_TRACKED_CALLERS)
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+
+        Map<Object, Object> targets = new HashMap<>(this.replicas);
+        targets.put(PRIMARY, primary);
+        targets.put(EXPORT, export);
+        setTargetConnectionFactories(targets);
+        setDefaultTargetConnectionFactory(primary);
+        setLenientFallback(false);
+    }
+
+    /**
+     * Start probing replication lag of every replica at the given interval, first probe immediately.
+     */
+    public void startLagMonitoring(Duration interval) {
+        lagMonitor = Flux.interval(Duration.ZERO, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Flux.fromIterable(replicaKeys)
+                        .flatMap(key -> probe(key, interval)))
+                .subscribe();
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(context -> {
+            Workload workload = Workload.current(context);
+            Caller caller = Caller.current(context);
+            ReadConsistency consistency = ReadConsistency.current(context);
+            boolean readOnly = RoutingTransactionManager.isBeginningReadOnly(context);
+            return TransactionSynchronizationManager.forCurrentTransaction()
+                    .map(synchronization -> route(synchronization, workload, caller, consistency, readOnly))
+                    .onErrorResume(NoTransactionException.class, e -> Mono.just(fallback(workload)));
+        });
+    }
+
+    private Object route(TransactionSynchronizationManager synchronization, Workload workload, Caller caller,
+                         ReadConsistency consistency, boolean beginningReadOnly) {
+        if (!beginningReadOnly && !synchronization.isCurrentTransactionReadOnly()) {
+            markWrite(caller);
+            if (caller != null && synchronization.isSynchronizationActive()) {
+                synchronization.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCompletion(int status) {
+                        return Mono.fromRunnable(() -> markWrite(caller));
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+        if (consistency == ReadConsistency.STRONG || wroteRecently(caller)) {
+            return fallback(workload);
+        }
+        for (int attempt = 0; attempt < replicaKeys.size(); attempt++) {
+            String key = replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size()));
+            if (healthyReplicas.contains(key)) {
+                return key;
+            }
+        }
+        return fallback(workload);
+    }
+
+    private static String fallback(Workload workload) {
+        return workload == Workload.EXPORT ? EXPORT : PRIMARY;
+    }
+
+    private void markWrite(Caller caller) {
+        if (caller != null) {
+            recentWriters.put(caller, Boolean.TRUE);
+        }
+    }
+
+    private boolean wroteRecently(Caller caller) {
+        return caller != null && recentWriters.getIfPresent(caller) != null;
+    }
+
+    private Mono<Void> probe(String key, Duration timeout) {
+        return Mono.usingWhen(
+                        replicas.get(key).create(),
+                        connection -> Mono.from(connection.createStatement(LAG_QUERY).execute())
+                                .flatMap(result -> Mono.from(result.map((row, metadata) -> row.get(0, Double.class)))),
+                        Connection::close)
+                .timeout(timeout)
+                .map(lagSeconds -> lagSeconds <= maxReplicaLag.toMillis() / 1000.0)
+                .onErrorResume(e -> {
+                    log.warn("Replication lag probe failed for {}: {}", key, e.getMessage());
+                    return Mono.just(false);
+                })
+                .doOnNext(healthy -> {
+                    boolean changed = healthy ? healthyReplicas.add(key) : healthyReplicas.remove(key);
+                    if (changed) {
+                        log.info("Read replica {} is now {}", key, healthy ? "in rotation" : "out of rotation");
+                    }
+                })
+                .then();
+    }
+
+    @Override
+    public void destroy() {
+        Disposable monitor = lagMonitor;
+        if (monitor != null) {
+            monitor.dispose();
+        }
+    }
+}
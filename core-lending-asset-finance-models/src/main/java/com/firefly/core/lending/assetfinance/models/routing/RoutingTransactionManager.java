@@ -0,0 +1,55 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.models.routing;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+/**
+ * {@link R2dbcTransactionManager} that tells the {@link RoutingConnectionFactory} when the
+ * transaction it opens a connection for is read-only.
+ * <p>
+ * The read-only flag of a transaction is only published to the synchronization after
+ * {@code doBegin} has obtained the connection, so without this a {@code readOnly} transaction would
+ * be routed, and remembered, like a command.
+ * </p>
+ */
+public class RoutingTransactionManager extends R2dbcTransactionManager {
+
+    public RoutingTransactionManager(ConnectionFactory connectionFactory) {
+        super(connectionFactory);
+    }
+
+    @Override
+    protected Mono<Void> doBegin(TransactionSynchronizationManager synchronizationManager, Object transaction,
+                                 TransactionDefinition definition) {
+        Mono<Void> begin = super.doBegin(synchronizationManager, transaction, definition);
+        return definition.isReadOnly()
+                ? begin.contextWrite(context -> context.put(RoutingTransactionManager.class, Boolean.TRUE))
+                : begin;
+    }
+
+    static boolean isBeginningReadOnly(ContextView context) {
+        return context.getOrDefault(RoutingTransactionManager.class, Boolean.FALSE);
+    }
+}
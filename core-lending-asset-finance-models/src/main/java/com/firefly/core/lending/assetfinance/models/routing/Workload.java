@@ -0,0 +1,49 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.models.routing;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Kind of database traffic a reactive pipeline issues, carried in the Reactor context and used by
+ * {@link RoutingConnectionFactory} to pick a connection pool.
+ */
+public enum Workload {
+
+    /**
+     * Short, latency-sensitive reads and writes serving API requests. The default.
+     */
+    OLTP,
+
+    /**
+     * Long scans such as cache warm-up and id filter builds, kept off the OLTP pool.
+     */
+    EXPORT;
+
+    /**
+     * Context to write into a pipeline, e.g. {@code query.contextWrite(Workload.EXPORT.asContext())}.
+     */
+    public Context asContext() {
+        return Context.of(Workload.class, this);
+    }
+
+    static Workload current(ContextView context) {
+        return context.getOrDefault(Workload.class, OLTP);
+    }
+}
@@ -0,0 +1,12 @@
+-- Indexes backing keyset (cursor) pagination
+-- Cursor pages are ordered by (created_at DESC, id DESC) within their parent, so each page
+-- is a bounded index range scan regardless of its depth.
+
+CREATE INDEX idx_asset_finance_agreement_keyset ON asset_finance_agreement(created_at DESC, asset_finance_agreement_id DESC);
+CREATE INDEX idx_asset_finance_asset_keyset ON asset_finance_asset(asset_finance_agreement_id, created_at DESC, asset_finance_asset_id DESC);
+CREATE INDEX idx_end_option_keyset ON end_option(asset_finance_agreement_id, created_at DESC, end_option_id DESC);
+CREATE INDEX idx_service_event_keyset ON service_event(asset_finance_asset_id, created_at DESC, service_event_id DESC);
+CREATE INDEX idx_usage_record_keyset ON usage_record(asset_finance_asset_id, created_at DESC, usage_record_id DESC);
+CREATE INDEX idx_return_record_keyset ON return_record(asset_finance_asset_id, created_at DESC, return_record_id DESC);
+CREATE INDEX idx_delivery_record_keyset ON delivery_record(asset_finance_asset_id, created_at DESC, delivery_record_id DESC);
+CREATE INDEX idx_pickup_record_keyset ON pickup_record(asset_finance_asset_id, created_at DESC, pickup_record_id DESC);
@@ -0,0 +1,38 @@
+-- Composite indexes matched to the filters the list endpoints issue
+-- Child listings always carry the parent scope (asset_finance_asset_id = ? or
+-- asset_finance_agreement_id = ?), so date and status filters are indexed behind it and served
+-- as a single range scan inside the parent.
+
+-- Agreements: status filter combined with start/end date ranges (e.g. maturing ACTIVE agreements)
+CREATE INDEX idx_asset_finance_agreement_status_end_date ON asset_finance_agreement(agreement_status, end_date);
+CREATE INDEX idx_asset_finance_agreement_status_start_date ON asset_finance_agreement(agreement_status, start_date);
+
+-- Usage, service and return history filtered by date within an asset
+CREATE INDEX idx_usage_record_asset_usage_date ON usage_record(asset_finance_asset_id, usage_date DESC);
+CREATE INDEX idx_service_event_asset_event_date ON service_event(asset_finance_asset_id, event_date DESC);
+CREATE INDEX idx_service_event_asset_event_type ON service_event(asset_finance_asset_id, event_type, event_date DESC);
+CREATE INDEX idx_return_record_asset_return_date ON return_record(asset_finance_asset_id, actual_return_date DESC);
+
+-- Status, flag and date values reach the planner as bind parameters of prepared statements, and
+-- a generic plan cannot prove that "delivery_status = $2" implies a fixed status list, so these
+-- indexes are full rather than partial; the status column ahead of the schedule still keeps a
+-- status filter to a single range scan.
+
+-- End options of an agreement by exercise state
+CREATE INDEX idx_end_option_agreement_exercised ON end_option(asset_finance_agreement_id, is_exercised, option_exercise_date);
+
+-- Logistics: deliveries and pickups by status and schedule, within an asset and across assets
+CREATE INDEX idx_delivery_record_asset_status ON delivery_record(asset_finance_asset_id, delivery_status, scheduled_delivery_date);
+CREATE INDEX idx_delivery_record_status_schedule ON delivery_record(delivery_status, scheduled_delivery_date);
+CREATE INDEX idx_pickup_record_asset_status ON pickup_record(asset_finance_asset_id, pickup_status, scheduled_pickup_date);
+CREATE INDEX idx_pickup_record_status_schedule ON pickup_record(pickup_status, scheduled_pickup_date);
+
+-- Single-column indexes now covered by a composite index with the same leading column
+DROP INDEX idx_asset_finance_agreement_status;
+DROP INDEX idx_asset_finance_asset_agreement_id;
+DROP INDEX idx_end_option_agreement_id;
+DROP INDEX idx_service_event_asset_id;
+DROP INDEX idx_usage_record_asset_id;
+DROP INDEX idx_return_record_asset_id;
+DROP INDEX idx_delivery_record_asset_id;
+DROP INDEX idx_pickup_record_asset_id;
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.models.routing;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Mono;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Routes real connections between two local databases standing in for the primary and a read
+ * replica (plus a third for the export pool) and tells them apart with {@code current_database()}.
+ */
+@Testcontainers
+class RoutingConnectionFactoryTest {
+
+    private static final String REPLICA = "replica";
+    private static final String EXPORT = "export";
+    private static final Duration READ_YOUR_WRITES_WINDOW = Duration.ofSeconds(1);
+    private static final Caller ALICE = new Caller("alice");
+    private static final Caller BOB = new Caller("bob");
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private RoutingConnectionFactory routing;
+    private DatabaseClient databaseClient;
+    private TransactionalOperator command;
+    private TransactionalOperator readOnlyScope;
+    private TransactionalOperator readOnlyTransaction;
+
+    @BeforeAll
+    static void createDatabases() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(),
+                POSTGRES.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + REPLICA);
+            statement.execute("CREATE DATABASE " + EXPORT);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        routing = routing(REPLICA);
+        databaseClient = DatabaseClient.create(routing);
+
+        RoutingTransactionManager transactionManager = new RoutingTransactionManager(routing);
+        command = TransactionalOperator.create(transactionManager, new DefaultTransactionDefinition());
+        readOnlyScope = readOnly(transactionManager, TransactionDefinition.PROPAGATION_SUPPORTS);
+        readOnlyTransaction = readOnly(transactionManager, TransactionDefinition.PROPAGATION_REQUIRED);
+
+        await().atMost(Duration.ofSeconds(10))
+                .until(() -> REPLICA.equals(currentDatabase(readOnlyScope, null)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        routing.destroy();
+    }
+
+    @Test
+    void readOnlyScopesReadFromReplica() {
+        assertThat(currentDatabase(readOnlyScope, ALICE)).isEqualTo(REPLICA);
+    }
+
+    @Test
+    void readOnlyTransactionsReadFromReplica() {
+        assertThat(currentDatabase(readOnlyTransaction, ALICE)).isEqualTo(REPLICA);
+    }
+
+    @Test
+    void commandsUsePrimary() {
+        assertThat(currentDatabase(command, ALICE)).isEqualTo(POSTGRES.getDatabaseName());
+    }
+
+    @Test
+    void requestsWithoutTransactionScopeUsePrimary() {
+        assertThat(query().block()).isEqualTo(POSTGRES.getDatabaseName());
+    }
+
+    @Test
+    void readsStickToPrimaryOnlyForTheCallerThatWrote() {
+        currentDatabase(command, ALICE);
+
+        assertThat(currentDatabase(readOnlyScope, ALICE)).isEqualTo(POSTGRES.getDatabaseName());
+        assertThat(currentDatabase(readOnlyTransaction, ALICE)).isEqualTo(POSTGRES.getDatabaseName());
+        assertThat(currentDatabase(readOnlyScope, BOB)).isEqualTo(REPLICA);
+        assertThat(currentDatabase(readOnlyScope, null)).isEqualTo(REPLICA);
+    }
+
+    @Test
+    void stickinessEndsAfterReadYourWritesWindow() {
+        currentDatabase(command, ALICE);
+
+        await().atMost(READ_YOUR_WRITES_WINDOW.multipliedBy(5))
+                .until(() -> REPLICA.equals(currentDatabase(readOnlyScope, ALICE)));
+    }
+
+    @Test
+    void strongReadsUsePrimary() {
+        String database = readOnlyScope.transactional(query())
+                .contextWrite(ReadConsistency.STRONG.asContext())
+                .contextWrite(ALICE.asContext())
+                .block();
+
+        assertThat(database).isEqualTo(POSTGRES.getDatabaseName());
+        assertThat(currentDatabase(readOnlyScope, ALICE)).isEqualTo(REPLICA);
+    }
+
+    @Test
+    void stickyExportReadsUseExportPool() {
+        currentDatabase(command, ALICE);
+
+        String database = readOnlyScope.transactional(query())
+                .contextWrite(Workload.EXPORT.asContext())
+                .contextWrite(ALICE.asContext())
+                .block();
+
+        assertThat(database).isEqualTo(EXPORT);
+    }
+
+    @Test
+    void unreachableReplicaIsTakenOutOfRotation() {
+        RoutingConnectionFactory unreachable = routing("missing");
+        try {
+            TransactionalOperator scope = readOnly(new RoutingTransactionManager(unreachable),
+                    TransactionDefinition.PROPAGATION_SUPPORTS);
+
+            DatabaseClient client = DatabaseClient.create(unreachable);
+
+            // Stays on the primary across several failed lag probes
+            await().during(Duration.ofMillis(600))
+                    .atMost(Duration.ofSeconds(2))
+                    .until(() -> POSTGRES.getDatabaseName().equals(scope.transactional(client
+                                    .sql("SELECT current_database()")
+                                    .map(row -> row.get(0, String.class))
+                                    .one())
+                            .block()));
+        } finally {
+            unreachable.destroy();
+        }
+    }
+
+    private String currentDatabase(TransactionalOperator operator, Caller caller) {
+        Mono<String> scoped = operator.transactional(query());
+        return (caller == null ? scoped : scoped.contextWrite(caller.asContext())).block();
+    }
+
+    private Mono<String> query() {
+        return databaseClient.sql("SELECT current_database()")
+                .map(row -> row.get(0, String.class))
+                .one();
+    }
+
+    private static RoutingConnectionFactory routing(String replicaDatabase) {
+        RoutingConnectionFactory routing = new RoutingConnectionFactory(
+                connectionFactory(POSTGRES.getDatabaseName()),
+                connectionFactory(EXPORT),
+                List.of(connectionFactory(replicaDatabase)),
+                Duration.ofSeconds(5),
+                READ_YOUR_WRITES_WINDOW);
+        routing.afterPropertiesSet();
+        routing.startLagMonitoring(Duration.ofMillis(200));
+        return routing;
+    }
+
+    private static TransactionalOperator readOnly(RoutingTransactionManager transactionManager, int propagation) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition(propagation);
+        definition.setReadOnly(true);
+        return TransactionalOperator.create(transactionManager, definition);
+    }
+
+    private static ConnectionFactory connectionFactory(String database) {
+        return ConnectionFactories.get(ConnectionFactoryOptions.builder()
+                .option(ConnectionFactoryOptions.DRIVER, "postgresql")
+                .option(ConnectionFactoryOptions.HOST, POSTGRES.getHost())
+                .option(ConnectionFactoryOptions.PORT, POSTGRES.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT))
+                .option(ConnectionFactoryOptions.DATABASE, database)
+                .option(ConnectionFactoryOptions.USER, POSTGRES.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, POSTGRES.getPassword())
+                .build());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.web.cli;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefly.core.lending.assetfinance.core.ingestion.CopyImporter;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ImportSummaryDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ServiceEventDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Command line entry point for {@link CopyImporter}, for backfills run as a one-off job:
+ * <pre>
+ * java -jar core-lending-asset-finance.jar --spring.main.web-application-type=none \
+ *     --import=usage-records|service-events --file=/data/rows.ndjson
+ * </pre>
+ * The file holds one JSON object per line in the shape of the REST DTO. Lines that are not valid
+ * JSON are logged and skipped; rows that fail validation go to the reject file. The process exits
+ * with status 0 once the import is committed and 1 otherwise. Without {@code --import} this
+ * runner does nothing.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class CopyImportCommand implements ApplicationRunner {
+
+    private final CopyImporter importer;
+    private final ObjectMapper objectMapper;
+    private final ApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> table = args.getOptionValues("import");
+        if (table == null) {
+            return;
+        }
+        List<String> file = args.getOptionValues("file");
+        int status = 1;
+        if (table.size() != 1 || file == null || file.size() != 1) {
+            log.error("Usage: --import=usage-records|service-events --file=<path to NDJSON>");
+        } else {
+            try {
+                ImportSummaryDTO summary = run(table.get(0), Path.of(file.get(0)));
+                log.info("Import finished: {}", summary);
+                status = 0;
+            } catch (RuntimeException e) {
+                log.error("Import of {} failed", file.get(0), e);
+            }
+        }
+        int exitCode = status;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+
+    private ImportSummaryDTO run(String table, Path file) {
+        return switch (table) {
+            case "usage-records" -> importer.importUsageRecords(read(file, UsageRecordDTO.class)).block();
+            case "service-events" -> importer.importServiceEvents(read(file, ServiceEventDTO.class)).block();
+            default -> throw new IllegalArgumentException("Unknown import: " + table);
+        };
+    }
+
+    private <T> Flux<T> read(Path file, Class<T> type) {
+        return Flux.using(() -> lines(file), Flux::fromStream, Stream::close)
+                .index()
+                .filter(line -> !line.getT2().isBlank())
+                .mapNotNull(line -> {
+                    try {
+                        return objectMapper.readValue(line.getT2(), type);
+                    } catch (JsonProcessingException e) {
+                        log.warn("Skipping line {} of {}: {}", line.getT1() + 1, file, e.getOriginalMessage());
+                        return null;
+                    }
+                });
+    }
+
+    private static Stream<String> lines(Path file) {
+        try {
+            return Files.lines(file);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read " + file, e);
+        }
+    }
+}
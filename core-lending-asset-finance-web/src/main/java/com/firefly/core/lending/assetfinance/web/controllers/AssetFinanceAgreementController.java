@@ -19,8 +19,15 @@ package com.firefly.core.lending.assetfinance.web.controllers;
 
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDelete;
 import com.firefly.core.lending.assetfinance.core.services.AssetFinanceAgreementService;
+import com.firefly.core.lending.assetfinance.core.services.AssetFinanceAgreementTreeService;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAgreementDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAgreementTreeDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
+import com.firefly.core.lending.assetfinance.web.support.EntityTags;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -31,11 +38,15 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
@@ -45,6 +56,7 @@ import java.util.UUID;
 public class AssetFinanceAgreementController {
 
     private final AssetFinanceAgreementService service;
+    private final AssetFinanceAgreementTreeService treeService;
 
     @GetMapping
     @Operation(
@@ -60,15 +72,52 @@ public class AssetFinanceAgreementController {
                             schema = @Schema(implementation = PaginationResponse.class)
                     )
             ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid filter request", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     public Mono<ResponseEntity<PaginationResponse<AssetFinanceAgreementDTO>>> findAll(
+            @Parameter(description = "How totalElements is computed: EXACT (count query), ESTIMATED (planner statistics) or NONE (next-page probing only)")
+            @RequestParam(value = "count", defaultValue = "EXACT") CountMode countMode,
+            @Parameter(description = "Comma-separated properties to load from the database; properties not listed are returned as null")
+            @RequestParam(value = "fields", required = false) Set<String> fields,
             @Parameter(description = "Filter criteria for searching agreements")
             @Valid @RequestBody FilterRequest<AssetFinanceAgreementDTO> filterRequest) {
 
-        return service.findAll(filterRequest)
-                .map(ResponseEntity::ok);
+        return service.findAll(filterRequest, countMode, fields)
+                .map(EntityTags.taggedPage(AssetFinanceAgreementDTO::getAssetFinanceAgreementId, AssetFinanceAgreementDTO::getVersion, countMode, fields));
+    }
+
+    @GetMapping("/cursor")
+    @Operation(
+            summary = "List asset finance agreements with cursor pagination",
+            description = "Retrieve agreements matching the filter criteria, in their sort order (newest first by default), using an opaque cursor instead of page numbers; deep pages cost the same as the first one"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Successfully retrieved page of agreements",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = CursorPageResponse.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or filter request", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<CursorPageResponse<AssetFinanceAgreementDTO>>> findAllByCursor(
+            @Parameter(description = "Cursor returned as nextCursor by the previous page; omit for the first page")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(description = "Maximum number of items per page")
+            @RequestParam(value = "size", defaultValue = "" + CursorPageRequest.DEFAULT_SIZE) int size,
+            @Parameter(description = "Comma-separated properties to load from the database; properties not listed are returned as null")
+            @RequestParam(value = "fields", required = false) Set<String> fields,
+            @Parameter(description = "Filter criteria and sort applied to every page; a cursor is only accepted with the sort it was issued for")
+            @Valid @RequestBody(required = false) FilterRequest<AssetFinanceAgreementDTO> filterRequest) {
+
+        return service.findAllByCursor(filterRequest, new CursorPageRequest(cursor, size), fields)
+                .map(EntityTags.taggedCursorPage(AssetFinanceAgreementDTO::getAssetFinanceAgreementId, AssetFinanceAgreementDTO::getVersion, fields));
     }
 
     @PostMapping
@@ -110,6 +159,7 @@ public class AssetFinanceAgreementController {
                             schema = @Schema(implementation = AssetFinanceAgreementDTO.class)
                     )
             ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Agreement not found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
@@ -118,6 +168,36 @@ public class AssetFinanceAgreementController {
             @PathVariable("assetFinanceAgreementId") UUID assetFinanceAgreementId) {
 
         return service.getById(assetFinanceAgreementId)
+                .map(EntityTags.tagged(AssetFinanceAgreementDTO::getAssetFinanceAgreementId, AssetFinanceAgreementDTO::getVersion));
+    }
+
+    @GetMapping("/{assetFinanceAgreementId}/tree")
+    @Operation(
+            summary = "Get an asset finance agreement with all related records",
+            description = "Retrieve an agreement with its end options and assets, each asset with its latest usage records, " +
+                    "service events, delivery, pickup and return records, assembled server-side with one query per table"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Agreement tree found",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = AssetFinanceAgreementTreeDTO.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "404", description = "Agreement not found", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<AssetFinanceAgreementTreeDTO>> getTree(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("assetFinanceAgreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Maximum number of assets to include, newest first")
+            @RequestParam(value = "assetLimit", defaultValue = "" + AssetFinanceAgreementTreeService.DEFAULT_ASSET_LIMIT) int assetLimit,
+            @Parameter(description = "Maximum number of records per child list, newest first; lowered when needed to keep the whole tree within " + AssetFinanceAgreementTreeService.MAX_ROWS + " rows")
+            @RequestParam(value = "childLimit", defaultValue = "" + AssetFinanceAgreementTreeService.DEFAULT_CHILD_LIMIT) int childLimit) {
+
+        return treeService.getTree(assetFinanceAgreementId, assetLimit, childLimit)
                 .map(ResponseEntity::ok);
     }
 
@@ -137,16 +217,51 @@ public class AssetFinanceAgreementController {
             ),
             @ApiResponse(responseCode = "400", description = "Invalid input data", content = @Content),
             @ApiResponse(responseCode = "404", description = "Agreement not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Modified concurrently between read and write", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     public Mono<ResponseEntity<AssetFinanceAgreementDTO>> update(
             @Parameter(description = "Unique identifier of the agreement to update", required = true)
             @PathVariable("assetFinanceAgreementId") UUID assetFinanceAgreementId,
             @Parameter(description = "Updated agreement data", required = true)
-            @Valid @RequestBody AssetFinanceAgreementDTO dto) {
+            @Valid @RequestBody AssetFinanceAgreementDTO dto,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        return service.update(assetFinanceAgreementId, dto)
-                .map(ResponseEntity::ok);
+        return service.update(assetFinanceAgreementId, dto, EntityTags.expectedVersion(ifMatch, assetFinanceAgreementId))
+                .map(EntityTags.tagged(AssetFinanceAgreementDTO::getAssetFinanceAgreementId, AssetFinanceAgreementDTO::getVersion));
+    }
+
+    @PatchMapping(value = "/{assetFinanceAgreementId}", consumes = "application/merge-patch+json")
+    @Operation(
+            summary = "Partially update an existing asset finance agreement",
+            description = "Apply a JSON Merge Patch to an existing asset finance agreement; only the fields present in the body are changed and null clears a field"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Agreement patched successfully",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = AssetFinanceAgreementDTO.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "400", description = "Unknown, read-only or invalid field", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Agreement not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<AssetFinanceAgreementDTO>> patch(
+            @Parameter(description = "Unique identifier of the agreement to patch", required = true)
+            @PathVariable("assetFinanceAgreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Fields to change; absent fields are kept and null clears a field", required = true)
+            @RequestBody Map<String, Object> patch,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        return service.patch(assetFinanceAgreementId, patch, EntityTags.expectedVersion(ifMatch, assetFinanceAgreementId))
+                .map(EntityTags.tagged(AssetFinanceAgreementDTO::getAssetFinanceAgreementId, AssetFinanceAgreementDTO::getVersion));
     }
 
     @DeleteMapping("/{assetFinanceAgreementId}")
@@ -157,13 +272,34 @@ public class AssetFinanceAgreementController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Agreement deleted successfully", content = @Content),
             @ApiResponse(responseCode = "404", description = "Agreement not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     public Mono<ResponseEntity<Void>> delete(
             @Parameter(description = "Unique identifier of the agreement to delete", required = true)
-            @PathVariable("assetFinanceAgreementId") UUID assetFinanceAgreementId) {
+            @PathVariable("assetFinanceAgreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        return service.delete(assetFinanceAgreementId)
+        return service.delete(assetFinanceAgreementId, EntityTags.expectedVersion(ifMatch, assetFinanceAgreementId))
                 .thenReturn(ResponseEntity.noContent().build());
     }
+
+    @PostMapping("/batch-delete")
+    @Operation(
+            summary = "Delete several agreements",
+            description = "Delete up to " + ScopedDelete.MAX_BATCH_SIZE + " agreements in one statement; ids that do not exist are skipped and the deleted ids are returned"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ids of the deleted agreements", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE)),
+            @ApiResponse(responseCode = "400", description = "Too many ids", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<List<UUID>>> deleteAll(
+            @Parameter(description = "Unique identifiers of the agreements to delete", required = true)
+            @RequestBody List<UUID> assetFinanceAgreementIds) {
+
+        return service.deleteAll(assetFinanceAgreementIds)
+                .map(ResponseEntity::ok);
+    }
 }
@@ -19,8 +19,13 @@ package com.firefly.core.lending.assetfinance.web.controllers;
 
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDelete;
 import com.firefly.core.lending.assetfinance.core.services.AssetFinanceAssetService;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.AssetFinanceAssetDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
+import com.firefly.core.lending.assetfinance.web.support.EntityTags;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -30,11 +35,15 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
@@ -59,6 +68,7 @@ public class AssetFinanceAssetController {
                             schema = @Schema(implementation = PaginationResponse.class)
                     )
             ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid filter request", content = @Content),
             @ApiResponse(responseCode = "404", description = "Agreement not found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
@@ -66,11 +76,50 @@ public class AssetFinanceAssetController {
     public Mono<ResponseEntity<PaginationResponse<AssetFinanceAssetDTO>>> findAll(
             @Parameter(description = "Unique identifier of the agreement", required = true)
             @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "How totalElements is computed: EXACT (count query), ESTIMATED (planner statistics) or NONE (next-page probing only)")
+            @RequestParam(value = "count", defaultValue = "EXACT") CountMode countMode,
+            @Parameter(description = "Comma-separated properties to load from the database; properties not listed are returned as null")
+            @RequestParam(value = "fields", required = false) Set<String> fields,
             @Parameter(description = "Filter criteria for searching assets")
             @Valid @RequestBody FilterRequest<AssetFinanceAssetDTO> filterRequest) {
 
-        return service.findAll(assetFinanceAgreementId, filterRequest)
-                .map(ResponseEntity::ok);
+        return service.findAll(assetFinanceAgreementId, filterRequest, countMode, fields)
+                .map(EntityTags.taggedPage(AssetFinanceAssetDTO::getAssetFinanceAssetId, AssetFinanceAssetDTO::getVersion, countMode, fields));
+    }
+
+    @GetMapping("/cursor")
+    @Operation(
+            summary = "List assets for an agreement with cursor pagination",
+            description = "Retrieve assets matching the filter criteria, in their sort order (newest first by default), using an opaque cursor instead of page numbers; deep pages cost the same as the first one"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Successfully retrieved page of assets",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = CursorPageResponse.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or filter request", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Agreement not found", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<CursorPageResponse<AssetFinanceAssetDTO>>> findAllByCursor(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Cursor returned as nextCursor by the previous page; omit for the first page")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(description = "Maximum number of items per page")
+            @RequestParam(value = "size", defaultValue = "" + CursorPageRequest.DEFAULT_SIZE) int size,
+            @Parameter(description = "Comma-separated properties to load from the database; properties not listed are returned as null")
+            @RequestParam(value = "fields", required = false) Set<String> fields,
+            @Parameter(description = "Filter criteria and sort applied to every page; a cursor is only accepted with the sort it was issued for")
+            @Valid @RequestBody(required = false) FilterRequest<AssetFinanceAssetDTO> filterRequest) {
+
+        return service.findAllByCursor(assetFinanceAgreementId, filterRequest, new CursorPageRequest(cursor, size), fields)
+                .map(EntityTags.taggedCursorPage(AssetFinanceAssetDTO::getAssetFinanceAssetId, AssetFinanceAssetDTO::getVersion, fields));
     }
 
     @PostMapping
@@ -115,6 +164,7 @@ public class AssetFinanceAssetController {
                             schema = @Schema(implementation = AssetFinanceAssetDTO.class)
                     )
             ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Asset or agreement not found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
@@ -125,7 +175,7 @@ public class AssetFinanceAssetController {
             @PathVariable("assetId") UUID assetFinanceAssetId) {
 
         return service.getById(assetFinanceAgreementId, assetFinanceAssetId)
-                .map(ResponseEntity::ok);
+                .map(EntityTags.tagged(AssetFinanceAssetDTO::getAssetFinanceAssetId, AssetFinanceAssetDTO::getVersion));
     }
 
     @PutMapping("/{assetId}")
@@ -144,6 +194,8 @@ public class AssetFinanceAssetController {
             ),
             @ApiResponse(responseCode = "400", description = "Invalid input data", content = @Content),
             @ApiResponse(responseCode = "404", description = "Asset or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Modified concurrently between read and write", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     public Mono<ResponseEntity<AssetFinanceAssetDTO>> update(
@@ -152,10 +204,45 @@ public class AssetFinanceAssetController {
             @Parameter(description = "Unique identifier of the asset to update", required = true)
             @PathVariable("assetId") UUID assetFinanceAssetId,
             @Parameter(description = "Updated asset data", required = true)
-            @Valid @RequestBody AssetFinanceAssetDTO dto) {
+            @Valid @RequestBody AssetFinanceAssetDTO dto,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        return service.update(assetFinanceAgreementId, assetFinanceAssetId, dto)
-                .map(ResponseEntity::ok);
+        return service.update(assetFinanceAgreementId, assetFinanceAssetId, dto, EntityTags.expectedVersion(ifMatch, assetFinanceAssetId))
+                .map(EntityTags.tagged(AssetFinanceAssetDTO::getAssetFinanceAssetId, AssetFinanceAssetDTO::getVersion));
+    }
+
+    @PatchMapping(value = "/{assetId}", consumes = "application/merge-patch+json")
+    @Operation(
+            summary = "Partially update an existing asset",
+            description = "Apply a JSON Merge Patch to an existing asset; only the fields present in the body are changed and null clears a field"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Asset patched successfully",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = AssetFinanceAssetDTO.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "400", description = "Unknown, read-only or invalid field", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Asset or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<AssetFinanceAssetDTO>> patch(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Unique identifier of the asset to patch", required = true)
+            @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "Fields to change; absent fields are kept and null clears a field", required = true)
+            @RequestBody Map<String, Object> patch,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        return service.patch(assetFinanceAgreementId, assetFinanceAssetId, patch, EntityTags.expectedVersion(ifMatch, assetFinanceAssetId))
+                .map(EntityTags.tagged(AssetFinanceAssetDTO::getAssetFinanceAssetId, AssetFinanceAssetDTO::getVersion));
     }
 
     @DeleteMapping("/{assetId}")
@@ -166,15 +253,38 @@ public class AssetFinanceAssetController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Asset deleted successfully", content = @Content),
             @ApiResponse(responseCode = "404", description = "Asset or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     public Mono<ResponseEntity<Void>> delete(
             @Parameter(description = "Unique identifier of the agreement", required = true)
             @PathVariable("agreementId") UUID assetFinanceAgreementId,
             @Parameter(description = "Unique identifier of the asset to delete", required = true)
-            @PathVariable("assetId") UUID assetFinanceAssetId) {
+            @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        return service.delete(assetFinanceAgreementId, assetFinanceAssetId)
+        return service.delete(assetFinanceAgreementId, assetFinanceAssetId, EntityTags.expectedVersion(ifMatch, assetFinanceAssetId))
                 .thenReturn(ResponseEntity.noContent().build());
     }
+
+    @PostMapping("/batch-delete")
+    @Operation(
+            summary = "Delete several assets",
+            description = "Delete up to " + ScopedDelete.MAX_BATCH_SIZE + " assets in one statement; ids that do not exist are skipped and the deleted ids are returned"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ids of the deleted assets", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE)),
+            @ApiResponse(responseCode = "400", description = "Too many ids", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<List<UUID>>> deleteAll(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Unique identifiers of the assets to delete", required = true)
+            @RequestBody List<UUID> assetFinanceAssetIds) {
+
+        return service.deleteAll(assetFinanceAgreementId, assetFinanceAssetIds)
+                .map(ResponseEntity::ok);
+    }
 }
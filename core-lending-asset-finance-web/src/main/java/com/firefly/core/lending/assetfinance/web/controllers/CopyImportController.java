@@ -0,0 +1,110 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.web.controllers;
+
+import com.firefly.core.lending.assetfinance.core.ingestion.CopyImporter;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ImportSummaryDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ServiceEventDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@ConditionalOnProperty(prefix = "asset-finance.ingestion.copy", name = "endpoint-enabled", havingValue = "true")
+@RequestMapping("/api/v1/admin/imports")
+@Tag(name = "CopyImport", description = "Administrative bulk imports through the Postgres COPY protocol")
+@RequiredArgsConstructor
+public class CopyImportController {
+
+    private final CopyImporter importer;
+
+    @PostMapping(
+            value = "/usage-records",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            summary = "Import usage records with COPY",
+            description = "Stream usage records of any number of assets into the database with a single COPY statement. "
+                    + "Invalid rows and rows of unknown assets are written to a reject file instead of aborting the import"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Import committed",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ImportSummaryDTO.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "400", description = "Malformed request body", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Missing or wrong X-Admin-Token header", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Import failed and was rolled back", content = @Content)
+    })
+    public Mono<ImportSummaryDTO> importUsageRecords(
+            @Parameter(description = "Usage records to import, each naming its asset", required = true)
+            @RequestBody Flux<UsageRecordDTO> records) {
+
+        return importer.importUsageRecords(records);
+    }
+
+    @PostMapping(
+            value = "/service-events",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            summary = "Import service events with COPY",
+            description = "Stream service events of any number of assets into the database with a single COPY statement. "
+                    + "Invalid rows and rows of unknown assets are written to a reject file instead of aborting the import"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Import committed",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ImportSummaryDTO.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "400", description = "Malformed request body", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Missing or wrong X-Admin-Token header", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Import failed and was rolled back", content = @Content)
+    })
+    public Mono<ImportSummaryDTO> importServiceEvents(
+            @Parameter(description = "Service events to import, each naming its asset", required = true)
+            @RequestBody Flux<ServiceEventDTO> events) {
+
+        return importer.importServiceEvents(events);
+    }
+}
@@ -19,8 +19,13 @@ package com.firefly.core.lending.assetfinance.web.controllers;
 
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDelete;
 import com.firefly.core.lending.assetfinance.core.services.ReturnRecordService;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.ReturnRecordDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
+import com.firefly.core.lending.assetfinance.web.support.EntityTags;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -30,11 +35,15 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
@@ -59,6 +68,7 @@ public class ReturnRecordController {
                             schema = @Schema(implementation = PaginationResponse.class)
                     )
             ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid filter request", content = @Content),
             @ApiResponse(responseCode = "404", description = "Asset or agreement not found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
@@ -68,11 +78,52 @@ public class ReturnRecordController {
             @PathVariable("agreementId") UUID assetFinanceAgreementId,
             @Parameter(description = "Unique identifier of the asset", required = true)
             @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "How totalElements is computed: EXACT (count query), ESTIMATED (planner statistics) or NONE (next-page probing only)")
+            @RequestParam(value = "count", defaultValue = "EXACT") CountMode countMode,
+            @Parameter(description = "Comma-separated properties to load from the database; properties not listed are returned as null")
+            @RequestParam(value = "fields", required = false) Set<String> fields,
             @Parameter(description = "Filter criteria for searching return records")
             @Valid @RequestBody FilterRequest<ReturnRecordDTO> filterRequest) {
 
-        return service.findAll(assetFinanceAgreementId, assetFinanceAssetId, filterRequest)
-                .map(ResponseEntity::ok);
+        return service.findAll(assetFinanceAgreementId, assetFinanceAssetId, filterRequest, countMode, fields)
+                .map(EntityTags.taggedPage(ReturnRecordDTO::getReturnRecordId, ReturnRecordDTO::getVersion, countMode, fields));
+    }
+
+    @GetMapping("/cursor")
+    @Operation(
+            summary = "List return records for an asset with cursor pagination",
+            description = "Retrieve return records matching the filter criteria, in their sort order (newest first by default), using an opaque cursor instead of page numbers; deep pages cost the same as the first one"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Successfully retrieved page of return records",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = CursorPageResponse.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or filter request", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Asset or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<CursorPageResponse<ReturnRecordDTO>>> findAllByCursor(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Unique identifier of the asset", required = true)
+            @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "Cursor returned as nextCursor by the previous page; omit for the first page")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(description = "Maximum number of items per page")
+            @RequestParam(value = "size", defaultValue = "" + CursorPageRequest.DEFAULT_SIZE) int size,
+            @Parameter(description = "Comma-separated properties to load from the database; properties not listed are returned as null")
+            @RequestParam(value = "fields", required = false) Set<String> fields,
+            @Parameter(description = "Filter criteria and sort applied to every page; a cursor is only accepted with the sort it was issued for")
+            @Valid @RequestBody(required = false) FilterRequest<ReturnRecordDTO> filterRequest) {
+
+        return service.findAllByCursor(assetFinanceAgreementId, assetFinanceAssetId, filterRequest, new CursorPageRequest(cursor, size), fields)
+                .map(EntityTags.taggedCursorPage(ReturnRecordDTO::getReturnRecordId, ReturnRecordDTO::getVersion, fields));
     }
 
     @PostMapping
@@ -119,6 +170,7 @@ public class ReturnRecordController {
                             schema = @Schema(implementation = ReturnRecordDTO.class)
                     )
             ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Return record, asset, or agreement not found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
@@ -131,7 +183,7 @@ public class ReturnRecordController {
             @PathVariable("recordId") UUID returnRecordId) {
 
         return service.getById(assetFinanceAgreementId, assetFinanceAssetId, returnRecordId)
-                .map(ResponseEntity::ok);
+                .map(EntityTags.tagged(ReturnRecordDTO::getReturnRecordId, ReturnRecordDTO::getVersion));
     }
 
     @PutMapping("/{recordId}")
@@ -150,6 +202,8 @@ public class ReturnRecordController {
             ),
             @ApiResponse(responseCode = "400", description = "Invalid input data", content = @Content),
             @ApiResponse(responseCode = "404", description = "Return record, asset, or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Modified concurrently between read and write", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     public Mono<ResponseEntity<ReturnRecordDTO>> update(
@@ -160,10 +214,47 @@ public class ReturnRecordController {
             @Parameter(description = "Unique identifier of the return record to update", required = true)
             @PathVariable("recordId") UUID returnRecordId,
             @Parameter(description = "Updated return record data", required = true)
-            @Valid @RequestBody ReturnRecordDTO dto) {
+            @Valid @RequestBody ReturnRecordDTO dto,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        return service.update(assetFinanceAgreementId, assetFinanceAssetId, returnRecordId, dto)
-                .map(ResponseEntity::ok);
+        return service.update(assetFinanceAgreementId, assetFinanceAssetId, returnRecordId, dto, EntityTags.expectedVersion(ifMatch, returnRecordId))
+                .map(EntityTags.tagged(ReturnRecordDTO::getReturnRecordId, ReturnRecordDTO::getVersion));
+    }
+
+    @PatchMapping(value = "/{recordId}", consumes = "application/merge-patch+json")
+    @Operation(
+            summary = "Partially update an existing return record",
+            description = "Apply a JSON Merge Patch to an existing return record; only the fields present in the body are changed and null clears a field"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Return record patched successfully",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ReturnRecordDTO.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "400", description = "Unknown, read-only or invalid field", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Return record, asset, or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<ReturnRecordDTO>> patch(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Unique identifier of the asset", required = true)
+            @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "Unique identifier of the return record to patch", required = true)
+            @PathVariable("recordId") UUID returnRecordId,
+            @Parameter(description = "Fields to change; absent fields are kept and null clears a field", required = true)
+            @RequestBody Map<String, Object> patch,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        return service.patch(assetFinanceAgreementId, assetFinanceAssetId, returnRecordId, patch, EntityTags.expectedVersion(ifMatch, returnRecordId))
+                .map(EntityTags.tagged(ReturnRecordDTO::getReturnRecordId, ReturnRecordDTO::getVersion));
     }
 
     @DeleteMapping("/{recordId}")
@@ -174,6 +265,7 @@ public class ReturnRecordController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Return record deleted successfully", content = @Content),
             @ApiResponse(responseCode = "404", description = "Return record, asset, or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     public Mono<ResponseEntity<Void>> delete(
@@ -182,9 +274,33 @@ public class ReturnRecordController {
             @Parameter(description = "Unique identifier of the asset", required = true)
             @PathVariable("assetId") UUID assetFinanceAssetId,
             @Parameter(description = "Unique identifier of the return record to delete", required = true)
-            @PathVariable("recordId") UUID returnRecordId) {
+            @PathVariable("recordId") UUID returnRecordId,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        return service.delete(assetFinanceAgreementId, assetFinanceAssetId, returnRecordId)
+        return service.delete(assetFinanceAgreementId, assetFinanceAssetId, returnRecordId, EntityTags.expectedVersion(ifMatch, returnRecordId))
                 .thenReturn(ResponseEntity.noContent().build());
     }
+
+    @PostMapping("/batch-delete")
+    @Operation(
+            summary = "Delete several return records",
+            description = "Delete up to " + ScopedDelete.MAX_BATCH_SIZE + " return records in one statement; ids that do not exist are skipped and the deleted ids are returned"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ids of the deleted return records", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE)),
+            @ApiResponse(responseCode = "400", description = "Too many ids", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<List<UUID>>> deleteAll(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Unique identifier of the asset", required = true)
+            @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "Unique identifiers of the return records to delete", required = true)
+            @RequestBody List<UUID> returnRecordIds) {
+
+        return service.deleteAll(assetFinanceAgreementId, assetFinanceAssetId, returnRecordIds)
+                .map(ResponseEntity::ok);
+    }
 }
@@ -19,8 +19,13 @@ package com.firefly.core.lending.assetfinance.web.controllers;
 
 import org.fireflyframework.core.filters.FilterRequest;
 import org.fireflyframework.core.queries.PaginationResponse;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDelete;
 import com.firefly.core.lending.assetfinance.core.services.ServiceEventService;
 import com.firefly.core.lending.assetfinance.interfaces.dtos.ServiceEventDTO;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CountMode;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageRequest;
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
+import com.firefly.core.lending.assetfinance.web.support.EntityTags;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -30,11 +35,15 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
@@ -59,6 +68,7 @@ public class ServiceEventController {
                             schema = @Schema(implementation = PaginationResponse.class)
                     )
             ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "400", description = "Invalid filter request", content = @Content),
             @ApiResponse(responseCode = "404", description = "Asset or agreement not found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
@@ -68,11 +78,52 @@ public class ServiceEventController {
             @PathVariable("agreementId") UUID assetFinanceAgreementId,
             @Parameter(description = "Unique identifier of the asset", required = true)
             @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "How totalElements is computed: EXACT (count query), ESTIMATED (planner statistics) or NONE (next-page probing only)")
+            @RequestParam(value = "count", defaultValue = "EXACT") CountMode countMode,
+            @Parameter(description = "Comma-separated properties to load from the database; properties not listed are returned as null")
+            @RequestParam(value = "fields", required = false) Set<String> fields,
             @Parameter(description = "Filter criteria for searching service events")
             @Valid @RequestBody FilterRequest<ServiceEventDTO> filterRequest) {
 
-        return service.findAll(assetFinanceAgreementId, assetFinanceAssetId, filterRequest)
-                .map(ResponseEntity::ok);
+        return service.findAll(assetFinanceAgreementId, assetFinanceAssetId, filterRequest, countMode, fields)
+                .map(EntityTags.taggedPage(ServiceEventDTO::getServiceEventId, ServiceEventDTO::getVersion, countMode, fields));
+    }
+
+    @GetMapping("/cursor")
+    @Operation(
+            summary = "List service events for an asset with cursor pagination",
+            description = "Retrieve service events matching the filter criteria, in their sort order (newest first by default), using an opaque cursor instead of page numbers; deep pages cost the same as the first one"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Successfully retrieved page of service events",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = CursorPageResponse.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or filter request", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Asset or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<CursorPageResponse<ServiceEventDTO>>> findAllByCursor(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Unique identifier of the asset", required = true)
+            @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "Cursor returned as nextCursor by the previous page; omit for the first page")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(description = "Maximum number of items per page")
+            @RequestParam(value = "size", defaultValue = "" + CursorPageRequest.DEFAULT_SIZE) int size,
+            @Parameter(description = "Comma-separated properties to load from the database; properties not listed are returned as null")
+            @RequestParam(value = "fields", required = false) Set<String> fields,
+            @Parameter(description = "Filter criteria and sort applied to every page; a cursor is only accepted with the sort it was issued for")
+            @Valid @RequestBody(required = false) FilterRequest<ServiceEventDTO> filterRequest) {
+
+        return service.findAllByCursor(assetFinanceAgreementId, assetFinanceAssetId, filterRequest, new CursorPageRequest(cursor, size), fields)
+                .map(EntityTags.taggedCursorPage(ServiceEventDTO::getServiceEventId, ServiceEventDTO::getVersion, fields));
     }
 
     @PostMapping
@@ -119,6 +170,7 @@ public class ServiceEventController {
                             schema = @Schema(implementation = ServiceEventDTO.class)
                     )
             ),
+            @ApiResponse(responseCode = "304", description = "Not modified since the ETag sent in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Service event, asset, or agreement not found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
@@ -131,7 +183,7 @@ public class ServiceEventController {
             @PathVariable("eventId") UUID serviceEventId) {
 
         return service.getById(assetFinanceAgreementId, assetFinanceAssetId, serviceEventId)
-                .map(ResponseEntity::ok);
+                .map(EntityTags.tagged(ServiceEventDTO::getServiceEventId, ServiceEventDTO::getVersion));
     }
 
     @PutMapping("/{eventId}")
@@ -150,6 +202,8 @@ public class ServiceEventController {
             ),
             @ApiResponse(responseCode = "400", description = "Invalid input data", content = @Content),
             @ApiResponse(responseCode = "404", description = "Service event, asset, or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Modified concurrently between read and write", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     public Mono<ResponseEntity<ServiceEventDTO>> update(
@@ -160,10 +214,47 @@ public class ServiceEventController {
             @Parameter(description = "Unique identifier of the service event to update", required = true)
             @PathVariable("eventId") UUID serviceEventId,
             @Parameter(description = "Updated service event data", required = true)
-            @Valid @RequestBody ServiceEventDTO dto) {
+            @Valid @RequestBody ServiceEventDTO dto,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        return service.update(assetFinanceAgreementId, assetFinanceAssetId, serviceEventId, dto)
-                .map(ResponseEntity::ok);
+        return service.update(assetFinanceAgreementId, assetFinanceAssetId, serviceEventId, dto, EntityTags.expectedVersion(ifMatch, serviceEventId))
+                .map(EntityTags.tagged(ServiceEventDTO::getServiceEventId, ServiceEventDTO::getVersion));
+    }
+
+    @PatchMapping(value = "/{eventId}", consumes = "application/merge-patch+json")
+    @Operation(
+            summary = "Partially update an existing service event",
+            description = "Apply a JSON Merge Patch to an existing service event; only the fields present in the body are changed and null clears a field"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Service event patched successfully",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ServiceEventDTO.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "400", description = "Unknown, read-only or invalid field", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Service event, asset, or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<ServiceEventDTO>> patch(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Unique identifier of the asset", required = true)
+            @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "Unique identifier of the service event to patch", required = true)
+            @PathVariable("eventId") UUID serviceEventId,
+            @Parameter(description = "Fields to change; absent fields are kept and null clears a field", required = true)
+            @RequestBody Map<String, Object> patch,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        return service.patch(assetFinanceAgreementId, assetFinanceAssetId, serviceEventId, patch, EntityTags.expectedVersion(ifMatch, serviceEventId))
+                .map(EntityTags.tagged(ServiceEventDTO::getServiceEventId, ServiceEventDTO::getVersion));
     }
 
     @DeleteMapping("/{eventId}")
@@ -174,6 +265,7 @@ public class ServiceEventController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Service event deleted successfully", content = @Content),
             @ApiResponse(responseCode = "404", description = "Service event, asset, or agreement not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not name the current version", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     public Mono<ResponseEntity<Void>> delete(
@@ -182,9 +274,33 @@ public class ServiceEventController {
             @Parameter(description = "Unique identifier of the asset", required = true)
             @PathVariable("assetId") UUID assetFinanceAssetId,
             @Parameter(description = "Unique identifier of the service event to delete", required = true)
-            @PathVariable("eventId") UUID serviceEventId) {
+            @PathVariable("eventId") UUID serviceEventId,
+            @Parameter(description = "ETag of the version this change is based on; the request fails with 412 if the resource has changed since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        return service.delete(assetFinanceAgreementId, assetFinanceAssetId, serviceEventId)
+        return service.delete(assetFinanceAgreementId, assetFinanceAssetId, serviceEventId, EntityTags.expectedVersion(ifMatch, serviceEventId))
                 .thenReturn(ResponseEntity.noContent().build());
     }
+
+    @PostMapping("/batch-delete")
+    @Operation(
+            summary = "Delete several service events",
+            description = "Delete up to " + ScopedDelete.MAX_BATCH_SIZE + " service events in one statement; ids that do not exist are skipped and the deleted ids are returned"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ids of the deleted service events", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE)),
+            @ApiResponse(responseCode = "400", description = "Too many ids", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Mono<ResponseEntity<List<UUID>>> deleteAll(
+            @Parameter(description = "Unique identifier of the agreement", required = true)
+            @PathVariable("agreementId") UUID assetFinanceAgreementId,
+            @Parameter(description = "Unique identifier of the asset", required = true)
+            @PathVariable("assetId") UUID assetFinanceAssetId,
+            @Parameter(description = "Unique identifiers of the service events to delete", required = true)
+            @RequestBody List<UUID> serviceEventIds) {
+
+        return service.deleteAll(assetFinanceAgreementId, assetFinanceAssetId, serviceEventIds)
+                .map(ResponseEntity::ok);
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.web.controllers;
+
+import com.firefly.core.lending.assetfinance.core.services.UsageRecordIngestionService;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.BulkItemResultDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/api/v1/usage-records")
+@Tag(name = "UsageRecordIngestion", description = "High-volume ingestion of Asset Usage Records across assets")
+@RequiredArgsConstructor
+public class UsageRecordIngestionController {
+
+    private final UsageRecordIngestionService service;
+
+    @PostMapping(
+            value = "/bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE}
+    )
+    @Operation(
+            summary = "Create usage records in bulk",
+            description = "Create usage records of any number of assets from a JSON array or an NDJSON stream. "
+                    + "Records are decoded as they arrive and written with multi-row inserts in bounded transactions. "
+                    + "One result per record is returned in request order, streamed when NDJSON is accepted"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Records processed; see the status of each result",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = BulkItemResultDTO.class))
+                            ),
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = BulkItemResultDTO.class)
+                            )
+                    }
+            ),
+            @ApiResponse(responseCode = "400", description = "Malformed request body", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    public Flux<BulkItemResultDTO> createAll(
+            @Parameter(description = "Usage records to create, each naming its asset", required = true)
+            @RequestBody Flux<UsageRecordDTO> records) {
+
+        return service.createAll(records);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.web.support;
+
+import com.firefly.core.lending.assetfinance.core.ingestion.IngestionProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Admits requests to the administrative endpoints under {@code /api/v1/admin/} only when they
+ * carry the configured {@code asset-finance.ingestion.copy.admin-token} in the
+ * {@code X-Admin-Token} header. Those endpoints bypass the per-agreement ownership checks, so
+ * every other request, and every request while no token is configured, is answered with 403
+ * before its body is read.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdminAccessWebFilter implements WebFilter {
+
+    static final String ADMIN_PATH = "/api/v1/admin/";
+    static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+
+    private final IngestionProperties ingestionProperties;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!exchange.getRequest().getPath().pathWithinApplication().value().startsWith(ADMIN_PATH)) {
+            return chain.filter(exchange);
+        }
+        if (isAdmin(exchange.getRequest().getHeaders().getFirst(ADMIN_TOKEN_HEADER))) {
+            return chain.filter(exchange);
+        }
+        exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+        return exchange.getResponse().setComplete();
+    }
+
+    private boolean isAdmin(String presented) {
+        String expected = ingestionProperties.getCopy().getAdminToken();
+        if (!StringUtils.hasText(expected) || presented == null) {
+            return false;
+        }
+        // constant time, so the token cannot be guessed from response times
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.web.support;
+
+import com.firefly.core.lending.assetfinance.core.cache.CacheProperties;
+import com.firefly.core.lending.assetfinance.core.cache.CacheSnapshots;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Persists the {@link CacheSnapshots cache snapshot} across graceful restarts.
+ * <p>
+ * On start the snapshot file is memory-mapped, handed to {@link CacheSnapshots#restore} and
+ * deleted, so a node that later crashes rebuilds from the database instead of trusting an old
+ * file. On stop, which runs after the web server has drained in-flight requests but while the
+ * connection pools are still open, a new snapshot is written to a temporary file and moved into
+ * place atomically.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheSnapshotLifecycle implements SmartLifecycle {
+
+    private final CacheSnapshots snapshots;
+    private final CacheProperties cacheProperties;
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        running = true;
+        CacheProperties.Snapshot properties = cacheProperties.getSnapshot();
+        Path path = Path.of(properties.getPath());
+        if (!properties.isEnabled() || !Files.isRegularFile(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            snapshots.restore(buffer);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable cache snapshot {}", path, e);
+        } finally {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Could not delete cache snapshot {}", path, e);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        CacheProperties.Snapshot properties = cacheProperties.getSnapshot();
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Path path = Path.of(properties.getPath()).toAbsolutePath();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                snapshots.write(out);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote cache snapshot {} ({} bytes)", path, Files.size(path));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write cache snapshot {}, the next start rebuilds from the database", path, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Below the web server's graceful shutdown phase, so that it stops after requests have drained,
+     * and below the default phase, so that it restores before the caches start building.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1536;
+    }
+}
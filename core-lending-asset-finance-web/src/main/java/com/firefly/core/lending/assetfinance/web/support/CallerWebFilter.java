@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.web.support;
+
+import com.firefly.core.lending.assetfinance.models.config.ReadReplicaProperties;
+import com.firefly.core.lending.assetfinance.models.routing.Caller;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Identifies the {@link Caller} of each request, so that read-your-writes stickiness after a
+ * command applies to that caller's later reads only. The caller is taken from the configured
+ * {@code caller-header}, then from the authenticated principal, then from the originating client
+ * of a {@code Forwarded} or {@code X-Forwarded-For} header.
+ * <p>
+ * The remote socket address is deliberately not used: behind a proxy or ingress it is the same
+ * for every client, and one client's write would pin everyone's reads to the primary. Requests
+ * that cannot be identified run without a caller and never stick to the primary.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class CallerWebFilter implements WebFilter {
+
+    private static final String FORWARDED = "Forwarded";
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+    private static final Pattern FORWARDED_FOR = Pattern.compile("(?i)for=\"?([^;,\"]+)");
+
+    private final ReadReplicaProperties replicaProperties;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String header = exchange.getRequest().getHeaders().getFirst(replicaProperties.getCallerHeader());
+        Mono<String> id = StringUtils.hasText(header)
+                ? Mono.just(header)
+                : exchange.getPrincipal()
+                        .map(Principal::getName)
+                        .filter(StringUtils::hasText)
+                        .switchIfEmpty(Mono.justOrEmpty(forwardedClient(exchange.getRequest().getHeaders())));
+        return id.map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(caller -> caller.isPresent()
+                        ? chain.filter(exchange).contextWrite(new Caller(caller.get()).asContext())
+                        : chain.filter(exchange));
+    }
+
+    /**
+     * The client closest to the origin named by the forwarding headers, or null without them.
+     */
+    static String forwardedClient(HttpHeaders headers) {
+        String forwarded = headers.getFirst(FORWARDED);
+        if (StringUtils.hasText(forwarded)) {
+            Matcher matcher = FORWARDED_FOR.matcher(forwarded);
+            if (matcher.find()) {
+                return matcher.group(1).trim();
+            }
+        }
+        String forwardedFor = headers.getFirst(X_FORWARDED_FOR);
+        if (StringUtils.hasText(forwardedFor)) {
+            String client = forwardedFor.split(",", 2)[0].trim();
+            return client.isEmpty() ? null : client;
+        }
+        return null;
+    }
+}
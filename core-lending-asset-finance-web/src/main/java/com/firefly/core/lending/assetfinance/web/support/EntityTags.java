@@ -0,0 +1,124 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.firefly.core.lending.assetfinance.web.support;
+
+import com.firefly.core.lending.assetfinance.interfaces.queries.CursorPageResponse;
+import org.fireflyframework.core.queries.PaginationResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Builds entity tags for controller responses.
+ * <p>
+ * Single resources get a strong tag derived from their id and row version; pages get a weak tag
+ * derived from the id and version of every item plus the page metadata and the request qualifiers
+ * that shape the body (e.g. {@code fields}). Returning a {@link ResponseEntity} with an ETag from a
+ * GET handler is enough for WebFlux to compare it against {@code If-None-Match} and answer
+ * {@code 304 Not Modified} without writing the body.
+ * </p>
+ * <p>
+ * Writers send the strong tag back in {@code If-Match}; {@link #expectedVersion} turns it into the
+ * version the services compare against, so a write based on a stale read fails with 412.
+ * </p>
+ */
+public final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    public static String strong(UUID id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    /**
+     * Extract the version named by an {@code If-Match} header sent for the resource with the given id.
+     * <p>
+     * {@code If-Match} uses strong comparison, so weak tags, tags of other resources and lists of
+     * several tags can never match the current representation and fail with 412 here.
+     * </p>
+     *
+     * @return the expected version, or null when the header is absent or {@code *}
+     */
+    public static Long expectedVersion(String ifMatch, UUID id) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        String prefix = "\"" + id + "-";
+        if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+            try {
+                return Long.parseLong(tag.substring(prefix.length(), tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // falls through to 412
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match the current entity tag");
+    }
+
+    public static <T> Function<T, ResponseEntity<T>> tagged(Function<T, UUID> id, Function<T, Long> version) {
+        return body -> ResponseEntity.ok()
+                .eTag(strong(id.apply(body), version.apply(body)))
+                .body(body);
+    }
+
+    public static <T> Function<PaginationResponse<T>, ResponseEntity<PaginationResponse<T>>> taggedPage(
+            Function<T, UUID> id, Function<T, Long> version, Object... qualifiers) {
+        return page -> ResponseEntity.ok()
+                .eTag(weak(page.getContent(), id, version,
+                        page.getTotalElements(), page.getTotalPages(), page.getCurrentPage(), List.of(qualifiers)))
+                .body(page);
+    }
+
+    public static <T> Function<CursorPageResponse<T>, ResponseEntity<CursorPageResponse<T>>> taggedCursorPage(
+            Function<T, UUID> id, Function<T, Long> version, Object... qualifiers) {
+        return page -> ResponseEntity.ok()
+                .eTag(weak(page.getContent(), id, version, page.getNextCursor(), List.of(qualifiers)))
+                .body(page);
+    }
+
+    private static <T> String weak(List<T> content, Function<T, UUID> id, Function<T, Long> version,
+                                   Object... metadata) {
+        MessageDigest digest = sha256();
+        for (T item : content) {
+            digest.update(String.valueOf(id.apply(item)).getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(version.apply(item)).getBytes(StandardCharsets.UTF_8));
+        }
+        for (Object value : metadata) {
+            digest.update((byte) '|');
+            digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        }
+        return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.web.controllers;
+
+import com.firefly.core.lending.assetfinance.core.ingestion.CopyImporter;
+import com.firefly.core.lending.assetfinance.core.ingestion.IngestionProperties;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.ImportSummaryDTO;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.web.support.AdminAccessWebFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Calls the {@code COPY} import endpoint through the admin gate, checking that only callers with
+ * the configured admin token reach the importer.
+ */
+class CopyImportControllerTest {
+
+    private static final String TOKEN = "s3cret-admin-token";
+
+    private final CopyImporter importer = mock(CopyImporter.class);
+    private final IngestionProperties properties = new IngestionProperties();
+    private WebTestClient client;
+
+    @BeforeEach
+    void createClient() {
+        properties.getCopy().setAdminToken(TOKEN);
+        client = WebTestClient.bindToController(new CopyImportController(importer))
+                .webFilter(new AdminAccessWebFilter(properties))
+                .build();
+        when(importer.importUsageRecords(any())).thenReturn(Mono.just(ImportSummaryDTO.builder()
+                .table("usage_record")
+                .imported(1)
+                .build()));
+    }
+
+    @Test
+    void rejectsCallerWithoutToken() {
+        post(null).expectStatus().isForbidden();
+
+        verifyNoInteractions(importer);
+    }
+
+    @Test
+    void rejectsCallerWithWrongToken() {
+        post(TOKEN + "x").expectStatus().isForbidden();
+        post("").expectStatus().isForbidden();
+
+        verifyNoInteractions(importer);
+    }
+
+    @Test
+    void rejectsEveryCallerWhileNoTokenIsConfigured() {
+        properties.getCopy().setAdminToken("");
+
+        post("").expectStatus().isForbidden();
+        post(TOKEN).expectStatus().isForbidden();
+
+        verifyNoInteractions(importer);
+    }
+
+    @Test
+    void admitsCallerWithToken() {
+        post(TOKEN).expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.table").isEqualTo("usage_record")
+                .jsonPath("$.imported").isEqualTo(1);
+
+        verify(importer).importUsageRecords(any());
+    }
+
+    private WebTestClient.ResponseSpec post(String token) {
+        return client.post()
+                .uri("/api/v1/admin/imports/usage-records")
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers -> {
+                    if (token != null) {
+                        headers.set("X-Admin-Token", token);
+                    }
+                })
+                .bodyValue(List.of(UsageRecordDTO.builder()
+                        .assetFinanceAssetId(UUID.randomUUID())
+                        .usageDate(LocalDate.of(2024, 1, 1))
+                        .build()))
+                .exchange();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.web.controllers;
+
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import com.firefly.core.lending.assetfinance.models.repositories.UsageRecordRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Drives the usage record endpoints over HTTP against a migrated Postgres, checking that
+ * {@code If-Match} and the row version guard every write: a stale or malformed tag fails with
+ * 412, a write that loses a race without a tag fails with 409, and the versions written by the
+ * {@code version} trigger and by {@code @Version} stay in step across PATCH and PUT. Docker is
+ * required.
+ */
+class UsageRecordConcurrencyTest {
+
+    private static PostgresFixture postgres;
+    private static R2dbcEntityTemplate template;
+
+    private PostgresFixture.SeededAsset asset;
+    private UsageRecord record;
+    private UsageRecordRepository repository;
+    private WebTestClient client;
+
+    @BeforeAll
+    static void startDatabase() {
+        postgres = PostgresFixture.start();
+        template = new R2dbcEntityTemplate(postgres.connectionFactory());
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void createClient() {
+        asset = postgres.seedAsset(1);
+        record = reload();
+        // a delegating mock, so that a test can slip a concurrent write in after the service's read
+        repository = mock(UsageRecordRepository.class, delegatesTo(UsageRecordEndpoints.repository(postgres)));
+        client = UsageRecordEndpoints.bind(postgres, repository);
+    }
+
+    @Test
+    void staleIfMatchFailsWithPreconditionFailed() {
+        String read = get();
+        put(read, 100).expectStatus().isOk();
+
+        put(read, 200).expectStatus().isEqualTo(412)
+                .expectBody()
+                .jsonPath("$.expectedVersion").isEqualTo(0)
+                .jsonPath("$.currentVersion").isEqualTo(1);
+
+        assertThat(reload().getMileage()).isEqualTo(100);
+        assertThat(reload().getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void concurrentSaveWithoutIfMatchFailsWithConflict() {
+        // the service keeps working on the row it read, while another writer commits in between
+        doAnswer(invocation -> template.getDatabaseClient()
+                .sql("UPDATE usage_record SET mileage = 999 WHERE usage_record_id = :id")
+                .bind("id", record.getUsageRecordId())
+                .then()
+                .thenReturn(record))
+                .when(repository).findByIdAndPath(any(), any(), any());
+
+        put(null, 100).expectStatus().isEqualTo(409);
+
+        UsageRecord current = reload();
+        assertThat(current.getMileage()).isEqualTo(999);
+        assertThat(current.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void malformedIfMatchIsRejected() {
+        for (String ifMatch : new String[]{
+                "not-a-tag",
+                "W/" + get(),
+                "\"" + record.getUsageRecordId() + "-x\"",
+                "\"" + UUID.randomUUID() + "-0\"",
+                get() + ", \"" + record.getUsageRecordId() + "-1\""}) {
+            put(ifMatch, 100).expectStatus().isEqualTo(412);
+        }
+
+        assertThat(reload().getVersion()).isZero();
+    }
+
+    @Test
+    void patchThenPutReportsNoFalseConflict() {
+        String read = get();
+
+        String patched = client.patch()
+                .uri(path())
+                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                .header(HttpHeaders.IF_MATCH, read)
+                .bodyValue(Map.of("usageDetail", "patched"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.version").isEqualTo(1)
+                .returnResult()
+                .getResponseHeaders()
+                .getETag();
+        assertThat(reload().getVersion()).isEqualTo(1L);
+
+        String updated = put(patched, 100).expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.version").isEqualTo(2)
+                .jsonPath("$.usageDetail").doesNotExist()
+                .returnResult()
+                .getResponseHeaders()
+                .getETag();
+
+        UsageRecord current = reload();
+        assertThat(current.getVersion()).isEqualTo(2L);
+        assertThat(current.getMileage()).isEqualTo(100);
+        assertThat(updated).isEqualTo(get());
+    }
+
+    private String get() {
+        return client.get()
+                .uri(path())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(UsageRecordDTO.class)
+                .getResponseHeaders()
+                .getETag();
+    }
+
+    private WebTestClient.ResponseSpec put(String ifMatch, int mileage) {
+        return client.put()
+                .uri(path())
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers -> {
+                    if (ifMatch != null) {
+                        headers.set(HttpHeaders.IF_MATCH, ifMatch);
+                    }
+                })
+                .bodyValue(UsageRecordDTO.builder()
+                        .assetFinanceAssetId(asset.assetId())
+                        .usageDate(LocalDate.of(2024, 6, 1))
+                        .mileage(mileage)
+                        .build())
+                .exchange();
+    }
+
+    private String path() {
+        return UsageRecordEndpoints.path(asset) + "/" + record.getUsageRecordId();
+    }
+
+    private UsageRecord reload() {
+        return template.selectOne(Query.query(Criteria.where("assetFinanceAssetId").is(asset.assetId())), UsageRecord.class)
+                .block();
+    }
+}
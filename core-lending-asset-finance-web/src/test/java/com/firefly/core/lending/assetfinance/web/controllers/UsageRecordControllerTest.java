@@ -0,0 +1,246 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.web.controllers;
+
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDelete;
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.interfaces.dtos.UsageRecordDTO;
+import com.firefly.core.lending.assetfinance.models.entities.UsageRecord;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the usage record endpoints over HTTP against a migrated Postgres. Docker is required.
+ */
+class UsageRecordControllerTest {
+
+    private static PostgresFixture postgres;
+    private static R2dbcEntityTemplate template;
+
+    private PostgresFixture.SeededAsset asset;
+    private PostgresFixture.SeededAsset other;
+    private WebTestClient client;
+
+    @BeforeAll
+    static void startDatabase() {
+        postgres = PostgresFixture.start();
+        template = new R2dbcEntityTemplate(postgres.connectionFactory());
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void createClient() {
+        asset = postgres.seedAsset(0);
+        other = postgres.seedAsset(0);
+        client = UsageRecordEndpoints.bind(postgres, UsageRecordEndpoints.repository(postgres));
+    }
+
+    @Test
+    void createsUnderOwningAgreement() {
+        client.post()
+                .uri(UsageRecordEndpoints.path(asset))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(usageRecord(asset.assetId()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.assetFinanceAssetId").isEqualTo(asset.assetId().toString());
+
+        assertThat(count(asset.assetId())).isEqualTo(1);
+    }
+
+    @Test
+    void createUnderForeignAgreementIsNotFound() {
+        PostgresFixture.SeededAsset mismatched = new PostgresFixture.SeededAsset(asset.agreementId(), other.assetId());
+
+        client.post()
+                .uri(UsageRecordEndpoints.path(mismatched))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(usageRecord(other.assetId()))
+                .exchange()
+                .expectStatus().isNotFound();
+
+        assertThat(count(other.assetId())).isZero();
+    }
+
+    @Test
+    void getByIdAnswersNotModifiedUntilTheRecordChanges() {
+        UUID id = create(asset).getUsageRecordId();
+        String path = UsageRecordEndpoints.path(asset) + "/" + id;
+
+        String tag = client.get()
+                .uri(path)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + id + "-0\"")
+                .expectBody().returnResult()
+                .getResponseHeaders()
+                .getETag();
+
+        client.get()
+                .uri(path)
+                .header(HttpHeaders.IF_NONE_MATCH, tag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        postgres.execute("UPDATE usage_record SET mileage = 200, version = version + 1 WHERE usage_record_id = ?", id);
+
+        client.get()
+                .uri(path)
+                .header(HttpHeaders.IF_NONE_MATCH, tag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + id + "-1\"")
+                .expectBody().jsonPath("$.mileage").isEqualTo(200);
+    }
+
+    @Test
+    void pageTagIsWeakAndFollowsContentAndFields() {
+        create(asset);
+        String path = UsageRecordEndpoints.path(asset) + "/cursor";
+
+        String tag = client.get()
+                .uri(path)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult()
+                .getResponseHeaders()
+                .getETag();
+        assertThat(tag).startsWith("W/\"");
+
+        client.get().uri(path).header(HttpHeaders.IF_NONE_MATCH, tag).exchange()
+                .expectStatus().isNotModified();
+        // same rows, different body
+        client.get().uri(path + "?fields=mileage").header(HttpHeaders.IF_NONE_MATCH, tag).exchange()
+                .expectStatus().isOk();
+
+        create(asset);
+
+        client.get().uri(path).header(HttpHeaders.IF_NONE_MATCH, tag).exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.content.length()").isEqualTo(2);
+    }
+
+    @Test
+    void deleteWithStaleIfMatchFailsAndKeepsTheRecord() {
+        UUID id = create(asset).getUsageRecordId();
+        postgres.execute("UPDATE usage_record SET version = version + 1 WHERE usage_record_id = ?", id);
+
+        client.delete()
+                .uri(UsageRecordEndpoints.path(asset) + "/" + id)
+                .header(HttpHeaders.IF_MATCH, "\"" + id + "-0\"")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        assertThat(count(asset.assetId())).isEqualTo(1);
+    }
+
+    @Test
+    void batchDeleteReturnsDeletedIdsAndSkipsUnknownOnes() {
+        UUID first = create(asset).getUsageRecordId();
+        UUID second = create(asset).getUsageRecordId();
+        UUID kept = create(asset).getUsageRecordId();
+        UUID unknown = UUID.randomUUID();
+
+        List<UUID> deleted = batchDelete(asset, List.of(first, unknown, second))
+                .expectStatus().isOk()
+                .expectBodyList(UUID.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(deleted).containsExactlyInAnyOrder(first, second);
+        assertThat(template.select(Query.query(Criteria.where("assetFinanceAssetId").is(asset.assetId())), UsageRecord.class)
+                .map(UsageRecord::getUsageRecordId)
+                .collectList()
+                .block()).containsExactly(kept);
+    }
+
+    @Test
+    void batchDeleteUnderForeignAgreementDeletesNothing() {
+        UUID id = create(asset).getUsageRecordId();
+        PostgresFixture.SeededAsset mismatched = new PostgresFixture.SeededAsset(other.agreementId(), asset.assetId());
+
+        batchDelete(mismatched, List.of(id))
+                .expectStatus().isOk()
+                .expectBodyList(UUID.class).hasSize(0);
+
+        assertThat(count(asset.assetId())).isEqualTo(1);
+    }
+
+    @Test
+    void batchDeleteRejectsMoreThanMaxBatchSize() {
+        List<UUID> ids = Stream.generate(UUID::randomUUID).limit(ScopedDelete.MAX_BATCH_SIZE + 1).toList();
+
+        batchDelete(asset, ids).expectStatus().isBadRequest();
+    }
+
+    private WebTestClient.ResponseSpec batchDelete(PostgresFixture.SeededAsset target, List<UUID> ids) {
+        return client.post()
+                .uri(UsageRecordEndpoints.path(target) + "/batch-delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(ids)
+                .exchange();
+    }
+
+    private UsageRecordDTO create(PostgresFixture.SeededAsset target) {
+        return client.post()
+                .uri(UsageRecordEndpoints.path(target))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(usageRecord(target.assetId()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(UsageRecordDTO.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private static UsageRecordDTO usageRecord(UUID assetId) {
+        return UsageRecordDTO.builder()
+                .assetFinanceAssetId(assetId)
+                .usageDate(LocalDate.of(2024, 6, 1))
+                .mileage(100)
+                .build();
+    }
+
+    private static long count(UUID assetId) {
+        return template.count(Query.query(Criteria.where("assetFinanceAssetId").is(assetId)), UsageRecord.class)
+                .block();
+    }
+}
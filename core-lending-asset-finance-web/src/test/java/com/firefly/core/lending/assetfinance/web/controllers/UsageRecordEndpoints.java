@@ -0,0 +1,102 @@
+/*
+ * Copyright 2025 Firefly Software Solutions Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.firefly.core.lending.assetfinance.web.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.firefly.core.lending.assetfinance.core.cache.AssetOwnershipCache;
+import com.firefly.core.lending.assetfinance.core.cache.CacheInvalidationBus;
+import com.firefly.core.lending.assetfinance.core.cache.CacheInvalidationListener;
+import com.firefly.core.lending.assetfinance.core.cache.CacheProperties;
+import com.firefly.core.lending.assetfinance.core.cache.FilterResultCache;
+import com.firefly.core.lending.assetfinance.core.cache.NegativeLookupFilter;
+import com.firefly.core.lending.assetfinance.core.cache.SingleFlight;
+import com.firefly.core.lending.assetfinance.core.commands.MergePatchFactory;
+import com.firefly.core.lending.assetfinance.core.commands.ScopedDeleteFactory;
+import com.firefly.core.lending.assetfinance.core.filters.ScopedFilterFactory;
+import com.firefly.core.lending.assetfinance.core.mappers.UsageRecordMapper;
+import com.firefly.core.lending.assetfinance.core.services.impl.UsageRecordServiceImpl;
+import com.firefly.core.lending.assetfinance.core.support.PostgresFixture;
+import com.firefly.core.lending.assetfinance.core.validators.AssetOwnershipValidator;
+import com.firefly.core.lending.assetfinance.models.config.ReadReplicaProperties;
+import com.firefly.core.lending.assetfinance.models.repositories.AssetFinanceAssetRepository;
+import com.firefly.core.lending.assetfinance.models.repositories.UsageRecordRepository;
+import com.firefly.core.lending.assetfinance.web.advice.ProblemDetailsExceptionHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.Validation;
+import org.mapstruct.factory.Mappers;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+/**
+ * Binds a {@link UsageRecordController} to the real service over a migrated Postgres, with the
+ * result cache and id filters switched off and no invalidation bus, for tests that drive the
+ * usage record endpoints over HTTP.
+ */
+final class UsageRecordEndpoints {
+
+    private UsageRecordEndpoints() {
+    }
+
+    /**
+     * @param repository the usage record repository, e.g. a delegating mock to interleave writes
+     */
+    static WebTestClient bind(PostgresFixture postgres, UsageRecordRepository repository) {
+        R2dbcEntityTemplate template = new R2dbcEntityTemplate(postgres.connectionFactory());
+        R2dbcTransactionManager transactionManager = new R2dbcTransactionManager(postgres.connectionFactory());
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.getFilterResults().setEnabled(false);
+        cacheProperties.getNegativeLookup().setEnabled(false);
+        cacheProperties.getInvalidation().setEnabled(false);
+        cacheProperties.getAssetOwnership().setMaximumSize(1_024);
+        CacheInvalidationBus bus = new CacheInvalidationBus(null, null, cacheProperties, new ReadReplicaProperties(),
+                beans.getBeanProvider(CacheInvalidationListener.class));
+        SingleFlight singleFlight = new SingleFlight(transactionManager, beans.getBeanProvider(MeterRegistry.class));
+        FilterResultCache resultCache = new FilterResultCache(cacheProperties, bus, singleFlight, null);
+
+        UsageRecordServiceImpl service = new UsageRecordServiceImpl(repository,
+                Mappers.getMapper(UsageRecordMapper.class),
+                new ScopedFilterFactory(template, resultCache, transactionManager),
+                new MergePatchFactory(template, new ObjectMapper().findAndRegisterModules(),
+                        Validation.buildDefaultValidatorFactory().getValidator()),
+                new ScopedDeleteFactory(template),
+                resultCache,
+                new NegativeLookupFilter(template, bus, cacheProperties, beans.getBeanProvider(MeterRegistry.class)),
+                new AssetOwnershipValidator(
+                        new R2dbcRepositoryFactory(template).getRepository(AssetFinanceAssetRepository.class),
+                        new AssetOwnershipCache(cacheProperties, bus, beans.getBeanProvider(MeterRegistry.class)),
+                        singleFlight,
+                        bus));
+        return WebTestClient.bindToController(new UsageRecordController(service))
+                .controllerAdvice(new ProblemDetailsExceptionHandler())
+                .build();
+    }
+
+    static UsageRecordRepository repository(PostgresFixture postgres) {
+        return new R2dbcRepositoryFactory(new R2dbcEntityTemplate(postgres.connectionFactory()))
+                .getRepository(UsageRecordRepository.class);
+    }
+
+    static String path(PostgresFixture.SeededAsset asset) {
+        return "/api/v1/asset-finance-agreements/" + asset.agreementId() + "/assets/" + asset.assetId() + "/usage-records";
+    }
+}